@@ -6,6 +6,9 @@ package org.proteinevolution;
 
 import org.eclipse.ui.plugin.AbstractUIPlugin;
 import org.osgi.framework.BundleContext;
+import org.proteinevolution.knime.porttypes.structure.StructureImplCache;
+import org.proteinevolution.models.sequence.SequenceDatabaseCache;
+import org.proteinevolution.preferences.PreferencePage;
 
 /**
  * This is the eclipse bundle activator.
@@ -39,6 +42,20 @@ public final class ProteinevolutionNodePlugin extends AbstractUIPlugin {
     public void start(final BundleContext context) throws Exception {
        
     	super.start(context);
+
+    	// Memory budget of the sequence database cache (in MB)
+    	this.getPreferenceStore().setDefault(
+    			PreferencePage.SEQUENCE_CACHE_SIZE,
+    			(int) (SequenceDatabaseCache.DEFAULT_BUDGET / (1024 * 1024)));
+    	SequenceDatabaseCache.getInstance().setBudget(
+    			this.getPreferenceStore().getInt(PreferencePage.SEQUENCE_CACHE_SIZE) * 1024L * 1024L);
+
+    	// Memory budget of the parsed structure cache (in MB)
+    	this.getPreferenceStore().setDefault(
+    			PreferencePage.STRUCTURE_CACHE_SIZE,
+    			(int) (StructureImplCache.DEFAULT_BUDGET / (1024 * 1024)));
+    	StructureImplCache.getInstance().setBudget(
+    			this.getPreferenceStore().getInt(PreferencePage.STRUCTURE_CACHE_SIZE) * 1024L * 1024L);
     }
 
     /**
@@ -50,6 +67,8 @@ public final class ProteinevolutionNodePlugin extends AbstractUIPlugin {
     @Override
     public void stop(final BundleContext context) throws Exception {
         
+    	SequenceDatabaseCache.getInstance().clear();
+    	StructureImplCache.getInstance().clear();
     	super.stop(context);
         plugin = null;
     }
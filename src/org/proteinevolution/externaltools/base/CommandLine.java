@@ -1,8 +1,10 @@
 package org.proteinevolution.externaltools.base;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.util.ArrayList;
@@ -135,9 +137,10 @@ public final class CommandLine implements AutoCloseable {
 		// Make a new temporary file and ask writeable to write into it
 		File tempFile = File.createTempFile("commandLine", "");
 		tempFile.deleteOnExit();
-		FileWriter fw = new FileWriter(tempFile);
-		writeable.write(fw);
-		fw.close(); 
+		try (Writer writer = new BufferedWriter(new FileWriter(tempFile), 1 << 16)) {
+
+			writeable.write(writer);
+		}
 		this.inFileKeys.add(option);
 		this.inFileValues.add(tempFile);
 	}
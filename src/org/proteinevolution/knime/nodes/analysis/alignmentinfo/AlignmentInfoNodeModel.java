@@ -8,6 +8,8 @@ import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.DoubleCell.DoubleCellFactory;
 import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.IntCell.IntCellFactory;
 import org.knime.core.data.def.StringCell.StringCellFactory;
@@ -24,9 +26,10 @@ import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
-import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.alignment.ColumnStatistics;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 
 
 /**
@@ -44,7 +47,35 @@ public class AlignmentInfoNodeModel extends NodeModel {
     protected AlignmentInfoNodeModel() {
     
         super(new PortType[] {SequenceAlignmentPortObject.TYPE},
-        	  new PortType[] {BufferedDataTable.TYPE});
+        	  new PortType[] {BufferedDataTable.TYPE, BufferedDataTable.TYPE});
+    }
+
+    private static DataTableSpec getInfoSpec() {
+
+        return new DataTableSpec(new DataColumnSpec[] {
+
+        		new DataColumnSpecCreator("no_sequences", IntCell.TYPE).createSpec(),
+        		new DataColumnSpecCreator("length", IntCell.TYPE).createSpec(),
+        		new DataColumnSpecCreator("format", StringCell.TYPE).createSpec()
+        });
+    }
+
+    private static DataTableSpec getColumnSpec() {
+
+    	String aminoAcids = ColumnStatistics.AMINO_ACIDS;
+    	DataColumnSpec[] allColSpecs = new DataColumnSpec[6 + aminoAcids.length()];
+    	allColSpecs[0] = new DataColumnSpecCreator("column", IntCell.TYPE).createSpec();
+    	allColSpecs[1] = new DataColumnSpecCreator("consensus", StringCell.TYPE).createSpec();
+    	allColSpecs[2] = new DataColumnSpecCreator("gap_fraction", DoubleCell.TYPE).createSpec();
+    	allColSpecs[3] = new DataColumnSpecCreator("entropy", DoubleCell.TYPE).createSpec();
+    	allColSpecs[4] = new DataColumnSpecCreator("conservation", DoubleCell.TYPE).createSpec();
+    	allColSpecs[5] = new DataColumnSpecCreator("no_residues", IntCell.TYPE).createSpec();
+
+    	for (int i = 0; i < aminoAcids.length(); ++i) {
+
+    		allColSpecs[6 + i] = new DataColumnSpecCreator("count_" + aminoAcids.charAt(i), IntCell.TYPE).createSpec();
+    	}
+    	return new DataTableSpec(allColSpecs);
     }
 
     /**
@@ -54,16 +85,9 @@ public class AlignmentInfoNodeModel extends NodeModel {
     protected BufferedDataTable[] execute(final PortObject[] inData,
             final ExecutionContext exec) throws Exception {
     
-        // the data table spec of the single output table, 
-        // the table will have three columns:
-        DataColumnSpec[] allColSpecs = new DataColumnSpec[] {
-        		
-        		new DataColumnSpecCreator("no_sequences", IntCell.TYPE).createSpec(),
-        		new DataColumnSpecCreator("length", IntCell.TYPE).createSpec(),
-        		new DataColumnSpecCreator("format", StringCell.TYPE).createSpec()
-        };
-        BufferedDataContainer container = exec.createDataContainer(new DataTableSpec(allColSpecs));
-        SequenceAlignmentContent in = ((SequenceAlignmentPortObject) inData[0]).getAlignment();
+        BufferedDataContainer container = exec.createDataContainer(getInfoSpec());
+        SequenceAlignmentPortObject port = (SequenceAlignmentPortObject) inData[0];
+        ISequenceAlignmentAnnotated in = port.getSequenceAlignment();
              
         container.addRowToTable(
         		new DefaultRow(
@@ -74,7 +98,34 @@ public class AlignmentInfoNodeModel extends NodeModel {
         						 StringCellFactory.create(in.getAlignmentFormat().toString())
         				 }));
         container.close();
-        return new BufferedDataTable[]{container.getTable()};
+
+        // Per-column statistics, cached on the alignment
+        exec.setMessage("Computing column statistics");
+        ColumnStatistics statistics = port.getColumnStatistics();
+        BufferedDataContainer columns = exec.createDataContainer(getColumnSpec());
+
+        for (int col = 0; col < statistics.getLength(); ++col) {
+
+        	int[] counts = statistics.getCounts(col);
+        	DataCell[] cells = new DataCell[6 + counts.length];
+        	int residues = 0;
+        	for (int i = 0; i < counts.length; ++i) {
+
+        		cells[6 + i] = IntCellFactory.create(counts[i]);
+        		residues += counts[i];
+        	}
+        	cells[0] = IntCellFactory.create(col + 1);
+        	cells[1] = StringCellFactory.create(String.valueOf(statistics.getConsensus(col)));
+        	cells[2] = DoubleCellFactory.create(statistics.getGapFraction(col));
+        	cells[3] = DoubleCellFactory.create(statistics.getEntropy(col));
+        	cells[4] = DoubleCellFactory.create(statistics.getConservation(col));
+        	cells[5] = IntCellFactory.create(residues);
+
+        	columns.addRowToTable(new DefaultRow("Row" + col, cells));
+        	exec.checkCanceled();
+        }
+        columns.close();
+        return new BufferedDataTable[]{container.getTable(), columns.getTable()};
     }
 
     /**
@@ -96,7 +147,7 @@ public class AlignmentInfoNodeModel extends NodeModel {
     		
     		throw new InvalidSettingsException("Port object for node AlignmentInfo must be SequenceAlignment.");
     	}
-        return new DataTableSpec[]{null};
+        return new DataTableSpec[]{getInfoSpec(), getColumnSpec()};
     }
 
     /**
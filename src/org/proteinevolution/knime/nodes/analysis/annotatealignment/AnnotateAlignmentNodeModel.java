@@ -24,6 +24,7 @@ import org.knime.core.node.port.PortType;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.alignment.AlignmentView;
 import org.proteinevolution.models.spec.FileExtensions;
 import org.proteinevolution.models.util.URIUtils;
 
@@ -53,8 +54,8 @@ public class AnnotateAlignmentNodeModel extends NodeModel {
 	protected PortObject[] execute(final PortObject[] inData,
 			final ExecutionContext exec) throws Exception {
 
-		// Load SS file and sequence
-		SequenceAlignmentContent alignment = ((SequenceAlignmentPortObject) inData[0]).getAlignment();
+		// Load SS file and sequence, the annotation is added to a view such that the input is neither modified nor copied
+		AlignmentView alignment = AlignmentView.of(((SequenceAlignmentPortObject) inData[0]).getSequenceAlignment());
 		String urc = ((IURIPortObject) inData[1]).getURIContents().get(0).getURI().getPath();
 
 		List<Character> chars = new ArrayList<Character>();
@@ -84,7 +85,7 @@ public class AnnotateAlignmentNodeModel extends NodeModel {
 				result[i] = chars.get(i).charValue();
 			}
 		}
-		alignment.addAnnotation(result);
+		alignment = alignment.addAnnotation(result);
 		
 		return new SequenceAlignmentPortObject[] {
 				
@@ -41,6 +41,7 @@ import org.knime.core.node.defaultnodesettings.SettingsModelStringArray;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
+import org.proteinevolution.knime.porttypes.structure.StructureContent;
 import org.proteinevolution.knime.porttypes.structure.StructurePortObject;
 import org.proteinevolution.knime.porttypes.structure.StructurePortObjectSpec;
 import org.proteinevolution.models.spec.pdb.PDBAtom;
@@ -169,7 +170,12 @@ public class CrossLinkPredictorNodeModel extends NodeModel {
 		acceptors.put(Residue.LYS, lys_atoms);
 		// END- TODO Block
 
-		Structure structure = ((StructurePortObject) inData[0]).getStructureContent().getStructureImpl(0);
+		StructureContent content = ((StructurePortObject) inData[0]).getStructureContent();
+		if (content.getNumberOfStructures() != 1) {
+
+			throw new InvalidSettingsException("Only one structure allowed for crosslink prediction!");
+		}
+		Structure structure = content.getStructureImpl(0);
 
 		// Initialize Grid
 		Grid grid = new Grid(
@@ -221,7 +227,7 @@ public class CrossLinkPredictorNodeModel extends NodeModel {
 		// Fetch the Euclidean distances
 		for (Atom atom : structureAtoms) {
 
-			PDBAtom pdbatom = PDBAtom.of(atom.getName());			
+			PDBAtom pdbatom = PDBAtom.lookup(atom.getName());
 			AminoAcid aminoAcid = (AminoAcid) atom.getGroup();
 
 			// Continue if we do not care about this atom at all
@@ -327,7 +333,8 @@ public class CrossLinkPredictorNodeModel extends NodeModel {
 
 			throw new InvalidSettingsException("Inport Type of CrossLinkPredictor must be Structure");
 		}
-		if (((StructurePortObjectSpec) inSpecs[0]).getNStructures() != 1) {
+		int nStructures = ((StructurePortObjectSpec) inSpecs[0]).getNStructures();
+		if (nStructures != 1 && nStructures != StructurePortObjectSpec.UNKNOWN) {
 
 			throw new InvalidSettingsException("Only one structure allowed for crosslink prediction!");
 		}
@@ -580,8 +580,11 @@ final class Grid implements Serializable {
 		double z = atom.getZ();		
 		PDBAtom pdbatom = atomIdentification.getAtom();
 
+		// Unknown atoms occupy their volume, but are neither donors nor acceptors
+		Element element = pdbatom == null ? atom.getElement() : pdbatom.element;
+
 		// Ignore hydrogen
-		if (pdbatom.element.equals(Element.H)) {
+		if (element.equals(Element.H)) {
 			return;
 		}
 
@@ -591,7 +594,7 @@ final class Grid implements Serializable {
 		boolean isAcceptor = this.acceptors.containsKey(residue) && this.acceptors.get(residue).contains(pdbatom);
 
 		// occupy the vdW volume of the atom (Might be inlined)
-		this.occupyVDW(x, y, z, pdbatom.element);
+		this.occupyVDW(x, y, z, element);
 
 		if (isDonor || isAcceptor) {
 
@@ -604,7 +607,7 @@ final class Grid implements Serializable {
 			this.atoms.add(atom);
 			this.atomIdentIndex++;
 			// Could also be inlined
-			this.makeAccessible(x, y, z, atomIdentification.getAtom().element.getVDWRadius());
+			this.makeAccessible(x, y, z, element.getVDWRadius());
 		}
 	}
 
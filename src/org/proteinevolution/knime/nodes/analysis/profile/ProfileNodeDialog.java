@@ -0,0 +1,47 @@
+package org.proteinevolution.knime.nodes.analysis.profile;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.proteinevolution.models.spec.SubstitutionMatrix;
+
+/**
+ * <code>NodeDialog</code> for the "Profile" Node.
+ * Computes a position-specific profile of a sequence alignment
+ *
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more 
+ * complex dialog please derive directly from 
+ * {@link org.knime.core.node.NodeDialogPane}.
+ * 
+ * @author Lukas Zimmermann
+ */
+public class ProfileNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring Profile node dialog.
+	 */
+	protected ProfileNodeDialog() {
+		super();
+
+		this.createNewGroup("Pseudocounts");
+		this.addDialogComponent(new DialogComponentStringSelection(
+				ProfileNodeModel.getParamMatrix(),
+				"Substitution matrix",
+				SubstitutionMatrix.getNames()));
+
+		this.addDialogComponent(new DialogComponentNumber(
+				ProfileNodeModel.getParamPseudocounts(),
+				"Weight of pseudocounts", 1.0));
+
+		this.createNewGroup("Output");
+		this.addDialogComponent(new DialogComponentBoolean(
+				ProfileNodeModel.getParamQuery(),
+				"Only columns of the first sequence"));
+
+		this.addDialogComponent(new DialogComponentBoolean(
+				ProfileNodeModel.getParamScores(),
+				"Log-odds scores (bits) instead of probabilities"));
+	}
+}
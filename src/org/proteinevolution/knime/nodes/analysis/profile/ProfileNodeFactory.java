@@ -0,0 +1,58 @@
+package org.proteinevolution.knime.nodes.analysis.profile;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "Profile" Node.
+ * Computes a position-specific profile of a sequence alignment
+ *
+ * @author Lukas Zimmermann
+ */
+public class ProfileNodeFactory 
+        extends NodeFactory<ProfileNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public ProfileNodeModel createNodeModel() {
+        return new ProfileNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<ProfileNodeModel> createNodeView(final int viewIndex,
+            final ProfileNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new ProfileNodeDialog();
+    }
+
+}
+
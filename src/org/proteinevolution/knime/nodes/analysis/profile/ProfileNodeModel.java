@@ -0,0 +1,243 @@
+package org.proteinevolution.knime.nodes.analysis.profile;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.DoubleCell;
+import org.knime.core.data.def.DoubleCell.DoubleCellFactory;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.IntCell.IntCellFactory;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.def.StringCell.StringCellFactory;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.alignment.Profile;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+import org.proteinevolution.models.spec.SubstitutionMatrix;
+
+
+/**
+ * This is the model implementation of Profile.
+ * Computes a position-specific profile of a sequence alignment with Henikoff weights and
+ * substitution matrix pseudocounts.
+ *
+ * @author Lukas Zimmermann
+ */
+public class ProfileNodeModel extends NodeModel {
+
+	// Substitution matrix for the pseudocounts
+	public static final String MATRIX_CFGKEY = "MATRIX";
+	public static final String MATRIX_DEFAULT = SubstitutionMatrix.BLOSUM62.name();
+
+	// Weight of the pseudocounts
+	public static final String PSEUDOCOUNTS_CFGKEY = "PSEUDOCOUNTS";
+	public static final double PSEUDOCOUNTS_DEFAULT = 10.0;
+
+	// Only report the columns in which the first sequence has a residue
+	public static final String QUERY_CFGKEY = "QUERY";
+	public static final boolean QUERY_DEFAULT = true;
+
+	// Report log-odds scores instead of probabilities
+	public static final String SCORES_CFGKEY = "SCORES";
+	public static final boolean SCORES_DEFAULT = false;
+
+	private final SettingsModelString matrix = getParamMatrix();
+	private final SettingsModelDoubleBounded pseudocounts = getParamPseudocounts();
+	private final SettingsModelBoolean query = getParamQuery();
+	private final SettingsModelBoolean scores = getParamScores();
+
+	public static SettingsModelString getParamMatrix() {
+
+		return new SettingsModelString(MATRIX_CFGKEY, MATRIX_DEFAULT);
+	}
+	public static SettingsModelDoubleBounded getParamPseudocounts() {
+
+		return new SettingsModelDoubleBounded(PSEUDOCOUNTS_CFGKEY, PSEUDOCOUNTS_DEFAULT, 0, 1000);
+	}
+	public static SettingsModelBoolean getParamQuery() {
+
+		return new SettingsModelBoolean(QUERY_CFGKEY, QUERY_DEFAULT);
+	}
+	public static SettingsModelBoolean getParamScores() {
+
+		return new SettingsModelBoolean(SCORES_CFGKEY, SCORES_DEFAULT);
+	}
+
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected ProfileNodeModel() {
+
+		super(new PortType[] {SequenceAlignmentPortObject.TYPE},
+			  new PortType[] {BufferedDataTable.TYPE});
+	}
+
+
+	private static DataTableSpec getOutputSpec() {
+
+		String aminoAcids = SubstitutionMatrix.ALPHABET;
+		DataColumnSpec[] allColSpecs = new DataColumnSpec[4 + aminoAcids.length()];
+		allColSpecs[0] = new DataColumnSpecCreator("column", IntCell.TYPE).createSpec();
+		allColSpecs[1] = new DataColumnSpecCreator("position", IntCell.TYPE).createSpec();
+		allColSpecs[2] = new DataColumnSpecCreator("residue", StringCell.TYPE).createSpec();
+		allColSpecs[3] = new DataColumnSpecCreator("neff", DoubleCell.TYPE).createSpec();
+
+		for (int i = 0; i < aminoAcids.length(); ++i) {
+
+			allColSpecs[4 + i] = new DataColumnSpecCreator(String.valueOf(aminoAcids.charAt(i)), DoubleCell.TYPE).createSpec();
+		}
+		return new DataTableSpec(allColSpecs);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final PortObject[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		ISequenceAlignmentAnnotated alignment = ((SequenceAlignmentPortObject) inData[0]).getSequenceAlignment();
+
+		exec.setMessage("Computing profile");
+		Profile profile = Profile.compute(
+				alignment,
+				SubstitutionMatrix.valueOf(this.matrix.getStringValue()),
+				this.pseudocounts.getDoubleValue());
+
+		BufferedDataContainer container = exec.createDataContainer(getOutputSpec());
+		double[][] probabilities = profile.getProbabilities();
+		int position = 0;
+
+		for (int col = 0; col < profile.getLength(); ++col) {
+
+			byte residue = alignment.getResidueAt(0, col);
+			boolean gap = residue == '-' || residue == '.';
+			if (gap && this.query.getBooleanValue()) {
+
+				continue;
+			}
+			DataCell[] cells = new DataCell[4 + probabilities[col].length];
+			cells[0] = IntCellFactory.create(col + 1);
+			cells[1] = gap ? DataType.getMissingCell() : IntCellFactory.create(++position);
+			cells[2] = StringCellFactory.create(String.valueOf((char) (residue & 0xFF)));
+			cells[3] = DoubleCellFactory.create(profile.getNeff(col));
+
+			for (int a = 0; a < probabilities[col].length; ++a) {
+
+				cells[4 + a] = DoubleCellFactory.create(
+						this.scores.getBooleanValue() ? profile.getScore(col, a) : probabilities[col][a]);
+			}
+			container.addRowToTable(new DefaultRow("Row" + col, cells));
+			exec.checkCanceled();
+		}
+		container.close();
+
+		return new BufferedDataTable[]{container.getTable()};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+
+		// Nothing to be done here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final PortObjectSpec[] inSpecs)
+			throws InvalidSettingsException {
+
+		if ( ! (inSpecs[0] instanceof SequenceAlignmentPortObjectSpec)) {
+
+			throw new InvalidSettingsException("Port object for node Profile must be SequenceAlignment.");
+		}
+		return new DataTableSpec[]{getOutputSpec()};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+
+		this.matrix.saveSettingsTo(settings);
+		this.pseudocounts.saveSettingsTo(settings);
+		this.query.saveSettingsTo(settings);
+		this.scores.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.matrix.loadSettingsFrom(settings);
+		this.pseudocounts.loadSettingsFrom(settings);
+		this.query.loadSettingsFrom(settings);
+		this.scores.loadSettingsFrom(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.matrix.validateSettings(settings);
+		this.pseudocounts.validateSettings(settings);
+		this.query.validateSettings(settings);
+		this.scores.validateSettings(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+}
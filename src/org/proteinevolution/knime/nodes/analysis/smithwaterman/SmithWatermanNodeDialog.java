@@ -0,0 +1,64 @@
+package org.proteinevolution.knime.nodes.analysis.smithwaterman;
+
+import org.knime.core.data.StringValue;
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.proteinevolution.models.spec.SubstitutionMatrix;
+
+/**
+ * <code>NodeDialog</code> for the "SmithWaterman" Node.
+ * Local alignment of query sequences against a FASTA database
+ *
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more 
+ * complex dialog please derive directly from 
+ * {@link org.knime.core.node.NodeDialogPane}.
+ * 
+ * @author Lukas Zimmermann
+ */
+public class SmithWatermanNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring SmithWaterman node dialog.
+	 */
+	@SuppressWarnings("unchecked")
+	protected SmithWatermanNodeDialog() {
+		super();
+
+		this.createNewGroup("Database");
+		this.addDialogComponent(new DialogComponentFileChooser(
+				SmithWatermanNodeModel.getParamInput(),
+				SmithWatermanNodeModel.INPUT_HISTORYKEY,
+				SmithWatermanNodeModel.INPUT_VALIDEXT));
+
+		this.createNewGroup("Query");
+		this.addDialogComponent(new DialogComponentColumnNameSelection(
+				SmithWatermanNodeModel.getParamQuery(),
+				"Query sequence",
+				0, true, false, StringValue.class));
+
+		this.createNewGroup("Scoring");
+		this.addDialogComponent(new DialogComponentStringSelection(
+				SmithWatermanNodeModel.getParamMatrix(),
+				"Substitution matrix",
+				SubstitutionMatrix.getNames()));
+
+		this.setHorizontalPlacement(true);
+		this.addDialogComponent(new DialogComponentNumber(
+				SmithWatermanNodeModel.getParamGapOpen(),
+				"Gap open", 1));
+
+		this.addDialogComponent(new DialogComponentNumber(
+				SmithWatermanNodeModel.getParamGapExtend(),
+				"Gap extend", 1));
+		this.setHorizontalPlacement(false);
+
+		this.createNewGroup("Output");
+		this.addDialogComponent(new DialogComponentNumber(
+				SmithWatermanNodeModel.getParamHits(),
+				"Hits per query", 10));
+	}
+}
@@ -0,0 +1,58 @@
+package org.proteinevolution.knime.nodes.analysis.smithwaterman;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "SmithWaterman" Node.
+ * Local alignment of query sequences against a FASTA database
+ *
+ * @author Lukas Zimmermann
+ */
+public class SmithWatermanNodeFactory 
+        extends NodeFactory<SmithWatermanNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public SmithWatermanNodeModel createNodeModel() {
+        return new SmithWatermanNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<SmithWatermanNodeModel> createNodeView(final int viewIndex,
+            final SmithWatermanNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new SmithWatermanNodeDialog();
+    }
+
+}
+
@@ -0,0 +1,314 @@
+package org.proteinevolution.knime.nodes.analysis.smithwaterman;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.PriorityQueue;
+import java.util.stream.IntStream;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.IntCell.IntCellFactory;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.def.StringCell.StringCellFactory;
+import org.knime.core.node.BufferedDataContainer;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.proteinevolution.models.alignment.SmithWaterman;
+import org.proteinevolution.models.sequence.PackedSequenceStore;
+import org.proteinevolution.models.sequence.SequenceDatabaseCache;
+import org.proteinevolution.models.spec.SubstitutionMatrix;
+
+
+/**
+ * This is the model implementation of SmithWaterman.
+ * Local alignment of query sequences against all sequences of a FASTA database, reporting the best
+ * scoring database sequences of each query.
+ *
+ * @author Lukas Zimmermann
+ */
+public class SmithWatermanNodeModel extends NodeModel {
+
+	// Input file (FASTA database)
+	public static final String INPUT_CFGKEY = "Input File";
+	public static final String INPUT_DEFAULT = "";
+	public static final String INPUT_HISTORYKEY = "SMITHWATERMAN_INPUT_HISTORYKEY";
+	public static final String INPUT_VALIDEXT = "fasta|fas|fa";
+
+	// Column containing the query sequences
+	public static final String QUERY_CFGKEY = "QUERY";
+	public static final String QUERY_DEFAULT = "seq";
+
+	public static final String MATRIX_CFGKEY = "MATRIX";
+	public static final String MATRIX_DEFAULT = SubstitutionMatrix.BLOSUM62.name();
+
+	// Gap costs as in BLAST, a gap of length k costs GAPOPEN + k * GAPEXTEND
+	public static final String GAPOPEN_CFGKEY = "GAPOPEN";
+	public static final int GAPOPEN_DEFAULT = 11;
+
+	public static final String GAPEXTEND_CFGKEY = "GAPEXTEND";
+	public static final int GAPEXTEND_DEFAULT = 1;
+
+	// Number of best scoring database sequences reported per query
+	public static final String HITS_CFGKEY = "HITS";
+	public static final int HITS_DEFAULT = 10;
+
+	private final SettingsModelString input_file = getParamInput();
+	private final SettingsModelColumnName query = getParamQuery();
+	private final SettingsModelString matrix = getParamMatrix();
+	private final SettingsModelIntegerBounded gap_open = getParamGapOpen();
+	private final SettingsModelIntegerBounded gap_extend = getParamGapExtend();
+	private final SettingsModelIntegerBounded hits = getParamHits();
+
+	public static SettingsModelString getParamInput() {
+
+		return new SettingsModelString(INPUT_CFGKEY, INPUT_DEFAULT);
+	}
+	public static SettingsModelColumnName getParamQuery() {
+
+		return new SettingsModelColumnName(QUERY_CFGKEY, QUERY_DEFAULT);
+	}
+	public static SettingsModelString getParamMatrix() {
+
+		return new SettingsModelString(MATRIX_CFGKEY, MATRIX_DEFAULT);
+	}
+	public static SettingsModelIntegerBounded getParamGapOpen() {
+
+		return new SettingsModelIntegerBounded(GAPOPEN_CFGKEY, GAPOPEN_DEFAULT, 0, 100);
+	}
+	public static SettingsModelIntegerBounded getParamGapExtend() {
+
+		return new SettingsModelIntegerBounded(GAPEXTEND_CFGKEY, GAPEXTEND_DEFAULT, 1, 100);
+	}
+	public static SettingsModelIntegerBounded getParamHits() {
+
+		return new SettingsModelIntegerBounded(HITS_CFGKEY, HITS_DEFAULT, 1, 100000);
+	}
+
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected SmithWatermanNodeModel() {
+
+		super(1, 1);
+	}
+
+
+	private static DataTableSpec getOutputSpec() {
+
+		DataColumnSpec[] allColSpecs = new DataColumnSpec[5];
+		allColSpecs[0] = new DataColumnSpecCreator("query", StringCell.TYPE).createSpec();
+		allColSpecs[1] = new DataColumnSpecCreator("target", StringCell.TYPE).createSpec();
+		allColSpecs[2] = new DataColumnSpecCreator("score", IntCell.TYPE).createSpec();
+		allColSpecs[3] = new DataColumnSpecCreator("target_end", IntCell.TYPE).createSpec();
+		allColSpecs[4] = new DataColumnSpecCreator("target_length", IntCell.TYPE).createSpec();
+
+		return new DataTableSpec(allColSpecs);
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		exec.setMessage("Reading database");
+		final PackedSequenceStore database = SequenceDatabaseCache.getInstance().get(
+				Paths.get(this.input_file.getStringValue()));
+		final int nTargets = database.size();
+
+		int maxLength = 0;
+		for (int i = 0; i < nTargets; ++i) {
+
+			maxLength = Math.max(maxLength, database.getLength(i));
+		}
+		final int bufferLength = maxLength;
+		final ThreadLocal<byte[]> buffers = ThreadLocal.withInitial(() -> new byte[bufferLength]);
+
+		SubstitutionMatrix substitutionMatrix = SubstitutionMatrix.valueOf(this.matrix.getStringValue());
+		int queryIndex = inData[0].getDataTableSpec().findColumnIndex(this.query.getStringValue());
+		int nHits = this.hits.getIntValue();
+
+		// Scores and end positions of all database sequences for the current query
+		final int[] scores = new int[nTargets];
+		final int[] ends = new int[nTargets];
+
+		BufferedDataContainer container = exec.createDataContainer(getOutputSpec());
+		long nQueries = inData[0].size();
+		long done = 0;
+		int key = 0;
+
+		exec.setMessage("Aligning");
+		for (DataRow row : inData[0]) {
+
+			DataCell cell = row.getCell(queryIndex);
+			if (cell.isMissing()) {
+
+				continue;
+			}
+			SmithWaterman aligner = new SmithWaterman(
+					cell.toString().toUpperCase(),
+					substitutionMatrix,
+					this.gap_open.getIntValue(),
+					this.gap_extend.getIntValue());
+			ThreadLocal<SmithWaterman.Scorer> scorers = ThreadLocal.withInitial(aligner::newScorer);
+
+			// Database sequences are aligned in parallel, each thread with its own scorer and buffer
+			IntStream.range(0, nTargets).parallel().forEach(i -> {
+
+				SmithWaterman.Scorer scorer = scorers.get();
+				byte[] buffer = buffers.get();
+				scores[i] = scorer.score(buffer, database.getBytes(i, buffer));
+				ends[i] = scorer.getTargetEnd();
+			});
+
+			// Best hits, the head of the queue is the worst of the retained hits
+			Comparator<Integer> byScore = (a, b) -> scores[a] != scores[b]
+					? Integer.compare(scores[a], scores[b])
+					: Integer.compare(b, a);
+			PriorityQueue<Integer> best = new PriorityQueue<Integer>(nHits + 1, byScore);
+			for (int i = 0; i < nTargets; ++i) {
+
+				if (scores[i] == 0) {
+
+					continue;
+				}
+				best.add(i);
+				if (best.size() > nHits) {
+
+					best.poll();
+				}
+			}
+			Integer[] ranked = best.toArray(new Integer[best.size()]);
+			Arrays.sort(ranked, byScore.reversed());
+
+			for (int i : ranked) {
+
+				DataCell[] cells = new DataCell[5];
+				cells[0] = StringCellFactory.create(row.getKey().getString());
+				cells[1] = StringCellFactory.create(database.getIdentifier(i));
+				cells[2] = IntCellFactory.create(scores[i]);
+				cells[3] = IntCellFactory.create(ends[i] + 1);
+				cells[4] = IntCellFactory.create(database.getLength(i));
+				container.addRowToTable(new DefaultRow("Row" + key++, cells));
+			}
+			exec.checkCanceled();
+			exec.setProgress((double) ++done / nQueries);
+		}
+		container.close();
+
+		return new BufferedDataTable[]{container.getTable()};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+
+		// Nothing to be done here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+
+		if (this.input_file.getStringValue().isEmpty()) {
+
+			throw new InvalidSettingsException("No FASTA database has been selected!");
+		}
+		if (inSpecs[0].findColumnIndex(this.query.getStringValue()) == -1) {
+
+			throw new InvalidSettingsException("Query sequence column not found in input table!");
+		}
+		return new DataTableSpec[]{getOutputSpec()};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+
+		this.input_file.saveSettingsTo(settings);
+		this.query.saveSettingsTo(settings);
+		this.matrix.saveSettingsTo(settings);
+		this.gap_open.saveSettingsTo(settings);
+		this.gap_extend.saveSettingsTo(settings);
+		this.hits.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.input_file.loadSettingsFrom(settings);
+		this.query.loadSettingsFrom(settings);
+		this.matrix.loadSettingsFrom(settings);
+		this.gap_open.loadSettingsFrom(settings);
+		this.gap_extend.loadSettingsFrom(settings);
+		this.hits.loadSettingsFrom(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.input_file.validateSettings(settings);
+		this.query.validateSettings(settings);
+		this.matrix.validateSettings(settings);
+		this.gap_open.validateSettings(settings);
+		this.gap_extend.validateSettings(settings);
+		this.hits.validateSettings(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+}
@@ -51,7 +51,7 @@ public class PSIBLASTNodeFactory  extends ToolInvocationNodeFactory<ISequenceAli
 			@Override
 			public ISequenceAlignment portToInput(final PortObject[] ports) {
 
-				return ((SequenceAlignmentPortObject) ports[0]).getAlignment();
+				return ((SequenceAlignmentPortObject) ports[0]).getSequenceAlignment();
 			}
 
 			@Override
@@ -13,9 +13,11 @@ import org.proteinevolution.externaltools.tools.ClustalOmega;
 import org.proteinevolution.externaltools.tools.ExternalToolInvocation;
 import org.proteinevolution.knime.KNIMEAdapter;
 import org.proteinevolution.knime.nodes.base.ToolInvocationNodeFactory;
+import org.proteinevolution.knime.porttypes.alignment.HeaderStore;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 import org.proteinevolution.models.spec.AlignmentFormat;
 import org.proteinevolution.preferences.PreferencePage;
 
@@ -54,7 +56,10 @@ public final class ClustalOmegaNodeFactory
 			@Override
 			public PortObject[] outputToPort(final Path result, final ExecutionContext exec) throws IOException {
 				
-				final SequenceAlignmentContent sequenceAlignmentOut = SequenceAlignmentContent.fromFASTA(result.toAbsolutePath().toString());
+				final ISequenceAlignmentAnnotated sequenceAlignmentOut = SequenceAlignmentContent.fromFASTA(
+						result.toAbsolutePath(),
+						HeaderStore.Mode.FULL,
+						SequenceAlignmentPortObject.MAPPING_THRESHOLD);
 				final AlignmentFormat sequenceAlignmentOutFormat = sequenceAlignmentOut.getAlignmentFormat();	
 				return new PortObject[]{
 						new SequenceAlignmentPortObject(
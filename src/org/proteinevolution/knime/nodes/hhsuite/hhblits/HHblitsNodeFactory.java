@@ -15,7 +15,12 @@ import org.proteinevolution.externaltools.tools.ExternalToolInvocation;
 import org.proteinevolution.externaltools.tools.HHblits;
 import org.proteinevolution.knime.KNIMEAdapter;
 import org.proteinevolution.knime.nodes.base.ToolInvocationNodeFactory;
+import org.proteinevolution.knime.porttypes.alignment.A3MReader;
+import org.proteinevolution.knime.porttypes.alignment.HeaderStore;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 import org.proteinevolution.models.interfaces.Writeable;
 import org.proteinevolution.preferences.PreferencePage;
 
@@ -53,13 +58,22 @@ public final class HHblitsNodeFactory extends ToolInvocationNodeFactory<Writeabl
 			@Override
 			public PortObject[] outputToPort(File[] result, ExecutionContext exec) throws IOException {
 
-				// File to sequence Alignment (TODO HHblits does currently not compute alignment files)
-				//SequenceAlignmentContent sequenceAlignmentOut = SequenceAlignmentContent.fromFASTA(result[1].getAbsolutePath());
-				//AlignmentFormat sequenceAlignmentOutFormat = sequenceAlignmentOut.getAlignmentFormat();	
 				final FileStoreURIPortObject out = new FileStoreURIPortObject(exec.createFileStore("HHblitsHHblitsNode"));
-				final File outFile =  out.registerFile(HHblitsNodeFactory.class.getSimpleName() + ".fasta");
+				final File outFile =  out.registerFile(HHblitsNodeFactory.class.getSimpleName() + ".a3m");
 				Files.copy(result[1].toPath().toAbsolutePath(), outFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
-				return new PortObject[] {out};
+
+				// The A3M output is parsed directly, inserts relative to the query are dropped
+				final ISequenceAlignmentAnnotated alignment = A3MReader.read(
+						result[1].toPath(),
+						A3MReader.Inserts.STRIP,
+						HeaderStore.Mode.FULL,
+						SequenceAlignmentPortObject.MAPPING_THRESHOLD);
+				return new PortObject[] {
+						out,
+						new SequenceAlignmentPortObject(
+								alignment,
+								new SequenceAlignmentPortObjectSpec(SequenceAlignmentContent.TYPE, alignment.getAlignmentFormat()))
+				};
 			}
 
 			@Override
@@ -67,14 +81,14 @@ public final class HHblitsNodeFactory extends ToolInvocationNodeFactory<Writeabl
 
 				return new Writeable[] {
 
-						((SequenceAlignmentPortObject) ports[0]).getAlignment()
+						((SequenceAlignmentPortObject) ports[0]).getSequenceAlignment()
 				};
 			}
 
 			@Override
 			public PortType[] getOutputPortType() {
 
-				return new PortType[] {IURIPortObject.TYPE};
+				return new PortType[] {IURIPortObject.TYPE, SequenceAlignmentPortObject.TYPE};
 			}
 
 			@Override
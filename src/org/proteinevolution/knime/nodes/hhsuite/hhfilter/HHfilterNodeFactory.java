@@ -12,9 +12,11 @@ import org.proteinevolution.externaltools.tools.ExternalToolInvocation;
 import org.proteinevolution.externaltools.tools.HHfilter;
 import org.proteinevolution.knime.KNIMEAdapter;
 import org.proteinevolution.knime.nodes.base.ToolInvocationNodeFactory;
+import org.proteinevolution.knime.porttypes.alignment.HeaderStore;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 import org.proteinevolution.models.interfaces.Writeable;
 import org.proteinevolution.models.spec.AlignmentFormat;
 import org.proteinevolution.preferences.PreferencePage;
@@ -50,14 +52,17 @@ public class HHfilterNodeFactory  extends ToolInvocationNodeFactory<Writeable[],
 
 				return new Writeable[] {
 
-						((SequenceAlignmentPortObject) ports[0]).getAlignment()
+						((SequenceAlignmentPortObject) ports[0]).getSequenceAlignment()
 				};
 			}
 
 			@Override
 			public PortObject[] outputToPort(File[] result, ExecutionContext exec) throws IOException {
 
-				SequenceAlignmentContent sequenceAlignmentOut = SequenceAlignmentContent.fromFASTA(result[0].getAbsolutePath());
+				ISequenceAlignmentAnnotated sequenceAlignmentOut = SequenceAlignmentContent.fromFASTA(
+						result[0].toPath(),
+						HeaderStore.Mode.FULL,
+						SequenceAlignmentPortObject.MAPPING_THRESHOLD);
 				AlignmentFormat sequenceAlignmentOutFormat = sequenceAlignmentOut.getAlignmentFormat();	
 
 				return new PortObject[]{
@@ -48,7 +48,7 @@ public final class HHsearchNodeFactory extends ToolInvocationNodeFactory<Writeab
 
 				return new Writeable[] {
 
-						((SequenceAlignmentPortObject) ports[0]).getAlignment()
+						((SequenceAlignmentPortObject) ports[0]).getSequenceAlignment()
 				};
 			}
 
@@ -1,14 +1,8 @@
 package org.proteinevolution.knime.nodes.index.fastaindexer;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
-import java.util.HashMap;
-import java.util.HashSet;
-import java.util.Iterator;
-import java.util.Map;
-import java.util.Set;
+import java.nio.file.Paths;
 
 import org.knime.base.node.util.BufferedFileReader;
 import org.knime.core.data.DataCell;
@@ -28,7 +22,6 @@ import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.IntCell.IntCellFactory;
 import org.knime.core.data.def.StringCell.StringCellFactory;
 import org.knime.core.data.def.StringCell;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
@@ -42,6 +35,18 @@ import org.knime.core.node.NodeLogger;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.proteinevolution.models.sequence.PackedSequenceStore;
+import org.proteinevolution.models.sequence.SequenceDatabaseCache;
 
 /**
  * This is the model implementation of FastaIndexer.
@@ -112,56 +117,10 @@ public class FastaIndexerNodeModel extends NodeModel {
 
 
 
-	private Map<String, String> indexFASTA(BufferedDataTable table, int prot_index) throws IOException {
+	private PackedSequenceStore indexFASTA() throws IOException {
 
-		// Index of FASTA database
-		Map<String, String> sequences = new HashMap<String, String>();
-		Set<String> prot_ids = new HashSet<String>();
-		if (prot_index != -1) {
-
-			for (DataRow row : table) {			
-				for(DataCell cell : (SetCell) row.getCell(prot_index)) {
-					prot_ids.add(cell.toString());
-				}
-			}
-		}
-		// Go through FASTA file and index the sequences
-		BufferedReader br = new BufferedReader(new FileReader(this.input_file.getStringValue()));
-		String line;
-		StringBuilder sbuilder = new StringBuilder();
-		String current_identifier = null;
-
-		while ((line = br.readLine()) != null) {
-			line = line.trim();
-			// Skip empty lines
-			if (line.isEmpty()) {
-				continue;
-			}
-			if(line.startsWith(">")) {
-
-				line = line.split("\\s+")[0];
-				if (line.startsWith(">")) {
-					line = line.substring(1);
-				}
-				if (current_identifier != null) {						
-					sequences.put(current_identifier, sbuilder.toString());
-				}
-				sbuilder = new StringBuilder();
-				current_identifier = prot_ids.contains(line) || prot_index == -1 ? line : null;
-
-			} else {
-				if (current_identifier != null) {
-					sbuilder.append(line);
-				}
-			}	
-		}
-		if (current_identifier != null) {
-			sequences.put(current_identifier, sbuilder.toString());
-		}
-		sbuilder = null;
-		br.close();
-
-		return sequences;
+		// Databases are shared with other executions reading the same file
+		return SequenceDatabaseCache.getInstance().get(Paths.get(this.input_file.getStringValue()));
 	} 
 
 
@@ -175,16 +134,26 @@ public class FastaIndexerNodeModel extends NodeModel {
 		super(1, 1);
 	}
 
+	private static DataTableSpec getOutputSpec() {
+
+		DataColumnSpec[] allColSpecs = new DataColumnSpec[N_COLUMNS];
+		allColSpecs[0] = new DataColumnSpecCreator("key", StringCell.TYPE).createSpec();
+		allColSpecs[1] = new DataColumnSpecCreator("abspos", IntCell.TYPE).createSpec();
+		allColSpecs[2] = new DataColumnSpecCreator("flank_left", StringCell.TYPE).createSpec();
+		allColSpecs[3] = new DataColumnSpecCreator("flank_right", StringCell.TYPE).createSpec();
+		allColSpecs[4] = new DataColumnSpecCreator("prot", StringCell.TYPE).createSpec();
+
+		return new DataTableSpec(allColSpecs);
+	}
+
+
 	/**
-	 * {@inheritDoc}
+	 * Annotates all rows of the input and pushes the annotations to the output. Used for both, the
+	 * streamed and the regular execution.
 	 */
-	@Override
-	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
-			final ExecutionContext exec) throws Exception {
+	private void annotate(final RowInput input, final RowOutput output, final ExecutionContext exec) throws Exception {
 
-		// Fetch first table on inport
-		BufferedDataTable table = inData[0];
-		DataTableSpec spec = table.getDataTableSpec();
+		DataTableSpec spec = input.getDataTableSpec();
 
 		// Indices
 		int seq_index = spec.findColumnIndex(this.seq.getStringValue());
@@ -192,21 +161,11 @@ public class FastaIndexerNodeModel extends NodeModel {
 		int prot_index = spec.findColumnIndex(this.prot.getStringValue());
 
 		// Make index of fasta file
-		Map<String, String> fasta_index = this.indexFASTA(table, prot_index);
-
-		// Assemble result table		
-		DataColumnSpec[] allColSpecs = new DataColumnSpec[N_COLUMNS];
-		allColSpecs[0] = new DataColumnSpecCreator("key", StringCell.TYPE).createSpec();
-		allColSpecs[1] = new DataColumnSpecCreator("abspos", IntCell.TYPE).createSpec();
-		allColSpecs[2] = new DataColumnSpecCreator("flank_left", StringCell.TYPE).createSpec();
-		allColSpecs[3] = new DataColumnSpecCreator("flank_right", StringCell.TYPE).createSpec();
-		allColSpecs[4] = new DataColumnSpecCreator("prot", StringCell.TYPE).createSpec();
-		
-		DataTableSpec outputSpec = new DataTableSpec(allColSpecs);
-		BufferedDataContainer container = exec.createDataContainer(outputSpec);
+		PackedSequenceStore fasta_index = this.indexFASTA();
 
 		// Make annotations
-		for (DataRow row: table){
+		DataRow row;
+		while ((row = input.poll()) != null) {
 
 			// Fetch peptideSeq
 			String seq = row.getCell(seq_index).toString().toUpperCase().replace("X", this.mod.getStringValue());
@@ -218,14 +177,16 @@ public class FastaIndexerNodeModel extends NodeModel {
 				for(DataCell cell : (SetCell) row.getCell(prot_index)) {
 
 					String prot = cell.toString();
+					int prot_seq = fasta_index.indexOf(prot);
+
 					// Skip if this protein cannot be annotated
-					if (!fasta_index.containsKey(prot)) {
+					if (prot_seq == -1) {
 
 						//logger.warn("Protein with accession " + prot + " not in database. Annotation is ommitted");
 						continue;
 					}
-					String protein_seq = fasta_index.get(prot).toUpperCase();
-					int index_of_seq = protein_seq.indexOf(seq);
+					CharSequence protein_seq = fasta_index.getSequence(prot_seq);
+					int index_of_seq = fasta_index.find(prot_seq, seq, 0);
 
 					if (index_of_seq == -1) {
 						logger.warn("Peptide sequence is not part of protein sequence. Skipping.");
@@ -264,13 +225,8 @@ public class FastaIndexerNodeModel extends NodeModel {
 
 					// Protein
 					cells[4] = StringCellFactory.create(prot);
-					
-					container.addRowToTable(new DefaultRow(key, cells));				
-					try {
-						exec.checkCanceled();
-					}
-					catch(CanceledExecutionException e) {
-					}
+
+					output.push(new DefaultRow(key, cells));
 				}
 			}
 			else {
@@ -278,9 +234,52 @@ public class FastaIndexerNodeModel extends NodeModel {
 				// TODO Annotate all
 
 			}
+			exec.checkCanceled();
 		}
-		container.close();
-		return  new BufferedDataTable[] {container.getTable()};
+		input.close();
+		output.close();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		BufferedDataTableRowOutput output = new BufferedDataTableRowOutput(exec.createDataContainer(getOutputSpec()));
+		this.annotate(new DataTableRowInput(inData[0]), output, exec);
+
+		return new BufferedDataTable[] {output.getDataTable()};
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InputPortRole[] getInputPortRoles() {
+
+		return new InputPortRole[] {InputPortRole.NONDISTRIBUTED_STREAMABLE};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StreamableOperator createStreamableOperator(
+			final PartitionInfo partitionInfo,
+			final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+
+		return new StreamableOperator() {
+
+			@Override
+			public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec) throws Exception {
+
+				FastaIndexerNodeModel.this.annotate((RowInput) inputs[0], (RowOutput) outputs[0], exec);
+			}
+		};
 	}
 
 	/**
@@ -288,9 +287,8 @@ public class FastaIndexerNodeModel extends NodeModel {
 	 */
 	@Override
 	protected void reset() {
-		// TODO Code executed on reset.
-		// Models build during execute are cleared here.
-		// Also data handled in load/saveInternals will be erased here.
+
+		this.key_counter = 0;
 	}
 
 	/**
@@ -300,13 +298,8 @@ public class FastaIndexerNodeModel extends NodeModel {
 	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
 			throws InvalidSettingsException {
 
-		// TODO: check if user settings are available, fit to the incoming
-		// table structure, and the incoming types are feasible for the node
-		// to execute. If the node can execute in its current state return
-		// the spec of its output data table(s) (if you can, otherwise an array
-		// with null elements), or throw an exception with a useful user message
-
-		return new DataTableSpec[]{null};
+		// The output spec is needed by downstream nodes when executed in streaming mode
+		return new DataTableSpec[]{getOutputSpec()};
 	}
 
 	/**
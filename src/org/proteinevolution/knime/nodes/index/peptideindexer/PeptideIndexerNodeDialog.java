@@ -0,0 +1,101 @@
+package org.proteinevolution.knime.nodes.index.peptideindexer;
+
+import javax.swing.JFileChooser;
+
+import org.knime.core.data.IntValue;
+import org.knime.core.data.StringValue;
+import org.knime.core.data.collection.SetCell;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.proteinevolution.models.spec.Enzyme;
+import org.proteinevolution.models.spec.FileExtensions;
+
+/**
+ * <code>NodeDialog</code> for the "PeptideIndexer" Node.
+ * Annotates cross-link identifications via an index of the in-silico digested FASTA database
+ *
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more 
+ * complex dialog please derive directly from 
+ * {@link org.knime.core.node.NodeDialogPane}.
+ * 
+ * @author Lukas Zimmermann
+ */
+public class PeptideIndexerNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring PeptideIndexer node dialog.
+	 */
+	@SuppressWarnings("unchecked")
+	protected PeptideIndexerNodeDialog() {
+		super();
+
+		this.createNewGroup("Database");
+		this.addDialogComponent(new DialogComponentFileChooser(
+				PeptideIndexerNodeModel.getParamInput(),
+				PeptideIndexerNodeModel.INPUT_HISTORYKEY,
+				PeptideIndexerNodeModel.INPUT_VALIDEXT));
+
+		// Index file, a temporary file is used if empty
+		this.addDialogComponent(new DialogComponentFileChooser(
+				PeptideIndexerNodeModel.getParamIndex(),
+				PeptideIndexerNodeModel.INDEX_HISTORYKEY,
+				JFileChooser.SAVE_DIALOG,
+				FileExtensions.IDX));
+
+		this.createNewGroup("Digestion");
+		this.addDialogComponent(new DialogComponentStringSelection(
+				PeptideIndexerNodeModel.getParamEnzyme(),
+				"Enzyme",
+				Enzyme.getNames()));
+
+		this.addDialogComponent(new DialogComponentNumber(
+				PeptideIndexerNodeModel.getParamMissed(),
+				"Missed cleavages", 1));
+
+		this.setHorizontalPlacement(true);
+		this.addDialogComponent(new DialogComponentNumber(
+				PeptideIndexerNodeModel.getParamMinLength(),
+				"Min length", 1));
+
+		this.addDialogComponent(new DialogComponentNumber(
+				PeptideIndexerNodeModel.getParamMaxLength(),
+				"Max length", 1));
+		this.setHorizontalPlacement(false);
+
+		this.addDialogComponent(new DialogComponentBoolean(
+				PeptideIndexerNodeModel.getParamSemi(),
+				"Semi-specific (search other peptides, slow)"));
+
+		this.createNewGroup("Input columns");
+
+		// seq
+		this.addDialogComponent(new DialogComponentColumnNameSelection(
+				PeptideIndexerNodeModel.getParamSeq(),
+				"Peptide sequence (X is varmod)",
+				0, true, false, StringValue.class));
+
+		// pos
+		this.addDialogComponent(new DialogComponentColumnNameSelection(
+				PeptideIndexerNodeModel.getParamPos(),
+				"Column with XL position (1-based)",
+				0, true, false, IntValue.class));
+
+		//  prot
+		this.addDialogComponent(new DialogComponentColumnNameSelection(
+				PeptideIndexerNodeModel.getParamProt(),
+				"String Set with ProtIDs.",
+				0, false, true, SetCell.getCollectionType(StringCell.TYPE).getPreferredValueClass()));
+
+		// modification
+		this.addDialogComponent(new DialogComponentStringSelection(
+				PeptideIndexerNodeModel.getParamMod(),
+				"Variable Modification",
+				"M", "Q", "E", "W", "R", "T", "I", "P", "A", "S", "D", "F", "G", "K", "L", "Y", "C", "V", "N", "H"));
+	}
+}
@@ -0,0 +1,58 @@
+package org.proteinevolution.knime.nodes.index.peptideindexer;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "PeptideIndexer" Node.
+ * Annotates cross-link identifications via an index of the in-silico digested FASTA database
+ *
+ * @author Lukas Zimmermann
+ */
+public class PeptideIndexerNodeFactory 
+        extends NodeFactory<PeptideIndexerNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PeptideIndexerNodeModel createNodeModel() {
+        return new PeptideIndexerNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<PeptideIndexerNodeModel> createNodeView(final int viewIndex,
+            final PeptideIndexerNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new PeptideIndexerNodeDialog();
+    }
+
+}
+
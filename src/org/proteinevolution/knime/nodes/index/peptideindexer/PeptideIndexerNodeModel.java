@@ -0,0 +1,600 @@
+package org.proteinevolution.knime.nodes.index.peptideindexer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Arrays;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataColumnSpec;
+import org.knime.core.data.DataColumnSpecCreator;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.IntValue;
+import org.knime.core.data.MissingCell;
+import org.knime.core.data.RowKey;
+import org.knime.core.data.collection.SetCell;
+import org.knime.core.data.def.DefaultRow;
+import org.knime.core.data.def.IntCell;
+import org.knime.core.data.def.IntCell.IntCellFactory;
+import org.knime.core.data.def.StringCell;
+import org.knime.core.data.def.StringCell.StringCellFactory;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeLogger;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.proteinevolution.models.sequence.PackedSequenceStore;
+import org.proteinevolution.models.sequence.PeptideIndex;
+import org.proteinevolution.models.sequence.SequenceDatabaseCache;
+import org.proteinevolution.models.spec.Enzyme;
+
+/**
+ * This is the model implementation of PeptideIndexer.
+ * Annotates cross-link identifications via an index of the in-silico digested FASTA database
+ * and adds information on the absolute position and flanking residues
+ *
+ * @author Lukas Zimmermann
+ */
+public class PeptideIndexerNodeModel extends NodeModel {
+
+	// the logger instance
+	private static final NodeLogger logger = NodeLogger
+			.getLogger(PeptideIndexerNodeModel.class);
+
+	// Input file (FASTA database)
+	public static final String INPUT_CFGKEY = "Input File";
+	public static final String INPUT_DEFAULT = "";
+	public static final String INPUT_HISTORYKEY = "PEPTIDEINDEXER_INPUT_HISTORYKEY";
+	public static final String INPUT_VALIDEXT = "fasta|fas|fa";
+
+	// Index file (empty for a temporary file)
+	public static final String INDEX_CFGKEY = "Index File";
+	public static final String INDEX_DEFAULT = "";
+	public static final String INDEX_HISTORYKEY = "PEPTIDEINDEXER_INDEX_HISTORYKEY";
+
+	// column containing peptide sequence
+	public static final String SEQ_CFGKEY = "Seq";
+	public static final String SEQ_DEFAULT = "seq";  // required
+
+	// column containing cross-link position within the peptide
+	public static final String POS_CFGKEY = "Pos";
+	public static final String POS_DEFAULT = "pos";  // required
+
+	// column containing protein ID set
+	public static final String PROT_CFGKEY = "Prot";
+	public static final String PROT_DEFAULT = null;   // optional (all proteins if missing)
+
+	// Variable modification
+	public static final String MOD_CFGKEY = "Mod";
+	public static final String MOD_DEFAULT = "M";   // Modification (by which X should be replaced)
+
+	// Digestion
+	public static final String ENZYME_CFGKEY = "Enzyme";
+	public static final String ENZYME_DEFAULT = Enzyme.Trypsin.name();
+
+	public static final String MISSED_CFGKEY = "Missed cleavages";
+	public static final int MISSED_DEFAULT = 2;
+
+	public static final String MINLENGTH_CFGKEY = "Min peptide length";
+	public static final int MINLENGTH_DEFAULT = 4;
+
+	public static final String MAXLENGTH_CFGKEY = "Max peptide length";
+	public static final int MAXLENGTH_DEFAULT = 60;
+
+	// Search peptides which are no products of the digestion in the protein sequences (slow)
+	public static final String SEMI_CFGKEY = "Semi-specific";
+	public static final boolean SEMI_DEFAULT = false;
+
+	// Number of columns in output table
+	private static final int N_COLUMNS = 5;
+
+	private final SettingsModelString input_file = getParamInput();
+	private final SettingsModelString index_file = getParamIndex();
+	private final SettingsModelString seq = getParamSeq();
+	private final SettingsModelString pos = getParamPos();
+	private final SettingsModelString prot = getParamProt();
+	private final SettingsModelString mod = getParamMod();
+	private final SettingsModelString enzyme = getParamEnzyme();
+	private final SettingsModelIntegerBounded missed = getParamMissed();
+	private final SettingsModelIntegerBounded min_length = getParamMinLength();
+	private final SettingsModelIntegerBounded max_length = getParamMaxLength();
+	private final SettingsModelBoolean semi = getParamSemi();
+
+	// Index of the last execution, reused if database and digestion do not change
+	private PeptideIndex index = null;
+	private Path temporary_index = null;
+
+	private int key_counter = 0;
+
+
+	public static SettingsModelString getParamInput() {
+
+		return new SettingsModelString(INPUT_CFGKEY, INPUT_DEFAULT);
+	}
+	public static SettingsModelString getParamIndex() {
+
+		return new SettingsModelString(INDEX_CFGKEY, INDEX_DEFAULT);
+	}
+	public static SettingsModelColumnName getParamSeq() {
+
+		return new SettingsModelColumnName(SEQ_CFGKEY, SEQ_DEFAULT);
+	}
+	public static SettingsModelColumnName getParamPos() {
+
+		return new SettingsModelColumnName(POS_CFGKEY, POS_DEFAULT);
+	}
+	public static SettingsModelColumnName getParamProt() {
+
+		return new SettingsModelColumnName(PROT_CFGKEY, PROT_DEFAULT);
+	}
+	public static SettingsModelString getParamMod() {
+
+		return new SettingsModelString(MOD_CFGKEY, MOD_DEFAULT);
+	}
+	public static SettingsModelString getParamEnzyme() {
+
+		return new SettingsModelString(ENZYME_CFGKEY, ENZYME_DEFAULT);
+	}
+	public static SettingsModelIntegerBounded getParamMissed() {
+
+		return new SettingsModelIntegerBounded(MISSED_CFGKEY, MISSED_DEFAULT, 0, 10);
+	}
+	public static SettingsModelIntegerBounded getParamMinLength() {
+
+		return new SettingsModelIntegerBounded(MINLENGTH_CFGKEY, MINLENGTH_DEFAULT, 1, PeptideIndex.MAX_PEPTIDE_LENGTH);
+	}
+	public static SettingsModelIntegerBounded getParamMaxLength() {
+
+		return new SettingsModelIntegerBounded(MAXLENGTH_CFGKEY, MAXLENGTH_DEFAULT, 1, PeptideIndex.MAX_PEPTIDE_LENGTH);
+	}
+	public static SettingsModelBoolean getParamSemi() {
+
+		return new SettingsModelBoolean(SEMI_CFGKEY, SEMI_DEFAULT);
+	}
+
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected PeptideIndexerNodeModel() {
+
+		super(1, 1);
+	}
+
+
+	private static DataTableSpec getOutputSpec() {
+
+		DataColumnSpec[] allColSpecs = new DataColumnSpec[N_COLUMNS];
+		allColSpecs[0] = new DataColumnSpecCreator("key", StringCell.TYPE).createSpec();
+		allColSpecs[1] = new DataColumnSpecCreator("abspos", IntCell.TYPE).createSpec();
+		allColSpecs[2] = new DataColumnSpecCreator("flank_left", StringCell.TYPE).createSpec();
+		allColSpecs[3] = new DataColumnSpecCreator("flank_right", StringCell.TYPE).createSpec();
+		allColSpecs[4] = new DataColumnSpecCreator("prot", StringCell.TYPE).createSpec();
+
+		return new DataTableSpec(allColSpecs);
+	}
+
+
+	/**
+	 * Opens the index file if it matches the database and the digestion, otherwise the index is built.
+	 */
+	private PeptideIndex getIndex(final ExecutionContext exec) throws IOException {
+
+		Path database = Paths.get(this.input_file.getStringValue());
+		PackedSequenceStore store = SequenceDatabaseCache.getInstance().get(database);
+
+		BasicFileAttributes attributes = Files.readAttributes(database, BasicFileAttributes.class);
+		long fingerprint = 31 * attributes.size() + attributes.lastModifiedTime().toMillis();
+
+		Path file;
+		if (this.index_file.getStringValue().isEmpty()) {
+
+			if (this.temporary_index == null) {
+
+				this.temporary_index = Files.createTempFile("peptideindex", ".idx");
+				this.temporary_index.toFile().deleteOnExit();
+			}
+			file = this.temporary_index;
+
+		} else {
+
+			file = Paths.get(this.index_file.getStringValue());
+		}
+		this.closeIndex();
+
+		Enzyme enzyme = Enzyme.valueOf(this.enzyme.getStringValue());
+		PeptideIndex result = PeptideIndex.open(
+				store,
+				fingerprint,
+				enzyme,
+				this.missed.getIntValue(),
+				this.min_length.getIntValue(),
+				this.max_length.getIntValue(),
+				file);
+
+		if (result == null) {
+
+			exec.setMessage("Digesting database");
+			result = PeptideIndex.build(
+					store,
+					fingerprint,
+					enzyme,
+					this.missed.getIntValue(),
+					this.min_length.getIntValue(),
+					this.max_length.getIntValue(),
+					file);
+		}
+		return result;
+	}
+
+	private void closeIndex() {
+
+		if (this.index != null) {
+
+			try {
+				this.index.close();
+			} catch (IOException e) {
+
+				logger.warn("Could not close peptide index: " + e.getMessage());
+			}
+			this.index = null;
+		}
+	}
+
+
+	private DataRow createRow(
+			final DataRow row,
+			final PackedSequenceStore store,
+			final int protein,
+			final int start,
+			final int length,
+			final int pos) {
+
+		CharSequence protein_seq = store.getSequence(protein);
+		int endpos = start + length;
+		DataCell[] cells = new DataCell[N_COLUMNS];
+
+		// Key
+		cells[0] = StringCellFactory.create(row.getKey().getString());
+
+		// absolute position (1-based)
+		cells[1] = IntCellFactory.create(start + pos);
+
+		// flank-left
+		cells[2] = start == 0
+				? new MissingCell("N-terminal")
+				: StringCellFactory.create(String.valueOf(protein_seq.charAt(start - 1)));
+
+		// flank-right
+		cells[3] = endpos == protein_seq.length()
+				? new MissingCell("c-terminal")
+				: StringCellFactory.create(String.valueOf(protein_seq.charAt(endpos)));
+
+		// Protein
+		cells[4] = StringCellFactory.create(store.getIdentifier(protein));
+
+		return new DefaultRow(new RowKey("Row " + this.key_counter++), cells);
+	}
+
+
+	/**
+	 * Annotates all rows of the input and pushes the annotations to the output. Used for both, the
+	 * streamed and the regular execution. Progress is reported if the number of rows is known (non-negative).
+	 */
+	private void annotate(
+			final RowInput input,
+			final RowOutput output,
+			final ExecutionContext exec,
+			final long nRows) throws Exception {
+
+		DataTableSpec spec = input.getDataTableSpec();
+
+		// Indices
+		int seq_index = spec.findColumnIndex(this.seq.getStringValue());
+		int pos_index = spec.findColumnIndex(this.pos.getStringValue());
+		int prot_index = spec.findColumnIndex(this.prot.getStringValue());
+
+		this.index = this.getIndex(exec);
+		PackedSequenceStore store = this.index.getStore();
+
+		this.key_counter = 0;
+		long row_counter = 0;
+
+		DataRow row;
+		while ((row = input.poll()) != null) {
+
+			String seq = row.getCell(seq_index).toString().toUpperCase().replace("X", this.mod.getStringValue());
+			int pos = ((IntValue) row.getCell(pos_index)).getIntValue();
+
+			// Sorted by protein and start, such that the first occurrence in each protein comes first
+			long[] occurrences = this.index.lookup(seq);
+			Arrays.sort(occurrences);
+
+			if (prot_index != -1) {
+
+				// Annotate the listed proteins in which the peptide is a product of the digestion
+				int[] proteins = proteinsOf((SetCell) row.getCell(prot_index), store);
+				boolean[] found = new boolean[proteins.length];
+				int previous = -1;
+				for (long occurrence : occurrences) {
+
+					int protein = PeptideIndex.sequenceOf(occurrence);
+					int k;
+					if (protein != previous && (k = Arrays.binarySearch(proteins, protein)) >= 0) {
+
+						found[k] = true;
+						output.push(this.createRow(row, store, protein, PeptideIndex.startOf(occurrence), seq.length(), pos));
+					}
+					previous = protein;
+				}
+				for (int k = 0; k < proteins.length; ++k) {
+
+					if (found[k]) {
+
+						continue;
+					}
+					int start = this.semi.getBooleanValue() ? store.find(proteins[k], seq, 0) : -1;
+					if (start == -1) {
+
+						logger.warn("Peptide sequence is not a product of the digestion of the protein. Skipping.");
+						continue;
+					}
+					output.push(this.createRow(row, store, proteins[k], start, seq.length(), pos));
+				}
+			} else {
+
+				// Annotate all proteins in which the peptide is a product of the digestion
+				int previous = -1;
+				for (long occurrence : occurrences) {
+
+					int protein = PeptideIndex.sequenceOf(occurrence);
+					if (protein != previous) {
+
+						output.push(this.createRow(row, store, protein, PeptideIndex.startOf(occurrence), seq.length(), pos));
+					}
+					previous = protein;
+				}
+
+				// Other peptides are only searched in all proteins if semi-specific peptides are requested
+				if (occurrences.length == 0 && this.semi.getBooleanValue()) {
+
+					for (int protein = 0; protein < store.size(); ++protein) {
+
+						int start = store.find(protein, seq, 0);
+						if (start != -1) {
+
+							output.push(this.createRow(row, store, protein, start, seq.length(), pos));
+						}
+					}
+				}
+			}
+			exec.checkCanceled();
+			if (nRows > 0) {
+
+				exec.setProgress((double) ++row_counter / nRows);
+			}
+		}
+		input.close();
+		output.close();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		BufferedDataTableRowOutput output = new BufferedDataTableRowOutput(exec.createDataContainer(getOutputSpec()));
+		this.annotate(new DataTableRowInput(inData[0]), output, exec, inData[0].size());
+
+		return new BufferedDataTable[] {output.getDataTable()};
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InputPortRole[] getInputPortRoles() {
+
+		return new InputPortRole[] {InputPortRole.NONDISTRIBUTED_STREAMABLE};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StreamableOperator createStreamableOperator(
+			final PartitionInfo partitionInfo,
+			final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+
+		return new StreamableOperator() {
+
+			@Override
+			public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec) throws Exception {
+
+				PeptideIndexerNodeModel.this.annotate((RowInput) inputs[0], (RowOutput) outputs[0], exec, -1);
+			}
+		};
+	}
+
+
+	// Sorted indices of the listed proteins in the database, unknown identifiers are skipped
+	private static int[] proteinsOf(final SetCell cell, final PackedSequenceStore store) {
+
+		int[] result = new int[cell.size()];
+		int n = 0;
+		for (DataCell identifier : cell) {
+
+			int protein = store.indexOf(identifier.toString());
+			if (protein != -1) {
+
+				result[n++] = protein;
+			}
+		}
+		result = Arrays.copyOf(result, n);
+		Arrays.sort(result);
+		return result;
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+
+		this.key_counter = 0;
+	}
+
+	@Override
+	protected void onDispose() {
+
+		this.closeIndex();
+		if (this.temporary_index != null) {
+
+			this.temporary_index.toFile().delete();
+			this.temporary_index = null;
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+
+		if (this.input_file.getStringValue().isEmpty()) {
+
+			throw new InvalidSettingsException("No FASTA database has been selected!");
+		}
+		if (inSpecs[0].findColumnIndex(this.seq.getStringValue()) == -1) {
+
+			throw new InvalidSettingsException("Peptide sequence column not found in input table!");
+		}
+		if (inSpecs[0].findColumnIndex(this.pos.getStringValue()) == -1) {
+
+			throw new InvalidSettingsException("Cross-link position column not found in input table!");
+		}
+		if (this.min_length.getIntValue() > this.max_length.getIntValue()) {
+
+			throw new InvalidSettingsException("Minimum peptide length must not exceed the maximum peptide length!");
+		}
+		return new DataTableSpec[] {getOutputSpec()};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+
+		this.input_file.saveSettingsTo(settings);
+		this.index_file.saveSettingsTo(settings);
+		this.seq.saveSettingsTo(settings);
+		this.pos.saveSettingsTo(settings);
+		this.prot.saveSettingsTo(settings);
+		this.mod.saveSettingsTo(settings);
+		this.enzyme.saveSettingsTo(settings);
+		this.missed.saveSettingsTo(settings);
+		this.min_length.saveSettingsTo(settings);
+		this.max_length.saveSettingsTo(settings);
+		this.semi.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.input_file.loadSettingsFrom(settings);
+		this.index_file.loadSettingsFrom(settings);
+		this.seq.loadSettingsFrom(settings);
+		this.pos.loadSettingsFrom(settings);
+		this.prot.loadSettingsFrom(settings);
+		this.mod.loadSettingsFrom(settings);
+		this.enzyme.loadSettingsFrom(settings);
+		this.missed.loadSettingsFrom(settings);
+		this.min_length.loadSettingsFrom(settings);
+		this.max_length.loadSettingsFrom(settings);
+
+		// Settings saved before the option existed only annotate products of the digestion
+		if (settings.containsKey(SEMI_CFGKEY)) {
+
+			this.semi.loadSettingsFrom(settings);
+		} else {
+
+			this.semi.setBooleanValue(SEMI_DEFAULT);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.input_file.validateSettings(settings);
+		this.index_file.validateSettings(settings);
+		this.seq.validateSettings(settings);
+		this.pos.validateSettings(settings);
+		this.prot.validateSettings(settings);
+		this.mod.validateSettings(settings);
+		this.enzyme.validateSettings(settings);
+		this.missed.validateSettings(settings);
+		this.min_length.validateSettings(settings);
+		this.max_length.validateSettings(settings);
+		if (settings.containsKey(SEMI_CFGKEY)) {
+
+			this.semi.validateSettings(settings);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+	CanceledExecutionException {
+
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+	CanceledExecutionException {
+
+	}
+}
@@ -1,14 +1,21 @@
 package org.proteinevolution.knime.nodes.input.pdbatomreader;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.stream.IntStream;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataTableSpec;
+import org.knime.core.data.DataType;
 import org.knime.core.data.RowKey;
 import org.knime.core.data.def.DefaultRow;
 import org.knime.core.data.def.DoubleCell;
@@ -27,12 +34,13 @@ import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
-import org.proteinevolution.models.spec.pdb.PDBAtom;
+import org.proteinevolution.models.structure.AtomRecords;
 
 
 /**
  * This is the model implementation of PDBATOMReader.
- * Reads ATOM records from a PDB file and lists them in KNIME table.
+ * Reads ATOM records from a PDB file and lists them in KNIME table. The file is mapped into memory
+ * and parsed in line-aligned chunks in parallel, see {@link AtomRecords}.
  *
  * @author Lukas Zimmermann
  */
@@ -45,6 +53,9 @@ public class PDBATOMReaderNodeModel extends NodeModel {
    public static final String INPUT_LABEL = "Input PDB file";
    
    private static final int N_COLUMNS = 14;
+
+   // Files are mapped and parsed in chunks of about this size
+   private static final long CHUNK_SIZE = 1L << 23;
    
   
    
@@ -61,16 +72,8 @@ public class PDBATOMReaderNodeModel extends NodeModel {
         super(0, 1);
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
-            final ExecutionContext exec) throws Exception {
+    private static DataTableSpec getOutputSpec() {
 
-    
-        // the data table spec of the single output table, 
-        // the table will have three columns:
         DataColumnSpec[] allColSpecs = new DataColumnSpec[N_COLUMNS];
         allColSpecs[0] = new DataColumnSpecCreator("atom_serial_number", IntCell.TYPE).createSpec();
         allColSpecs[1] = new DataColumnSpecCreator("atom_name", StringCell.TYPE).createSpec();
@@ -86,57 +89,106 @@ public class PDBATOMReaderNodeModel extends NodeModel {
         allColSpecs[11] = new DataColumnSpecCreator("temperature_factor", DoubleCell.TYPE).createSpec();
         allColSpecs[12] = new DataColumnSpecCreator("seqment_identifier", StringCell.TYPE).createSpec();
         allColSpecs[13] = new DataColumnSpecCreator("element_symbol", StringCell.TYPE).createSpec();
-        
-        DataTableSpec outputSpec = new DataTableSpec(allColSpecs);
-        BufferedDataContainer container = exec.createDataContainer(outputSpec);
 
-        // Cells for the resulting table
+        return new DataTableSpec(allColSpecs);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+            final ExecutionContext exec) throws Exception {
+
+        BufferedDataContainer container = exec.createDataContainer(getOutputSpec());
+
+        // Cells of recurring names are shared between rows
+        Map<String, DataCell> stringCells = new HashMap<String, DataCell>();
         DataCell[] cells = new DataCell[N_COLUMNS];
-        
-     	
-        BufferedReader reader = new BufferedReader(new FileReader(this.input.getStringValue()));
-        String line;
-        int row_counter = 0;
-        
-        while ((line = reader.readLine()) != null) {
-        	
-        	line = line.trim();
-        	
-        	// Skip empty lines
-        	if (line.isEmpty()) {
-        		continue;
-        	}
-        	
-        	// Only consider "ATOM" lines
-        	if (PDBAtom.isRecord(line)) {
-        		
-        		// ATOM      1  N   LYS A   5      28.463-179.347 -37.294  1.00 24.83           N
-        		cells[0] = IntCellFactory.create(line.substring(PDBAtom.FIELD_ATOM_SERIAL_NUMBER_START, PDBAtom.FIELD_ATOM_SERIAL_NUMBER_END).trim());
-        		cells[1] = StringCellFactory.create(line.substring(PDBAtom.FIELD_ATOM_NAME_START, PDBAtom.FIELD_ATOM_NAME_END).trim());
-        		cells[2] = StringCellFactory.create(line.substring(PDBAtom.FIELD_ATOM_ALTLOC_START, PDBAtom.FIELD_ATOM_ALTLOC_END).trim());
-        		cells[3] = StringCellFactory.create(line.substring(PDBAtom.FIELD_RESIDUE_NAME_START, PDBAtom.FIELD_RESIDUE_NAME_END).trim());
-        		cells[4] = StringCellFactory.create(line.substring(PDBAtom.FIELD_CHAIN_IDENTIFIER_START, PDBAtom.FIELD_CHAIN_IDENTIFIER_END).trim());
-        		cells[5] = IntCellFactory.create(line.substring(PDBAtom.FIELD_RESIDUE_SEQ_NUMBER_START, PDBAtom.FIELD_RESIDUE_SEQ_NUMBER_END).trim());
-        		cells[6] = StringCellFactory.create(line.substring(PDBAtom.FIELD_CODE_RESIDUE_INSERTION_START, PDBAtom.FIELD_CODE_RESIDUE_INSERTION_END).trim());
-        		cells[7] = DoubleCellFactory.create(line.substring(PDBAtom.FIELD_X_START, PDBAtom.FIELD_X_END).trim());
-        		cells[8] = DoubleCellFactory.create(line.substring(PDBAtom.FIELD_Y_START, PDBAtom.FIELD_Y_END).trim());
-        		cells[9] = DoubleCellFactory.create(line.substring(PDBAtom.FIELD_Z_START, PDBAtom.FIELD_Z_END).trim());
-        		cells[10] = DoubleCellFactory.create(line.substring(PDBAtom.FIELD_OCCUPANCY_START, PDBAtom.FIELD_OCCUPANCY_END).trim());
-        		cells[11] = DoubleCellFactory.create(line.substring(PDBAtom.FIELD_TEMPERATURE_FACTOR_START, PDBAtom.FIELD_TEMPERATURE_FACTOR_END).trim());
-        		cells[12] = StringCellFactory.create(line.substring(PDBAtom.FIELD_SEGMENT_IDENTIFIER_START, PDBAtom.FIELD_SEGMENT_IDENTIFIER_END).trim());
-        		cells[13] = StringCellFactory.create(line.substring(PDBAtom.FIELD_ELEMENT_SYMBOL_START, PDBAtom.FIELD_ELEMENT_SYMBOL_END).trim());
-        		
-        		container.addRowToTable(new DefaultRow(new RowKey("Row" + row_counter++), cells));
-        	}
+        long row_counter = 0;
+
+        try (FileChannel channel = FileChannel.open(Paths.get(this.input.getStringValue()), StandardOpenOption.READ)) {
+
+            final long[] offsets = AtomRecords.split(channel, CHUNK_SIZE);
+            int nChunks = offsets.length - 1;
+            int batchSize = Runtime.getRuntime().availableProcessors();
+
+            for (int first = 0; first < nChunks; first += batchSize) {
+
+                // The chunks of a batch are mapped and parsed in parallel, rows are added in the order of the file
+                final int from = first;
+                final AtomRecords[] batch = new AtomRecords[Math.min(batchSize, nChunks - first)];
+                try {
+                    IntStream.range(0, batch.length).parallel().forEach(i -> {
+
+                        try {
+                            batch[i] = AtomRecords.parse(channel.map(
+                                    MapMode.READ_ONLY,
+                                    offsets[from + i],
+                                    offsets[from + i + 1] - offsets[from + i]));
+
+                        } catch (IOException e) {
+
+                            throw new UncheckedIOException(e);
+                        }
+                    });
+                } catch (UncheckedIOException e) {
+
+                    throw e.getCause();
+                }
+
+                for (AtomRecords records : batch) {
+
+                    for (int i = 0; i < records.size(); ++i) {
+
+                        cells[0] = intCell(records.getSerial(i));
+                        cells[1] = stringCell(stringCells, records.getName(i));
+                        cells[2] = stringCell(stringCells, records.getAltLoc(i));
+                        cells[3] = stringCell(stringCells, records.getResName(i));
+                        cells[4] = stringCell(stringCells, records.getChainId(i));
+                        cells[5] = intCell(records.getResSeq(i));
+                        cells[6] = stringCell(stringCells, records.getICode(i));
+                        cells[7] = doubleCell(records.getX(i));
+                        cells[8] = doubleCell(records.getY(i));
+                        cells[9] = doubleCell(records.getZ(i));
+                        cells[10] = doubleCell(records.getOccupancy(i));
+                        cells[11] = doubleCell(records.getTempFactor(i));
+                        cells[12] = stringCell(stringCells, records.getSegId(i));
+                        cells[13] = stringCell(stringCells, records.getElement(i));
+
+                        container.addRowToTable(new DefaultRow(new RowKey("Row" + row_counter++), cells));
+                    }
+                }
+                exec.checkCanceled();
+                exec.setProgress((double) (first + batch.length) / nChunks);
+            }
         }
-        
-        reader.close();
-        reader = null;
         container.close();
         BufferedDataTable out = container.getTable();
         return new BufferedDataTable[]{out};
     }
 
+    private static DataCell intCell(final int value) {
+
+        return value == AtomRecords.MISSING ? DataType.getMissingCell() : IntCellFactory.create(value);
+    }
+
+    private static DataCell doubleCell(final double value) {
+
+        return Double.isNaN(value) ? DataType.getMissingCell() : DoubleCellFactory.create(value);
+    }
+
+    private static DataCell stringCell(final Map<String, DataCell> stringCells, final String value) {
+
+        DataCell cell = stringCells.get(value);
+        if (cell == null) {
+
+            cell = StringCellFactory.create(value);
+            stringCells.put(value, cell);
+        }
+        return cell;
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -160,7 +212,7 @@ public class PDBATOMReaderNodeModel extends NodeModel {
         // the spec of its output data table(s) (if you can, otherwise an array
         // with null elements), or throw an exception with a useful user message
 
-        return new DataTableSpec[]{null};
+        return new DataTableSpec[]{getOutputSpec()};
     }
 
     /**
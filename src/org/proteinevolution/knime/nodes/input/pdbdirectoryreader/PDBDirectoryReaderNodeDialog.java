@@ -3,6 +3,7 @@ package org.proteinevolution.knime.nodes.input.pdbdirectoryreader;
 import javax.swing.JFileChooser;
 
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
 import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
 
 /**
@@ -31,5 +32,9 @@ public class PDBDirectoryReaderNodeDialog extends DefaultNodeSettingsPane {
 				"INPUT_HISTORY",
 				JFileChooser.OPEN_DIALOG,
 				true)); 
+
+		this.addDialogComponent(new DialogComponentBoolean(
+				PDBDirectoryReaderNodeModel.getParamLazy(),
+				"Read files on first access"));
 	}	
 }
@@ -11,6 +11,7 @@ import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
@@ -33,7 +34,17 @@ public class PDBDirectoryReaderNodeModel extends NodeModel {
 		
 		return new SettingsModelString("INPUT_CFGKEY", "");
 	}
+	// Only read the files when their structures are accessed
+	public static final String LAZY_CFGKEY = "LAZY_CFGKEY";
+	public static final boolean LAZY_DEFAULT = false;
+
+	public static SettingsModelBoolean getParamLazy() {
+
+		return new SettingsModelBoolean(LAZY_CFGKEY, LAZY_DEFAULT);
+	}
+
 	private final SettingsModelString param_input = getParamInput();
+	private final SettingsModelBoolean param_lazy = getParamLazy();
 
 
 	/**
@@ -52,7 +63,9 @@ public class PDBDirectoryReaderNodeModel extends NodeModel {
 	protected PortObject[] execute(final PortObject[] inData,
 			final ExecutionContext exec) throws Exception {
 		
-		StructureContent structureContent = StructureContent.fromDirectory(this.param_input.getStringValue());
+		StructureContent structureContent = StructureContent.fromDirectory(
+				this.param_input.getStringValue(),
+				this.param_lazy.getBooleanValue());
 		return new StructurePortObject[] {
 
 				new StructurePortObject(
@@ -87,6 +100,7 @@ public class PDBDirectoryReaderNodeModel extends NodeModel {
 	protected void saveSettingsTo(final NodeSettingsWO settings) {
 
 		this.param_input.saveSettingsTo(settings);
+		this.param_lazy.saveSettingsTo(settings);
 	}
 
 	/**
@@ -97,6 +111,15 @@ public class PDBDirectoryReaderNodeModel extends NodeModel {
 			throws InvalidSettingsException {
 
 		this.param_input.loadSettingsFrom(settings);
+
+		// Settings saved before lazy reading existed read the files eagerly
+		if (settings.containsKey(LAZY_CFGKEY)) {
+
+			this.param_lazy.loadSettingsFrom(settings);
+		} else {
+
+			this.param_lazy.setBooleanValue(LAZY_DEFAULT);
+		}
 	}
 
 	/**
@@ -107,6 +130,10 @@ public class PDBDirectoryReaderNodeModel extends NodeModel {
 			throws InvalidSettingsException {
 
 		this.param_input.validateSettings(settings);
+		if (settings.containsKey(LAZY_CFGKEY)) {
+
+			this.param_lazy.validateSettings(settings);
+		}
 	}
 
 	/**
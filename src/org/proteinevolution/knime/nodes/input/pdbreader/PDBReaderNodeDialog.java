@@ -28,6 +28,6 @@ public class PDBReaderNodeDialog extends DefaultNodeSettingsPane {
         						PDBReaderNodeModel.INPUT_CFGKEY,
         						PDBReaderNodeModel.DEFAULT),
         				PDBReaderNodeModel.INPUT_HISTORY,
-        				FileExtensions.PDB));
+        				FileExtensions.STRUCTURE));
     }
 }
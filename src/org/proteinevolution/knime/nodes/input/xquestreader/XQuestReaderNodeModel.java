@@ -23,7 +23,6 @@ import org.knime.core.data.def.IntCell;
 import org.knime.core.data.def.IntCell.IntCellFactory;
 import org.knime.core.data.def.StringCell;
 import org.knime.core.data.def.StringCell.StringCellFactory;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
@@ -33,6 +32,13 @@ import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
 import org.xml.sax.Attributes;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
@@ -82,7 +88,7 @@ public final class XQuestReaderNodeModel extends NodeModel {
 		// Tag names
 		private static final String TAG_SEARCHHIT = "search_hit";
 
-		private BufferedDataContainer container;
+		private RowOutput output;
 		private ExecutionContext exec;
 		private int key_counter;
 		private String decoy_string;
@@ -146,8 +152,8 @@ public final class XQuestReaderNodeModel extends NodeModel {
 			this.protids2 = CollectionCellFactory.createSetCell(input_cells2);	
 		}
 
-		public XQuestHandler(BufferedDataContainer container, ExecutionContext exec, String decoy_string) {
-			this.container = container;
+		public XQuestHandler(RowOutput output, ExecutionContext exec, String decoy_string) {
+			this.output = output;
 			this.exec = exec;
 			this.key_counter = 0;
 			this.decoy_string = decoy_string;			
@@ -224,15 +230,19 @@ public final class XQuestReaderNodeModel extends NodeModel {
 					cells[15] = DoubleCellFactory.create(fdr);
 				}
 
-				container.addRowToTable(new DefaultRow(key, cells));
-	
 				try {
+					this.output.push(new DefaultRow(key, cells));
 					this.exec.checkCanceled();
 				}
 				catch(CanceledExecutionException e) {
 					
 					throw new SAXException("Reading of XQuest file canceled by user!");
 				}
+				catch(InterruptedException e) {
+
+					Thread.currentThread().interrupt();
+					throw new SAXException("Reading of XQuest file interrupted!");
+				}
 			}
 		}
 	}
@@ -244,6 +254,44 @@ public final class XQuestReaderNodeModel extends NodeModel {
 		super(0, 1);
 	}
 
+	private static DataTableSpec getOutputSpec() {
+
+		return new DataTableSpec(new DataColumnSpec[] {
+				new DataColumnSpecCreator(ATTRIBUTE_SEARCH_HIT_RANK, IntCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_TYPE, StringCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_SEQ1, StringCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_SEQ2, StringCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_CHARGE, IntCell.TYPE).createSpec(),
+				new DataColumnSpecCreator("pos1", IntCell.TYPE).createSpec(),
+				new DataColumnSpecCreator("pos2", IntCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_PROT1, SetCell.getCollectionType(StringCell.TYPE)).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_PROT2, SetCell.getCollectionType(StringCell.TYPE)).createSpec(),
+				new DataColumnSpecCreator("is_proteininterlink", BooleanCell.TYPE).createSpec(),
+				new DataColumnSpecCreator("is_proteinintralink", BooleanCell.TYPE).createSpec(),
+				new DataColumnSpecCreator("is_decoy1", BooleanCell.TYPE).createSpec(),
+				new DataColumnSpecCreator("is_decoy2", BooleanCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_SCORE, DoubleCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_XPROPHET_F, BooleanCell.TYPE).createSpec(),
+				new DataColumnSpecCreator(ATTRIBUTE_FDR, DoubleCell.TYPE).createSpec()
+		});
+	}
+
+
+	// Parses the xQuest file and pushes one row per search hit to the output
+	private void read(final RowOutput output, final ExecutionContext exec) throws Exception {
+
+		// Parse input with SAX Parser
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setValidating(false);
+
+		factory.newSAXParser().parse(
+				new File(this.param_input_file.getStringValue()), 
+				new XQuestHandler(output, exec, this.param_decoy_string.getStringValue())); 			
+
+		output.close();
+	}
+
+
 	/**
 	 * {@inheritDoc}
 	 */
@@ -251,37 +299,29 @@ public final class XQuestReaderNodeModel extends NodeModel {
 	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
 			final ExecutionContext exec) throws Exception {
 
-		BufferedDataContainer container = exec.createDataContainer(
-				new DataTableSpec(new DataColumnSpec[] {
-						new DataColumnSpecCreator(ATTRIBUTE_SEARCH_HIT_RANK, IntCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_TYPE, StringCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_SEQ1, StringCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_SEQ2, StringCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_CHARGE, IntCell.TYPE).createSpec(),
-						new DataColumnSpecCreator("pos1", IntCell.TYPE).createSpec(),
-						new DataColumnSpecCreator("pos2", IntCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_PROT1, SetCell.getCollectionType(StringCell.TYPE)).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_PROT2, SetCell.getCollectionType(StringCell.TYPE)).createSpec(),
-						new DataColumnSpecCreator("is_proteininterlink", BooleanCell.TYPE).createSpec(),
-						new DataColumnSpecCreator("is_proteinintralink", BooleanCell.TYPE).createSpec(),
-						new DataColumnSpecCreator("is_decoy1", BooleanCell.TYPE).createSpec(),
-						new DataColumnSpecCreator("is_decoy2", BooleanCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_SCORE, DoubleCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_XPROPHET_F, BooleanCell.TYPE).createSpec(),
-						new DataColumnSpecCreator(ATTRIBUTE_FDR, DoubleCell.TYPE).createSpec()
-				}));
+		BufferedDataTableRowOutput output = new BufferedDataTableRowOutput(exec.createDataContainer(getOutputSpec()));
+		this.read(output, exec);
 
-		// Parse input with SAX Parser
-		SAXParserFactory factory = SAXParserFactory.newInstance();
-		factory.setValidating(false);
+		return new BufferedDataTable[]{output.getDataTable()};
+	}
 
-		factory.newSAXParser().parse(
-				new File(this.param_input_file.getStringValue()), 
-				new XQuestHandler(container, exec, this.param_decoy_string.getStringValue())); 			
 
-		// once we are done, we close the container and return its table
-		container.close();
-		return new BufferedDataTable[]{container.getTable()};
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StreamableOperator createStreamableOperator(
+			final PartitionInfo partitionInfo,
+			final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+
+		return new StreamableOperator() {
+
+			@Override
+			public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec) throws Exception {
+
+				XQuestReaderNodeModel.this.read((RowOutput) outputs[0], exec);
+			}
+		};
 	}
 
 	/**
@@ -300,7 +340,7 @@ public final class XQuestReaderNodeModel extends NodeModel {
 	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
 			throws InvalidSettingsException {
 		
-		return new DataTableSpec[]{null};
+		return new DataTableSpec[]{getOutputSpec()};
 	}
 
 	/**
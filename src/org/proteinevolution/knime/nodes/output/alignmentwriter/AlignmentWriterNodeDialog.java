@@ -3,7 +3,9 @@ package org.proteinevolution.knime.nodes.output.alignmentwriter;
 import javax.swing.JFileChooser;
 
 import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
 import org.knime.core.node.defaultnodesettings.DialogComponentFileChooser;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 
 /**
@@ -34,6 +36,15 @@ public class AlignmentWriterNodeDialog extends DefaultNodeSettingsPane {
         						AlignmentWriterNodeModel.OUTPUT_DEFAULT),
         				AlignmentWriterNodeModel.OUTPUT_HISTORY,
         				JFileChooser.SAVE_DIALOG,
-        				"fas|fasta|fa"));
+        				"fas|fasta|fa|a3m|a2m|sto|aln|gz"));
+
+        this.addDialogComponent(new DialogComponentStringSelection(
+        		AlignmentWriterNodeModel.getParamFormat(),
+        		"Format",
+        		AlignmentWriterNodeModel.FORMAT_VALUES));
+
+        this.addDialogComponent(new DialogComponentBoolean(
+        		AlignmentWriterNodeModel.getParamGzip(),
+        		"Compress with gzip"));
     }
 }
@@ -1,8 +1,8 @@
 package org.proteinevolution.knime.nodes.output.alignmentwriter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.node.BufferedDataTable;
@@ -13,12 +13,15 @@ import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
 import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
-import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentWriter;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+import org.proteinevolution.models.spec.AlignmentFormat;
 
 
 /**
@@ -33,6 +36,30 @@ public class AlignmentWriterNodeModel extends NodeModel {
     public static final String OUTPUT_DEFAULT = "";
     public static final String OUTPUT_HISTORY = "OUTPUT_HISTORY";
     private final SettingsModelString output = new SettingsModelString(OUTPUT_CFGKEY, OUTPUT_DEFAULT);
+
+    public static final String FORMAT_CFGKEY = "FORMAT";
+    public static final String FORMAT_DEFAULT = AlignmentFormat.FASTA.name();
+    public static final String[] FORMAT_VALUES = new String[] {
+    		AlignmentFormat.FASTA.name(),
+    		AlignmentFormat.A3M.name(),
+    		AlignmentFormat.A2M.name(),
+    		AlignmentFormat.Stockholm.name(),
+    		AlignmentFormat.Clustal.name()
+    };
+    private final SettingsModelString format = getParamFormat();
+
+    public static final String GZIP_CFGKEY = "GZIP";
+    public static final boolean GZIP_DEFAULT = false;
+    private final SettingsModelBoolean gzip = getParamGzip();
+
+    public static SettingsModelString getParamFormat() {
+
+    	return new SettingsModelString(FORMAT_CFGKEY, FORMAT_DEFAULT);
+    }
+    public static SettingsModelBoolean getParamGzip() {
+
+    	return new SettingsModelBoolean(GZIP_CFGKEY, GZIP_DEFAULT);
+    }
     
 
     /**
@@ -51,10 +78,12 @@ public class AlignmentWriterNodeModel extends NodeModel {
     protected BufferedDataTable[] execute(final PortObject[] inData,
             final ExecutionContext exec) throws Exception {
 
-    	SequenceAlignmentContent sequenceAlignment = ((SequenceAlignmentPortObject) inData[0]).getAlignment();
-    	FileWriter fw = new FileWriter(this.output.getStringValue());
-    	sequenceAlignment.write(fw);
-    	fw.close();
+    	ISequenceAlignmentAnnotated sequenceAlignment = ((SequenceAlignmentPortObject) inData[0]).getSequenceAlignment();
+    	SequenceAlignmentWriter.write(
+    			sequenceAlignment,
+    			AlignmentFormat.valueOf(this.format.getStringValue()),
+    			Paths.get(this.output.getStringValue()),
+    			this.gzip.getBooleanValue());
     
         return null;
     }
@@ -92,6 +121,8 @@ public class AlignmentWriterNodeModel extends NodeModel {
     protected void saveSettingsTo(final NodeSettingsWO settings) {
 
     	this.output.saveSettingsTo(settings);
+    	this.format.saveSettingsTo(settings);
+    	this.gzip.saveSettingsTo(settings);
     }
 
     /**
@@ -102,6 +133,22 @@ public class AlignmentWriterNodeModel extends NodeModel {
             throws InvalidSettingsException {
             
     	this.output.loadSettingsFrom(settings);
+
+    	// Settings saved before format and compression were configurable write uncompressed FASTA as before
+    	if (settings.containsKey(FORMAT_CFGKEY)) {
+
+    		this.format.loadSettingsFrom(settings);
+    	} else {
+
+    		this.format.setStringValue(FORMAT_DEFAULT);
+    	}
+    	if (settings.containsKey(GZIP_CFGKEY)) {
+
+    		this.gzip.loadSettingsFrom(settings);
+    	} else {
+
+    		this.gzip.setBooleanValue(GZIP_DEFAULT);
+    	}
     }
 
     /**
@@ -112,6 +159,14 @@ public class AlignmentWriterNodeModel extends NodeModel {
             throws InvalidSettingsException {
             
     	this.output.validateSettings(settings);
+    	if (settings.containsKey(FORMAT_CFGKEY)) {
+
+    		this.format.validateSettings(settings);
+    	}
+    	if (settings.containsKey(GZIP_CFGKEY)) {
+
+    		this.gzip.validateSettings(settings);
+    	}
     }
     
     /**
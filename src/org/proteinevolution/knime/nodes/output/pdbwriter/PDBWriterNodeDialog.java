@@ -33,10 +33,18 @@ public class PDBWriterNodeDialog extends DefaultNodeSettingsPane {
         				PDBWriterNodeModel.getParamOutput(),
         				"OUTPUT_HISTORY",
         				JFileChooser.SAVE_DIALOG,
-        				FileExtensions.PDB));
+        				FileExtensions.PDB + "|" + FileExtensions.GZ));
         this.addDialogComponent(
         		new DialogComponentBoolean(
         				PDBWriterNodeModel.getParamOmitHetero(),
         				"Omit Hetero Groups (non-polymer)"));
+        this.addDialogComponent(
+        		new DialogComponentBoolean(
+        				PDBWriterNodeModel.getParamPerModel(),
+        				"One file per model (output is a directory)"));
+        this.addDialogComponent(
+        		new DialogComponentBoolean(
+        				PDBWriterNodeModel.getParamGzip(),
+        				"Compress with gzip"));
     }
 }
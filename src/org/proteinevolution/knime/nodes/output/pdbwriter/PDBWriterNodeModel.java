@@ -1,8 +1,8 @@
 package org.proteinevolution.knime.nodes.output.pdbwriter;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.node.CanceledExecutionException;
@@ -19,6 +19,7 @@ import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
 import org.proteinevolution.knime.porttypes.structure.StructureContent;
+import org.proteinevolution.knime.porttypes.structure.StructureContentWriter;
 import org.proteinevolution.knime.porttypes.structure.StructurePortObject;
 
 
@@ -45,6 +46,24 @@ public class PDBWriterNodeModel extends NodeModel {
 	}
 	private final SettingsModelBoolean param_omit_hetero = getParamOmitHetero();
 
+	// Param: One file per model, the output is then a directory
+	public static final String PER_MODEL_CFGKEY = "PER_MODEL";
+	public static final boolean PER_MODEL_DEFAULT = false;
+	public static SettingsModelBoolean getParamPerModel() {
+
+		return new SettingsModelBoolean(PER_MODEL_CFGKEY, PER_MODEL_DEFAULT);
+	}
+	private final SettingsModelBoolean param_per_model = getParamPerModel();
+
+	// Param: gzip compression
+	public static final String GZIP_CFGKEY = "GZIP";
+	public static final boolean GZIP_DEFAULT = false;
+	public static SettingsModelBoolean getParamGzip() {
+
+		return new SettingsModelBoolean(GZIP_CFGKEY, GZIP_DEFAULT);
+	}
+	private final SettingsModelBoolean param_gzip = getParamGzip();
+
 	// the logger instance
 	private static final NodeLogger logger = NodeLogger
 			.getLogger(PDBWriterNodeModel.class);
@@ -66,11 +85,23 @@ public class PDBWriterNodeModel extends NodeModel {
 			final ExecutionContext exec) throws Exception {
 
 		StructureContent structureContent = ((StructurePortObject) inData[0]).getStructureContent();
-		structureContent.setOmitHET(this.param_omit_hetero.getBooleanValue());
-		
-		FileWriter fw = new FileWriter(this.param_output.getStringValue());
-		structureContent.write(fw);
-		fw.close();
+
+		// The content of the input is not modified, omitting hetero records is up to the writer
+		if (this.param_per_model.getBooleanValue()) {
+
+			StructureContentWriter.writeModels(
+					structureContent,
+					Paths.get(this.param_output.getStringValue()),
+					this.param_gzip.getBooleanValue(),
+					this.param_omit_hetero.getBooleanValue());
+		} else {
+
+			StructureContentWriter.write(
+					structureContent,
+					Paths.get(this.param_output.getStringValue()),
+					this.param_gzip.getBooleanValue(),
+					this.param_omit_hetero.getBooleanValue());
+		}
 		return null;
 	}
 
@@ -100,6 +131,8 @@ public class PDBWriterNodeModel extends NodeModel {
 
 		this.param_output.saveSettingsTo(settings);
 		this.param_omit_hetero.saveSettingsTo(settings);
+		this.param_per_model.saveSettingsTo(settings);
+		this.param_gzip.saveSettingsTo(settings);
 	}
 
 	/**
@@ -111,6 +144,22 @@ public class PDBWriterNodeModel extends NodeModel {
 
 		this.param_output.loadSettingsFrom(settings);
 		this.param_omit_hetero.loadSettingsFrom(settings);
+
+		// Settings saved before these options existed write one uncompressed file as before
+		if (settings.containsKey(PER_MODEL_CFGKEY)) {
+
+			this.param_per_model.loadSettingsFrom(settings);
+		} else {
+
+			this.param_per_model.setBooleanValue(PER_MODEL_DEFAULT);
+		}
+		if (settings.containsKey(GZIP_CFGKEY)) {
+
+			this.param_gzip.loadSettingsFrom(settings);
+		} else {
+
+			this.param_gzip.setBooleanValue(GZIP_DEFAULT);
+		}
 	}
 
 	/**
@@ -122,6 +171,14 @@ public class PDBWriterNodeModel extends NodeModel {
 
 		this.param_output.validateSettings(settings);
 		this.param_omit_hetero.validateSettings(settings);
+		if (settings.containsKey(PER_MODEL_CFGKEY)) {
+
+			this.param_per_model.validateSettings(settings);
+		}
+		if (settings.containsKey(GZIP_CFGKEY)) {
+
+			this.param_gzip.validateSettings(settings);
+		}
 	}
 
 	/**
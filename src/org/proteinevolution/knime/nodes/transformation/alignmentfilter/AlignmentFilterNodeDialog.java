@@ -0,0 +1,42 @@
+package org.proteinevolution.knime.nodes.transformation.alignmentfilter;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+
+/**
+ * <code>NodeDialog</code> for the "AlignmentFilter" Node.
+ * Removes redundant sequences from a sequence alignment
+ *
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more
+ * complex dialog please derive directly from
+ * {@link org.knime.core.node.NodeDialogPane}.
+ *
+ * @author Lukas Zimmermann
+ */
+public class AlignmentFilterNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring AlignmentFilter node dialog.
+	 */
+	protected AlignmentFilterNodeDialog() {
+		super();
+
+		this.addDialogComponent(new DialogComponentNumber(
+				AlignmentFilterNodeModel.getParamId(),
+				"Maximum pairwise sequence identity (%)", 1.0));
+
+		this.addDialogComponent(new DialogComponentNumber(
+				AlignmentFilterNodeModel.getParamDiff(),
+				"Minimum number of diverse sequences", 1));
+
+		this.createNewGroup("First sequence");
+		this.addDialogComponent(new DialogComponentNumber(
+				AlignmentFilterNodeModel.getParamQid(),
+				"Minimum sequence identity (%)", 1.0));
+
+		this.addDialogComponent(new DialogComponentNumber(
+				AlignmentFilterNodeModel.getParamCov(),
+				"Minimum coverage (%)", 1.0));
+	}
+}
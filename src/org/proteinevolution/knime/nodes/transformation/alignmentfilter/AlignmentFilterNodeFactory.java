@@ -0,0 +1,58 @@
+package org.proteinevolution.knime.nodes.transformation.alignmentfilter;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "AlignmentFilter" Node.
+ * Removes redundant sequences from a sequence alignment
+ *
+ * @author Lukas Zimmermann
+ */
+public class AlignmentFilterNodeFactory 
+        extends NodeFactory<AlignmentFilterNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AlignmentFilterNodeModel createNodeModel() {
+        return new AlignmentFilterNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<AlignmentFilterNodeModel> createNodeView(final int viewIndex,
+            final AlignmentFilterNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new AlignmentFilterNodeDialog();
+    }
+
+}
+
@@ -0,0 +1,207 @@
+package org.proteinevolution.knime.nodes.transformation.alignmentfilter;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
+import org.knime.core.node.defaultnodesettings.SettingsModelIntegerBounded;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.alignment.PairwiseIdentity;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+
+
+/**
+ * This is the model implementation of AlignmentFilter.
+ * Removes redundant sequences from a sequence alignment without invoking hhfilter.
+ *
+ * @author Lukas Zimmermann
+ */
+public class AlignmentFilterNodeModel extends NodeModel {
+
+	// Maximum pairwise sequence identity in percent (hhfilter -id)
+	public static final String ID_CFGKEY = "ID";
+	public static final double ID_DEFAULT = 90.0;
+
+	// Minimum sequence identity with the first sequence in percent (hhfilter -qid)
+	public static final String QID_CFGKEY = "QID";
+	public static final double QID_DEFAULT = 0.0;
+
+	// Minimum coverage of the first sequence in percent (hhfilter -cov)
+	public static final String COV_CFGKEY = "COV";
+	public static final double COV_DEFAULT = 0.0;
+
+	// Minimum number of diverse sequences per block of 50 columns, 0 to disable (hhfilter -diff)
+	public static final String DIFF_CFGKEY = "DIFF";
+	public static final int DIFF_DEFAULT = 0;
+
+	private final SettingsModelDoubleBounded id = getParamId();
+	private final SettingsModelDoubleBounded qid = getParamQid();
+	private final SettingsModelDoubleBounded cov = getParamCov();
+	private final SettingsModelIntegerBounded diff = getParamDiff();
+
+	public static SettingsModelDoubleBounded getParamId() {
+
+		return new SettingsModelDoubleBounded(ID_CFGKEY, ID_DEFAULT, 0, 100);
+	}
+	public static SettingsModelDoubleBounded getParamQid() {
+
+		return new SettingsModelDoubleBounded(QID_CFGKEY, QID_DEFAULT, 0, 100);
+	}
+	public static SettingsModelDoubleBounded getParamCov() {
+
+		return new SettingsModelDoubleBounded(COV_CFGKEY, COV_DEFAULT, 0, 100);
+	}
+	public static SettingsModelIntegerBounded getParamDiff() {
+
+		return new SettingsModelIntegerBounded(DIFF_CFGKEY, DIFF_DEFAULT, 0, Integer.MAX_VALUE);
+	}
+
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected AlignmentFilterNodeModel() {
+
+		super(new PortType[] {SequenceAlignmentPortObject.TYPE},
+			  new PortType[] {SequenceAlignmentPortObject.TYPE});
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected PortObject[] execute(final PortObject[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		ISequenceAlignmentAnnotated alignment = ((SequenceAlignmentPortObject) inData[0]).getSequenceAlignment();
+
+		exec.setMessage("Encoding sequences");
+		PairwiseIdentity identity = PairwiseIdentity.compute(alignment);
+		exec.checkCanceled();
+
+		exec.setMessage("Filtering redundant sequences");
+		int[] rows = identity.filter(
+				this.id.getDoubleValue() / 100,
+				this.qid.getDoubleValue() / 100,
+				this.cov.getDoubleValue() / 100,
+				this.diff.getIntValue());
+
+		SequenceAlignmentContent result = SequenceAlignmentContent.copyOf(alignment, rows);
+		return new PortObject[] {
+
+				new SequenceAlignmentPortObject(
+						result,
+						new SequenceAlignmentPortObjectSpec(
+								SequenceAlignmentContent.TYPE,
+								result.getAlignmentFormat()))
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+
+		// Nothing to be done here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+			throws InvalidSettingsException {
+
+		if ( ! (inSpecs[0] instanceof SequenceAlignmentPortObjectSpec)) {
+
+			throw new InvalidSettingsException("Port object for node AlignmentFilter must be SequenceAlignment.");
+		}
+		return new PortObjectSpec[]{null};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+
+		this.id.saveSettingsTo(settings);
+		this.qid.saveSettingsTo(settings);
+		this.cov.saveSettingsTo(settings);
+		this.diff.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.id.loadSettingsFrom(settings);
+		this.qid.loadSettingsFrom(settings);
+		this.cov.loadSettingsFrom(settings);
+
+		// Workflows saved before the option was added keep all sequences
+		if (settings.containsKey(DIFF_CFGKEY)) {
+
+			this.diff.loadSettingsFrom(settings);
+
+		} else {
+
+			this.diff.setIntValue(DIFF_DEFAULT);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.id.validateSettings(settings);
+		this.qid.validateSettings(settings);
+		this.cov.validateSettings(settings);
+		if (settings.containsKey(DIFF_CFGKEY)) {
+
+			this.diff.validateSettings(settings);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+}
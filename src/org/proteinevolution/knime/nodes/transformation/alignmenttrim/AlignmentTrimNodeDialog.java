@@ -0,0 +1,38 @@
+package org.proteinevolution.knime.nodes.transformation.alignmenttrim;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentBoolean;
+import org.knime.core.node.defaultnodesettings.DialogComponentNumber;
+
+/**
+ * <code>NodeDialog</code> for the "AlignmentTrim" Node.
+ * Removes gappy columns and sequences with low coverage from a sequence alignment
+ *
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more
+ * complex dialog please derive directly from
+ * {@link org.knime.core.node.NodeDialogPane}.
+ *
+ * @author Lukas Zimmermann
+ */
+public class AlignmentTrimNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring AlignmentTrim node dialog.
+	 */
+	protected AlignmentTrimNodeDialog() {
+		super();
+
+		this.addDialogComponent(new DialogComponentNumber(
+				AlignmentTrimNodeModel.getParamGaps(),
+				"Maximum gaps per column (%)", 1.0));
+
+		this.addDialogComponent(new DialogComponentNumber(
+				AlignmentTrimNodeModel.getParamCoverage(),
+				"Minimum coverage per sequence (%)", 1.0));
+
+		this.addDialogComponent(new DialogComponentBoolean(
+				AlignmentTrimNodeModel.getParamKeepFirst(),
+				"Always keep the first sequence"));
+	}
+}
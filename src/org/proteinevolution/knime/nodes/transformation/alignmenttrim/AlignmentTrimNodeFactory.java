@@ -0,0 +1,58 @@
+package org.proteinevolution.knime.nodes.transformation.alignmenttrim;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "AlignmentTrim" Node.
+ * Removes gappy columns and sequences with low coverage from a sequence alignment
+ *
+ * @author Lukas Zimmermann
+ */
+public class AlignmentTrimNodeFactory 
+        extends NodeFactory<AlignmentTrimNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public AlignmentTrimNodeModel createNodeModel() {
+        return new AlignmentTrimNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<AlignmentTrimNodeModel> createNodeView(final int viewIndex,
+            final AlignmentTrimNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new AlignmentTrimNodeDialog();
+    }
+
+}
+
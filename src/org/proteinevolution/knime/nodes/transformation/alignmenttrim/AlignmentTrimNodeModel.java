@@ -0,0 +1,180 @@
+package org.proteinevolution.knime.nodes.transformation.alignmenttrim;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelBoolean;
+import org.knime.core.node.defaultnodesettings.SettingsModelDoubleBounded;
+import org.knime.core.node.port.PortObject;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.port.PortType;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
+import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.alignment.AlignmentTrimmer;
+import org.proteinevolution.models.alignment.AlignmentView;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+
+
+/**
+ * This is the model implementation of AlignmentTrim.
+ * Removes gappy columns and sequences with low coverage from a sequence alignment.
+ *
+ * @author Lukas Zimmermann
+ */
+public class AlignmentTrimNodeModel extends NodeModel {
+
+	// Maximum fraction of gaps of the kept columns in percent
+	public static final String GAPS_CFGKEY = "GAPS";
+	public static final double GAPS_DEFAULT = 50.0;
+
+	// Minimum fraction of residues of the kept sequences in the kept columns in percent
+	public static final String COVERAGE_CFGKEY = "COVERAGE";
+	public static final double COVERAGE_DEFAULT = 0.0;
+
+	// Keep the first sequence regardless of its coverage
+	public static final String KEEPFIRST_CFGKEY = "KEEPFIRST";
+	public static final boolean KEEPFIRST_DEFAULT = true;
+
+	private final SettingsModelDoubleBounded gaps = getParamGaps();
+	private final SettingsModelDoubleBounded coverage = getParamCoverage();
+	private final SettingsModelBoolean keepFirst = getParamKeepFirst();
+
+	public static SettingsModelDoubleBounded getParamGaps() {
+
+		return new SettingsModelDoubleBounded(GAPS_CFGKEY, GAPS_DEFAULT, 0, 100);
+	}
+	public static SettingsModelDoubleBounded getParamCoverage() {
+
+		return new SettingsModelDoubleBounded(COVERAGE_CFGKEY, COVERAGE_DEFAULT, 0, 100);
+	}
+	public static SettingsModelBoolean getParamKeepFirst() {
+
+		return new SettingsModelBoolean(KEEPFIRST_CFGKEY, KEEPFIRST_DEFAULT);
+	}
+
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected AlignmentTrimNodeModel() {
+
+		super(new PortType[] {SequenceAlignmentPortObject.TYPE},
+			  new PortType[] {SequenceAlignmentPortObject.TYPE});
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected PortObject[] execute(final PortObject[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		ISequenceAlignmentAnnotated alignment = ((SequenceAlignmentPortObject) inData[0]).getSequenceAlignment();
+
+		// The view refers to the input alignment, residues are only copied when the output port is saved
+		exec.setMessage("Trimming alignment");
+		AlignmentView result = AlignmentTrimmer.trim(
+				alignment,
+				this.gaps.getDoubleValue() / 100,
+				this.coverage.getDoubleValue() / 100,
+				this.keepFirst.getBooleanValue());
+
+		return new PortObject[] {
+
+				new SequenceAlignmentPortObject(
+						result,
+						new SequenceAlignmentPortObjectSpec(
+								SequenceAlignmentContent.TYPE,
+								result.getAlignmentFormat()))
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+
+		// Nothing to be done here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected PortObjectSpec[] configure(final PortObjectSpec[] inSpecs)
+			throws InvalidSettingsException {
+
+		if ( ! (inSpecs[0] instanceof SequenceAlignmentPortObjectSpec)) {
+
+			throw new InvalidSettingsException("Port object for node AlignmentTrim must be SequenceAlignment.");
+		}
+		return new PortObjectSpec[]{null};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+
+		this.gaps.saveSettingsTo(settings);
+		this.coverage.saveSettingsTo(settings);
+		this.keepFirst.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.gaps.loadSettingsFrom(settings);
+		this.coverage.loadSettingsFrom(settings);
+		this.keepFirst.loadSettingsFrom(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.gaps.validateSettings(settings);
+		this.coverage.validateSettings(settings);
+		this.keepFirst.validateSettings(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+}
@@ -0,0 +1,37 @@
+package org.proteinevolution.knime.nodes.transformation.filetoalignment;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentStringSelection;
+import org.proteinevolution.knime.porttypes.alignment.A3MReader;
+import org.proteinevolution.knime.porttypes.alignment.HeaderStore;
+
+/**
+ * <code>NodeDialog</code> for the "FileToAlignment" Node.
+ *
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more 
+ * complex dialog please derive directly from 
+ * {@link org.knime.core.node.NodeDialogPane}.
+ * 
+ * @author Lukas Zimmermann
+ */
+public class FileToAlignmentNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring FileToAlignment node dialog.
+	 */
+	protected FileToAlignmentNodeDialog() {
+		super();
+
+		// Only used for A3M and A2M files
+		this.addDialogComponent(new DialogComponentStringSelection(
+				FileToAlignmentNodeModel.getParamInserts(),
+				"Insert states (A3M/A2M)",
+				A3MReader.Inserts.getNames()));
+
+		this.addDialogComponent(new DialogComponentStringSelection(
+				FileToAlignmentNodeModel.getParamHeaders(),
+				"Headers",
+				HeaderStore.Mode.getNames()));
+	}
+}
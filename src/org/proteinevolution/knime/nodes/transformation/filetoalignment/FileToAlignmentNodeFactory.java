@@ -44,7 +44,7 @@ public class FileToAlignmentNodeFactory
      */
     @Override
     public boolean hasDialog() {
-        return false;
+        return true;
     }
 
     /**
@@ -53,7 +53,7 @@ public class FileToAlignmentNodeFactory
     @Override
     public NodeDialogPane createNodeDialogPane() {
     	
-        return null;
+        return new FileToAlignmentNodeDialog();
     }
 }
 
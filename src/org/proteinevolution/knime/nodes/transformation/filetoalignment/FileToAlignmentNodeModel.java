@@ -2,6 +2,8 @@ package org.proteinevolution.knime.nodes.transformation.filetoalignment;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.uri.IURIPortObject;
@@ -12,12 +14,16 @@ import org.knime.core.node.InvalidSettingsException;
 import org.knime.core.node.NodeModel;
 import org.knime.core.node.NodeSettingsRO;
 import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelString;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
+import org.proteinevolution.knime.porttypes.alignment.A3MReader;
+import org.proteinevolution.knime.porttypes.alignment.HeaderStore;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentContent;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObject;
 import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjectSpec;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 
 /**
  * This is the model implementation of FileToAlignment.
@@ -26,7 +32,30 @@ import org.proteinevolution.knime.porttypes.alignment.SequenceAlignmentPortObjec
  * @author Lukas Zimmermann
  */
 public class FileToAlignmentNodeModel extends NodeModel {
-    
+
+	// Treatment of insert states in A3M and A2M files
+	public static final String INSERTS_CFGKEY = "INSERTS";
+	public static final String INSERTS_DEFAULT = A3MReader.Inserts.STRIP.name();
+
+	// Which part of the headers is kept in memory
+	public static final String HEADERS_CFGKEY = "HEADERS";
+	public static final String HEADERS_DEFAULT = HeaderStore.Mode.FULL.name();
+
+	private final SettingsModelString inserts = getParamInserts();
+	private final SettingsModelString headers = getParamHeaders();
+
+	// Lazy headers of the output, which keep the source file open until the node is reset
+	private HeaderStore lazyHeaders;
+
+	public static SettingsModelString getParamInserts() {
+
+		return new SettingsModelString(INSERTS_CFGKEY, INSERTS_DEFAULT);
+	}
+	public static SettingsModelString getParamHeaders() {
+
+		return new SettingsModelString(HEADERS_CFGKEY, HEADERS_DEFAULT);
+	}
+
     /**
      * Constructor for the node model.
      */
@@ -43,10 +72,27 @@ public class FileToAlignmentNodeModel extends NodeModel {
     protected PortObject[] execute(final PortObject[] inData,
             final ExecutionContext exec) throws Exception {
     	
-    	final SequenceAlignmentContent sequenceAlignmentOut = SequenceAlignmentContent.fromFASTA(((IURIPortObject) inData[0])
+    	final Path path = Paths.get(((IURIPortObject) inData[0])
     			.getURIContents()
     			.get(0)
     			.getURI().getPath());
+    	final String name = path.getFileName().toString().toLowerCase();
+    	final HeaderStore.Mode headerMode = HeaderStore.Mode.valueOf(this.headers.getStringValue());
+
+    	// A3M and A2M are read with the insert states treated as configured, all other files as FASTA
+    	// Alignments with many residues are mapped from a temporary file instead of being held on the heap
+    	final ISequenceAlignmentAnnotated sequenceAlignmentOut = name.endsWith(".a3m") || name.endsWith(".a2m")
+    			? A3MReader.read(
+    					path,
+    					A3MReader.Inserts.valueOf(this.inserts.getStringValue()),
+    					headerMode,
+    					SequenceAlignmentPortObject.MAPPING_THRESHOLD)
+    			: SequenceAlignmentContent.fromFASTA(path, headerMode, SequenceAlignmentPortObject.MAPPING_THRESHOLD);
+
+    	if (headerMode == HeaderStore.Mode.LAZY && sequenceAlignmentOut instanceof SequenceAlignmentContent) {
+
+    		this.lazyHeaders = ((SequenceAlignmentContent) sequenceAlignmentOut).getHeaders();
+    	}
 		return new PortObject[]{
 				
 				new SequenceAlignmentPortObject(
@@ -63,7 +109,28 @@ public class FileToAlignmentNodeModel extends NodeModel {
     @Override
     protected void reset() {
         
-    	// Nothing to be done here
+    	this.closeHeaders();
+    }
+
+    @Override
+    protected void onDispose() {
+
+    	this.closeHeaders();
+    }
+
+    private void closeHeaders() {
+
+    	if (this.lazyHeaders != null) {
+
+    		try {
+    			this.lazyHeaders.close();
+
+    		} catch (IOException e) {
+
+    			// The file has only been read
+    		}
+    		this.lazyHeaders = null;
+    	}
     }
 
     /**
@@ -83,7 +150,8 @@ public class FileToAlignmentNodeModel extends NodeModel {
     @Override
     protected void saveSettingsTo(final NodeSettingsWO settings) {
          
-    	// Nothing to be done here
+    	this.inserts.saveSettingsTo(settings);
+    	this.headers.saveSettingsTo(settings);
     }
 
     /**
@@ -93,7 +161,22 @@ public class FileToAlignmentNodeModel extends NodeModel {
     protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
             throws InvalidSettingsException {
         
-    	// Nothing to be done here
+    	// Settings saved before inserts were configurable keep the default
+    	if (settings.containsKey(INSERTS_CFGKEY)) {
+
+    		this.inserts.loadSettingsFrom(settings);
+    	} else {
+
+    		this.inserts.setStringValue(INSERTS_DEFAULT);
+    	}
+    	// Without the key, headers are kept in memory completely as before
+    	if (settings.containsKey(HEADERS_CFGKEY)) {
+
+    		this.headers.loadSettingsFrom(settings);
+    	} else {
+
+    		this.headers.setStringValue(HEADERS_DEFAULT);
+    	}
     }
 
     /**
@@ -103,7 +186,14 @@ public class FileToAlignmentNodeModel extends NodeModel {
     protected void validateSettings(final NodeSettingsRO settings)
             throws InvalidSettingsException {
         
-    	// Nothing to be done here
+    	if (settings.containsKey(INSERTS_CFGKEY)) {
+
+    		this.inserts.validateSettings(settings);
+    	}
+    	if (settings.containsKey(HEADERS_CFGKEY)) {
+
+    		this.headers.validateSettings(settings);
+    	}
     }
     
     /**
@@ -0,0 +1,34 @@
+package org.proteinevolution.knime.nodes.transformation.pdbdeduplicate;
+
+import org.knime.core.node.defaultnodesettings.DefaultNodeSettingsPane;
+import org.knime.core.node.defaultnodesettings.DialogComponentColumnNameSelection;
+import org.proteinevolution.knime.porttypes.structure.StructureCell;
+
+/**
+ * <code>NodeDialog</code> for the "PDBDeduplicate" Node.
+ * Removes rows whose structure equals the structure of a previous row
+ *
+ * This node dialog derives from {@link DefaultNodeSettingsPane} which allows
+ * creation of a simple dialog with standard components. If you need a more 
+ * complex dialog please derive directly from 
+ * {@link org.knime.core.node.NodeDialogPane}.
+ * 
+ * @author Lukas Zimmermann
+ */
+public class PDBDeduplicateNodeDialog extends DefaultNodeSettingsPane {
+
+	/**
+	 * New pane for configuring PDBDeduplicate node dialog.
+	 */
+	@SuppressWarnings("unchecked")
+	protected PDBDeduplicateNodeDialog() {
+		super();
+
+		this.addDialogComponent(new DialogComponentColumnNameSelection(
+				PDBDeduplicateNodeModel.getParamInput(),
+				"Select column with structures",
+				0,
+				true,
+				StructureCell.TYPE.getPreferredValueClass()));
+	}
+}
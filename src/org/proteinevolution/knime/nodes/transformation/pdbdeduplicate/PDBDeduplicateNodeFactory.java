@@ -0,0 +1,58 @@
+package org.proteinevolution.knime.nodes.transformation.pdbdeduplicate;
+
+import org.knime.core.node.NodeDialogPane;
+import org.knime.core.node.NodeFactory;
+import org.knime.core.node.NodeView;
+
+/**
+ * <code>NodeFactory</code> for the "PDBDeduplicate" Node.
+ * Removes rows whose structure equals the structure of a previous row
+ *
+ * @author Lukas Zimmermann
+ */
+public class PDBDeduplicateNodeFactory 
+        extends NodeFactory<PDBDeduplicateNodeModel> {
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public PDBDeduplicateNodeModel createNodeModel() {
+        return new PDBDeduplicateNodeModel();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public int getNrNodeViews() {
+        return 0;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeView<PDBDeduplicateNodeModel> createNodeView(final int viewIndex,
+            final PDBDeduplicateNodeModel nodeModel) {
+        return null;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public boolean hasDialog() {
+        return true;
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public NodeDialogPane createNodeDialogPane() {
+        return new PDBDeduplicateNodeDialog();
+    }
+
+}
+
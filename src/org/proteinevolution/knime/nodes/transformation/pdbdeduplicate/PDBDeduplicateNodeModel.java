@@ -0,0 +1,215 @@
+package org.proteinevolution.knime.nodes.transformation.pdbdeduplicate;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.knime.core.data.DataCell;
+import org.knime.core.data.DataRow;
+import org.knime.core.data.DataTable;
+import org.knime.core.data.DataTableSpec;
+import org.knime.core.node.BufferedDataTable;
+import org.knime.core.node.CanceledExecutionException;
+import org.knime.core.node.ExecutionContext;
+import org.knime.core.node.ExecutionMonitor;
+import org.knime.core.node.InvalidSettingsException;
+import org.knime.core.node.NodeModel;
+import org.knime.core.node.NodeSettingsRO;
+import org.knime.core.node.NodeSettingsWO;
+import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
+import org.knime.core.node.port.PortObjectSpec;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
+import org.proteinevolution.knime.porttypes.structure.StructureCell;
+
+
+/**
+ * This is the model implementation of PDBDeduplicate.
+ * Removes rows whose structure equals the structure of a previous row. Only the 64-bit content hashes
+ * of the forwarded structures are kept, such that memory does not grow with the size of the structures.
+ * A distinct structure is only dropped if its hash collides with a previous one, which is negligible
+ * for tables of realistic size.
+ *
+ * @author Lukas Zimmermann
+ */
+public class PDBDeduplicateNodeModel extends NodeModel {
+
+	// Column containing the structures
+	public static final String INPUT_CFGKEY = "INPUT";
+	public static final String INPUT_DEFAULT = "";
+
+	private final SettingsModelColumnName param_input = getParamInput();
+
+	public static SettingsModelColumnName getParamInput() {
+
+		return new SettingsModelColumnName(INPUT_CFGKEY, INPUT_DEFAULT);
+	}
+
+
+	/**
+	 * Constructor for the node model.
+	 */
+	protected PDBDeduplicateNodeModel() {
+
+		super(1, 1);
+	}
+
+
+	// Forwards the first row of each structure, rows with missing structures are kept
+	private void deduplicate(final RowInput input, final RowOutput output, final ExecutionContext exec) throws Exception {
+
+		int strucIndex = input.getDataTableSpec().findColumnIndex(this.param_input.getColumnName());
+		Set<Long> seen = new HashSet<Long>();
+
+		DataRow row;
+		while ((row = input.poll()) != null) {
+
+			DataCell cell = row.getCell(strucIndex);
+			if (cell.isMissing() || seen.add(((StructureCell) cell).getContent().getContentHash())) {
+
+				output.push(row);
+			}
+			exec.checkCanceled();
+		}
+		input.close();
+		output.close();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected BufferedDataTable[] execute(final BufferedDataTable[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		BufferedDataTableRowOutput output = new BufferedDataTableRowOutput(
+				exec.createDataContainer(inData[0].getDataTableSpec()));
+		this.deduplicate(new DataTableRowInput((DataTable) inData[0]), output, exec);
+
+		return new BufferedDataTable[]{output.getDataTable()};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InputPortRole[] getInputPortRoles() {
+
+		return new InputPortRole[] {InputPortRole.NONDISTRIBUTED_STREAMABLE};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputPortRole[] getOutputPortRoles() {
+
+		return new OutputPortRole[] {OutputPortRole.NONDISTRIBUTED};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StreamableOperator createStreamableOperator(
+			final PartitionInfo partitionInfo,
+			final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+
+		return new StreamableOperator() {
+
+			@Override
+			public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec) throws Exception {
+
+				PDBDeduplicateNodeModel.this.deduplicate((RowInput) inputs[0], (RowOutput) outputs[0], exec);
+			}
+		};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void reset() {
+
+		// Nothing to be done here
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected DataTableSpec[] configure(final DataTableSpec[] inSpecs)
+			throws InvalidSettingsException {
+
+		int strucIndex = inSpecs[0].findColumnIndex(this.param_input.getColumnName());
+		if (strucIndex == -1) {
+
+			throw new InvalidSettingsException("Structure column not found in input table!");
+		}
+		if ( ! inSpecs[0].getColumnSpec(strucIndex).getType().equals(StructureCell.TYPE)) {
+
+			throw new InvalidSettingsException("Selected column does not contain structures!");
+		}
+		return new DataTableSpec[]{inSpecs[0]};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveSettingsTo(final NodeSettingsWO settings) {
+
+		this.param_input.saveSettingsTo(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadValidatedSettingsFrom(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.param_input.loadSettingsFrom(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void validateSettings(final NodeSettingsRO settings)
+			throws InvalidSettingsException {
+
+		this.param_input.validateSettings(settings);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void loadInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected void saveInternals(final File internDir,
+			final ExecutionMonitor exec) throws IOException,
+			CanceledExecutionException {
+
+		// No internals for this node
+	}
+}
@@ -8,7 +8,6 @@ import org.knime.core.data.DataColumnSpec;
 import org.knime.core.data.DataColumnSpecCreator;
 import org.knime.core.data.DataTableSpec;
 import org.knime.core.data.def.DefaultRow;
-import org.knime.core.node.BufferedDataContainer;
 import org.knime.core.node.BufferedDataTable;
 import org.knime.core.node.CanceledExecutionException;
 import org.knime.core.node.ExecutionContext;
@@ -20,6 +19,15 @@ import org.knime.core.node.NodeSettingsWO;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.BufferedDataTableRowOutput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.OutputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectInput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowOutput;
+import org.knime.core.node.streamable.StreamableOperator;
 import org.proteinevolution.knime.porttypes.structure.StructureCell;
 import org.proteinevolution.knime.porttypes.structure.StructureContent;
 import org.proteinevolution.knime.porttypes.structure.StructurePortObject;
@@ -44,30 +52,84 @@ public class PDBToTableNodeModel extends NodeModel {
 				new PortType[] {BufferedDataTable.TYPE});
 	}
 
-	/**
-	 * {@inheritDoc}
-	 */
-	@Override
-	protected PortObject[] execute(final PortObject[] inData,
-			final ExecutionContext exec) throws Exception {
+	private static DataTableSpec getOutputSpec() {
 
-		BufferedDataContainer container = exec.createDataContainer(
-				new DataTableSpec(new DataColumnSpec[] {
+		return new DataTableSpec(new DataColumnSpec[] {
 				new DataColumnSpecCreator("pdb", StructureCell.TYPE).createSpec(),
-		}));
-		StructureContent structureContent =  ((StructurePortObject) inData[0]).getStructureContent();
+		});
+	}
+
+
+	// Pushes one row per structure to the output
+	private static void writeRows(final StructurePortObject input, final RowOutput output, final ExecutionContext exec) throws Exception {
+
+		StructureContent structureContent = input.getStructureContent();
 		List<String> pdbStrings = structureContent.getAllPdbStrings();
-		
+
 		int rowCounter = 0;
 		for (String pdbString : pdbStrings) {
-			
-			container.addRowToTable(new DefaultRow("Row"+rowCounter++,
-					new StructureCell[] {	
-							new StructureCell(new StructureContent(pdbString))	
+
+			output.push(new DefaultRow("Row"+rowCounter++,
+					new StructureCell[] {
+							new StructureCell(new StructureContent(pdbString))
 					}));
+			exec.checkCanceled();
 		}
-		container.close();
-		return new BufferedDataTable[] { container.getTable()};
+		output.close();
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	protected PortObject[] execute(final PortObject[] inData,
+			final ExecutionContext exec) throws Exception {
+
+		BufferedDataTableRowOutput output = new BufferedDataTableRowOutput(exec.createDataContainer(getOutputSpec()));
+		writeRows((StructurePortObject) inData[0], output, exec);
+
+		return new BufferedDataTable[] {output.getDataTable()};
+	}
+
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public InputPortRole[] getInputPortRoles() {
+
+		return new InputPortRole[] {InputPortRole.NONDISTRIBUTED_NONSTREAMABLE};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public OutputPortRole[] getOutputPortRoles() {
+
+		return new OutputPortRole[] {OutputPortRole.NONDISTRIBUTED};
+	}
+
+	/**
+	 * {@inheritDoc}
+	 */
+	@Override
+	public StreamableOperator createStreamableOperator(
+			final PartitionInfo partitionInfo,
+			final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+
+		return new StreamableOperator() {
+
+			@Override
+			public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec) throws Exception {
+
+				writeRows(
+						(StructurePortObject) ((PortObjectInput) inputs[0]).getPortObject(),
+						(RowOutput) outputs[0],
+						exec);
+			}
+		};
 	}
 
 	/**
@@ -88,7 +150,7 @@ public class PDBToTableNodeModel extends NodeModel {
 			
 			throw new InvalidSettingsException("Port type 0 of PDBToTable must be Structure!");
 		}		
-		return new DataTableSpec[]{null};
+		return new DataTableSpec[]{getOutputSpec()};
 	}
 
 	/**
@@ -20,6 +20,14 @@ import org.knime.core.node.defaultnodesettings.SettingsModelColumnName;
 import org.knime.core.node.port.PortObject;
 import org.knime.core.node.port.PortObjectSpec;
 import org.knime.core.node.port.PortType;
+import org.knime.core.node.streamable.DataTableRowInput;
+import org.knime.core.node.streamable.InputPortRole;
+import org.knime.core.node.streamable.PartitionInfo;
+import org.knime.core.node.streamable.PortInput;
+import org.knime.core.node.streamable.PortObjectOutput;
+import org.knime.core.node.streamable.PortOutput;
+import org.knime.core.node.streamable.RowInput;
+import org.knime.core.node.streamable.StreamableOperator;
 import org.proteinevolution.knime.porttypes.structure.StructureCell;
 import org.proteinevolution.knime.porttypes.structure.StructureContent;
 import org.proteinevolution.knime.porttypes.structure.StructurePortObject;
@@ -52,30 +60,66 @@ public class TableToPDBNodeModel extends NodeModel {
 				new PortType[] {StructurePortObject.TYPE});
     }
 
-    /**
-     * {@inheritDoc}
-     */
-    @Override
-    protected PortObject[] execute(final PortObject[] inData,
-            final ExecutionContext exec) throws Exception {
+    // Collects the structures of all rows into one port object
+    private StructurePortObject collect(final RowInput input, final ExecutionContext exec) throws Exception {
 
-    	DataTable table = (DataTable) inData[0];
-    	
     	// Index of Structure
-    	int strucIndex = table.getDataTableSpec().findColumnIndex(this.param_input.getColumnName());
+    	int strucIndex = input.getDataTableSpec().findColumnIndex(this.param_input.getColumnName());
     	List<String> pdbStrings = new ArrayList<String>();
-    	
-    	for(DataRow row : table) {
-    		
+
+    	DataRow row;
+    	while ((row = input.poll()) != null) {
+
     		StructureContent content = ((StructureCell) row.getCell(strucIndex)).getContent();
     		assert content.getNumberOfStructures() == 1;
     		pdbStrings.add(content.getPdbString(0));
+    		exec.checkCanceled();
     	}
+    	input.close();
+
+    	return new StructurePortObject(new StructureContent(pdbStrings), new StructurePortObjectSpec(StructureContent.TYPE, pdbStrings.size()));
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected PortObject[] execute(final PortObject[] inData,
+            final ExecutionContext exec) throws Exception {
+
       return new StructurePortObject[] {
-    	  new StructurePortObject(new StructureContent(pdbStrings), new StructurePortObjectSpec(StructureContent.TYPE, pdbStrings.size()))
+    	  this.collect(new DataTableRowInput((DataTable) inData[0]), exec)
       };
     }
 
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public InputPortRole[] getInputPortRoles() {
+
+    	return new InputPortRole[] {InputPortRole.NONDISTRIBUTED_STREAMABLE};
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public StreamableOperator createStreamableOperator(
+    		final PartitionInfo partitionInfo,
+    		final PortObjectSpec[] inSpecs) throws InvalidSettingsException {
+
+    	return new StreamableOperator() {
+
+    		@Override
+    		public void runFinal(final PortInput[] inputs, final PortOutput[] outputs, final ExecutionContext exec) throws Exception {
+
+    			((PortObjectOutput) outputs[0]).setPortObject(
+    					TableToPDBNodeModel.this.collect((RowInput) inputs[0], exec));
+    		}
+    	};
+    }
+
     /**
      * {@inheritDoc}
      */
@@ -95,7 +139,8 @@ public class TableToPDBNodeModel extends NodeModel {
     		throw new InvalidSettingsException("Port type of TableToPDB must be DataTable!");
     	}
 
-        return new DataTableSpec[]{null};
+    	// The number of structures is only known after all rows have been read
+        return new PortObjectSpec[]{new StructurePortObjectSpec(StructureContent.TYPE)};
     }
 
     /**
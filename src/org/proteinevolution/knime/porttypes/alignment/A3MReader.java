@@ -0,0 +1,389 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+import org.proteinevolution.models.spec.AlignmentFormat;
+
+/**
+ * Reads alignments in the A3M and A2M formats of the HH-suite.
+ *
+ * In both formats, upper case residues and <code>-</code> belong to match states, while lower case residues
+ * are inserts. A2M additionally pads inserts with <code>.</code>, such that all rows have the same length.
+ * Inserts are either stripped, which yields an alignment with one column per match state, or expanded into
+ * additional columns, in which case the inserted residues are left-aligned and padded with <code>.</code>.
+ *
+ * Rows whose header starts with <code>ss_</code> or <code>sa_</code> (e.g. <code>ss_pred</code>) are read as
+ * annotations of the alignment.
+ *
+ * Alignments with more residues than a mapping threshold are not kept on the heap, but written into a temporary
+ * file which is then mapped, see {@link MappedSequenceAlignment}.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class A3MReader {
+
+	/**
+	 * How lower case residues in insert states are treated.
+	 */
+	public enum Inserts {
+
+		STRIP,
+		EXPAND;
+
+		public static List<String> getNames() {
+
+			List<String> names = new ArrayList<String>(Inserts.values().length);
+			for (Inserts inserts : Inserts.values()) {
+
+				names.add(inserts.name());
+			}
+			return names;
+		}
+	}
+
+	private static final byte GAP = '-';
+	private static final byte INSERT_GAP = '.';
+
+	private final Inserts inserts;
+
+	private final HeaderStore.Builder headers;
+	private final RowBuffer rows;
+	private final List<byte[]> annotations = new ArrayList<byte[]>();
+
+	// Number of match states and longest insert after each match state (index 0 is before the first)
+	private int nMatch = -1;
+	private int[] maxInsert;
+
+	// Residues of the current record, without padding
+	private byte[] current = new byte[256];
+	private int currentLength;
+
+
+	private A3MReader(final Inserts inserts, final HeaderStore.Builder headers, final RowBuffer rows) {
+
+		this.inserts = inserts;
+		this.headers = headers;
+		this.rows = rows;
+	}
+
+
+	/**
+	 * Reads an A3M or A2M file, the format is determined by the file extension.
+	 *
+	 * @param file The file
+	 * @param inserts How inserts are treated
+	 * @return The alignment
+	 * @throws IOException If the file cannot be read or is not a valid alignment
+	 */
+	public static SequenceAlignmentContent read(final Path file, final Inserts inserts) throws IOException {
+
+		return read(file, inserts, HeaderStore.Mode.FULL);
+	}
+
+	/**
+	 * Reads an A3M or A2M file, the format is determined by the file extension.
+	 *
+	 * @param file The file
+	 * @param inserts How inserts are treated
+	 * @param headers Which part of the headers is kept in memory
+	 * @return The alignment
+	 * @throws IOException If the file cannot be read or is not a valid alignment
+	 */
+	public static SequenceAlignmentContent read(final Path file, final Inserts inserts, final HeaderStore.Mode headers) throws IOException {
+
+		return (SequenceAlignmentContent) read(file, inserts, headers, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Reads an A3M or A2M file, the format is determined by the file extension.
+	 *
+	 * @param file The file
+	 * @param inserts How inserts are treated
+	 * @param headers Which part of the headers is kept in memory
+	 * @param mappingThreshold Number of residues from which on the alignment is mapped
+	 * @return The alignment, either a {@link SequenceAlignmentContent} or a {@link MappedSequenceAlignment}
+	 * @throws IOException If the file cannot be read or is not a valid alignment
+	 */
+	public static ISequenceAlignmentAnnotated read(
+			final Path file,
+			final Inserts inserts,
+			final HeaderStore.Mode headers,
+			final long mappingThreshold) throws IOException {
+
+		AlignmentFormat format = file.getFileName().toString().toLowerCase().endsWith(".a2m") ? AlignmentFormat.A2M : AlignmentFormat.A3M;
+		try (InputStream in = Files.newInputStream(file)) {
+
+			return read(in, format, inserts, new HeaderStore.Builder(headers, file), mappingThreshold);
+		}
+	}
+
+
+	/**
+	 * Reads an alignment in A3M or A2M format. The stream is read once, without holding the lines in memory.
+	 *
+	 * @param in Source
+	 * @param format Either {@link AlignmentFormat#A3M} or {@link AlignmentFormat#A2M}
+	 * @param inserts How inserts are treated
+	 * @return The alignment
+	 * @throws IOException If the stream cannot be read or is not a valid alignment
+	 */
+	public static SequenceAlignmentContent read(final InputStream in, final AlignmentFormat format, final Inserts inserts) throws IOException {
+
+		return (SequenceAlignmentContent) read(in, format, inserts, new HeaderStore.Builder(HeaderStore.Mode.FULL, null), Long.MAX_VALUE);
+	}
+
+	private static ISequenceAlignmentAnnotated read(
+			final InputStream in,
+			final AlignmentFormat format,
+			final Inserts inserts,
+			final HeaderStore.Builder headers,
+			final long mappingThreshold) throws IOException {
+
+		if (format != AlignmentFormat.A3M && format != AlignmentFormat.A2M) {
+
+			throw new IllegalArgumentException("Format must be A3M or A2M, but is " + format);
+		}
+		try (RowBuffer rows = new RowBuffer(mappingThreshold)) {
+
+			return read(in, format, new A3MReader(inserts, headers, rows));
+		}
+	}
+
+	private static ISequenceAlignmentAnnotated read(
+			final InputStream in,
+			final AlignmentFormat format,
+			final A3MReader reader) throws IOException {
+
+		String header = null;
+		long headerPosition = -1;
+
+		try (LineReader lineReader = new LineReader(in)) {
+
+			String line;
+			while ( (line = lineReader.readLine()) != null) {
+
+				// Position of the header behind '>', the line might be indented
+				long position = lineReader.getPosition() + line.indexOf('>') + 1;
+				line = line.trim();
+
+				// Empty lines and comments, such as the name line of HH-suite A3M files
+				if (line.isEmpty() || (header == null && line.startsWith("#"))) {
+
+					continue;
+				}
+				if (line.charAt(0) == '>') {
+
+					if (header != null) {
+
+						reader.endRecord(header, headerPosition);
+					}
+					header = line.substring(1);
+					headerPosition = position;
+
+				} else if (header == null) {
+
+					throw new NotAnAlignmentException("Residues encountered before the first header!");
+
+				} else {
+
+					reader.append(line);
+				}
+			}
+		}
+		if (header != null) {
+
+			reader.endRecord(header, headerPosition);
+		}
+		return reader.build(format);
+	}
+
+
+	private void append(final String line) {
+
+		if (this.currentLength + line.length() > this.current.length) {
+
+			this.current = Arrays.copyOf(this.current, Math.max(this.current.length * 2, this.currentLength + line.length()));
+		}
+		for (int i = 0; i < line.length(); ++i) {
+
+			char c = line.charAt(i);
+
+			// Padding of A2M inserts is restored when the alignment is built
+			if (c != INSERT_GAP && ! Character.isWhitespace(c)) {
+
+				this.current[this.currentLength++] = (byte) c;
+			}
+		}
+	}
+
+	private void endRecord(final String header, final long position) throws IOException {
+
+		// Annotations do not have inserts
+		if (header.startsWith("ss_") || header.startsWith("sa_")) {
+
+			this.annotations.add(Arrays.copyOf(this.current, this.currentLength));
+			this.currentLength = 0;
+			return;
+		}
+
+		int match = 0;
+		int insert = 0;
+		int[] inserts = this.maxInsert == null ? new int[this.currentLength + 1] : this.maxInsert;
+		for (int i = 0; i < this.currentLength; ++i) {
+
+			if (isInsert(this.current[i])) {
+
+				insert++;
+				continue;
+			}
+			if (match < inserts.length && insert > inserts[match]) {
+
+				inserts[match] = insert;
+			}
+			insert = 0;
+			match++;
+		}
+		if (match < inserts.length && insert > inserts[match]) {
+
+			inserts[match] = insert;
+		}
+		if (this.nMatch == -1) {
+
+			this.nMatch = match;
+			this.maxInsert = Arrays.copyOf(inserts, match + 1);
+
+		} else if (match != this.nMatch) {
+
+			throw new NotAnAlignmentException("Sequence " + header + " has " + match + " match states instead of " + this.nMatch);
+		}
+		byte[] bytes = header.getBytes(StandardCharsets.UTF_8);
+		this.headers.add(bytes, 0, bytes.length, position);
+
+		if (this.inserts == Inserts.STRIP) {
+
+			// Only the match states are kept
+			byte[] row = new byte[match];
+			int pos = 0;
+			for (int i = 0; i < this.currentLength; ++i) {
+
+				if ( ! isInsert(this.current[i])) {
+
+					row[pos++] = this.current[i];
+				}
+			}
+			this.rows.add(row);
+		} else {
+
+			// Inserts are padded once all lengths are known
+			this.rows.add(Arrays.copyOf(this.current, this.currentLength));
+		}
+		this.currentLength = 0;
+	}
+
+	private ISequenceAlignmentAnnotated build(final AlignmentFormat format) throws IOException {
+
+		if (this.headers.size() == 0) {
+
+			throw new NotAnAlignmentException("Input did not contain any sequences!");
+		}
+		for (byte[] annotation : this.annotations) {
+
+			if (annotation.length != this.nMatch) {
+
+				throw new NotAnAlignmentException("Annotation has " + annotation.length + " columns instead of " + this.nMatch);
+			}
+		}
+
+		int length = this.nMatch;
+		List<byte[]> annotations = this.annotations;
+
+		if (this.inserts == Inserts.EXPAND) {
+
+			for (int insert : this.maxInsert) {
+
+				length += insert;
+			}
+			annotations = new ArrayList<byte[]>(this.annotations.size());
+			for (byte[] annotation : this.annotations) {
+
+				annotations.add(this.expand(annotation, annotation.length, length, true));
+			}
+		}
+		AlignmentFormat result = this.rows.size() == 1 ? AlignmentFormat.SingleSequence : format;
+
+		if (this.rows.isSpilled()) {
+
+			// The mapped file holds the full headers, such that lazy headers are only read once
+			final int expanded = length;
+			try (HeaderStore store = this.headers.build()) {
+
+				return MappedSequenceAlignment.create(store, length, annotations, result, target ->
+
+					this.rows.forEach((row, n) -> {
+
+						if (this.inserts == Inserts.EXPAND) {
+
+							target.accept(this.expand(row, n, expanded, false), expanded);
+						} else {
+
+							target.accept(row, n);
+						}
+					}));
+			}
+		}
+		byte[][] residues = this.rows.toArray();
+		if (this.inserts == Inserts.EXPAND) {
+
+			for (int i = 0; i < residues.length; ++i) {
+
+				residues[i] = this.expand(residues[i], residues[i].length, length, false);
+			}
+		}
+		return new SequenceAlignmentContent(this.headers.build(), residues, annotations, result);
+	}
+
+	// Places the inserts after each match state left-aligned into the insert columns
+	private byte[] expand(final byte[] compact, final int n, final int length, final boolean annotation) {
+
+		byte[] row = new byte[length];
+		int pos = 0;
+		int match = 0;
+		int insert = 0;
+		for (int i = 0; i < n; ++i) {
+
+			byte b = compact[i];
+			if ( ! annotation && isInsert(b)) {
+
+				row[pos++] = b;
+				insert++;
+				continue;
+			}
+			pos = fill(row, pos, this.maxInsert[match] - insert, annotation ? GAP : INSERT_GAP);
+			row[pos++] = b;
+			match++;
+			insert = 0;
+		}
+		fill(row, pos, this.maxInsert[match] - insert, annotation ? GAP : INSERT_GAP);
+		return row;
+	}
+
+	private static int fill(final byte[] row, final int pos, final int n, final byte symbol) {
+
+		Arrays.fill(row, pos, pos + n, symbol);
+		return pos + n;
+	}
+
+	private static boolean isInsert(final byte b) {
+
+		return b >= 'a' && b <= 'z';
+	}
+}
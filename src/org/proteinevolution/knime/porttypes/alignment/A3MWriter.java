@@ -0,0 +1,132 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignment;
+import org.proteinevolution.models.spec.AlignmentFormat;
+
+/**
+ * Writes alignments in the A3M and A2M formats of the HH-suite.
+ *
+ * Match states are the columns in which the first sequence has a residue. Residues in all other columns
+ * are written in lower case as inserts. A3M omits gaps in insert columns, A2M writes them as <code>.</code>.
+ * Each sequence is written on a single line. Annotations are not written.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class A3MWriter {
+
+	private static final byte NEWLINE = '\n';
+
+	// Prevent instantiation
+	private A3MWriter() {
+
+		throw new AssertionError();
+	}
+
+
+	/**
+	 * Determines the match states of the alignment.
+	 *
+	 * @param alignment The alignment
+	 * @return For each column, whether it is a match state
+	 */
+	public static boolean[] matchStates(final ISequenceAlignment alignment) {
+
+		boolean[] match = new boolean[alignment.getLength()];
+		for (int j = 0; j < match.length; ++j) {
+
+			match[j] = ! isGap(alignment.getResidueAt(0, j));
+		}
+		return match;
+	}
+
+
+	/**
+	 * Encodes one row of the alignment in A3M or A2M, without the line terminator.
+	 *
+	 * @param alignment The alignment
+	 * @param index Index of the sequence
+	 * @param match Match states, see {@link #matchStates(ISequenceAlignment)}
+	 * @param format Either {@link AlignmentFormat#A3M} or {@link AlignmentFormat#A2M}
+	 * @param target Buffer of at least {@link ISequenceAlignment#getLength()} bytes
+	 * @return The number of bytes written to the buffer
+	 */
+	public static int encodeRow(
+			final ISequenceAlignment alignment,
+			final int index,
+			final boolean[] match,
+			final AlignmentFormat format,
+			final byte[] target) {
+
+		boolean a2m = format == AlignmentFormat.A2M;
+		int pos = 0;
+		for (int j = 0; j < match.length; ++j) {
+
+			byte residue = alignment.getResidueAt(index, j);
+			if (match[j]) {
+
+				target[pos++] = isGap(residue) ? (byte) '-' : toUpperCase(residue);
+
+			} else if ( ! isGap(residue)) {
+
+				target[pos++] = toLowerCase(residue);
+
+			} else if (a2m) {
+
+				target[pos++] = '.';
+			}
+		}
+		return pos;
+	}
+
+
+	/**
+	 * Writes the alignment in A3M or A2M format.
+	 *
+	 * @param alignment The alignment
+	 * @param format Either {@link AlignmentFormat#A3M} or {@link AlignmentFormat#A2M}
+	 * @param out Destination, which is not closed
+	 * @throws IOException If writing fails
+	 */
+	public static void write(final ISequenceAlignment alignment, final AlignmentFormat format, final OutputStream out) throws IOException {
+
+		if (format != AlignmentFormat.A3M && format != AlignmentFormat.A2M) {
+
+			throw new IllegalArgumentException("Format must be A3M or A2M, but is " + format);
+		}
+		boolean[] match = matchStates(alignment);
+		byte[] row = new byte[alignment.getLength()];
+		BufferedOutputStream buffered = new BufferedOutputStream(out, 1 << 16);
+
+		for (int i = 0; i < alignment.getNumberSequences(); ++i) {
+
+			buffered.write('>');
+			buffered.write(alignment.getHeaderAt(i).getBytes(StandardCharsets.UTF_8));
+			buffered.write(NEWLINE);
+			buffered.write(row, 0, encodeRow(alignment, i, match, format, row));
+			buffered.write(NEWLINE);
+		}
+		buffered.flush();
+	}
+
+
+	private static boolean isGap(final byte residue) {
+
+		return residue == '-' || residue == '.';
+	}
+
+	private static byte toUpperCase(final byte residue) {
+
+		return residue >= 'a' && residue <= 'z' ? (byte) (residue - 32) : residue;
+	}
+
+	private static byte toLowerCase(final byte residue) {
+
+		return residue >= 'A' && residue <= 'Z' ? (byte) (residue + 32) : residue;
+	}
+}
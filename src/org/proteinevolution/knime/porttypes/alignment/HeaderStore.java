@@ -0,0 +1,488 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Compact storage of the headers of an alignment. All headers are stored as UTF-8 in one shared byte array
+ * together with their offsets, instead of one <code>String</code> per sequence. Strings are only created when
+ * a header is requested.
+ *
+ * Depending on the {@link Mode}, either the full headers or only the accessions (the first word of the header)
+ * are stored. In mode {@link Mode#LAZY}, only the accessions are kept in memory and the full headers are read
+ * from the source file on request. The source file is opened once and shared by all stores selected from this
+ * one, it stays open until {@link #close()} is called.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class HeaderStore implements Closeable {
+
+	/**
+	 * Which part of the headers is kept in memory.
+	 */
+	public enum Mode {
+
+		FULL,
+		ACCESSION,
+		LAZY;
+
+		public static List<String> getNames() {
+
+			List<String> names = new ArrayList<String>(Mode.values().length);
+			for (Mode mode : Mode.values()) {
+
+				names.add(mode.name());
+			}
+			return names;
+		}
+	}
+
+	private final Mode mode;
+
+	// UTF-8 bytes of header i are arena[offsets[i], offsets[i + 1])
+	private final byte[] arena;
+	private final int[] offsets;
+
+	// Mode LAZY only: position and length of the full headers in the source file
+	private final Source source;
+	private final long[] positions;
+	private final int[] lengths;
+
+
+	private HeaderStore(
+			final Mode mode,
+			final byte[] arena,
+			final int[] offsets,
+			final Source source,
+			final long[] positions,
+			final int[] lengths) {
+
+		this.mode = mode;
+		this.arena = arena;
+		this.offsets = offsets;
+		this.source = source;
+		this.positions = positions;
+		this.lengths = lengths;
+	}
+
+
+	/**
+	 * Stores the full headers.
+	 *
+	 * @param headers The headers
+	 * @return The header store
+	 */
+	public static HeaderStore of(final String[] headers) {
+
+		Builder builder = new Builder(Mode.FULL, null);
+		for (String header : headers) {
+
+			builder.add(header);
+		}
+		return builder.build();
+	}
+
+
+	/**
+	 * Returns the header of a sequence. In mode {@link Mode#LAZY}, the header is read from the source file.
+	 *
+	 * @param index Index of the sequence
+	 * @return The header, or only its accession in mode {@link Mode#ACCESSION}
+	 * @throws UncheckedIOException If the header of a lazy store cannot be read from the source file
+	 */
+	public String get(final int index) {
+
+		if (this.mode == Mode.LAZY) {
+
+			return new String(this.readFull(index), StandardCharsets.UTF_8);
+		}
+		int offset = this.offsets[index];
+		return new String(this.arena, offset, this.offsets[index + 1] - offset, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Returns the accession of a sequence, which is the first word of the header. Never reads from the source file.
+	 *
+	 * @param index Index of the sequence
+	 * @return The accession
+	 */
+	public String getAccession(final int index) {
+
+		int offset = this.offsets[index];
+		int end = this.offsets[index + 1];
+		if (this.mode == Mode.FULL) {
+
+			end = accessionEnd(this.arena, offset, end);
+		}
+		return new String(this.arena, offset, end - offset, StandardCharsets.UTF_8);
+	}
+
+	public int size() {
+
+		return this.offsets.length - 1;
+	}
+
+	public Mode getMode() {
+
+		return this.mode;
+	}
+
+	/**
+	 * Number of bytes of the headers held in memory.
+	 *
+	 * @return Size of the byte arena
+	 */
+	public int getArenaSize() {
+
+		return this.offsets[this.offsets.length - 1];
+	}
+
+
+	/**
+	 * Header store with the selected sequences in the given order. The mode is retained.
+	 *
+	 * @param rows Indices of the selected sequences
+	 * @return The new header store
+	 */
+	public HeaderStore select(final int[] rows) {
+
+		int size = 0;
+		for (int row : rows) {
+
+			size += this.offsets[row + 1] - this.offsets[row];
+		}
+		byte[] arena = new byte[size];
+		int[] offsets = new int[rows.length + 1];
+		for (int i = 0; i < rows.length; ++i) {
+
+			int offset = this.offsets[rows[i]];
+			int length = this.offsets[rows[i] + 1] - offset;
+			System.arraycopy(this.arena, offset, arena, offsets[i], length);
+			offsets[i + 1] = offsets[i] + length;
+		}
+		if (this.mode != Mode.LAZY) {
+
+			return new HeaderStore(this.mode, arena, offsets, null, null, null);
+		}
+		long[] positions = new long[rows.length];
+		int[] lengths = new int[rows.length];
+		for (int i = 0; i < rows.length; ++i) {
+
+			positions[i] = this.positions[rows[i]];
+			lengths[i] = this.lengths[rows[i]];
+		}
+		return new HeaderStore(this.mode, arena, offsets, this.source, positions, lengths);
+	}
+
+
+	/*
+	 * Binary format used by the SequenceAlignmentCodec:
+	 *
+	 * byte    mode (FULL or ACCESSION, lazy stores are written with their full headers)
+	 * int     number of header bytes
+	 * bytes   UTF-8 headers
+	 * varint  number of bytes of each header
+	 */
+	void write(final DataOutput out) throws IOException {
+
+		int n = this.size();
+		if (this.mode == Mode.LAZY) {
+
+			long size = 0;
+			for (int length : this.lengths) {
+
+				size += length;
+			}
+			checkSize(size);
+			out.writeByte(Mode.FULL.ordinal());
+			out.writeInt((int) size);
+
+			for (int i = 0; i < n; ++i) {
+
+				out.write(this.source.read(this.positions[i], this.lengths[i]));
+			}
+			for (int length : this.lengths) {
+
+				writeVarInt(out, length);
+			}
+			return;
+		}
+		out.writeByte(this.mode.ordinal());
+		out.writeInt(this.getArenaSize());
+		out.write(this.arena, 0, this.getArenaSize());
+		for (int i = 0; i < n; ++i) {
+
+			writeVarInt(out, this.offsets[i + 1] - this.offsets[i]);
+		}
+	}
+
+	static HeaderStore read(final DataInput in, final int n) throws IOException {
+
+		int modeOrdinal = in.readByte();
+		if (modeOrdinal != Mode.FULL.ordinal() && modeOrdinal != Mode.ACCESSION.ordinal()) {
+
+			throw new IOException("Unsupported mode of stored headers: " + modeOrdinal);
+		}
+		byte[] arena = new byte[in.readInt()];
+		in.readFully(arena);
+
+		int[] offsets = new int[n + 1];
+		for (int i = 0; i < n; ++i) {
+
+			offsets[i + 1] = offsets[i] + readVarInt(in);
+		}
+		if (offsets[n] != arena.length) {
+
+			throw new IOException("Lengths of the headers do not match the number of header bytes!");
+		}
+		return new HeaderStore(Mode.values()[modeOrdinal], arena, offsets, null, null, null);
+	}
+
+	// Headers of version 1 of the codec: int length and UTF-8 bytes per header
+	static HeaderStore readLegacy(final DataInput in, final int n) throws IOException {
+
+		Builder builder = new Builder(Mode.FULL, null);
+		byte[] header = new byte[256];
+		for (int i = 0; i < n; ++i) {
+
+			int length = in.readInt();
+			if (length > header.length) {
+
+				header = new byte[Math.max(length, 2 * header.length)];
+			}
+			in.readFully(header, 0, length);
+			builder.add(header, 0, length, -1);
+		}
+		return builder.build();
+	}
+
+
+	private byte[] readFull(final int index) {
+
+		try {
+			return this.source.read(this.positions[index], this.lengths[index]);
+
+		} catch (IOException e) {
+
+			throw new UncheckedIOException("Header cannot be read from " + this.source.path, e);
+		}
+	}
+
+	private static byte[] read(final FileChannel channel, final long position, final int length) throws IOException {
+
+		ByteBuffer buffer = ByteBuffer.allocate(length);
+		while (buffer.hasRemaining()) {
+
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+
+				throw new IOException("Source file of the headers has been truncated!");
+			}
+		}
+		return buffer.array();
+	}
+
+	/**
+	 * Closes the source file of lazy headers, for all stores selected from the same source. Headers requested
+	 * afterwards open the file again. Does nothing in the other modes.
+	 */
+	@Override
+	public void close() throws IOException {
+
+		if (this.source != null) {
+
+			this.source.close();
+		}
+	}
+
+
+	private static int accessionEnd(final byte[] bytes, final int from, final int to) {
+
+		int end = from;
+		while (end < to && bytes[end] != ' ' && bytes[end] != '\t') {
+
+			end++;
+		}
+		return end;
+	}
+
+	private static void checkSize(final long size) {
+
+		if (size > Integer.MAX_VALUE) {
+
+			throw new IllegalArgumentException("Headers of the alignment exceed 2 GB");
+		}
+	}
+
+	private static void writeVarInt(final DataOutput out, final int value) throws IOException {
+
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarInt(final DataInput in) throws IOException {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+
+
+	/*
+	 * Source file of lazy headers with one channel, which is opened on the first read
+	 */
+	private static final class Source implements Closeable {
+
+		private final Path path;
+		private FileChannel channel;
+
+
+		private Source(final Path path) {
+
+			this.path = path;
+		}
+
+		private synchronized byte[] read(final long position, final int length) throws IOException {
+
+			// The channel is also closed if a reading thread has been interrupted
+			if (this.channel == null || ! this.channel.isOpen()) {
+
+				this.channel = FileChannel.open(this.path, StandardOpenOption.READ);
+			}
+			return HeaderStore.read(this.channel, position, length);
+		}
+
+		@Override
+		public synchronized void close() throws IOException {
+
+			if (this.channel != null) {
+
+				this.channel.close();
+				this.channel = null;
+			}
+		}
+	}
+
+
+	/**
+	 * Collects the headers of an alignment while it is read.
+	 */
+	static final class Builder {
+
+		private final Mode mode;
+		private final Path source;
+
+		private byte[] arena = new byte[1 << 12];
+		private int[] offsets = new int[65];
+		private long[] positions;
+		private int[] lengths;
+		private int n;
+
+
+		/**
+		 * @param mode Which part of the headers is kept
+		 * @param source File the alignment is read from, required for mode {@link Mode#LAZY}
+		 */
+		Builder(final Mode mode, final Path source) {
+
+			if (mode == Mode.LAZY) {
+
+				if (source == null) {
+
+					throw new IllegalArgumentException("Lazy headers require the source file of the alignment!");
+				}
+				this.positions = new long[64];
+				this.lengths = new int[64];
+			}
+			this.mode = mode;
+			this.source = source;
+		}
+
+		void add(final String header) {
+
+			byte[] bytes = header.getBytes(StandardCharsets.UTF_8);
+			this.add(bytes, 0, bytes.length, -1);
+		}
+
+		/**
+		 * Adds the next header.
+		 *
+		 * @param bytes Buffer with the UTF-8 bytes of the header
+		 * @param from Start of the header in the buffer
+		 * @param to End of the header in the buffer (exclusive)
+		 * @param position Position of the header in the source file, only used in mode {@link Mode#LAZY}
+		 */
+		void add(final byte[] bytes, final int from, final int to, final long position) {
+
+			int end = this.mode == Mode.FULL ? to : accessionEnd(bytes, from, to);
+			int length = end - from;
+
+			if (this.n + 1 == this.offsets.length) {
+
+				this.offsets = Arrays.copyOf(this.offsets, 2 * this.offsets.length);
+				if (this.mode == Mode.LAZY) {
+
+					this.positions = Arrays.copyOf(this.positions, this.offsets.length - 1);
+					this.lengths = Arrays.copyOf(this.lengths, this.offsets.length - 1);
+				}
+			}
+			int offset = this.offsets[this.n];
+			checkSize((long) offset + length);
+			if (offset + length > this.arena.length) {
+
+				this.arena = Arrays.copyOf(this.arena, (int) Math.min(Integer.MAX_VALUE, Math.max(offset + length, 2L * this.arena.length)));
+			}
+			System.arraycopy(bytes, from, this.arena, offset, length);
+			if (this.mode == Mode.LAZY) {
+
+				this.positions[this.n] = position;
+				this.lengths[this.n] = to - from;
+			}
+			this.offsets[++this.n] = offset + length;
+		}
+
+		int size() {
+
+			return this.n;
+		}
+
+		HeaderStore build() {
+
+			int[] offsets = Arrays.copyOf(this.offsets, this.n + 1);
+			byte[] arena = Arrays.copyOf(this.arena, offsets[this.n]);
+			if (this.mode != Mode.LAZY) {
+
+				return new HeaderStore(this.mode, arena, offsets, null, null, null);
+			}
+			return new HeaderStore(
+					this.mode,
+					arena,
+					offsets,
+					new Source(this.source),
+					Arrays.copyOf(this.positions, this.n),
+					Arrays.copyOf(this.lengths, this.n));
+		}
+	}
+}
@@ -0,0 +1,117 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Reads UTF-8 lines from a stream like <code>BufferedReader.readLine</code>, but additionally reports the byte
+ * position of each line in the stream. Used to locate the headers of alignment files, see {@link HeaderStore}.
+ *
+ * @author lzimmermann
+ *
+ */
+final class LineReader implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	private final InputStream in;
+	private final byte[] buffer = new byte[BUFFER_SIZE];
+	private int pos;
+	private int limit;
+
+	// Number of bytes of the stream before the start of the buffer
+	private long consumed;
+
+	private byte[] line = new byte[256];
+	private long lineStart;
+
+
+	LineReader(final InputStream in) {
+
+		this.in = in;
+	}
+
+
+	/**
+	 * Reads the next line, terminated by <code>\n</code> or <code>\r\n</code>.
+	 *
+	 * @return The line without the terminator, null at the end of the stream
+	 * @throws IOException If reading fails
+	 */
+	String readLine() throws IOException {
+
+		this.lineStart = this.consumed + this.pos;
+		int length = 0;
+		boolean terminated = false;
+
+		while ( ! terminated) {
+
+			if (this.pos == this.limit && ! this.fill()) {
+
+				if (length == 0) {
+
+					return null;
+				}
+				break;
+			}
+			int start = this.pos;
+			while (this.pos < this.limit && this.buffer[this.pos] != '\n') {
+
+				this.pos++;
+			}
+			int n = this.pos - start;
+			if (length + n > this.line.length) {
+
+				this.line = Arrays.copyOf(this.line, Math.max(2 * this.line.length, length + n));
+			}
+			System.arraycopy(this.buffer, start, this.line, length, n);
+			length += n;
+
+			if (this.pos < this.limit) {
+
+				// Skip the newline
+				this.pos++;
+				terminated = true;
+			}
+		}
+		if (length > 0 && this.line[length - 1] == '\r') {
+
+			length--;
+		}
+		return new String(this.line, 0, length, StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * Byte position of the line most recently returned by {@link #readLine()}.
+	 *
+	 * @return Position of the first byte of the line in the stream
+	 */
+	long getPosition() {
+
+		return this.lineStart;
+	}
+
+
+	private boolean fill() throws IOException {
+
+		this.consumed += this.limit;
+		this.pos = 0;
+		this.limit = 0;
+		int n = this.in.read(this.buffer);
+		if (n <= 0) {
+
+			return false;
+		}
+		this.limit = n;
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+
+		this.in.close();
+	}
+}
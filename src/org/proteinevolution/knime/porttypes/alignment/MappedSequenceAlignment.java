@@ -0,0 +1,599 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.ref.PhantomReference;
+import java.lang.ref.ReferenceQueue;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.proteinevolution.models.alignment.ColumnStatistics;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+import org.proteinevolution.models.spec.AlignmentFormat;
+
+/**
+ * Sequence alignment that lives in a memory-mapped file instead of the heap. Used for deep alignments
+ * which do not fit comfortably into memory as {@link SequenceAlignmentContent}.
+ *
+ * The file is uncompressed, such that residues can be accessed without decoding:
+ *
+ * <pre>
+ * long    MAGIC
+ * int     number of sequences, int length, int number of annotations, int alignment format (ordinal)
+ * long    offset of the residue matrix
+ * long[]  offsets of the headers (number of sequences + 1)
+ * long[]  offsets of the annotations (number of annotations + 1)
+ * headers     UTF-8 bytes
+ * residues    row-major, one byte per residue
+ * annotations one byte per column
+ * </pre>
+ *
+ * Instances are immutable. The mapping is released by the garbage collector once the object is unreachable.
+ * Alignments created by readers and port objects are mapped from temporary files, which are deleted as soon as
+ * the alignment is unreachable, e.g. once the port object holding it has been discarded on reset of the node.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class MappedSequenceAlignment implements ISequenceAlignmentAnnotated {
+
+	private static final long MAGIC = 0x4D53414D41503031L;
+	private static final int FIXED_HEADER_BYTES = 32;
+
+	// Upper bound of the size of a single mapped region of the residue matrix
+	private static final long MAX_CHUNK_BYTES = 1L << 30;
+
+	private final int nSequences;
+	private final int length;
+	private final int nAnnotations;
+	private final AlignmentFormat format;
+
+	// Offsets of headers and annotations followed by the header bytes
+	private final LongBuffer headerOffsets;
+	private final LongBuffer annotationOffsets;
+	private final ByteBuffer meta;
+
+	private final ByteBuffer[] rows;
+	private final int rowsPerChunk;
+	private final ByteBuffer annotations;
+	private final long annotationStart;
+
+	// Computed on first request
+	private volatile ColumnStatistics columnStatistics;
+
+
+	private MappedSequenceAlignment(final Path file) throws IOException {
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+
+			ByteBuffer fixed = channel.map(MapMode.READ_ONLY, 0, FIXED_HEADER_BYTES);
+			if (fixed.getLong() != MAGIC) {
+
+				throw new IOException("File is not a mapped sequence alignment: " + file);
+			}
+			this.nSequences = fixed.getInt();
+			this.length = fixed.getInt();
+			this.nAnnotations = fixed.getInt();
+			this.format = AlignmentFormat.values()[fixed.getInt()];
+			long residueStart = fixed.getLong();
+
+			if (residueStart > Integer.MAX_VALUE) {
+
+				throw new IOException("Headers of the alignment exceed 2 GB: " + file);
+			}
+			this.meta = channel.map(MapMode.READ_ONLY, 0, residueStart);
+			ByteBuffer index = this.meta.duplicate();
+			index.position(FIXED_HEADER_BYTES);
+			this.headerOffsets = index.slice().asLongBuffer();
+			index.position(FIXED_HEADER_BYTES + (this.nSequences + 1) * 8);
+			this.annotationOffsets = index.slice().asLongBuffer();
+
+			// Rows never span two mapped regions
+			this.rowsPerChunk = (int) Math.max(1, Math.min(this.nSequences, MAX_CHUNK_BYTES / Math.max(1, this.length)));
+			int nChunks = this.nSequences == 0 ? 0 : (this.nSequences - 1) / this.rowsPerChunk + 1;
+			this.rows = new ByteBuffer[nChunks];
+			for (int i = 0; i < nChunks; ++i) {
+
+				long first = (long) i * this.rowsPerChunk;
+				long n = Math.min(this.rowsPerChunk, this.nSequences - first);
+				this.rows[i] = channel.map(MapMode.READ_ONLY, residueStart + first * this.length, n * this.length);
+			}
+
+			this.annotationStart = residueStart + (long) this.nSequences * this.length;
+			this.annotations = channel.map(MapMode.READ_ONLY, this.annotationStart, (long) this.nAnnotations * this.length);
+		}
+	}
+
+
+	/**
+	 * Writes the rows of an alignment in order.
+	 */
+	interface RowSource {
+
+		void writeRows(RowBuffer.RowConsumer target) throws IOException;
+	}
+
+
+	/**
+	 * Opens an alignment file which has been written by this class.
+	 *
+	 * @param file The file
+	 * @return The alignment
+	 * @throws IOException If the file cannot be mapped or is not a mapped alignment
+	 */
+	public static MappedSequenceAlignment open(final Path file) throws IOException {
+
+		return new MappedSequenceAlignment(file);
+	}
+
+
+	/**
+	 * Writes the alignment to the file and maps it.
+	 *
+	 * @param alignment The alignment to copy
+	 * @param file Destination, an existing file is overwritten
+	 * @return The mapped alignment
+	 * @throws IOException If the file cannot be written
+	 */
+	public static MappedSequenceAlignment fromAlignment(final ISequenceAlignmentAnnotated alignment, final Path file) throws IOException {
+
+		int nSequences = alignment.getNumberSequences();
+		int length = alignment.getLength();
+		int nAnnotations = alignment.getNumAnnotations();
+
+		try (LayoutWriter writer = new LayoutWriter(file, nSequences, length, nAnnotations, alignment.getAlignmentFormat())) {
+
+			for (int i = 0; i < nSequences; ++i) {
+
+				writer.header(alignment.getHeaderAt(i).getBytes(StandardCharsets.UTF_8));
+			}
+			byte[] row = new byte[length];
+			for (int i = 0; i < nSequences; ++i) {
+
+				for (int j = 0; j < length; ++j) {
+
+					row[j] = alignment.getResidueAt(i, j);
+				}
+				writer.row(row, length);
+			}
+			for (int i = 0; i < nAnnotations; ++i) {
+
+				char[] annotation = alignment.getAnnotationAt(i);
+				for (int j = 0; j < length; ++j) {
+
+					row[j] = j < annotation.length ? (byte) annotation[j] : (byte) ' ';
+				}
+				writer.annotation(row);
+			}
+		}
+		return open(file);
+	}
+
+
+	/**
+	 * Transcodes the body of a binary alignment of the {@link SequenceAlignmentCodec} into a temporary mapped file,
+	 * without holding the residues on the heap. The preamble and the headers of the binary alignment have already been consumed.
+	 */
+	static MappedSequenceAlignment transcode(
+			final DataInput in,
+			final HeaderStore headers,
+			final AlignmentFormat format,
+			final int length,
+			final int nAnnotations) throws IOException {
+
+		Path file = Files.createTempFile("alignment", ".msa");
+		try {
+			try (LayoutWriter writer = new LayoutWriter(file, headers.size(), length, nAnnotations, format)) {
+
+				writer.headers(headers);
+				byte[] row = new byte[length];
+				byte[] buffer = new byte[length + 16];
+				for (int i = 0; i < headers.size(); ++i) {
+
+					buffer = SequenceAlignmentCodec.readRow(in, row, buffer);
+					writer.row(row, length);
+				}
+				for (int i = 0; i < nAnnotations; ++i) {
+
+					byte[] annotation = new byte[in.readInt()];
+					in.readFully(annotation);
+					writer.annotation(annotation);
+				}
+			}
+			return openTemporary(file);
+
+		} catch (IOException | RuntimeException e) {
+
+			Files.deleteIfExists(file);
+			throw e;
+		}
+	}
+
+	/**
+	 * Writes an alignment into a temporary mapped file, used by readers whose rows exceed the mapping threshold.
+	 *
+	 * @param headers The headers
+	 * @param length Length of the alignment
+	 * @param annotations Annotations, each with one byte per column
+	 * @param format Format of the alignment
+	 * @param rows Writes exactly one row per header, each with one byte per column
+	 * @return The mapped alignment
+	 * @throws IOException If the temporary file cannot be written or a row does not match the length
+	 */
+	static MappedSequenceAlignment create(
+			final HeaderStore headers,
+			final int length,
+			final List<byte[]> annotations,
+			final AlignmentFormat format,
+			final RowSource rows) throws IOException {
+
+		Path file = Files.createTempFile("alignment", ".msa");
+		try {
+			try (LayoutWriter writer = new LayoutWriter(file, headers.size(), length, annotations.size(), format)) {
+
+				writer.headers(headers);
+				rows.writeRows(writer::row);
+				for (byte[] annotation : annotations) {
+
+					writer.annotation(annotation);
+				}
+			}
+			return openTemporary(file);
+
+		} catch (IOException | RuntimeException e) {
+
+			Files.deleteIfExists(file);
+			throw e;
+		}
+	}
+
+	// The file is deleted once the alignment is unreachable
+	private static MappedSequenceAlignment openTemporary(final Path file) throws IOException {
+
+		MappedSequenceAlignment result = open(file);
+		TemporaryFile.register(result, file);
+		return result;
+	}
+
+
+	/**
+	 * Returns the residues of one sequence without copying. The buffer keeps the mapping alive, but not the
+	 * temporary file of the alignment.
+	 *
+	 * @param index Index of the sequence
+	 * @return Read-only buffer with one byte per column, position 0 and limit {@link #getLength()}
+	 */
+	public ByteBuffer getRow(final int index) {
+
+		ByteBuffer chunk = this.rows[index / this.rowsPerChunk].duplicate();
+		int start = (index % this.rowsPerChunk) * this.length;
+		chunk.limit(start + this.length);
+		chunk.position(start);
+		return chunk.slice().asReadOnlyBuffer();
+	}
+
+	/**
+	 * Copies the residues of one column into the provided array.
+	 *
+	 * @param column Index of the column
+	 * @param target Array of at least {@link #getNumberSequences()} bytes
+	 */
+	public void getColumn(final int column, final byte[] target) {
+
+		for (int i = 0; i < this.nSequences; ++i) {
+
+			target[i] = this.getResidueAt(i, column);
+		}
+	}
+
+
+	@Override
+	public char[] getSequenceAt(final int index) {
+
+		char[] result = new char[this.length];
+		ByteBuffer chunk = this.rows[index / this.rowsPerChunk];
+		int start = (index % this.rowsPerChunk) * this.length;
+		for (int i = 0; i < this.length; ++i) {
+
+			result[i] = (char) (chunk.get(start + i) & 0xFF);
+		}
+		return result;
+	}
+
+	@Override
+	public byte getResidueAt(final int index, final int column) {
+
+		return this.rows[index / this.rowsPerChunk].get((index % this.rowsPerChunk) * this.length + column);
+	}
+
+	@Override
+	public String getHeaderAt(final int index) {
+
+		int start = (int) this.headerOffsets.get(index);
+		byte[] header = new byte[(int) this.headerOffsets.get(index + 1) - start];
+		ByteBuffer buffer = this.meta.duplicate();
+		buffer.position(start);
+		buffer.get(header);
+		return new String(header, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public int getNumberSequences() {
+
+		return this.nSequences;
+	}
+
+	@Override
+	public int getLength() {
+
+		return this.length;
+	}
+
+	@Override
+	public AlignmentFormat getAlignmentFormat() {
+
+		return this.format;
+	}
+
+	@Override
+	public char[] getAnnotationAt(final int index) {
+
+		int start = (int) (this.annotationOffsets.get(index) - this.annotationStart);
+		char[] result = new char[this.length];
+		for (int i = 0; i < this.length; ++i) {
+
+			result[i] = (char) (this.annotations.get(start + i) & 0xFF);
+		}
+		return result;
+	}
+
+	@Override
+	public int getNumAnnotations() {
+
+		return this.nAnnotations;
+	}
+
+
+	/**
+	 * Returns the per-column statistics of this alignment. The statistics are computed on the first call
+	 * and cached afterwards.
+	 *
+	 * @return Statistics of all columns
+	 */
+	public ColumnStatistics getColumnStatistics() {
+
+		ColumnStatistics result = this.columnStatistics;
+		if (result == null) {
+
+			synchronized (this) {
+
+				result = this.columnStatistics;
+				if (result == null) {
+
+					result = ColumnStatistics.compute(this);
+					this.columnStatistics = result;
+				}
+			}
+		}
+		return result;
+	}
+
+
+	@Override
+	public void write(final Writer out) throws IOException {
+
+		String linesep = System.lineSeparator();
+		char[] line = new char[80];
+
+		for (int i = 0; i < this.nSequences; ++i) {
+
+			out.write(">");
+			out.write(this.getHeaderAt(i));
+			out.write(linesep);
+			ByteBuffer row = this.getRow(i);
+
+			// Write the sequence in 80 character chunks
+			for (int start = 0; start < this.length; start += 80) {
+
+				int end = Math.min(this.length, start + 80);
+				for (int j = start; j < end; ++j) {
+
+					line[j - start] = (char) (row.get(j) & 0xFF);
+				}
+				out.write(line, 0, end - start);
+				out.write(linesep);
+			}
+			if (this.length == 0) {
+
+				out.write(linesep);
+			}
+		}
+		out.flush();
+	}
+
+
+	/*
+	 * Writes the layout sequentially. The offsets are only known afterwards and are patched in on close.
+	 */
+	private static final class LayoutWriter implements AutoCloseable {
+
+		private final Path file;
+		private final DataOutputStream out;
+		private final int length;
+		private final int nAnnotations;
+		private final AlignmentFormat format;
+		private final long[] headerOffsets;
+		private final long[] annotationOffsets;
+
+		private long position;
+		private int nHeaders;
+		private int nRows;
+		private int nAnnotationsWritten;
+		private long residueStart = -1;
+
+
+		private LayoutWriter(
+				final Path file,
+				final int nSequences,
+				final int length,
+				final int nAnnotations,
+				final AlignmentFormat format) throws IOException {
+
+			this.file = file;
+			this.length = length;
+			this.nAnnotations = nAnnotations;
+			this.format = format;
+			this.headerOffsets = new long[nSequences + 1];
+			this.annotationOffsets = new long[nAnnotations + 1];
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 1 << 16));
+
+			// Space for the fixed header and the offsets
+			this.position = FIXED_HEADER_BYTES + 8L * (this.headerOffsets.length + this.annotationOffsets.length);
+			this.out.write(new byte[(int) this.position]);
+		}
+
+		private void header(final byte[] header) throws IOException {
+
+			this.headerOffsets[this.nHeaders++] = this.position;
+			this.out.write(header);
+			this.position += header.length;
+		}
+
+		private void headers(final HeaderStore headers) throws IOException {
+
+			for (int i = 0; i < headers.size(); ++i) {
+
+				this.header(headers.get(i).getBytes(StandardCharsets.UTF_8));
+			}
+		}
+
+		private void row(final byte[] row, final int length) throws IOException {
+
+			if (length != this.length) {
+
+				throw new IOException("Row has " + length + " residues instead of " + this.length);
+			}
+			if (this.residueStart == -1) {
+
+				this.residueStart = this.position;
+			}
+			this.out.write(row, 0, this.length);
+			this.position += this.length;
+			this.nRows++;
+		}
+
+		private void annotation(final byte[] annotation) throws IOException {
+
+			if (annotation.length != this.length) {
+
+				throw new IOException("Length of annotation does not match the length of the alignment!");
+			}
+			this.annotationOffsets[this.nAnnotationsWritten++] = this.position;
+			this.out.write(annotation, 0, this.length);
+			this.position += this.length;
+		}
+
+		@Override
+		public void close() throws IOException {
+
+			this.out.close();
+			int nSequences = this.headerOffsets.length - 1;
+			if (this.nHeaders != nSequences || this.nRows != nSequences || this.nAnnotationsWritten != this.nAnnotations) {
+
+				throw new IOException("Incomplete alignment written to " + this.file);
+			}
+			if (this.residueStart == -1) {
+
+				this.residueStart = this.position;
+			}
+			this.headerOffsets[nSequences] = this.residueStart;
+			this.annotationOffsets[this.nAnnotations] = this.position;
+
+			ByteBuffer index = ByteBuffer.allocate(FIXED_HEADER_BYTES + 8 * (this.headerOffsets.length + this.annotationOffsets.length));
+			index.putLong(MAGIC)
+				.putInt(nSequences)
+				.putInt(this.length)
+				.putInt(this.nAnnotations)
+				.putInt(this.format.ordinal())
+				.putLong(this.residueStart);
+			index.asLongBuffer().put(this.headerOffsets).put(this.annotationOffsets);
+			index.rewind();
+			try (FileChannel channel = FileChannel.open(this.file, StandardOpenOption.WRITE)) {
+
+				while (index.hasRemaining()) {
+
+					channel.write(index, index.position());
+				}
+			}
+		}
+	}
+
+
+	/*
+	 * Deletes a temporary file once its alignment has become unreachable. Files which cannot be deleted yet,
+	 * because a row buffer still maps them on platforms that do not allow this, are deleted on exit.
+	 */
+	private static final class TemporaryFile extends PhantomReference<MappedSequenceAlignment> {
+
+		private static final ReferenceQueue<MappedSequenceAlignment> QUEUE = new ReferenceQueue<MappedSequenceAlignment>();
+
+		// References must stay reachable until they are enqueued
+		private static final Set<TemporaryFile> PENDING = ConcurrentHashMap.newKeySet();
+
+		static {
+			Thread cleaner = new Thread(TemporaryFile::deleteUnreachable, "MappedSequenceAlignment cleaner");
+			cleaner.setDaemon(true);
+			cleaner.start();
+		}
+
+		private final Path file;
+
+
+		private TemporaryFile(final MappedSequenceAlignment alignment, final Path file) {
+
+			super(alignment, QUEUE);
+			this.file = file;
+		}
+
+		private static void register(final MappedSequenceAlignment alignment, final Path file) {
+
+			file.toFile().deleteOnExit();
+			PENDING.add(new TemporaryFile(alignment, file));
+		}
+
+		private static void deleteUnreachable() {
+
+			while (true) {
+
+				TemporaryFile reference;
+				try {
+					reference = (TemporaryFile) QUEUE.remove();
+
+				} catch (InterruptedException e) {
+
+					return;
+				}
+				PENDING.remove(reference);
+				try {
+					Files.deleteIfExists(reference.file);
+
+				} catch (IOException e) {
+
+					// Left for deletion on exit
+				}
+			}
+		}
+	}
+}
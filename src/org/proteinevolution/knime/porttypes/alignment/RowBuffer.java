@@ -0,0 +1,168 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Collects the rows of an alignment while it is read. Rows are kept on the heap until their total number of
+ * residues reaches the mapping threshold, afterwards all rows are spilled into a temporary file. Readers then
+ * build a {@link SequenceAlignmentContent} or a {@link MappedSequenceAlignment} from the rows.
+ *
+ * Rows may have different lengths, e.g. A3M rows with inserts. The temporary file is deleted on close.
+ *
+ * @author lzimmermann
+ *
+ */
+final class RowBuffer implements AutoCloseable {
+
+	private static final int BUFFER_SIZE = 1 << 16;
+
+	/**
+	 * Receives the rows in order.
+	 */
+	interface RowConsumer {
+
+		void accept(byte[] row, int length) throws IOException;
+	}
+
+	private final long mappingThreshold;
+
+	private List<byte[]> rows = new ArrayList<byte[]>();
+	private long residues;
+	private int size;
+
+	// Only set once the rows have been spilled, each row is stored as (int length, bytes)
+	private Path file;
+	private DataOutputStream out;
+
+
+	/**
+	 * @param mappingThreshold Number of residues from which on the rows are spilled into a temporary file
+	 */
+	RowBuffer(final long mappingThreshold) {
+
+		this.mappingThreshold = mappingThreshold;
+	}
+
+
+	/**
+	 * Appends a row. The row is not copied if it is kept on the heap, so it must not be modified afterwards.
+	 *
+	 * @param row The residues of the row
+	 * @throws IOException If the row cannot be written to the temporary file
+	 */
+	void add(final byte[] row) throws IOException {
+
+		this.residues += row.length;
+		this.size++;
+		if (this.out == null && this.residues < this.mappingThreshold) {
+
+			this.rows.add(row);
+			return;
+		}
+		if (this.out == null) {
+
+			this.file = Files.createTempFile("alignment", ".rows");
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(this.file), BUFFER_SIZE));
+			for (byte[] previous : this.rows) {
+
+				this.write(previous);
+			}
+			this.rows = null;
+		}
+		this.write(row);
+	}
+
+	private void write(final byte[] row) throws IOException {
+
+		this.out.writeInt(row.length);
+		this.out.write(row);
+	}
+
+
+	int size() {
+
+		return this.size;
+	}
+
+	/**
+	 * Whether the rows have exceeded the mapping threshold and are stored in the temporary file.
+	 *
+	 * @return True if the alignment is to be mapped
+	 */
+	boolean isSpilled() {
+
+		return this.out != null;
+	}
+
+	/**
+	 * Returns the rows kept on the heap.
+	 *
+	 * @return The rows
+	 * @throws IllegalStateException If the rows have been spilled
+	 */
+	byte[][] toArray() {
+
+		if (this.isSpilled()) {
+
+			throw new IllegalStateException("Rows have been spilled into " + this.file);
+		}
+		return this.rows.toArray(new byte[0][]);
+	}
+
+	/**
+	 * Passes all rows in order to the consumer. The array passed to the consumer is reused for the next row.
+	 *
+	 * @param consumer Receives the rows
+	 * @throws IOException If the temporary file cannot be read or the consumer fails
+	 */
+	void forEach(final RowConsumer consumer) throws IOException {
+
+		if ( ! this.isSpilled()) {
+
+			for (byte[] row : this.rows) {
+
+				consumer.accept(row, row.length);
+			}
+			return;
+		}
+		this.out.flush();
+		byte[] row = new byte[256];
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(this.file), BUFFER_SIZE))) {
+
+			for (int i = 0; i < this.size; ++i) {
+
+				int length = in.readInt();
+				if (length > row.length) {
+
+					row = new byte[Math.max(length, 2 * row.length)];
+				}
+				in.readFully(row, 0, length);
+				consumer.accept(row, length);
+			}
+		}
+	}
+
+
+	@Override
+	public void close() throws IOException {
+
+		if (this.file != null) {
+
+			try {
+				this.out.close();
+
+			} finally {
+
+				Files.deleteIfExists(this.file);
+			}
+		}
+	}
+}
@@ -1,12 +1,9 @@
 package org.proteinevolution.knime.porttypes.alignment;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataCellDataInput;
@@ -31,9 +28,14 @@ public class SequenceAlignmentCell extends DataCell {
 		@Override
 		public SequenceAlignmentCell deserialize(final DataCellDataInput input) throws IOException {
 
-			// Here we assume that the byte length of the sequenceAlignment object has been written to the output stream
-			int length = input.readInt();
-			byte[] bytes = new byte[length];
+			int first = input.readInt();
+			if (first == SequenceAlignmentCodec.MAGIC) {
+
+				return new SequenceAlignmentCell(SequenceAlignmentCodec.readAfterMagic(input));
+			}
+
+			// Cells of former versions: the byte length of the Java serialized alignment, followed by the bytes
+			byte[] bytes = new byte[first];
 			input.readFully(bytes);
 			ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
 
@@ -53,17 +55,7 @@ public class SequenceAlignmentCell extends DataCell {
 		@Override
 		public void serialize(final SequenceAlignmentCell cell, final DataCellDataOutput output) throws IOException {
 
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			ObjectOutput objectOut = new ObjectOutputStream(bos);
-			objectOut.writeObject(cell.m_content);
-			objectOut.flush();
-
-			byte[] byteArray = bos.toByteArray();
-			bos.close();
-			objectOut.close();
-
-			output.writeInt(byteArray.length);
-			output.write(byteArray);
+			SequenceAlignmentCodec.write(cell.m_content, output);
 		}
 	}
 
@@ -92,17 +84,14 @@ public class SequenceAlignmentCell extends DataCell {
 	protected boolean equalsDataCell(DataCell dc) {
 		
 		SequenceAlignmentCell ic = (SequenceAlignmentCell) dc;
-		
-		// TODO Sequence Alignment does not yet implement 'equals;
-		return  this.m_content.equals(ic.m_content);
-	}
 
-	// TODO Overriding equalContent necessary?
+		// Hash check first, then headers, residues and annotations, see SequenceAlignmentContent#equals
+		return this.m_content.equals(ic.m_content);
+	}
 
 	@Override
 	public int hashCode() {
-	
-		// TODO SequenceAlignment does not yet implement hashCode
+
 		return this.m_content.hashCode();
 	}
 }
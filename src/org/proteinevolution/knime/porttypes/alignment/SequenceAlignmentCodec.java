@@ -0,0 +1,345 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+import org.proteinevolution.models.spec.AlignmentFormat;
+
+/**
+ * Versioned binary format of sequence alignments, used by the cell serializer and the port object.
+ *
+ * <pre>
+ * int     MAGIC (negative, distinguishes the format from the length prefix of Java serialized cells)
+ * byte    version
+ * byte    alignment format (ordinal)
+ * int     number of sequences, int length, int number of annotations
+ * headers    byte mode, int number of bytes, UTF-8 bytes of all headers, varint byte length per sequence
+ * residues   (byte mode, data) per sequence, mode is either RAW (length bytes) or RLE
+ * annotations (int length, bytes) per annotation
+ * </pre>
+ *
+ * Version 1 stored the headers as (int byte length, UTF-8 bytes) per sequence, it can still be read.
+ *
+ * In RLE mode, runs of gaps are written as a <code>0</code> byte followed by the run length as variable length
+ * integer, all other residues are written as they are.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class SequenceAlignmentCodec {
+
+	public static final int MAGIC = 0xA1A10000 | 0x5141;
+	public static final byte VERSION = 2;
+
+	// Version with one length-prefixed string per header
+	private static final byte VERSION_LEGACY_HEADERS = 1;
+
+	static final byte MODE_RAW = 0;
+	static final byte MODE_RLE = 1;
+
+	private static final byte GAP = '-';
+	private static final byte RUN = 0;
+
+	// Prevent instantiation
+	private SequenceAlignmentCodec() {
+
+		throw new AssertionError();
+	}
+
+
+	/**
+	 * Writes the alignment including the magic number.
+	 *
+	 * @param alignment The alignment to write
+	 * @param out Destination
+	 * @throws IOException If writing fails
+	 */
+	public static void write(final ISequenceAlignmentAnnotated alignment, final DataOutput out) throws IOException {
+
+		int nSequences = alignment.getNumberSequences();
+		int length = alignment.getLength();
+		int nAnnotations = alignment.getNumAnnotations();
+
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(alignment.getAlignmentFormat().ordinal());
+		out.writeInt(nSequences);
+		out.writeInt(length);
+		out.writeInt(nAnnotations);
+
+		getHeaders(alignment).write(out);
+
+		byte[] buffer = new byte[length + 16];
+		byte[] copy = new byte[length];
+		for (int i = 0; i < nSequences; ++i) {
+
+			byte[] row = getRow(alignment, i, copy);
+			int encoded = encodeRLE(row, buffer);
+
+			// Only use run length encoding if it saves space
+			if (encoded < row.length) {
+
+				out.writeByte(MODE_RLE);
+				out.writeInt(encoded);
+				out.write(buffer, 0, encoded);
+			} else {
+
+				out.writeByte(MODE_RAW);
+				out.write(row);
+			}
+		}
+		for (int i = 0; i < nAnnotations; ++i) {
+
+			byte[] annotation = getAnnotation(alignment, i);
+			out.writeInt(annotation.length);
+			out.write(annotation);
+		}
+	}
+
+
+	/**
+	 * Reads an alignment whose magic number has already been consumed.
+	 *
+	 * @param in Source
+	 * @return The alignment
+	 * @throws IOException If reading fails or the data is not in the expected format
+	 */
+	public static SequenceAlignmentContent readAfterMagic(final DataInput in) throws IOException {
+
+		return (SequenceAlignmentContent) readAfterMagic(in, Long.MAX_VALUE);
+	}
+
+
+	/**
+	 * Reads an alignment whose magic number has already been consumed. Alignments with more residues than
+	 * the threshold are not loaded into the heap, but transcoded into a temporary file which is then mapped.
+	 * The file is deleted once the alignment is unreachable.
+	 *
+	 * @param in Source
+	 * @param mappingThreshold Number of residues from which on the alignment is mapped
+	 * @return The alignment, either a {@link SequenceAlignmentContent} or a {@link MappedSequenceAlignment}
+	 * @throws IOException If reading fails or the data is not in the expected format
+	 */
+	public static ISequenceAlignmentAnnotated readAfterMagic(final DataInput in, final long mappingThreshold) throws IOException {
+
+		byte version = in.readByte();
+		if (version != VERSION && version != VERSION_LEGACY_HEADERS) {
+
+			throw new IOException("Unsupported version of the alignment format: " + version);
+		}
+		AlignmentFormat format = AlignmentFormat.values()[in.readByte()];
+		int nSequences = in.readInt();
+		int length = in.readInt();
+		int nAnnotations = in.readInt();
+
+		HeaderStore headers = version == VERSION_LEGACY_HEADERS
+				? HeaderStore.readLegacy(in, nSequences)
+				: HeaderStore.read(in, nSequences);
+
+		if ((long) nSequences * length >= mappingThreshold) {
+
+			return MappedSequenceAlignment.transcode(in, headers, format, length, nAnnotations);
+		}
+
+		byte[][] residues = new byte[nSequences][];
+		byte[] buffer = new byte[length + 16];
+		for (int i = 0; i < nSequences; ++i) {
+
+			residues[i] = new byte[length];
+			buffer = readRow(in, residues[i], buffer);
+		}
+
+		List<byte[]> annotations = new ArrayList<byte[]>(nAnnotations);
+		for (int i = 0; i < nAnnotations; ++i) {
+
+			byte[] annotation = new byte[in.readInt()];
+			in.readFully(annotation);
+			annotations.add(annotation);
+		}
+		return new SequenceAlignmentContent(headers, residues, annotations, format);
+	}
+
+
+	/**
+	 * Reads an alignment including the magic number.
+	 *
+	 * @param in Source
+	 * @return The alignment
+	 * @throws IOException If reading fails or the data is not in the expected format
+	 */
+	public static SequenceAlignmentContent read(final DataInput in) throws IOException {
+
+		if (in.readInt() != MAGIC) {
+
+			throw new IOException("Data is not a binary sequence alignment!");
+		}
+		return readAfterMagic(in);
+	}
+
+	/**
+	 * Reads an alignment including the magic number, see {@link #readAfterMagic(DataInput, long)}.
+	 *
+	 * @param in Source
+	 * @param mappingThreshold Number of residues from which on the alignment is mapped
+	 * @return The alignment
+	 * @throws IOException If reading fails or the data is not in the expected format
+	 */
+	public static ISequenceAlignmentAnnotated read(final DataInput in, final long mappingThreshold) throws IOException {
+
+		if (in.readInt() != MAGIC) {
+
+			throw new IOException("Data is not a binary sequence alignment!");
+		}
+		return readAfterMagic(in, mappingThreshold);
+	}
+
+
+	/*
+	 * Reads the residues of one row into the provided array. Returns the buffer for encoded rows, which
+	 * is replaced if it is too small.
+	 */
+	static byte[] readRow(final DataInput in, final byte[] row, final byte[] buffer) throws IOException {
+
+		byte mode = in.readByte();
+		if (mode == MODE_RAW) {
+
+			in.readFully(row);
+			return buffer;
+		}
+		if (mode != MODE_RLE) {
+
+			throw new IOException("Unknown encoding of alignment row: " + mode);
+		}
+		int encoded = in.readInt();
+		byte[] result = encoded > buffer.length ? new byte[encoded] : buffer;
+		in.readFully(result, 0, encoded);
+		decodeRLE(result, encoded, row);
+		return result;
+	}
+
+	// Avoids copying for alignments which hold their residues on the heap
+	private static byte[] getRow(final ISequenceAlignmentAnnotated alignment, final int index, final byte[] copy) {
+
+		if (alignment instanceof SequenceAlignmentContent) {
+
+			return ((SequenceAlignmentContent) alignment).getResidues(index);
+		}
+		if (alignment instanceof MappedSequenceAlignment) {
+
+			((MappedSequenceAlignment) alignment).getRow(index).get(copy);
+			return copy;
+		}
+		for (int j = 0; j < copy.length; ++j) {
+
+			copy[j] = alignment.getResidueAt(index, j);
+		}
+		return copy;
+	}
+
+	private static HeaderStore getHeaders(final ISequenceAlignmentAnnotated alignment) {
+
+		if (alignment instanceof SequenceAlignmentContent) {
+
+			return ((SequenceAlignmentContent) alignment).getHeaders();
+		}
+		HeaderStore.Builder builder = new HeaderStore.Builder(HeaderStore.Mode.FULL, null);
+		for (int i = 0; i < alignment.getNumberSequences(); ++i) {
+
+			builder.add(alignment.getHeaderAt(i));
+		}
+		return builder.build();
+	}
+
+	private static byte[] getAnnotation(final ISequenceAlignmentAnnotated alignment, final int index) {
+
+		if (alignment instanceof SequenceAlignmentContent) {
+
+			return ((SequenceAlignmentContent) alignment).getAnnotationBytes(index);
+		}
+		char[] annotation = alignment.getAnnotationAt(index);
+		byte[] result = new byte[annotation.length];
+		for (int i = 0; i < annotation.length; ++i) {
+
+			result[i] = (byte) annotation[i];
+		}
+		return result;
+	}
+
+
+	// Returns the number of bytes written to target, target needs at least row.length + 6 bytes
+	private static int encodeRLE(final byte[] row, final byte[] target) {
+
+		int pos = 0;
+		int i = 0;
+		while (i < row.length) {
+
+			// Give up as soon as the encoding is not shorter than the row
+			if (pos >= row.length) {
+
+				return Integer.MAX_VALUE;
+			}
+			if (row[i] != GAP) {
+
+				target[pos++] = row[i++];
+				continue;
+			}
+			int run = 0;
+			while (i < row.length && row[i] == GAP) {
+
+				run++;
+				i++;
+			}
+			target[pos++] = RUN;
+			while ((run & ~0x7F) != 0) {
+
+				target[pos++] = (byte) ((run & 0x7F) | 0x80);
+				run >>>= 7;
+			}
+			target[pos++] = (byte) run;
+		}
+		return pos;
+	}
+
+	private static void decodeRLE(final byte[] source, final int length, final byte[] row) throws IOException {
+
+		int pos = 0;
+		int i = 0;
+		while (i < length) {
+
+			byte b = source[i++];
+			if (b != RUN) {
+
+				if (pos == row.length) {
+
+					throw new IOException("Alignment row exceeds the length of the alignment!");
+				}
+				row[pos++] = b;
+				continue;
+			}
+			int run = 0;
+			int shift = 0;
+			do {
+				b = source[i++];
+				run |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+
+			if (pos + run > row.length) {
+
+				throw new IOException("Run of gaps exceeds the length of the alignment!");
+			}
+			for (int j = 0; j < run; ++j) {
+
+				row[pos++] = GAP;
+			}
+		}
+		if (pos != row.length) {
+
+			throw new IOException("Alignment row has unexpected length " + pos + " instead of " + row.length);
+		}
+	}
+}
@@ -1,30 +1,36 @@
 package org.proteinevolution.knime.porttypes.alignment;
 
-import java.io.BufferedReader;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
 import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.knime.core.data.DataType;
-import org.knime.core.util.FileUtil;
+import org.proteinevolution.models.alignment.ColumnStatistics;
 import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 import org.proteinevolution.models.interfaces.Writeable;
 import org.proteinevolution.models.spec.AlignmentFormat;
+import org.proteinevolution.models.util.XXHash64;
 
 
 /**
  * Objects of this class represent sequence alignments. The class needs to be instantiated with
  * provided factory methods. The class is also used to store a single sequence (which is a special case of an alignment).
  * 
+ * Residues are stored with one byte per symbol. Alignments are persisted with the {@link SequenceAlignmentCodec},
+ * Java serialization is only supported to read alignments which have been saved by former versions.
+ * 
  * For error prevention, objects of this instance are immutable.
  * 
  * @author lzimmermann
@@ -35,15 +41,31 @@ public final class SequenceAlignmentContent implements Serializable, Writeable,
 	private static final long serialVersionUID = -4773393149609106987L;
 	public static final DataType TYPE = DataType.getType(SequenceAlignmentCell.class);
 
-	private final String[] headers;
-	private final char[][] sequences;
+	// Serialized form of former versions, which stored the residues as char[][]
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("headers", String[].class),
+			new ObjectStreamField("sequences", char[][].class),
+			new ObjectStreamField("annotations", List.class),
+			new ObjectStreamField("alignmentformat", AlignmentFormat.class)
+	};
+
+	// Headers are stored in one byte array, see HeaderStore
+	private final HeaderStore headers;
+	private final byte[][] residues;
 
 	// Annotations for the alignment (such as secondary structure)
-	private final List<char[]> annotations;
+	private final List<byte[]> annotations;
 
 	// Specification of the alignment format
 	private final AlignmentFormat alignmentformat;
 
+	// Alignment read with Java serialization, see readResolve
+	private transient SequenceAlignmentContent deserialized;
+
+	// Computed on first request
+	private transient volatile ColumnStatistics columnStatistics;
+	private transient volatile Long contentHash;
+
 
 	/**
 	 * Adds an annotation to this alignment
@@ -52,49 +74,46 @@ public final class SequenceAlignmentContent implements Serializable, Writeable,
 	 */
 	public void addAnnotation(final char[] annotation) {
 
-		this.annotations.add(annotation);
+		this.annotations.add(toBytes(annotation));
+		this.contentHash = null;
 	}
 
-	public SequenceAlignmentContent(final InputStream in) throws IOException  {
-
-		// Warning: in is not allowed to be closed here
-		ByteArrayOutputStream out = new ByteArrayOutputStream();
-		FileUtil.copy(in, out);
-		out.flush();
-		out.close();
-		ByteArrayInputStream bis = new ByteArrayInputStream(out.toByteArray());
-		SequenceAlignmentContent sequenceAlignment = null;
-
-		try(ObjectInput ois = new ObjectInputStream(bis)) {
-
-			sequenceAlignment = (SequenceAlignmentContent) ois.readObject();
+	SequenceAlignmentContent(
+			final String[] headers,
+			final byte[][] residues,
+			final List<byte[]> annotations,
+			final AlignmentFormat alignmentformat) {
 
-			// Rethrow as IO Exception
-		} catch (ClassNotFoundException e) {
+		this(HeaderStore.of(headers), residues, annotations, alignmentformat);
+	}
 
-			throw new IOException("Class: SequenceAlignment could not be found");
-		}
+	SequenceAlignmentContent(
+			final HeaderStore headers,
+			final byte[][] residues,
+			final List<byte[]> annotations,
+			final AlignmentFormat alignmentformat) {
 
-		this.headers = sequenceAlignment.headers;
-		this.sequences = sequenceAlignment.sequences;
-		this.alignmentformat = sequenceAlignment.alignmentformat;
-		this.annotations = sequenceAlignment.annotations;
+		this.headers = headers;
+		this.residues = residues;
+		this.annotations = annotations;
+		this.alignmentformat = alignmentformat;
 	}
 
-	private SequenceAlignmentContent(final String[] headers, final char[][] seqs) {
+	private SequenceAlignmentContent(final HeaderStore headers, final byte[][] residues) {
 
-		this.headers = headers;
-		this.sequences = seqs;
-		this.annotations = new ArrayList<char[]>();
-		this.alignmentformat = headers.length == 1 ? AlignmentFormat.SingleSequence : AlignmentFormat.FASTA;
+		this(headers,
+			residues,
+			new ArrayList<byte[]>(),
+			headers.size() == 1 ? AlignmentFormat.SingleSequence : AlignmentFormat.FASTA);
 	}
 
 	@Override
 	public int getLength() {
 
-		return this.sequences[0].length;
+		return this.residues[0].length;
 	}
 
+	@Override
 	public AlignmentFormat getAlignmentFormat() {
 
 		return this.alignmentformat;
@@ -104,137 +123,296 @@ public final class SequenceAlignmentContent implements Serializable, Writeable,
 	public void write(final Writer out) throws IOException {
 
 		String linesep = System.lineSeparator();
+		char[] line = new char[80];
 
-		for (int i = 0; i <  this.headers.length; ++i) {
+		for (int i = 0; i <  this.residues.length; ++i) {
 
 			out.write(">");
-			out.write(this.headers[i]);
+			out.write(this.headers.get(i));
 			out.write(linesep);
-			char[] seq = this.sequences[i];
+			byte[] seq = this.residues[i];
 
-			// Write the reference sequence in 80 character chunks
-			int end = 80;
-			while (end <= seq.length) {
+			// Write the sequence in 80 character chunks
+			for (int start = 0; start < seq.length; start += 80) {
 
-				// Write characters end-80 to end exclusively
-				for (int j = end-80; j < end; ++j) {
+				int end = Math.min(seq.length, start + 80);
+				for (int j = start; j < end; ++j) {
 
-					out.write(seq[j]);
+					line[j - start] = (char) (seq[j] & 0xFF);
 				}
-				end += 80;
+				out.write(line, 0, end - start);
 				out.write(linesep);
 			}
-			for (int j = end-80; j < seq.length; ++j ) {
+			if (seq.length == 0) {
 
-				out.write(seq[j]);
+				out.write(linesep);
 			}
-			out.write(linesep);
 		}
 		out.flush();
 	}
 
 
-	public static SequenceAlignmentContent fromFASTA(final String filePath) throws FileNotFoundException, IOException {
+	/**
+	 * Copies an alignment into the heap.
+	 *
+	 * @param alignment The alignment to copy
+	 * @return The copy
+	 */
+	public static SequenceAlignmentContent copyOf(final ISequenceAlignmentAnnotated alignment) {
 
-		boolean notFirst = false;
+		int[] rows = new int[alignment.getNumberSequences()];
+		for (int i = 0; i < rows.length; ++i) {
 
-		List<String> headers = new ArrayList<String>();
-		List<String> sequences = new ArrayList<String>();
+			rows[i] = i;
+		}
+		return copyOf(alignment, rows);
+	}
 
-		StringBuilder currentSequence = new StringBuilder();
+	/**
+	 * Copies selected sequences of an alignment into the heap. The annotations are kept.
+	 *
+	 * @param alignment The alignment to copy
+	 * @param rows Indices of the sequences to copy, in the order of the copy
+	 * @return The copy
+	 */
+	public static SequenceAlignmentContent copyOf(final ISequenceAlignmentAnnotated alignment, final int[] rows) {
 
-		try(BufferedReader bufferedReader = new BufferedReader(new FileReader(filePath))) {
+		if (rows.length == 0) {
 
-			String line;
-			while ( (line = bufferedReader.readLine()) != null) {
+			throw new NotAnAlignmentException("Alignment must contain at least one sequence!");
+		}
+		HeaderStore headers;
+		if (alignment instanceof SequenceAlignmentContent) {
 
-				line = line.trim();
+			headers = ((SequenceAlignmentContent) alignment).headers.select(rows);
+		} else {
 
-				if (line.isEmpty()) {
+			HeaderStore.Builder builder = new HeaderStore.Builder(HeaderStore.Mode.FULL, null);
+			for (int row : rows) {
 
-					continue;
-				}
+				builder.add(alignment.getHeaderAt(row));
+			}
+			headers = builder.build();
+		}
+		byte[][] residues = new byte[rows.length][];
 
-				if (line.startsWith(">")) {
+		for (int i = 0; i < rows.length; ++i) {
 
-					// Store previous if present
-					if (notFirst) {
-						sequences.add(currentSequence.toString());
-						// If the size of the currentSequence does not match the first sequence, this is not an alignment
-						if (currentSequence.length() != sequences.get(0).length()) {
+			if (alignment instanceof SequenceAlignmentContent) {
 
-							throw new NotAnAlignmentException("Sequences in FASTA File do not have equal length!" + currentSequence.length()  + " vs " +  sequences.get(0).length());
-						}
-						currentSequence.setLength(0);
-					}
-					headers.add(line.substring(1));
-					notFirst = true;
+				residues[i] = ((SequenceAlignmentContent) alignment).residues[rows[i]].clone();
+			} else {
+
+				residues[i] = new byte[alignment.getLength()];
+				for (int j = 0; j < residues[i].length; ++j) {
 
-				} else {
-					currentSequence.append(line);
+					residues[i][j] = alignment.getResidueAt(rows[i], j);
 				}
 			}
 		}
-		// End of file, add remaining sequence if present
-		sequences.add(currentSequence.toString());
+		List<byte[]> annotations = new ArrayList<byte[]>(alignment.getNumAnnotations());
+		for (int i = 0; i < alignment.getNumAnnotations(); ++i) {
+
+			annotations.add(toBytes(alignment.getAnnotationAt(i)));
+		}
+		AlignmentFormat format = alignment.getAlignmentFormat();
+		if (rows.length == 1) {
 
-		int headersSize = headers.size();
+			format = AlignmentFormat.SingleSequence;
 
-		// Check some properties of the resulting lists
-		if (headersSize != sequences.size()) {
+		} else if (format == AlignmentFormat.SingleSequence) {
 
-			throw new IOException("Error while parsing FASTA file. Number of headers: " + headersSize + ". Number of sequences: " + sequences.size());
+			format = AlignmentFormat.FASTA;
 		}
-		if (headersSize == 0) {
+		return new SequenceAlignmentContent(headers, residues, annotations, format);
+	}
 
-			throw new NotAnAlignmentException("Input file did not contain any sequences!");
-		}
 
-		String[] type = new String[0];
+	public static SequenceAlignmentContent fromFASTA(final String filePath) throws FileNotFoundException, IOException {
+
+		return fromFASTA(Paths.get(filePath), HeaderStore.Mode.FULL);
+	}
+
+	/**
+	 * Reads an aligned FASTA file.
+	 *
+	 * @param file The file
+	 * @param mode Which part of the headers is kept in memory
+	 * @return The alignment
+	 * @throws IOException If the file cannot be read
+	 */
+	public static SequenceAlignmentContent fromFASTA(final Path file, final HeaderStore.Mode mode) throws IOException {
+
+		return (SequenceAlignmentContent) fromFASTA(file, mode, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Reads an aligned FASTA file. Alignments with more residues than the threshold are not kept on the heap,
+	 * but written into a temporary file which is then mapped, see {@link MappedSequenceAlignment}.
+	 *
+	 * @param file The file
+	 * @param mode Which part of the headers is kept in memory
+	 * @param mappingThreshold Number of residues from which on the alignment is mapped
+	 * @return The alignment, either a {@link SequenceAlignmentContent} or a {@link MappedSequenceAlignment}
+	 * @throws IOException If the file cannot be read
+	 */
+	public static ISequenceAlignmentAnnotated fromFASTA(
+			final Path file,
+			final HeaderStore.Mode mode,
+			final long mappingThreshold) throws IOException {
+
+		HeaderStore.Builder headers = new HeaderStore.Builder(mode, file);
+
+		try (RowBuffer sequences = new RowBuffer(mappingThreshold)) {
+
+			ByteArrayOutputStream currentSequence = new ByteArrayOutputStream();
+			int length = -1;
 
-		// Write the strings to the char array
-		// TODO Simplify
-		char[][] content = new char[sequences.size()][sequences.get(0).length()];
+			try (LineReader lineReader = new LineReader(Files.newInputStream(file))) {
 
-		for (int i = 0; i < sequences.size(); i++) {
+				String line;
+				while ( (line = lineReader.readLine()) != null) {
 
-			char[] symbols = sequences.get(i).toCharArray();
-			for (int j = 0; j < symbols.length; ++j) {
+					// Position of the header behind '>', the line might be indented
+					long position = lineReader.getPosition() + line.indexOf('>') + 1;
+					line = line.trim();
 
-				content[i][j] = symbols[j];
+					if (line.isEmpty()) {
+
+						continue;
+					}
+
+					if (line.startsWith(">")) {
+
+						// Store previous if present
+						if (headers.size() > 0) {
+
+							length = addSequence(sequences, currentSequence, length);
+						}
+						byte[] header = line.substring(1).getBytes(StandardCharsets.UTF_8);
+						headers.add(header, 0, header.length, position);
+
+					} else {
+
+						for (int i = 0; i < line.length(); ++i) {
+
+							currentSequence.write(line.charAt(i));
+						}
+					}
+				}
 			}
-		}
+			// End of file, add remaining sequence if present
+			length = addSequence(sequences, currentSequence, length);
+
+			int headersSize = headers.size();
+
+			// Check some properties of the resulting lists
+			if (headersSize != sequences.size()) {
+
+				throw new IOException("Error while parsing FASTA file. Number of headers: " + headersSize + ". Number of sequences: " + sequences.size());
+			}
+			if (headersSize == 0) {
+
+				throw new NotAnAlignmentException("Input file did not contain any sequences!");
+			}
+			AlignmentFormat format = headersSize == 1 ? AlignmentFormat.SingleSequence : AlignmentFormat.FASTA;
+
+			// Check if single sequence contains gaps (not allowed)
+			if (headersSize == 1) {
+
+				sequences.forEach((sequence, n) -> {
+
+					for (int i = 0; i < n; ++i) {
+
+						if (sequence[i] == '-') {
 
-		// Check if single sequence contains gaps (not allowed)
-		if (headersSize == 1) {			
-			for (char c : sequences.get(0).toCharArray()) {
+							throw new NotAnAlignmentException("Single sequence in alignment, but gap encountered");
+						}
+					}
+				});
+			}
+			if (sequences.isSpilled()) {
 
-				if (c == '-') {
+				// The mapped file holds the full headers, such that lazy headers are only read once
+				try (HeaderStore store = headers.build()) {
 
-					throw new NotAnAlignmentException("Single sequence in alignment, but gap encountered");
+					return MappedSequenceAlignment.create(store, length, new ArrayList<byte[]>(), format, sequences::forEach);
 				}
 			}
-		}	
-		return new SequenceAlignmentContent(headers.toArray(type), content);
+			return new SequenceAlignmentContent(headers.build(), sequences.toArray());
+		}
+	}
+
+	// Returns the length of the alignment
+	private static int addSequence(final RowBuffer sequences, final ByteArrayOutputStream currentSequence, final int length) throws IOException {
+
+		byte[] sequence = currentSequence.toByteArray();
+		currentSequence.reset();
+
+		// If the size of the currentSequence does not match the first sequence, this is not an alignment
+		if (length != -1 && sequence.length != length) {
+
+			throw new NotAnAlignmentException("Sequences in FASTA File do not have equal length!" + sequence.length  + " vs " +  length);
+		}
+		sequences.add(sequence);
+		return sequence.length;
 	}
 
 
 	@Override
 	public char[] getSequenceAt(final int index)  {
 
-		return this.sequences[index];
+		return toChars(this.residues[index]);
+	}
+
+	@Override
+	public String getHeaderAt(final int index) {
+
+		return this.headers.get(index);
+	}
+
+	/**
+	 * Returns the stored headers of this alignment.
+	 *
+	 * @return The headers
+	 */
+	public HeaderStore getHeaders() {
+
+		return this.headers;
+	}
+
+	@Override
+	public byte getResidueAt(final int index, final int column) {
+
+		return this.residues[index][column];
+	}
+
+	/**
+	 * Returns the residues of one sequence. The returned array must not be modified.
+	 *
+	 * @param index Index of the sequence
+	 * @return The residues of the sequence, one byte per residue
+	 */
+	public byte[] getResidues(final int index) {
+
+		return this.residues[index];
 	}
 
 	@Override
 	public int getNumberSequences() {
 
-		return this.sequences.length;
+		return this.residues.length;
 	}
 
 
 	@Override
 	public char[] getAnnotationAt(final int index) {
 
+		return toChars(this.annotations.get(index));
+	}
+
+	byte[] getAnnotationBytes(final int index) {
+
 		return this.annotations.get(index);
 	}
 
@@ -243,4 +421,197 @@ public final class SequenceAlignmentContent implements Serializable, Writeable,
 
 		return this.annotations.size();
 	}
+
+
+	/**
+	 * Returns the per-column statistics of this alignment. The statistics are computed on the first call
+	 * and cached afterwards.
+	 *
+	 * @return Statistics of all columns
+	 */
+	public ColumnStatistics getColumnStatistics() {
+
+		ColumnStatistics result = this.columnStatistics;
+		if (result == null) {
+
+			synchronized (this) {
+
+				result = this.columnStatistics;
+				if (result == null) {
+
+					result = ColumnStatistics.compute(this);
+					this.columnStatistics = result;
+				}
+			}
+		}
+		return result;
+	}
+
+
+	/**
+	 * Returns the xxHash64 of the format, headers, residues and annotations, which identifies the alignment.
+	 * The hash is computed on the first call and cached afterwards.
+	 *
+	 * @return The content hash
+	 * @throws java.io.UncheckedIOException If the headers of a lazy header store cannot be read
+	 */
+	public long getContentHash() {
+
+		Long result = this.contentHash;
+		if (result == null) {
+
+			XXHash64 hash = new XXHash64()
+					.updateByte(this.alignmentformat.ordinal())
+					.updateInt(this.residues.length)
+					.updateInt(this.getLength());
+			for (int i = 0; i < this.residues.length; ++i) {
+
+				hash.updateString(this.headers.get(i)).update(this.residues[i]);
+			}
+			hash.updateInt(this.annotations.size());
+			for (byte[] annotation : this.annotations) {
+
+				hash.updateInt(annotation.length).update(annotation);
+			}
+			result = hash.getValue();
+			this.contentHash = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Alignments are equal if their formats, headers, residues and annotations are equal. The content hashes are
+	 * compared first, the contents are only compared if the hashes are equal. Lazy headers are read from their file
+	 * to compute the hash unless it is cached, and again for the comparison of the headers.
+	 *
+	 * @throws java.io.UncheckedIOException If the headers of a lazy header store cannot be read
+	 */
+	@Override
+	public boolean equals(final Object o) {
+
+		if (o == this) {
+
+			return true;
+		}
+		if ( ! (o instanceof SequenceAlignmentContent)) {
+
+			return false;
+		}
+		SequenceAlignmentContent other = (SequenceAlignmentContent) o;
+		if (other.residues.length != this.residues.length
+				|| other.getLength() != this.getLength()
+				|| other.alignmentformat != this.alignmentformat
+				|| other.annotations.size() != this.annotations.size()
+				|| other.getContentHash() != this.getContentHash()) {
+
+			return false;
+		}
+		for (int i = 0; i < this.residues.length; ++i) {
+
+			if ( ! Arrays.equals(this.residues[i], other.residues[i])
+					|| ! this.headers.get(i).equals(other.headers.get(i))) {
+
+				return false;
+			}
+		}
+		for (int i = 0; i < this.annotations.size(); ++i) {
+
+			if ( ! Arrays.equals(this.annotations.get(i), other.annotations.get(i))) {
+
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Derived from the content hash, see {@link #equals(Object)} for the I/O of lazy headers.
+	 */
+	@Override
+	public int hashCode() {
+
+		return Long.hashCode(this.getContentHash());
+	}
+
+
+	private static char[] toChars(final byte[] bytes) {
+
+		char[] result = new char[bytes.length];
+		for (int i = 0; i < bytes.length; ++i) {
+
+			result[i] = (char) (bytes[i] & 0xFF);
+		}
+		return result;
+	}
+
+	private static byte[] toBytes(final char[] chars) {
+
+		byte[] result = new byte[chars.length];
+		for (int i = 0; i < chars.length; ++i) {
+
+			result[i] = (byte) chars[i];
+		}
+		return result;
+	}
+
+
+	/*
+	 * Java serialization, uses the layout of former versions
+	 */
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+
+		char[][] sequences = new char[this.residues.length][];
+		for (int i = 0; i < sequences.length; ++i) {
+
+			sequences[i] = toChars(this.residues[i]);
+		}
+		List<char[]> annotations = new ArrayList<char[]>(this.annotations.size());
+		for (byte[] annotation : this.annotations) {
+
+			annotations.add(toChars(annotation));
+		}
+		ObjectOutputStream.PutField fields = out.putFields();
+		String[] headers = new String[this.headers.size()];
+		for (int i = 0; i < headers.length; ++i) {
+
+			headers[i] = this.headers.get(i);
+		}
+		fields.put("headers", headers);
+		fields.put("sequences", sequences);
+		fields.put("annotations", annotations);
+		fields.put("alignmentformat", this.alignmentformat);
+		out.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+		ObjectInputStream.GetField fields = in.readFields();
+		char[][] sequences = (char[][]) fields.get("sequences", null);
+		List<char[]> annotations = (List<char[]>) fields.get("annotations", null);
+
+		byte[][] residues = new byte[sequences.length][];
+		for (int i = 0; i < residues.length; ++i) {
+
+			residues[i] = toBytes(sequences[i]);
+		}
+		List<byte[]> annotationBytes = new ArrayList<byte[]>();
+		if (annotations != null) {
+
+			for (char[] annotation : annotations) {
+
+				annotationBytes.add(toBytes(annotation));
+			}
+		}
+		this.deserialized = new SequenceAlignmentContent(
+				(String[]) fields.get("headers", null),
+				residues,
+				annotationBytes,
+				(AlignmentFormat) fields.get("alignmentformat", null));
+	}
+
+	private Object readResolve() {
+
+		return this.deserialized;
+	}
 }
@@ -1,11 +1,12 @@
 package org.proteinevolution.knime.porttypes.alignment;
 
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
-import java.lang.reflect.Constructor;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
 import java.util.zip.ZipEntry;
 
 import javax.swing.JComponent;
@@ -21,6 +22,8 @@ import org.knime.core.node.port.PortType;
 import org.knime.core.node.port.PortTypeRegistry;
 import org.knime.core.node.port.image.ImagePortObjectSpec;
 import org.proteinevolution.knime.porttypes.alignment.view.JAlignmentView;
+import org.proteinevolution.models.alignment.ColumnStatistics;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 
 public class SequenceAlignmentPortObject extends AbstractPortObject {
 
@@ -29,7 +32,14 @@ public class SequenceAlignmentPortObject extends AbstractPortObject {
     /** Convenience accessor for the port type. */
     public static final PortType TYPE = PortTypeRegistry.getInstance().getPortType(SequenceAlignmentPortObject.class);
 	
-    private SequenceAlignmentContent m_content;
+    // Name of the zip entry holding the binary alignment
+    private static final String ZIP_ENTRY = "alignment.bin";
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    /** Alignments with at least this many residues are memory-mapped by readers and on load instead of being held on the heap. */
+    public static final long MAPPING_THRESHOLD = 1L << 28;
+
+    private ISequenceAlignmentAnnotated m_content;
     private SequenceAlignmentPortObjectSpec m_spec;
     
     /** Empty framework constructor. <b>Do not use!</b> */
@@ -46,12 +56,12 @@ public class SequenceAlignmentPortObject extends AbstractPortObject {
      * compatible to all DataValue of the spec's
      * {@link ImagePortObjectSpec#getDataType()} return value.
      *
-     * @param content The SequenceAlignment Object
+     * @param content The SequenceAlignment Object, either on the heap or memory-mapped
      * @param spec The spec.
      * @throws NullPointerException If either argument is null.
      */
     public SequenceAlignmentPortObject(
-    		final SequenceAlignmentContent content,
+    		final ISequenceAlignmentAnnotated content,
             final SequenceAlignmentPortObjectSpec spec) {
     	
         if (spec == null || content == null) {
@@ -62,11 +72,50 @@ public class SequenceAlignmentPortObject extends AbstractPortObject {
     }
     
     
+    /**
+     * Returns the alignment as {@link SequenceAlignmentContent}. Memory-mapped alignments and views are copied into the heap,
+     * use {@link #getSequenceAlignment()} if the alignment is only read and {@link org.proteinevolution.models.alignment.AlignmentView}
+     * to derive new alignments from it.
+     *
+     * @return The alignment on the heap
+     */
     public SequenceAlignmentContent getAlignment() {
-        	
+
+    	if (this.m_content instanceof SequenceAlignmentContent) {
+
+    		return (SequenceAlignmentContent) this.m_content;
+    	}
+    	return SequenceAlignmentContent.copyOf(this.m_content);
+    }
+
+    /**
+     * Returns the alignment without copying, which might be backed by a memory-mapped file.
+     *
+     * @return The alignment
+     */
+    public ISequenceAlignmentAnnotated getSequenceAlignment() {
+
     	return this.m_content;
     }
 
+    /**
+     * Returns the per-column statistics of the alignment, which are cached by the alignment.
+     *
+     * @return Statistics of all columns
+     */
+    public ColumnStatistics getColumnStatistics() {
+
+    	if (this.m_content instanceof MappedSequenceAlignment) {
+
+    		return ((MappedSequenceAlignment) this.m_content).getColumnStatistics();
+    	}
+    	if (this.m_content instanceof SequenceAlignmentContent) {
+
+    		return ((SequenceAlignmentContent) this.m_content).getColumnStatistics();
+    	}
+    	return ColumnStatistics.compute(this.m_content);
+    }
+
 
 	@Override
 	public String getSummary() {
@@ -96,16 +145,13 @@ public class SequenceAlignmentPortObject extends AbstractPortObject {
     		final PortObjectZipOutputStream out,
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
-           
-        out.putNextEntry(new ZipEntry(m_content.getClass().getName()));  
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput objectOut = new ObjectOutputStream(bos);
-        objectOut.writeObject(this.m_content);
-        objectOut.flush();
-        out.write(bos.toByteArray());
-        bos.close();
+
+        out.putNextEntry(new ZipEntry(ZIP_ENTRY));
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        SequenceAlignmentCodec.write(this.m_content, dataOut);
+        dataOut.flush();
+        out.closeEntry();
         out.close();
-        objectOut.close();
     }
 
 	@Override
@@ -115,32 +161,23 @@ public class SequenceAlignmentPortObject extends AbstractPortObject {
 			final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
 
 	    ZipEntry nextEntry = in.getNextEntry();
-	    String contentClName = nextEntry.getName();
-
-	    Class<SequenceAlignmentContent> contentCl;
-	    try {
-	        contentCl = (Class<SequenceAlignmentContent>) Class.forName(contentClName);
-	        
-	    } catch (ClassNotFoundException ex) {
-	        throw new IOException("Error converting to SequenceAlignment Class", ex);
-	    }
-	    
-	    Constructor<SequenceAlignmentContent> cons;
-	    try {
-	        cons = contentCl.getConstructor(InputStream.class);
-	    } catch (Exception ex) {
-	        throw new IOException("SequenceAlignment class '" + contentClName + "' "
-	                + "is missing a required constructor, see javadoc", ex);
-	    }
 
-	    try {
-	        this.m_content = cons.newInstance(in);
-	    } catch (Exception ex) {
-	        throw new IOException("Could not create an instance of '"
-	                + contentClName + "'", ex);
+	    // Port objects of former versions are Java serialized and named after the content class
+	    if (nextEntry.getName().equals(SequenceAlignmentContent.class.getName())) {
+
+	    	try(ObjectInput ois = new ObjectInputStream(new BufferedInputStream(in, BUFFER_SIZE))) {
+
+	    		this.m_content = (SequenceAlignmentContent) ois.readObject();
+
+	    	} catch (ClassNotFoundException e) {
+
+	    		throw new IOException("Class: SequenceAlignment could not be found", e);
+	    	}
+	    } else {
+
+	    	this.m_content = SequenceAlignmentCodec.read(new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE)), MAPPING_THRESHOLD);
+	    	in.close();
 	    }
-	    in.close();
 	    this.m_spec = (SequenceAlignmentPortObjectSpec) spec;
 	}
 }
-
@@ -0,0 +1,338 @@
+package org.proteinevolution.knime.porttypes.alignment;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+import org.proteinevolution.models.alignment.AlignmentView;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+import org.proteinevolution.models.spec.AlignmentFormat;
+
+/**
+ * Writes sequence alignments to files in FASTA, A3M, A2M, Stockholm or Clustal format, optionally gzip compressed.
+ *
+ * Whole rows are copied into a reusable buffer which is written to a {@link FileChannel} once it is full,
+ * such that writing is bound by the disk rather than by the number of calls. Annotations are not written.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class SequenceAlignmentWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final int FASTA_LINE = 80;
+	private static final int CLUSTAL_LINE = 60;
+	private static final byte NEWLINE = '\n';
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+
+
+	/**
+	 * Opens the file for writing, an existing file is overwritten.
+	 *
+	 * @param file Destination
+	 * @param gzip Whether the output is gzip compressed
+	 * @throws IOException If the file cannot be opened
+	 */
+	public SequenceAlignmentWriter(final Path file, final boolean gzip) throws IOException {
+
+		if (gzip) {
+
+			this.channel = Channels.newChannel(new GZIPOutputStream(Files.newOutputStream(file), BUFFER_SIZE));
+		} else {
+
+			this.channel = FileChannel.open(
+					file,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+		}
+	}
+
+
+	/**
+	 * Convenience method which writes a single alignment to a file.
+	 *
+	 * @param alignment The alignment
+	 * @param format Output format
+	 * @param file Destination, an existing file is overwritten
+	 * @param gzip Whether the output is gzip compressed
+	 * @throws IOException If writing fails
+	 */
+	public static void write(
+			final ISequenceAlignmentAnnotated alignment,
+			final AlignmentFormat format,
+			final Path file,
+			final boolean gzip) throws IOException {
+
+		try (SequenceAlignmentWriter writer = new SequenceAlignmentWriter(file, gzip)) {
+
+			writer.write(alignment, format);
+		}
+	}
+
+
+	/**
+	 * Writes the alignment in the requested format.
+	 *
+	 * @param alignment The alignment
+	 * @param format Output format, {@link AlignmentFormat#SingleSequence} is written as FASTA
+	 * @throws IOException If writing fails
+	 */
+	public void write(final ISequenceAlignmentAnnotated alignment, final AlignmentFormat format) throws IOException {
+
+		switch (format) {
+
+			case SingleSequence:
+			case FASTA:
+				this.writeFASTA(alignment);
+				break;
+
+			case A2M:
+			case A3M:
+				this.writeA3M(alignment, format);
+				break;
+
+			case Stockholm:
+				this.writeStockholm(alignment);
+				break;
+
+			case Clustal:
+				this.writeClustal(alignment);
+				break;
+		}
+	}
+
+
+	private void writeFASTA(final ISequenceAlignmentAnnotated alignment) throws IOException {
+
+		int length = alignment.getLength();
+		for (int i = 0; i < alignment.getNumberSequences(); ++i) {
+
+			this.put((byte) '>');
+			this.put(alignment.getHeaderAt(i).getBytes(StandardCharsets.UTF_8));
+			this.put(NEWLINE);
+			for (int start = 0; start < length; start += FASTA_LINE) {
+
+				this.putResidues(alignment, i, start, Math.min(length, start + FASTA_LINE));
+				this.put(NEWLINE);
+			}
+			if (length == 0) {
+
+				this.put(NEWLINE);
+			}
+		}
+	}
+
+	private void writeA3M(final ISequenceAlignmentAnnotated alignment, final AlignmentFormat format) throws IOException {
+
+		boolean[] match = A3MWriter.matchStates(alignment);
+		byte[] row = new byte[alignment.getLength()];
+		for (int i = 0; i < alignment.getNumberSequences(); ++i) {
+
+			this.put((byte) '>');
+			this.put(alignment.getHeaderAt(i).getBytes(StandardCharsets.UTF_8));
+			this.put(NEWLINE);
+			this.put(row, 0, A3MWriter.encodeRow(alignment, i, match, format, row));
+			this.put(NEWLINE);
+		}
+	}
+
+	private void writeStockholm(final ISequenceAlignmentAnnotated alignment) throws IOException {
+
+		byte[][] names = names(alignment);
+		int width = maxLength(names) + 1;
+
+		this.put("# STOCKHOLM 1.0\n\n".getBytes(StandardCharsets.US_ASCII));
+		for (int i = 0; i < names.length; ++i) {
+
+			this.putPadded(names[i], width);
+			this.putResidues(alignment, i, 0, alignment.getLength());
+			this.put(NEWLINE);
+		}
+		this.put("//\n".getBytes(StandardCharsets.US_ASCII));
+	}
+
+	private void writeClustal(final ISequenceAlignmentAnnotated alignment) throws IOException {
+
+		byte[][] names = names(alignment);
+		int width = maxLength(names) + 6;
+		int length = alignment.getLength();
+		byte[] conservation = conservation(alignment);
+
+		this.put("CLUSTAL W multiple sequence alignment\n".getBytes(StandardCharsets.US_ASCII));
+		for (int start = 0; start < length; start += CLUSTAL_LINE) {
+
+			int end = Math.min(length, start + CLUSTAL_LINE);
+			this.put(NEWLINE);
+			for (int i = 0; i < names.length; ++i) {
+
+				this.putPadded(names[i], width);
+				this.putResidues(alignment, i, start, end);
+				this.put(NEWLINE);
+			}
+			this.putPadded(new byte[0], width);
+			this.put(conservation, start, end - start);
+			this.put(NEWLINE);
+		}
+	}
+
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+			this.flush();
+
+		} finally {
+
+			this.channel.close();
+		}
+	}
+
+
+	/*
+	 * Buffer handling
+	 */
+	private void flush() throws IOException {
+
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	private void put(final byte b) throws IOException {
+
+		if ( ! this.buffer.hasRemaining()) {
+
+			this.flush();
+		}
+		this.buffer.put(b);
+	}
+
+	private void put(final byte[] bytes) throws IOException {
+
+		this.put(bytes, 0, bytes.length);
+	}
+
+	private void put(final byte[] bytes, final int offset, final int length) throws IOException {
+
+		int pos = offset;
+		int end = offset + length;
+		while (pos < end) {
+
+			if ( ! this.buffer.hasRemaining()) {
+
+				this.flush();
+			}
+			int n = Math.min(end - pos, this.buffer.remaining());
+			this.buffer.put(bytes, pos, n);
+			pos += n;
+		}
+	}
+
+	private void putPadded(final byte[] name, final int width) throws IOException {
+
+		this.put(name);
+		for (int i = name.length; i < width; ++i) {
+
+			this.put((byte) ' ');
+		}
+	}
+
+	// Copies the columns [from, to) of a sequence without decoding them to characters
+	private void putResidues(final ISequenceAlignmentAnnotated alignment, final int index, final int from, final int to) throws IOException {
+
+		if (alignment instanceof SequenceAlignmentContent) {
+
+			this.put(((SequenceAlignmentContent) alignment).getResidues(index), from, to - from);
+
+		} else if (alignment instanceof MappedSequenceAlignment) {
+
+			ByteBuffer row = ((MappedSequenceAlignment) alignment).getRow(index);
+			row.limit(to);
+			row.position(from);
+			while (row.hasRemaining()) {
+
+				if ( ! this.buffer.hasRemaining()) {
+
+					this.flush();
+				}
+				int n = Math.min(row.remaining(), this.buffer.remaining());
+				ByteBuffer part = row.duplicate();
+				part.limit(row.position() + n);
+				this.buffer.put(part);
+				row.position(row.position() + n);
+			}
+		} else if (alignment instanceof AlignmentView && ((AlignmentView) alignment).isColumnRange()) {
+
+			AlignmentView view = (AlignmentView) alignment;
+			int offset = view.parentColumn(0);
+			this.putResidues(view.getParent(), view.parentRow(index), offset + from, offset + to);
+
+		} else {
+
+			for (int j = from; j < to; ++j) {
+
+				this.put(alignment.getResidueAt(index, j));
+			}
+		}
+	}
+
+
+	// Sequence names are the first word of the headers
+	private static byte[][] names(final ISequenceAlignmentAnnotated alignment) {
+
+		byte[][] names = new byte[alignment.getNumberSequences()][];
+		for (int i = 0; i < names.length; ++i) {
+
+			String header = alignment.getHeaderAt(i).trim();
+			int end = 0;
+			while (end < header.length() && ! Character.isWhitespace(header.charAt(end))) {
+
+				end++;
+			}
+			names[i] = (end == 0 ? "seq" + (i + 1) : header.substring(0, end)).getBytes(StandardCharsets.UTF_8);
+		}
+		return names;
+	}
+
+	private static int maxLength(final byte[][] names) {
+
+		int max = 0;
+		for (byte[] name : names) {
+
+			max = Math.max(max, name.length);
+		}
+		return max;
+	}
+
+	// Marks columns with the same residue in all sequences with '*'
+	private static byte[] conservation(final ISequenceAlignmentAnnotated alignment) {
+
+		byte[] result = new byte[alignment.getLength()];
+		for (int j = 0; j < result.length; ++j) {
+
+			byte first = alignment.getResidueAt(0, j);
+			boolean identical = first != '-' && first != '.';
+			for (int i = 1; identical && i < alignment.getNumberSequences(); ++i) {
+
+				identical = alignment.getResidueAt(i, j) == first;
+			}
+			result[j] = identical ? (byte) '*' : (byte) ' ';
+		}
+		return result;
+	}
+}
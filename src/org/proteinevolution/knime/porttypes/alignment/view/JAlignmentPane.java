@@ -9,6 +9,7 @@ import java.awt.Rectangle;
 import java.awt.event.MouseWheelEvent;
 import java.awt.event.MouseWheelListener;
 import java.awt.image.MemoryImageSource;
+import java.nio.CharBuffer;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -16,6 +17,7 @@ import java.util.concurrent.TimeUnit;
 import javax.swing.JComponent;
 
 import org.knime.core.node.NodeLogger;
+import org.proteinevolution.models.interfaces.ISequenceAlignment;
 import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
 
 public class JAlignmentPane extends JComponent {
@@ -136,7 +138,7 @@ public class JAlignmentPane extends JComponent {
 		// Draw Sequence Alignment
 		for(int y = yMin; y < yMax; y = y + 1) {
 			SequencePainter seqPainter = new SequencePainter(
-					this.alignment.getSequenceAt(y), 
+					new SequenceView(this.alignment, y), 
 					y,      // seqYPos
 					xMin,   // xposStart
 					xMax,   // xPos End
@@ -153,7 +155,7 @@ public class JAlignmentPane extends JComponent {
 		for(int y = yMinAnn; y < yMaxAnn; y = y + 1) {
 			
 			SequencePainter seqPainter = new SequencePainter(
-					this.alignment.getAnnotationAt(y), 
+					CharBuffer.wrap(this.alignment.getAnnotationAt(y)), 
 					nSequences + y,      // seqYPos
 					xMin,   // xposStart
 					xMax,   // xPos End
@@ -227,6 +229,47 @@ public class JAlignmentPane extends JComponent {
 
 		}
 	}
+
+
+	/**
+	 * Sequence of the alignment which reads its residues with {@link ISequenceAlignment#getResidueAt(int, int)},
+	 * such that painting does not copy the visible sequences on each repaint.
+	 */
+	private static final class SequenceView implements CharSequence {
+
+		private final ISequenceAlignment alignment;
+		private final int index;
+
+		SequenceView(final ISequenceAlignment alignment, final int index) {
+
+			this.alignment = alignment;
+			this.index = index;
+		}
+
+		@Override
+		public int length() {
+
+			return this.alignment.getLength();
+		}
+
+		@Override
+		public char charAt(final int column) {
+
+			return (char) (this.alignment.getResidueAt(this.index, column) & 0xFF);
+		}
+
+		@Override
+		public CharSequence subSequence(final int start, final int end) {
+
+			return this.toString().subSequence(start, end);
+		}
+
+		@Override
+		public String toString() {
+
+			return new String(this.alignment.getSequenceAt(this.index));
+		}
+	}
 }
 
 
@@ -8,7 +8,8 @@ public class SequencePainter implements Runnable {
 			.getLogger(SequencePainter.class);
 
 	
-	private final char[] seq;
+	// Residues of the painted row, read one column at a time
+	private final CharSequence seq;
 	private final int clipPosY;
 	private final int xMinSeqPos;
 	private final int xMaxSeqPos;
@@ -20,7 +21,7 @@ public class SequencePainter implements Runnable {
 
 
 	public  SequencePainter(
-			final char[] seq,
+			final CharSequence seq,
 			final int clipPosY,
 			final int xMinSeqPos,
 			final int xMaxSeqPos,
@@ -48,7 +49,7 @@ public class SequencePainter implements Runnable {
  		if (seq != null){
 
 			// Make sure not outside length of seq
-			int seqLength = seq.length;
+			int seqLength = seq.length();
 			int clipPosX = 0;
 
 			for(int x = this.xMinSeqPos; x < this.xMaxSeqPos && x >=0 ; ++x) {
@@ -62,7 +63,7 @@ public class SequencePainter implements Runnable {
 
 					if(pixelPosX < clipRGB.getScanWidth() && pixelPosY < clipRGB.getHeight()){
 
-						ImageUtils.insertRGBArrayAt(pixelPosX, pixelPosY, charPixels[seq[seqXPos]].getRGBArray(), clipRGB);
+						ImageUtils.insertRGBArrayAt(pixelPosX, pixelPosY, charPixels[seq.charAt(seqXPos)].getRGBArray(), clipRGB);
 					}
 				}
 				clipPosX ++;
@@ -1,12 +1,9 @@
 package org.proteinevolution.knime.porttypes.structure;
 
 import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
 
 import org.knime.core.data.DataCell;
 import org.knime.core.data.DataCellDataInput;
@@ -31,9 +28,14 @@ public class StructureCell extends DataCell {
 		@Override
 		public StructureCell deserialize(final DataCellDataInput input) throws IOException {
 
-			// Here we assume that the byte length of the hhsuiteDB object has been written to the output stream
-			int length = input.readInt();
-			byte[] bytes = new byte[length];
+			int first = input.readInt();
+			if (first == StructureCodec.MAGIC) {
+
+				return new StructureCell(StructureCodec.readAfterMagic(input));
+			}
+
+			// Cells of former versions: the byte length of the Java serialized structure, followed by the bytes
+			byte[] bytes = new byte[first];
 			input.readFully(bytes);
 			ByteArrayInputStream bis = new ByteArrayInputStream(bytes);
 
@@ -53,17 +55,7 @@ public class StructureCell extends DataCell {
 		@Override
 		public void serialize(final StructureCell cell, final DataCellDataOutput output) throws IOException {
 
-			ByteArrayOutputStream bos = new ByteArrayOutputStream();
-			ObjectOutput objectOut = new ObjectOutputStream(bos);
-			objectOut.writeObject(cell.m_content);
-			objectOut.flush();
-
-			byte[] byteArray = bos.toByteArray();
-			bos.close();
-			objectOut.close();
-
-			output.writeInt(byteArray.length);
-			output.write(byteArray);
+			StructureCodec.write(cell.m_content, output);
 		}
 	}
 
@@ -96,17 +88,14 @@ public class StructureCell extends DataCell {
 	protected boolean equalsDataCell(DataCell dc) {
 		
 		StructureCell ic = (StructureCell) dc;
-		
-		// TODO StructureContent does not yet implement 'equals;
+
+		// The content hashes are compared first, equal hashes are confirmed by the PDB strings
 		return this.m_content.equals(ic.m_content);
 	}
 
-	// TODO Overriding equalContent necessary?
-
 	@Override
 	public int hashCode() {
-	
-		// TODO StructureContent does not yet implement hashCode
+
 		return this.m_content.hashCode();
 	}
 }
@@ -0,0 +1,684 @@
+package org.proteinevolution.knime.porttypes.structure;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Versioned binary format of structures, used by the cell serializer and the port object. The coordinate
+ * records of the PDB strings are stored column by column, similar to MMTF:
+ *
+ * <pre>
+ * int     MAGIC (negative, distinguishes the format from the length prefix of Java serialized cells)
+ * byte    version
+ * byte    flags (bit 0: omit HET records when written)
+ * int     number of structures
+ * per structure:
+ *   varint  number of lines
+ *   varint  number of verbatim lines, then (varint distance to the previous verbatim line, string) per line
+ *   varint  number of new dictionary entries, then the strings
+ *   int     number of bytes of the following columns of the ATOM and HETATM lines:
+ *     HETATM flags (packed bits), serial (delta), atom name (dictionary), alternate location,
+ *     residue name (dictionary), chain, residue number (delta), insertion code, x, y, z (delta, 1/1000 A),
+ *     occupancy, temperature factor (delta, 1/100), remainder of the line from column 67 (dictionary)
+ * </pre>
+ *
+ * Deltas are taken with respect to the previous atom of the same structure and written as zigzag encoded
+ * variable length integers. The dictionary is shared by all structures, which makes the names of an ensemble
+ * almost free. Lines are separated by <code>\n</code>, all other characters are part of the lines, such that
+ * the PDB strings are restored exactly. Coordinate records which would not be restored exactly from their
+ * columns (for instance hybrid-36 serial numbers) are stored as verbatim lines.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class StructureCodec {
+
+	public static final int MAGIC = 0xA1A10000 | 0x5044;
+	public static final byte VERSION = 1;
+
+	private static final byte FLAG_OMIT_HET = 1;
+
+	// End of the fixed columns of coordinate records, the remainder of the line is stored as a whole
+	private static final int TAIL = 66;
+
+	// Prevent instantiation
+	private StructureCodec() {
+
+		throw new AssertionError();
+	}
+
+
+	/**
+	 * Writes the structures including the magic number.
+	 *
+	 * @param content The structures to write
+	 * @param out Destination
+	 * @throws IOException If writing fails
+	 */
+	public static void write(final StructureContent content, final DataOutput out) throws IOException {
+
+		int nStructures = content.getNumberOfStructures();
+		out.writeInt(MAGIC);
+		out.writeByte(VERSION);
+		out.writeByte(content.isOmitHET() ? FLAG_OMIT_HET : 0);
+		out.writeInt(nStructures);
+
+		// Structures which have been read lazily are read in parallel before
+		List<String> pdbStrings = content.loadAll();
+		Map<String, Integer> dictionary = new HashMap<String, Integer>();
+		for (int i = 0; i < nStructures; ++i) {
+
+			writeStructure(pdbStrings.get(i), dictionary, out);
+		}
+	}
+
+
+	/**
+	 * Reads structures whose magic number has already been consumed.
+	 *
+	 * @param in Source
+	 * @return The structures
+	 * @throws IOException If reading fails or the data is not in the expected format
+	 */
+	public static StructureContent readAfterMagic(final DataInput in) throws IOException {
+
+		byte version = in.readByte();
+		if (version != VERSION) {
+
+			throw new IOException("Unsupported version of the structure format: " + version);
+		}
+		byte flags = in.readByte();
+		int nStructures = in.readInt();
+		if (nStructures < 1) {
+
+			throw new IOException("Binary structure does not contain any structures!");
+		}
+		List<String> dictionary = new ArrayList<String>();
+		List<String> pdbStrings = new ArrayList<String>(nStructures);
+		for (int i = 0; i < nStructures; ++i) {
+
+			pdbStrings.add(readStructure(in, dictionary));
+		}
+		StructureContent content = new StructureContent(pdbStrings);
+		content.setOmitHET((flags & FLAG_OMIT_HET) != 0);
+		return content;
+	}
+
+	/**
+	 * Reads structures including the magic number.
+	 *
+	 * @param in Source
+	 * @return The structures
+	 * @throws IOException If reading fails or the data is not in the expected format
+	 */
+	public static StructureContent read(final DataInput in) throws IOException {
+
+		if (in.readInt() != MAGIC) {
+
+			throw new IOException("Data is not a binary structure!");
+		}
+		return readAfterMagic(in);
+	}
+
+
+	private static void writeStructure(
+			final String pdbString,
+			final Map<String, Integer> dictionary,
+			final DataOutput out) throws IOException {
+
+		// Lines including empty ones, such that the string is restored exactly
+		List<String> lines = new ArrayList<String>();
+		int start = 0;
+		int end;
+		while ((end = pdbString.indexOf('\n', start)) != -1) {
+
+			lines.add(pdbString.substring(start, end));
+			start = end + 1;
+		}
+		lines.add(pdbString.substring(start));
+
+		AtomColumns atoms = new AtomColumns(lines.size());
+		List<String> verbatim = new ArrayList<String>();
+		int[] verbatimIndex = new int[lines.size()];
+		List<String> added = new ArrayList<String>();
+
+		for (int i = 0; i < lines.size(); ++i) {
+
+			String line = lines.get(i);
+			if ( ! atoms.add(line, dictionary, added)) {
+
+				verbatimIndex[verbatim.size()] = i;
+				verbatim.add(line);
+			}
+		}
+
+		writeVarInt(out, lines.size());
+		writeVarInt(out, verbatim.size());
+		int previous = -1;
+		for (int i = 0; i < verbatim.size(); ++i) {
+
+			writeVarInt(out, verbatimIndex[i] - previous);
+			writeString(out, verbatim.get(i));
+			previous = verbatimIndex[i];
+		}
+		writeVarInt(out, added.size());
+		for (String entry : added) {
+
+			writeString(out, entry);
+		}
+		atoms.write(out);
+	}
+
+	private static String readStructure(final DataInput in, final List<String> dictionary) throws IOException {
+
+		int nLines = readVarInt(in);
+		int nVerbatim = readVarInt(in);
+		if (nLines < 1 || nVerbatim > nLines) {
+
+			throw new IOException("Corrupt binary structure: " + nVerbatim + " verbatim lines of " + nLines);
+		}
+		String[] verbatim = new String[nLines];
+		int index = -1;
+		for (int i = 0; i < nVerbatim; ++i) {
+
+			index += readVarInt(in);
+			if (index >= nLines) {
+
+				throw new IOException("Corrupt binary structure: verbatim line out of range");
+			}
+			verbatim[index] = readString(in);
+		}
+		int nAdded = readVarInt(in);
+		for (int i = 0; i < nAdded; ++i) {
+
+			dictionary.add(readString(in));
+		}
+
+		AtomColumns atoms = AtomColumns.read(in, nLines - nVerbatim, dictionary);
+		StringBuilder result = new StringBuilder(nLines * 81);
+		int atom = 0;
+		for (int i = 0; i < nLines; ++i) {
+
+			if (i > 0) {
+
+				result.append('\n');
+			}
+			if (verbatim[i] != null) {
+
+				result.append(verbatim[i]);
+			} else {
+
+				atoms.appendLine(atom++, dictionary, result);
+			}
+		}
+		return result.toString();
+	}
+
+
+	/**
+	 * Fields of the coordinate records of one structure, one array per column.
+	 */
+	private static final class AtomColumns {
+
+		private int n;
+		private final boolean[] hetatm;
+		private final int[] serial;
+		private final int[] name;
+		private final byte[] altLoc;
+		private final int[] resName;
+		private final byte[] chain;
+		private final int[] resSeq;
+		private final byte[] iCode;
+		private final int[] x;
+		private final int[] y;
+		private final int[] z;
+		private final int[] occupancy;
+		private final int[] bFactor;
+		private final int[] tail;
+
+		// Formatted numbers
+		private final char[] scratch = new char[8];
+
+
+		private AtomColumns(final int capacity) {
+
+			this.hetatm = new boolean[capacity];
+			this.serial = new int[capacity];
+			this.name = new int[capacity];
+			this.altLoc = new byte[capacity];
+			this.resName = new int[capacity];
+			this.chain = new byte[capacity];
+			this.resSeq = new int[capacity];
+			this.iCode = new byte[capacity];
+			this.x = new int[capacity];
+			this.y = new int[capacity];
+			this.z = new int[capacity];
+			this.occupancy = new int[capacity];
+			this.bFactor = new int[capacity];
+			this.tail = new int[capacity];
+		}
+
+
+		/*
+		 * Adds the line if it is a coordinate record which is restored exactly from its columns. New
+		 * dictionary entries are appended to added.
+		 */
+		private boolean add(final String line, final Map<String, Integer> dictionary, final List<String> added) {
+
+			if (line.length() < TAIL) {
+
+				return false;
+			}
+			boolean het = line.startsWith("HETATM");
+			if ( ! het && ! line.startsWith("ATOM  ")) {
+
+				return false;
+			}
+			if (line.charAt(11) != ' ' || line.charAt(20) != ' ' || ! line.startsWith("   ", 27)) {
+
+				return false;
+			}
+			char alt = line.charAt(16);
+			char ch = line.charAt(21);
+			char ins = line.charAt(26);
+			if (alt > 127 || ch > 127 || ins > 127) {
+
+				return false;
+			}
+			int i = this.n;
+			long serialValue = parseFixed(line, 6, 11, 0, this.scratch);
+			long resSeqValue = parseFixed(line, 22, 26, 0, this.scratch);
+			long xValue = parseFixed(line, 30, 38, 3, this.scratch);
+			long yValue = parseFixed(line, 38, 46, 3, this.scratch);
+			long zValue = parseFixed(line, 46, 54, 3, this.scratch);
+			long occupancyValue = parseFixed(line, 54, 60, 2, this.scratch);
+			long bFactorValue = parseFixed(line, 60, 66, 2, this.scratch);
+			if (serialValue == Long.MIN_VALUE || resSeqValue == Long.MIN_VALUE
+					|| xValue == Long.MIN_VALUE || yValue == Long.MIN_VALUE || zValue == Long.MIN_VALUE
+					|| occupancyValue == Long.MIN_VALUE || bFactorValue == Long.MIN_VALUE) {
+
+				return false;
+			}
+			this.hetatm[i] = het;
+			this.serial[i] = (int) serialValue;
+			this.altLoc[i] = (byte) alt;
+			this.chain[i] = (byte) ch;
+			this.resSeq[i] = (int) resSeqValue;
+			this.iCode[i] = (byte) ins;
+			this.x[i] = (int) xValue;
+			this.y[i] = (int) yValue;
+			this.z[i] = (int) zValue;
+			this.occupancy[i] = (int) occupancyValue;
+			this.bFactor[i] = (int) bFactorValue;
+			this.name[i] = lookup(line.substring(12, 16), dictionary, added);
+			this.resName[i] = lookup(line.substring(17, 20), dictionary, added);
+			this.tail[i] = lookup(line.substring(TAIL), dictionary, added);
+			this.n++;
+			return true;
+		}
+
+		/*
+		 * The columns are encoded into one block, written as int length and bytes, which is decoded from
+		 * memory instead of reading each variable length integer from the stream.
+		 */
+		private void write(final DataOutput out) throws IOException {
+
+			int n = this.n;
+			Block block = new Block(new byte[16 * n + 16]);
+			for (int i = 0; i < n; ++i) {
+
+				if (this.hetatm[i]) {
+
+					block.data[i >> 3] |= 1 << (i & 7);
+				}
+			}
+			block.pos = (n + 7) / 8;
+			block.putDeltas(this.serial, n);
+			block.putValues(this.name, n);
+			block.putBytes(this.altLoc, n);
+			block.putValues(this.resName, n);
+			block.putBytes(this.chain, n);
+			block.putDeltas(this.resSeq, n);
+			block.putBytes(this.iCode, n);
+			block.putDeltas(this.x, n);
+			block.putDeltas(this.y, n);
+			block.putDeltas(this.z, n);
+			block.putDeltas(this.occupancy, n);
+			block.putDeltas(this.bFactor, n);
+			block.putValues(this.tail, n);
+
+			out.writeInt(block.pos);
+			out.write(block.data, 0, block.pos);
+		}
+
+		private static AtomColumns read(final DataInput in, final int n, final List<String> dictionary) throws IOException {
+
+			int length = in.readInt();
+			if (length < 0) {
+
+				throw new IOException("Corrupt binary structure: negative length of coordinate block");
+			}
+			Block block = new Block(new byte[length]);
+			in.readFully(block.data);
+
+			AtomColumns atoms = new AtomColumns(n);
+			atoms.n = n;
+			int bound = dictionary.size();
+			try {
+				for (int i = 0; i < n; ++i) {
+
+					atoms.hetatm[i] = (block.data[i >> 3] & (1 << (i & 7))) != 0;
+				}
+				block.pos = (n + 7) / 8;
+				block.getDeltas(atoms.serial, n);
+				block.getValues(atoms.name, n, bound);
+				block.getBytes(atoms.altLoc, n);
+				block.getValues(atoms.resName, n, bound);
+				block.getBytes(atoms.chain, n);
+				block.getDeltas(atoms.resSeq, n);
+				block.getBytes(atoms.iCode, n);
+				block.getDeltas(atoms.x, n);
+				block.getDeltas(atoms.y, n);
+				block.getDeltas(atoms.z, n);
+				block.getDeltas(atoms.occupancy, n);
+				block.getDeltas(atoms.bFactor, n);
+				block.getValues(atoms.tail, n, bound);
+
+			} catch (ArrayIndexOutOfBoundsException e) {
+
+				throw new IOException("Corrupt binary structure: coordinate block is truncated", e);
+			}
+			return atoms;
+		}
+
+		private void appendLine(final int i, final List<String> dictionary, final StringBuilder out) {
+
+			out.append(this.hetatm[i] ? "HETATM" : "ATOM  ");
+			this.appendFixed(out, this.serial[i], 5, 0);
+			out.append(' ');
+			out.append(dictionary.get(this.name[i]));
+			out.append((char) this.altLoc[i]);
+			out.append(dictionary.get(this.resName[i]));
+			out.append(' ');
+			out.append((char) this.chain[i]);
+			this.appendFixed(out, this.resSeq[i], 4, 0);
+			out.append((char) this.iCode[i]);
+			out.append("   ");
+			this.appendFixed(out, this.x[i], 8, 3);
+			this.appendFixed(out, this.y[i], 8, 3);
+			this.appendFixed(out, this.z[i], 8, 3);
+			this.appendFixed(out, this.occupancy[i], 6, 2);
+			this.appendFixed(out, this.bFactor[i], 6, 2);
+			out.append(dictionary.get(this.tail[i]));
+		}
+
+		private void appendFixed(final StringBuilder out, final int value, final int width, final int decimals) {
+
+			// Values are read from the same fields they have been parsed from, so they always fit
+			formatFixed(this.scratch, value, width, decimals);
+			out.append(this.scratch, 0, width);
+		}
+	}
+
+
+	private static int lookup(final String value, final Map<String, Integer> dictionary, final List<String> added) {
+
+		Integer index = dictionary.get(value);
+		if (index == null) {
+
+			index = dictionary.size();
+			dictionary.put(value, index);
+			added.add(value);
+		}
+		return index;
+	}
+
+	/*
+	 * Parses the right-aligned fixed-point number in line[from, to) with the given number of decimals, scaled
+	 * to an integer. Returns Long.MIN_VALUE if the field would not be formatted back to the same characters.
+	 */
+	static long parseFixed(final String line, final int from, final int to, final int decimals, final char[] scratch) {
+
+		int i = from;
+		while (i < to && line.charAt(i) == ' ') {
+
+			i++;
+		}
+		boolean negative = i < to && line.charAt(i) == '-';
+		if (negative) {
+
+			i++;
+		}
+		long value = 0;
+		int digits = 0;
+		int fraction = -1;
+		for (; i < to; ++i) {
+
+			char c = line.charAt(i);
+			if (c == '.' && fraction == -1 && decimals > 0) {
+
+				fraction = 0;
+				continue;
+			}
+			if (c < '0' || c > '9' || digits == 15) {
+
+				return Long.MIN_VALUE;
+			}
+			value = 10 * value + (c - '0');
+			digits++;
+			if (fraction != -1) {
+
+				fraction++;
+			}
+		}
+		if (digits == 0 || (decimals > 0 && fraction != decimals)) {
+
+			return Long.MIN_VALUE;
+		}
+		long result = negative ? -value : value;
+
+		// Rejects leading zeros, negative zero and other representations which are not restored exactly
+		if (result < Integer.MIN_VALUE || result > Integer.MAX_VALUE
+				|| ! formatFixed(scratch, (int) result, to - from, decimals)) {
+
+			return Long.MIN_VALUE;
+		}
+		for (int j = from; j < to; ++j) {
+
+			if (line.charAt(j) != scratch[j - from]) {
+
+				return Long.MIN_VALUE;
+			}
+		}
+		return result;
+	}
+
+	/*
+	 * Writes the scaled value right-aligned into field[0, width), like String.format("%width.decimalsf").
+	 * Returns false if the value does not fit into the field.
+	 */
+	static boolean formatFixed(final char[] field, final int value, final int width, final int decimals) {
+
+		long v = Math.abs((long) value);
+		int pos = width;
+
+		// Digits from the right, with at least one digit before the decimal point
+		for (int digit = 0; v > 0 || digit <= decimals; ++digit) {
+
+			if (decimals > 0 && digit == decimals) {
+
+				if (pos == 0) {
+
+					return false;
+				}
+				field[--pos] = '.';
+			}
+			if (pos == 0) {
+
+				return false;
+			}
+			field[--pos] = (char) ('0' + v % 10);
+			v /= 10;
+		}
+		if (value < 0) {
+
+			if (pos == 0) {
+
+				return false;
+			}
+			field[--pos] = '-';
+		}
+		Arrays.fill(field, 0, pos, ' ');
+		return true;
+	}
+
+
+	/**
+	 * Columns of variable length integers in a byte array.
+	 */
+	private static final class Block {
+
+		private byte[] data;
+		private int pos;
+
+
+		private Block(final byte[] data) {
+
+			this.data = data;
+		}
+
+
+		private void putVarInt(final int value) {
+
+			if (this.pos + 5 > this.data.length) {
+
+				this.data = Arrays.copyOf(this.data, 2 * this.data.length + 5);
+			}
+			int v = value;
+			while ((v & ~0x7F) != 0) {
+
+				this.data[this.pos++] = (byte) ((v & 0x7F) | 0x80);
+				v >>>= 7;
+			}
+			this.data[this.pos++] = (byte) v;
+		}
+
+		private int getVarInt() {
+
+			int value = 0;
+			int shift = 0;
+			byte b;
+			do {
+				b = this.data[this.pos++];
+				value |= (b & 0x7F) << shift;
+				shift += 7;
+			} while ((b & 0x80) != 0);
+			return value;
+		}
+
+		// Differences to the previous value, zigzag encoded
+		private void putDeltas(final int[] values, final int n) {
+
+			int previous = 0;
+			for (int i = 0; i < n; ++i) {
+
+				int delta = values[i] - previous;
+				this.putVarInt((delta << 1) ^ (delta >> 31));
+				previous = values[i];
+			}
+		}
+
+		private void getDeltas(final int[] values, final int n) {
+
+			int previous = 0;
+			for (int i = 0; i < n; ++i) {
+
+				int zigzag = this.getVarInt();
+				previous += (zigzag >>> 1) ^ -(zigzag & 1);
+				values[i] = previous;
+			}
+		}
+
+		private void putValues(final int[] values, final int n) {
+
+			for (int i = 0; i < n; ++i) {
+
+				this.putVarInt(values[i]);
+			}
+		}
+
+		private void getValues(final int[] values, final int n, final int bound) throws IOException {
+
+			for (int i = 0; i < n; ++i) {
+
+				values[i] = this.getVarInt();
+				if (values[i] < 0 || values[i] >= bound) {
+
+					throw new IOException("Corrupt binary structure: dictionary index out of range");
+				}
+			}
+		}
+
+		private void putBytes(final byte[] values, final int n) {
+
+			if (this.pos + n > this.data.length) {
+
+				this.data = Arrays.copyOf(this.data, 2 * this.data.length + n);
+			}
+			System.arraycopy(values, 0, this.data, this.pos, n);
+			this.pos += n;
+		}
+
+		private void getBytes(final byte[] values, final int n) {
+
+			System.arraycopy(this.data, this.pos, values, 0, n);
+			this.pos += n;
+		}
+	}
+
+
+	private static void writeString(final DataOutput out, final String value) throws IOException {
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		writeVarInt(out, bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(final DataInput in) throws IOException {
+
+		byte[] bytes = new byte[readVarInt(in)];
+		in.readFully(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeVarInt(final DataOutput out, final int value) throws IOException {
+
+		int v = value;
+		while ((v & ~0x7F) != 0) {
+
+			out.writeByte((v & 0x7F) | 0x80);
+			v >>>= 7;
+		}
+		out.writeByte(v);
+	}
+
+	private static int readVarInt(final DataInput in) throws IOException {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = in.readByte();
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+		return value;
+	}
+}
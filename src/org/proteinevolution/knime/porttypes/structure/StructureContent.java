@@ -5,23 +5,29 @@ import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InvalidObjectException;
 import java.io.ObjectInput;
 import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamField;
 import java.io.Serializable;
+import java.io.UncheckedIOException;
 import java.io.Writer;
-import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
-import org.apache.commons.io.FileUtils;
 import org.biojava.nbio.structure.StructureImpl;
-import org.biojava.nbio.structure.io.PDBFileReader;
 import org.knime.core.data.DataType;
 import org.knime.core.util.FileUtil;
 import org.proteinevolution.models.interfaces.Writeable;
+import org.proteinevolution.models.util.XXHash64;
 
 
 /**
@@ -35,12 +41,24 @@ public final class StructureContent implements Serializable, Writeable {
 	private static final long serialVersionUID = -6977340626626226386L;
 	public static final DataType TYPE = DataType.getType(StructureCell.class);
 
-	private final List<String> pdbStrings; // The PDB Strings of the structures
-	private final List<StructureImpl> structureImpls;
+	// Parses structures in parallel, bounded by the number of processors
+	private static final ForkJoinPool PARSER_POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	// Java serialization writes the PDB strings, as former versions did
+	private static final ObjectStreamField[] serialPersistentFields = {
+			new ObjectStreamField("pdbStrings", List.class),
+			new ObjectStreamField("omitHET", boolean.class)
+	};
+
+	// Sources of the PDB strings of the structures, parsed structures are held by the StructureImplCache
+	private transient StructureEntries entries;
 
 	// Whether or not hetero atoms will be written when write is used
 	private boolean omitHET = false;
 
+	// Computed on first request, reset when omitHET changes
+	private transient volatile Long contentHash;
+
 
 	// Constructors
 	public StructureContent(final InputStream in) throws IOException  {
@@ -62,33 +80,44 @@ public final class StructureContent implements Serializable, Writeable {
 
 			throw new IOException("Class: StructureContent could not be found");
 		}
-		this.pdbStrings = structureContent.pdbStrings;
-		this.structureImpls = new ArrayList<StructureImpl>(this.pdbStrings.size());
-		for (int i = 0; i < this.pdbStrings.size(); ++i) {
-
-			this.structureImpls.add(null);
-		}
+		this.entries = structureContent.entries;
 	}
 	
 	// Copy constructor
 	public StructureContent(final StructureContent structureContent) {
 
-		// safe copy the lists
-		this.pdbStrings = new ArrayList<String>(structureContent.pdbStrings);
-		this.structureImpls = new ArrayList<StructureImpl>(structureContent.structureImpls);
-		assert this.pdbStrings.size() == this.structureImpls.size();
+		// The entries are immutable and shared, as are the parsed structures through the cache
+		this.entries = structureContent.entries;
 	}
 
+	/**
+	 * Structure of a PDB or mmCIF file, which is decompressed if its name ends with gz.
+	 *
+	 * @param path The file
+	 * @return The structure
+	 * @throws IOException If the file cannot be read
+	 */
 	public static StructureContent fromFile(final String path) throws IOException {
 
-		List<String> input = new ArrayList<String>(1);
-		input.add(FileUtils.readFileToString(new File(path)));
-
-		return new StructureContent(input);
+		return new StructureContent(StructureEntry.read(Paths.get(path)));
 	}
 
 	public static StructureContent fromDirectory(final String path) throws IOException {
 
+		return fromDirectory(path, false);
+	}
+
+	/**
+	 * Structures of all PDB and mmCIF files (ending with pdb, ent or cif, optionally followed by gz)
+	 * of a directory.
+	 *
+	 * @param path The directory
+	 * @param lazy Whether the files are only read when their structures are accessed, otherwise all files
+	 * are read immediately
+	 * @return The structures
+	 * @throws IOException If a file cannot be read
+	 */
+	public static StructureContent fromDirectory(final String path, final boolean lazy) throws IOException {
 
 		// List content of selected directory        
 		File[] content =  new File(path).listFiles(new FileFilter() {
@@ -96,123 +125,384 @@ public final class StructureContent implements Serializable, Writeable {
 			@Override
 			public boolean accept(File pathname) {
 
-				String path = pathname.getName();
-				return path.endsWith("pdb") || path.endsWith("ent");
+				return isStructureFile(pathname.getName());
 			}
 		});
 
-		List<String> input = new ArrayList<String>(content.length);
+		if (content == null) {
 
+			throw new IOException("Directory cannot be read: " + path);
+		}
+		if (content.length == 0) {
+
+			throw new IOException("Directory does not contain PDB or mmCIF files: " + path);
+		}
+		List<StructureEntry> entries = new ArrayList<StructureEntry>(content.length);
 		for(File currentFile : content) {
 
-			input.add(FileUtils.readFileToString(currentFile));
+			entries.add(StructureEntry.ofFile(currentFile.toPath()));
 		}
-		return new StructureContent(input);
+		StructureContent result = new StructureContent(StructureEntries.of(entries), false);
+
+		// Reads and decompresses all files in parallel, the strings are then held strongly
+		return lazy ? result : new StructureContent(result.loadAll());
+	}
+
+	// Name of a PDB or mmCIF file, compressed files are decompressed when read
+	private static boolean isStructureFile(final String name) {
+
+		String uncompressed = name.endsWith(".gz") ? name.substring(0, name.length() - 3) : name;
+		return uncompressed.endsWith("pdb") || uncompressed.endsWith("ent") || uncompressed.endsWith("cif");
 	}
 
 	public StructureContent(final List<String> pdbStrings) {
 
-		this.pdbStrings = new ArrayList<String>(pdbStrings);
-		this.structureImpls = new ArrayList<StructureImpl>(pdbStrings.size());
+		this(toEntries(pdbStrings), false);
+	}
+
+	public StructureContent(final String pdbString) {
+
+		this.entries = StructureEntries.of(StructureEntry.of(pdbString));
+	}
+
+	private StructureContent(final StructureEntries entries, final boolean omitHET) {
 
 		// At least one PDB string must be provided
-		if (this.pdbStrings.size() < 1) {
+		if (entries.size() < 1) {
 
 			throw new IllegalArgumentException("At least one PDB Stribg must be provided to the constructor of StructureContent");
 		}
+		this.entries = entries;
+		this.omitHET = omitHET;
+	}
 
-		for(int i = 0; i < pdbStrings.size(); ++i) {
+	private static StructureEntries toEntries(final List<String> pdbStrings) {
 
-			this.structureImpls.add(null);
+		List<StructureEntry> entries = new ArrayList<StructureEntry>(pdbStrings.size());
+		for (String pdbString : pdbStrings) {
+
+			entries.add(StructureEntry.of(pdbString));
 		}
+		return StructureEntries.of(entries);
 	}
 
-	public StructureContent(final String pdbString) {
+	//////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+
 
-		this.pdbStrings = new ArrayList<String>(1);
-		this.pdbStrings.add(pdbString);
+	/**
+	 * Returns the structure of a PDB string. The structure is parsed again if it has been evicted from the
+	 * {@link StructureImplCache}, so callers iterating over many structures should not hold on to them.
+	 *
+	 * @param index Index of the structure
+	 * @return The structure
+	 * @throws IOException If the PDB string cannot be parsed
+	 */
+	public StructureImpl getStructureImpl(final int index) throws IOException {
 
-		this.structureImpls = new ArrayList<StructureImpl>(1);
-		this.structureImpls.add(null);
+		return StructureImplCache.getInstance().get(this.entries.get(index));
 	}
 
-	//////////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+	/**
+	 * Returns the structures of all PDB strings. Structures which are not in the {@link StructureImplCache}
+	 * are parsed in parallel.
+	 *
+	 * @return The structures
+	 * @throws IOException If a PDB string cannot be parsed
+	 */
+	public StructureImpl[] getAllStructureImpl() throws IOException {
+
+		final StructureImpl[] result = new StructureImpl[this.getNumberOfStructures()];
+		this.forAll(i -> result[i] = this.getStructureImpl(i));
+		return result;
+	}
 
+	public int getNumberOfStructures() {
 
-	public StructureImpl getStructureImpl(final int index) throws IOException {
+		return this.entries.size();
+	}
 
-		if (this.structureImpls.get(index) == null) {
+	/**
+	 * Whether all PDB strings are held in memory, which is not the case for structures that have been read
+	 * lazily from a directory.
+	 *
+	 * @return True if no PDB string needs to be read
+	 */
+	public boolean isLoaded() {
 
-			File tempFile = Files.createTempFile("structureContent", ".pdb").toFile();
-			tempFile.deleteOnExit();
+		for (StructureEntry entry : this.entries) {
 
-			try(FileWriter fw = new FileWriter(tempFile)) {
+			if ( ! entry.isLoaded()) {
 
-				fw.write(this.pdbStrings.get(index));
+				return false;
 			}
-
-			this.structureImpls.set(index, (StructureImpl) (new PDBFileReader()).getStructure(tempFile.getAbsoluteFile()));
-			tempFile.delete();
 		}
-		return this.structureImpls.get(index);
+		return true;
 	}
 
-	public StructureImpl[] getAllStructureImpl() throws IOException {
 
-		int nStructures = this.getNumberOfStructures();
-		StructureImpl[] result = new StructureImpl[nStructures];
+	/**
+	 * Structures of this content followed by the structures of the other content. The entries of both contents
+	 * are shared rather than copied, so parsed structures are kept and lazy structures remain lazy. Concatenation
+	 * takes logarithmic time, such that collecting an ensemble in a loop is linear.
+	 *
+	 * @param other The content to append
+	 * @return The concatenation
+	 */
+	public StructureContent concatenate(final StructureContent other) {
+
+		return new StructureContent(this.entries.concat(other.entries), false);
+	}
+
+	public void setOmitHET(final boolean b) {
+
+		this.omitHET = b;
+		this.contentHash = null;
+	}
 
-		for (int i = 0; i < nStructures; ++i) {
+	public boolean isOmitHET() {
+
+		return this.omitHET;
+	}
 
-			result[i] = this.getStructureImpl(i);
+	/**
+	 * Returns the PDB string of a structure, which is read from its file if the structure has been read lazily.
+	 * Structures read from mmCIF files return the mmCIF text.
+	 *
+	 * @param index Index of the structure
+	 * @return The PDB string
+	 * @throws UncheckedIOException If the file of a lazy structure cannot be read
+	 */
+	public String getPdbString(final int index) {
+
+		try {
+			return this.entries.get(index).getPdbString();
+
+		} catch (IOException e) {
+
+			throw new UncheckedIOException(e);
 		}
-		return result;
 	}
 
-	public int getNumberOfStructures() {
+	/**
+	 * Returns all PDB strings. Files of lazy structures are read in parallel.
+	 *
+	 * @return The PDB strings
+	 * @throws UncheckedIOException If the file of a lazy structure cannot be read
+	 */
+	public List<String> getAllPdbStrings() {
+
+		try {
+			return this.loadAll();
 
-		return this.pdbStrings.size();
+		} catch (IOException e) {
+
+			throw new UncheckedIOException(e);
+		}
 	}
 
+	// All PDB strings, read in parallel if required
+	List<String> loadAll() throws IOException {
 
-	public StructureContent concatenate(final StructureContent other) {
+		final String[] result = new String[this.getNumberOfStructures()];
+		if (this.isLoaded()) {
 
-		List<String> pdbStrings = new ArrayList<String>(this.pdbStrings);
-		pdbStrings.addAll(new ArrayList<String>(other.pdbStrings));
+			int i = 0;
+			for (StructureEntry entry : this.entries) {
 
-		return new StructureContent(pdbStrings);
+				result[i++] = entry.getPdbString();
+			}
+		} else {
+
+			this.forAll(i -> result[i] = this.entries.get(i).getPdbString());
+		}
+		return new ArrayList<String>(Arrays.asList(result));
 	}
 
-	public void setOmitHET(final boolean b) {
 
-		this.omitHET = b;
+	/**
+	 * Returns the xxHash64 of the PDB strings and the omitHET flag. The PDB strings of the structures are hashed
+	 * in parallel, lazy structures are read for this purpose. The hashes of the structures are cached by their
+	 * entries, which are shared by copies of the content, such that each file is only read once for hashing.
+	 * The hash of the content is computed on the first call and cached afterwards.
+	 *
+	 * @return The content hash
+	 * @throws UncheckedIOException If the file of a lazy structure cannot be read
+	 */
+	public long getContentHash() {
+
+		Long result = this.contentHash;
+		if (result == null) {
+
+			final long[] hashes = new long[this.getNumberOfStructures()];
+			try {
+				if (hashes.length == 1) {
+
+					hashes[0] = this.entries.get(0).getHash();
+				} else {
+
+					this.forAll(i -> hashes[i] = this.entries.get(i).getHash());
+				}
+			} catch (IOException e) {
+
+				throw new UncheckedIOException(e);
+			}
+			XXHash64 hash = new XXHash64().updateByte(this.omitHET ? 1 : 0).updateInt(hashes.length);
+			for (long h : hashes) {
+
+				hash.updateLong(h);
+			}
+			result = hash.getValue();
+			this.contentHash = result;
+		}
+		return result;
 	}
 
-	public String getPdbString(final int index) {
+	/**
+	 * Contents are equal if their PDB strings and omitHET flags are equal. The content hashes are compared first,
+	 * the PDB strings are only compared if the hashes are equal. Lazy structures are read to compute the hash
+	 * unless it is cached, and again for the comparison of the PDB strings.
+	 *
+	 * @throws UncheckedIOException If the file of a lazy structure cannot be read
+	 */
+	@Override
+	public boolean equals(final Object o) {
 
-		return this.pdbStrings.get(index);
+		if (o == this) {
+
+			return true;
+		}
+		if ( ! (o instanceof StructureContent)) {
+
+			return false;
+		}
+		StructureContent other = (StructureContent) o;
+		if (other.getNumberOfStructures() != this.getNumberOfStructures()
+				|| other.omitHET != this.omitHET
+				|| other.getContentHash() != this.getContentHash()) {
+
+			return false;
+		}
+		try {
+			for (int i = 0; i < this.getNumberOfStructures(); ++i) {
+
+				StructureEntry entry = this.entries.get(i);
+				StructureEntry otherEntry = other.entries.get(i);
+				if (entry != otherEntry && ! entry.getPdbString().equals(otherEntry.getPdbString())) {
+
+					return false;
+				}
+			}
+		} catch (IOException e) {
+
+			throw new UncheckedIOException(e);
+		}
+		return true;
 	}
 
-	public List<String> getAllPdbStrings() {
+	/**
+	 * Derived from the content hash, see {@link #getContentHash()} for the I/O of lazy structures.
+	 */
+	@Override
+	public int hashCode() {
 
-		// Provide safe copy
-		return new ArrayList<String>(this.pdbStrings);
+		return Long.hashCode(this.getContentHash());
 	}
 
 
+	/**
+	 * Writes the first structure. Use the {@link StructureContentWriter} to write all structures.
+	 */
 	@Override
 	public void write(final Writer out) throws IOException {
 
+		String pdbString = this.entries.get(0).getPdbString();
 		try(BufferedWriter br = new BufferedWriter(out)) {
 
-			for(String line : this.pdbStrings.get(0).split("\\r?\\n")) {
+			// Lines are written from the string without splitting it
+			int start = 0;
+			while (start < pdbString.length()) {
+
+				int end = pdbString.indexOf('\n', start);
+				int next = end == -1 ? pdbString.length() : end + 1;
+				if (end == -1) {
+
+					end = pdbString.length();
+				}
+				if (end > start && pdbString.charAt(end - 1) == '\r') {
 
-				if( ! this.omitHET || ! line.startsWith("HET")) {
+					--end;
+				}
+				if ( ! this.omitHET || ! pdbString.startsWith("HET", start)) {
 
-					br.write(line);
+					br.write(pdbString, start, end - start);
 					br.newLine();
 				}
+				start = next;
 			}
 		}
 	}
+
+	StructureEntry getEntry(final int index) {
+
+		return this.entries.get(index);
+	}
+
+
+	// Runs the task for all structures in parallel on the parser pool
+	void forAll(final StructureTask task) throws IOException {
+
+		try {
+			PARSER_POOL.submit(() -> IntStream.range(0, this.getNumberOfStructures()).parallel().forEach(i -> {
+
+				try {
+					task.run(i);
+
+				} catch (IOException e) {
+
+					throw new UncheckedIOException(e);
+				}
+			})).get();
+
+		} catch (InterruptedException e) {
+
+			Thread.currentThread().interrupt();
+			throw new IOException("Reading of the structures has been interrupted", e);
+
+		} catch (ExecutionException e) {
+
+			Throwable cause = e.getCause();
+			if (cause instanceof UncheckedIOException) {
+
+				throw ((UncheckedIOException) cause).getCause();
+			}
+			throw new IOException("Structure could not be read", cause);
+		}
+	}
+
+	interface StructureTask {
+
+		void run(int index) throws IOException;
+	}
+
+
+	private void writeObject(final ObjectOutputStream out) throws IOException {
+
+		ObjectOutputStream.PutField fields = out.putFields();
+		fields.put("pdbStrings", this.loadAll());
+		fields.put("omitHET", this.omitHET);
+		out.writeFields();
+	}
+
+	@SuppressWarnings("unchecked")
+	private void readObject(final ObjectInputStream in) throws IOException, ClassNotFoundException {
+
+		ObjectInputStream.GetField fields = in.readFields();
+		List<String> pdbStrings = (List<String>) fields.get("pdbStrings", null);
+		if (pdbStrings == null) {
+
+			throw new InvalidObjectException("Serialized StructureContent does not contain PDB strings");
+		}
+		this.entries = toEntries(pdbStrings);
+		this.omitHET = fields.get("omitHET", false);
+	}
 }
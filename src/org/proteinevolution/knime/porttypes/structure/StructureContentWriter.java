@@ -0,0 +1,303 @@
+package org.proteinevolution.knime.porttypes.structure;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes the structures of a {@link StructureContent} to PDB files, optionally gzip compressed. Ensembles are
+ * written as one file with MODEL and ENDMDL records around each structure, or as one file per structure.
+ *
+ * The records of the PDB strings are filtered by scanning their bytes for line starts, runs of retained records
+ * are copied into a reusable buffer which is written to a {@link FileChannel} once it is full. Structures read from
+ * mmCIF files are converted into PDB records with BioJava, unless they are written to their own cif files.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class StructureContentWriter implements Closeable {
+
+	private static final int BUFFER_SIZE = 1 << 20;
+	private static final byte NEWLINE = '\n';
+
+	// Files of single models are written in parallel, each with its own buffer
+	private static final int MODEL_BUFFER_SIZE = 1 << 16;
+
+	private static final byte[] HET = "HET".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] END = "END".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] MODEL = "MODEL".getBytes(StandardCharsets.US_ASCII);
+	private static final byte[] ENDMDL = "ENDMDL".getBytes(StandardCharsets.US_ASCII);
+
+	private final WritableByteChannel channel;
+	private final ByteBuffer buffer;
+
+	// Whether HETATM and the other hetero records are omitted
+	private final boolean omitHET;
+
+
+	/**
+	 * Opens the file for writing, an existing file is overwritten.
+	 *
+	 * @param file Destination
+	 * @param gzip Whether the output is gzip compressed
+	 * @param omitHET Whether records starting with HET are omitted
+	 * @throws IOException If the file cannot be opened
+	 */
+	public StructureContentWriter(final Path file, final boolean gzip, final boolean omitHET) throws IOException {
+
+		this(file, gzip, omitHET, BUFFER_SIZE);
+	}
+
+	private StructureContentWriter(
+			final Path file,
+			final boolean gzip,
+			final boolean omitHET,
+			final int bufferSize) throws IOException {
+
+		if (gzip) {
+
+			this.channel = Channels.newChannel(new GZIPOutputStream(Files.newOutputStream(file), bufferSize));
+		} else {
+
+			this.channel = FileChannel.open(
+					file,
+					StandardOpenOption.CREATE,
+					StandardOpenOption.TRUNCATE_EXISTING,
+					StandardOpenOption.WRITE);
+		}
+		this.buffer = ByteBuffer.allocate(bufferSize);
+		this.omitHET = omitHET;
+	}
+
+
+	/**
+	 * Convenience method which writes all structures to one file.
+	 *
+	 * @param content The structures
+	 * @param file Destination, an existing file is overwritten
+	 * @param gzip Whether the output is gzip compressed
+	 * @param omitHET Whether records starting with HET are omitted
+	 * @throws IOException If writing fails
+	 */
+	public static void write(
+			final StructureContent content,
+			final Path file,
+			final boolean gzip,
+			final boolean omitHET) throws IOException {
+
+		try (StructureContentWriter writer = new StructureContentWriter(file, gzip, omitHET)) {
+
+			writer.write(content);
+		}
+	}
+
+	/**
+	 * Writes each structure to its own file in the directory, the files are written in parallel. Files are named
+	 * by the number of the model, like model_001.pdb, structures read from mmCIF files are written to cif files.
+	 *
+	 * @param content The structures
+	 * @param directory Destination, created if it does not exist. Existing files are overwritten
+	 * @param gzip Whether the files are gzip compressed, which appends gz to their names
+	 * @param omitHET Whether records starting with HET are omitted
+	 * @throws IOException If writing fails
+	 */
+	public static void writeModels(
+			final StructureContent content,
+			final Path directory,
+			final boolean gzip,
+			final boolean omitHET) throws IOException {
+
+		Files.createDirectories(directory);
+		final String pattern = "model_%0" + String.valueOf(content.getNumberOfStructures()).length() + "d.%s"
+				+ (gzip ? ".gz" : "");
+
+		content.forAll(i -> {
+
+			String pdbString = content.getEntry(i).getPdbString();
+			String extension = StructureImplCache.isMmCif(pdbString) ? "cif" : "pdb";
+			try (StructureContentWriter writer = new StructureContentWriter(
+					directory.resolve(String.format(pattern, i + 1, extension)), gzip, omitHET, MODEL_BUFFER_SIZE)) {
+
+				writer.putRecords(toBytes(pdbString), false);
+			}
+		});
+	}
+
+
+	/**
+	 * Writes the structures. A single structure is written with all its records, several structures are
+	 * written as models with MODEL and ENDMDL records. Their END records are then replaced by one END record at
+	 * the end of the file, and their own MODEL and ENDMDL records are omitted.
+	 *
+	 * @param content The structures
+	 * @throws IOException If writing fails, or if a structure read from an mmCIF file cannot be parsed
+	 */
+	public void write(final StructureContent content) throws IOException {
+
+		int n = content.getNumberOfStructures();
+		if (n == 1) {
+
+			this.putRecords(toPDB(content.getEntry(0)), false);
+			return;
+		}
+		for (int i = 0; i < n; ++i) {
+
+			this.put(String.format("MODEL     %4d\n", i + 1).getBytes(StandardCharsets.US_ASCII));
+			this.putRecords(toPDB(content.getEntry(i)), true);
+			this.put(ENDMDL);
+			this.put(NEWLINE);
+		}
+		this.put(END);
+		this.put(NEWLINE);
+	}
+
+
+	@Override
+	public void close() throws IOException {
+
+		try {
+			this.flush();
+
+		} finally {
+
+			this.channel.close();
+		}
+	}
+
+
+	// Copies the retained records, a missing newline at the end of the text is added
+	private void putRecords(final byte[] text, final boolean model) throws IOException {
+
+		int run = 0;
+		int start = 0;
+		while (start < text.length) {
+
+			int next = start;
+			while (next < text.length && text[next] != NEWLINE) {
+
+				++next;
+			}
+			if (next < text.length) {
+
+				++next;
+			}
+			if (this.isOmitted(text, start, model)) {
+
+				this.put(text, run, start - run);
+				run = next;
+			}
+			start = next;
+		}
+		this.put(text, run, text.length - run);
+		if (text.length > run && text[text.length - 1] != NEWLINE) {
+
+			this.put(NEWLINE);
+		}
+	}
+
+	private boolean isOmitted(final byte[] text, final int start, final boolean model) {
+
+		if (this.omitHET && startsWith(text, start, HET)) {
+
+			return true;
+		}
+		if ( ! model) {
+
+			return false;
+		}
+		if (startsWith(text, start, MODEL) || startsWith(text, start, ENDMDL)) {
+
+			return true;
+		}
+		// END record, but not ENDMDL or any other record starting with END
+		int end = start + END.length;
+		return startsWith(text, start, END)
+				&& (end == text.length || text[end] == ' ' || text[end] == '\r' || text[end] == NEWLINE);
+	}
+
+	private static boolean startsWith(final byte[] text, final int start, final byte[] prefix) {
+
+		if (start + prefix.length > text.length) {
+
+			return false;
+		}
+		for (int i = 0; i < prefix.length; ++i) {
+
+			if (text[start + i] != prefix[i]) {
+
+				return false;
+			}
+		}
+		return true;
+	}
+
+	// mmCIF cannot be written into PDB files as it is, the parsed structure is cached
+	private static byte[] toPDB(final StructureEntry entry) throws IOException {
+
+		String pdbString = entry.getPdbString();
+		if (StructureImplCache.isMmCif(pdbString)) {
+
+			return toBytes(StructureImplCache.getInstance().get(entry).toPDB());
+		}
+		return toBytes(pdbString);
+	}
+
+	// PDB strings are read with the default charset, see StructureEntry
+	private static byte[] toBytes(final String pdbString) {
+
+		return pdbString.getBytes(Charset.defaultCharset());
+	}
+
+
+	/*
+	 * Buffer handling
+	 */
+	private void flush() throws IOException {
+
+		this.buffer.flip();
+		while (this.buffer.hasRemaining()) {
+
+			this.channel.write(this.buffer);
+		}
+		this.buffer.clear();
+	}
+
+	private void put(final byte b) throws IOException {
+
+		if ( ! this.buffer.hasRemaining()) {
+
+			this.flush();
+		}
+		this.buffer.put(b);
+	}
+
+	private void put(final byte[] bytes) throws IOException {
+
+		this.put(bytes, 0, bytes.length);
+	}
+
+	private void put(final byte[] bytes, final int offset, final int length) throws IOException {
+
+		int pos = offset;
+		int end = offset + length;
+		while (pos < end) {
+
+			if ( ! this.buffer.hasRemaining()) {
+
+				this.flush();
+			}
+			int n = Math.min(end - pos, this.buffer.remaining());
+			this.buffer.put(bytes, pos, n);
+			pos += n;
+		}
+	}
+}
@@ -0,0 +1,261 @@
+package org.proteinevolution.knime.porttypes.structure;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+/**
+ * Immutable sequence of the {@link StructureEntry}s of a {@link StructureContent}. Sequences are stored as
+ * balanced trees of segments, concatenation creates O(log n) new nodes and shares the segments of both
+ * operands. As entries are shared, concatenated contents also share the structures parsed by the
+ * {@link StructureImplCache}.
+ *
+ * @author lzimmermann
+ *
+ */
+abstract class StructureEntries implements Iterable<StructureEntry> {
+
+	private final int size;
+
+	private StructureEntries(final int size) {
+
+		this.size = size;
+	}
+
+
+	static StructureEntries of(final StructureEntry entry) {
+
+		return new Segment(new StructureEntry[] {entry});
+	}
+
+	/**
+	 * Sequence of the entries of a list, the list is copied.
+	 *
+	 * @param entries The entries
+	 * @return The sequence
+	 */
+	static StructureEntries of(final List<StructureEntry> entries) {
+
+		return new Segment(entries.toArray(new StructureEntry[entries.size()]));
+	}
+
+
+	final int size() {
+
+		return this.size;
+	}
+
+	abstract StructureEntry get(int index);
+
+	// Height of the tree, segments have height 0
+	abstract int height();
+
+	/**
+	 * Concatenation of this sequence and another sequence, both are left unchanged.
+	 *
+	 * @param other The sequence appended to this sequence
+	 * @return The concatenation
+	 */
+	final StructureEntries concat(final StructureEntries other) {
+
+		return join(this, other);
+	}
+
+	@Override
+	public final Iterator<StructureEntry> iterator() {
+
+		return new SegmentIterator(this);
+	}
+
+
+	/*
+	 * Join of AVL trees, the height of the children of every node differs by at most one.
+	 */
+	private static StructureEntries join(final StructureEntries left, final StructureEntries right) {
+
+		if (left.height() > right.height() + 1) {
+
+			return joinRight((Node) left, right);
+		}
+		if (right.height() > left.height() + 1) {
+
+			return joinLeft(left, (Node) right);
+		}
+		return new Node(left, right);
+	}
+
+	// Descends the right spine of left until the heights match
+	private static StructureEntries joinRight(final Node left, final StructureEntries right) {
+
+		StructureEntries joined = left.right.height() <= right.height() + 1
+				? new Node(left.right, right)
+				: joinRight((Node) left.right, right);
+
+		if (joined.height() <= left.left.height() + 1) {
+
+			return new Node(left.left, joined);
+		}
+		Node inner = (Node) joined;
+		if (inner.left.height() > inner.right.height()) {
+
+			inner = rotateRight(inner);
+		}
+		return rotateLeft(new Node(left.left, inner));
+	}
+
+	// Mirror image of joinRight
+	private static StructureEntries joinLeft(final StructureEntries left, final Node right) {
+
+		StructureEntries joined = right.left.height() <= left.height() + 1
+				? new Node(left, right.left)
+				: joinLeft(left, (Node) right.left);
+
+		if (joined.height() <= right.right.height() + 1) {
+
+			return new Node(joined, right.right);
+		}
+		Node inner = (Node) joined;
+		if (inner.right.height() > inner.left.height()) {
+
+			inner = rotateLeft(inner);
+		}
+		return rotateRight(new Node(inner, right.right));
+	}
+
+	private static Node rotateLeft(final Node node) {
+
+		Node right = (Node) node.right;
+		return new Node(new Node(node.left, right.left), right.right);
+	}
+
+	private static Node rotateRight(final Node node) {
+
+		Node left = (Node) node.left;
+		return new Node(left.left, new Node(left.right, node.right));
+	}
+
+
+	private static final class Segment extends StructureEntries {
+
+		private final StructureEntry[] entries;
+
+		private Segment(final StructureEntry[] entries) {
+
+			super(entries.length);
+			this.entries = entries;
+		}
+
+		@Override
+		StructureEntry get(final int index) {
+
+			return this.entries[index];
+		}
+
+		@Override
+		int height() {
+
+			return 0;
+		}
+	}
+
+
+	private static final class Node extends StructureEntries {
+
+		private final StructureEntries left;
+		private final StructureEntries right;
+		private final int height;
+
+		private Node(final StructureEntries left, final StructureEntries right) {
+
+			super(Math.addExact(left.size(), right.size()));
+			this.left = left;
+			this.right = right;
+			this.height = Math.max(left.height(), right.height()) + 1;
+		}
+
+		@Override
+		StructureEntry get(final int index) {
+
+			StructureEntries current = this;
+			int i = index;
+			while (current instanceof Node) {
+
+				Node node = (Node) current;
+				if (i < node.left.size()) {
+
+					current = node.left;
+				} else {
+
+					i -= node.left.size();
+					current = node.right;
+				}
+			}
+			return current.get(i);
+		}
+
+		@Override
+		int height() {
+
+			return this.height;
+		}
+	}
+
+
+	// Visits the segments from left to right
+	private static final class SegmentIterator implements Iterator<StructureEntry> {
+
+		private final Deque<StructureEntries> pending = new ArrayDeque<StructureEntries>();
+		private Segment segment;
+		private int index = 0;
+
+		private SegmentIterator(final StructureEntries root) {
+
+			this.pending.push(root);
+			this.advance();
+		}
+
+		// Moves to the next non-empty segment
+		private void advance() {
+
+			this.segment = null;
+			while ( ! this.pending.isEmpty()) {
+
+				StructureEntries current = this.pending.pop();
+				if (current instanceof Node) {
+
+					this.pending.push(((Node) current).right);
+					this.pending.push(((Node) current).left);
+
+				} else if (current.size() > 0) {
+
+					this.segment = (Segment) current;
+					this.index = 0;
+					return;
+				}
+			}
+		}
+
+		@Override
+		public boolean hasNext() {
+
+			return this.segment != null;
+		}
+
+		@Override
+		public StructureEntry next() {
+
+			if (this.segment == null) {
+
+				throw new NoSuchElementException();
+			}
+			StructureEntry result = this.segment.entries[this.index++];
+			if (this.index == this.segment.entries.length) {
+
+				this.advance();
+			}
+			return result;
+		}
+	}
+}
@@ -0,0 +1,192 @@
+package org.proteinevolution.knime.porttypes.structure;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.zip.GZIPInputStream;
+
+import org.proteinevolution.models.util.XXHash64;
+
+/**
+ * Source of the PDB string of one structure of a {@link StructureContent}. The string is either held in memory
+ * or read from a file on first access. Files may be gzip compressed and may contain mmCIF instead of PDB text,
+ * which is kept as is and recognized when the structure is parsed. Entries do not override <code>equals</code>, the
+ * {@link StructureImplCache} identifies parsed structures by their entry.
+ *
+ * @author lzimmermann
+ *
+ */
+abstract class StructureEntry {
+
+	// xxHash64 of the PDB string, computed on first request. Lazy entries are only read once for it
+	private volatile Long hash;
+
+
+	/**
+	 * Returns the PDB string, reading it if required.
+	 *
+	 * @return The PDB string
+	 * @throws IOException If the PDB string cannot be read
+	 */
+	abstract String getPdbString() throws IOException;
+
+	/**
+	 * Whether the PDB string is available without reading a file.
+	 *
+	 * @return True if {@link #getPdbString()} does not read
+	 */
+	abstract boolean isLoaded();
+
+	/**
+	 * Number of bytes of the heap which are strongly held by the entry.
+	 *
+	 * @return Estimated size in bytes
+	 */
+	abstract long getHeapBytes();
+
+
+	/**
+	 * Returns the xxHash64 of the PDB string, which is computed on the first call and cached afterwards.
+	 *
+	 * @return The hash of the PDB string
+	 * @throws IOException If the PDB string cannot be read
+	 */
+	final long getHash() throws IOException {
+
+		Long result = this.hash;
+		if (result == null) {
+
+			result = new XXHash64().updateString(this.getPdbString()).getValue();
+			this.hash = result;
+		}
+		return result;
+	}
+
+
+	static StructureEntry of(final String pdbString) {
+
+		return new Text(pdbString);
+	}
+
+	/**
+	 * Entry which reads the file on first access. Size and modification time are recorded, such that changes of
+	 * the file are detected when it is read.
+	 *
+	 * @param path The file
+	 * @return The entry
+	 * @throws IOException If the attributes of the file cannot be read
+	 */
+	static StructureEntry ofFile(final Path path) throws IOException {
+
+		BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+		return new FileBacked(path, attributes.size(), attributes.lastModifiedTime().toMillis());
+	}
+
+	/**
+	 * Reads the text of a structure file, which is decompressed if the name of the file ends with gz.
+	 *
+	 * @param path The file
+	 * @return The text of the file
+	 * @throws IOException If the file cannot be read or decompressed
+	 */
+	static String read(final Path path) throws IOException {
+
+		if ( ! path.getFileName().toString().endsWith(".gz")) {
+
+			return new String(Files.readAllBytes(path), Charset.defaultCharset());
+		}
+		// Compressed structures are typically four times the size of the file
+		ByteArrayOutputStream out = new ByteArrayOutputStream((int) Math.min(Integer.MAX_VALUE - 8, 4 * Files.size(path)));
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(path), 1 << 16)) {
+
+			byte[] buffer = new byte[1 << 16];
+			int n;
+			while ((n = in.read(buffer)) != -1) {
+
+				out.write(buffer, 0, n);
+			}
+		}
+		return new String(out.toByteArray(), Charset.defaultCharset());
+	}
+
+
+	private static final class Text extends StructureEntry {
+
+		private final String pdbString;
+
+		private Text(final String pdbString) {
+
+			this.pdbString = pdbString;
+		}
+
+		@Override
+		String getPdbString() {
+
+			return this.pdbString;
+		}
+
+		@Override
+		boolean isLoaded() {
+
+			return true;
+		}
+
+		@Override
+		long getHeapBytes() {
+
+			return 2L * this.pdbString.length();
+		}
+	}
+
+
+	private static final class FileBacked extends StructureEntry {
+
+		private final Path path;
+		private final long size;
+		private final long modified;
+
+		// Read content, may be reclaimed and is then read again
+		private volatile SoftReference<String> pdbString = new SoftReference<String>(null);
+
+		private FileBacked(final Path path, final long size, final long modified) {
+
+			this.path = path;
+			this.size = size;
+			this.modified = modified;
+		}
+
+		@Override
+		String getPdbString() throws IOException {
+
+			String result = this.pdbString.get();
+			if (result == null) {
+
+				BasicFileAttributes attributes = Files.readAttributes(this.path, BasicFileAttributes.class);
+				if (attributes.size() != this.size || attributes.lastModifiedTime().toMillis() != this.modified) {
+
+					throw new IOException("Structure file has been changed since the directory was read: " + this.path);
+				}
+				result = read(this.path);
+				this.pdbString = new SoftReference<String>(result);
+			}
+			return result;
+		}
+
+		@Override
+		boolean isLoaded() {
+
+			return this.pdbString.get() != null;
+		}
+
+		@Override
+		long getHeapBytes() {
+
+			return 0;
+		}
+	}
+}
@@ -0,0 +1,121 @@
+package org.proteinevolution.knime.porttypes.structure;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+
+import org.biojava.nbio.structure.StructureImpl;
+import org.biojava.nbio.structure.StructureTools;
+import org.biojava.nbio.structure.io.PDBFileParser;
+import org.biojava.nbio.structure.io.mmcif.SimpleMMcifConsumer;
+import org.biojava.nbio.structure.io.mmcif.SimpleMMcifParser;
+import org.proteinevolution.models.util.MemoryBoundedCache;
+
+/**
+ * Plugin-wide cache of the structures parsed from the PDB strings of {@link StructureContent}s. Structures are
+ * identified by the entry of the content they have been parsed from, so copies of a content share their parsed
+ * structures. Evicted structures are parsed again on demand, such that iterating over a large ensemble does not
+ * keep all models in memory.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class StructureImplCache {
+
+	public static final long DEFAULT_BUDGET = 256L * 1024 * 1024;
+
+	// Estimated heap size of a parsed atom, including its share of the groups and chains
+	private static final long BYTES_PER_ATOM = 400;
+
+	private static final StructureImplCache INSTANCE = new StructureImplCache();
+
+	private final MemoryBoundedCache<StructureEntry, StructureImpl> cache =
+			new MemoryBoundedCache<StructureEntry, StructureImpl>(DEFAULT_BUDGET);
+
+
+	private StructureImplCache() {}
+
+
+	public static StructureImplCache getInstance() {
+
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Returns the structure of an entry. The entry is only read and parsed if its structure is not in the cache.
+	 *
+	 * @param entry The entry
+	 * @return The parsed structure
+	 * @throws IOException If the PDB string cannot be read or parsed
+	 */
+	StructureImpl get(final StructureEntry entry) throws IOException {
+
+		StructureImpl structure = this.cache.get(entry);
+		if (structure == null) {
+
+			structure = parse(entry.getPdbString());
+
+			// The cache also keeps the entry alive
+			this.cache.put(entry, structure, BYTES_PER_ATOM * StructureTools.getNrAtoms(structure) + entry.getHeapBytes());
+		}
+		return structure;
+	}
+
+
+	public MemoryBoundedCache<?, ?> getCache() {
+
+		return this.cache;
+	}
+
+	public void setBudget(final long bytes) {
+
+		this.cache.setBudget(bytes);
+	}
+
+	public void clear() {
+
+		this.cache.clear();
+	}
+
+
+	// Parses the PDB string directly, without writing it to a temporary file first
+	private static StructureImpl parse(final String pdbString) throws IOException {
+
+		try (BufferedReader reader = new BufferedReader(new StringReader(pdbString))) {
+
+			if (isMmCif(pdbString)) {
+
+				SimpleMMcifParser parser = new SimpleMMcifParser();
+				SimpleMMcifConsumer consumer = new SimpleMMcifConsumer();
+				parser.addMMcifConsumer(consumer);
+				parser.parse(reader);
+				return (StructureImpl) consumer.getStructure();
+			}
+			return (StructureImpl) new PDBFileParser().parsePDBFile(reader);
+		}
+	}
+
+	// mmCIF files start with a data block, only preceded by comments
+	static boolean isMmCif(final String text) {
+
+		int i = 0;
+		while (i < text.length()) {
+
+			char c = text.charAt(i);
+			if (c == '#') {
+
+				int end = text.indexOf('\n', i);
+				i = end == -1 ? text.length() : end + 1;
+
+			} else if (Character.isWhitespace(c)) {
+
+				++i;
+			} else {
+
+				return text.startsWith("data_", i);
+			}
+		}
+		return false;
+	}
+}
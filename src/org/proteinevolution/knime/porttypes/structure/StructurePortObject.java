@@ -2,12 +2,13 @@ package org.proteinevolution.knime.porttypes.structure;
 
 import java.awt.BorderLayout;
 import java.awt.Dimension;
-import java.io.ByteArrayOutputStream;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.ObjectOutput;
-import java.io.ObjectOutputStream;
-import java.lang.reflect.Constructor;
+import java.io.ObjectInput;
+import java.io.ObjectInputStream;
 import java.util.zip.ZipEntry;
 
 import javax.swing.JComponent;
@@ -37,6 +38,9 @@ public class StructurePortObject extends AbstractPortObject {
     /** Convenience accessor for the port type. */
     public static final PortType TYPE = PortTypeRegistry.getInstance().getPortType(StructurePortObject.class);
 	
+    private static final String ZIP_ENTRY = "structure.bin";
+    private static final int BUFFER_SIZE = 1 << 16;
+
     private StructureContent m_content;
     
     private StructurePortObjectSpec m_spec;
@@ -142,16 +146,13 @@ public class StructurePortObject extends AbstractPortObject {
     		final PortObjectZipOutputStream out,
             final ExecutionMonitor exec) throws IOException,
             CanceledExecutionException {
-           
-        out.putNextEntry(new ZipEntry(m_content.getClass().getName()));  
-        ByteArrayOutputStream bos = new ByteArrayOutputStream();
-        ObjectOutput objectOut = new ObjectOutputStream(bos);
-        objectOut.writeObject(this.m_content);
-        objectOut.flush();
-        out.write(bos.toByteArray());
-        bos.close();
+
+        out.putNextEntry(new ZipEntry(ZIP_ENTRY));
+        DataOutputStream dataOut = new DataOutputStream(new BufferedOutputStream(out, BUFFER_SIZE));
+        StructureCodec.write(this.m_content, dataOut);
+        dataOut.flush();
+        out.closeEntry();
         out.close();
-        objectOut.close();
     }
 
 	@Override
@@ -161,33 +162,23 @@ public class StructurePortObject extends AbstractPortObject {
 			final ExecutionMonitor exec) throws IOException, CanceledExecutionException {
 
 	    ZipEntry nextEntry = in.getNextEntry();
-	    String contentClName = nextEntry.getName();
-
-	    Class<StructureContent> contentCl;
-	    try {
-	        contentCl = (Class<StructureContent>) Class.forName(contentClName);
-	        
-	    } catch (ClassNotFoundException ex) {
-	        throw new IOException("Error converting to HHsuiteDB Class", ex);
-	    }
-	    
-	    Constructor<StructureContent> cons;
-	    try {
-	        cons = contentCl.getConstructor(InputStream.class);
-	    } catch (Exception ex) {
-	        throw new IOException("SequenceAlignment class '" + contentClName + "' "
-	                + "is missing a required constructor, see javadoc", ex);
-	    }
 
-	    try {
-	        this.m_content = cons.newInstance(in);
-	    } catch (Exception ex) {
-	        throw new IOException("Could not create an instance of '"
-	                + contentClName + "'", ex);
+	    // Port objects of former versions are Java serialized and named after the content class
+	    if (nextEntry.getName().equals(StructureContent.class.getName())) {
+
+	    	try(ObjectInput ois = new ObjectInputStream(new BufferedInputStream(in, BUFFER_SIZE))) {
+
+	    		this.m_content = (StructureContent) ois.readObject();
+
+	    	} catch (ClassNotFoundException e) {
+
+	    		throw new IOException("Class: StructureContent could not be found", e);
+	    	}
+	    } else {
+
+	    	this.m_content = StructureCodec.read(new DataInputStream(new BufferedInputStream(in, BUFFER_SIZE)));
+	    	in.close();
 	    }
-	    in.close();
 	    this.m_spec = (StructurePortObjectSpec) spec;
-	  
 	}
 }
-
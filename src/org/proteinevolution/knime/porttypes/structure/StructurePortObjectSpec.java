@@ -21,6 +21,9 @@ public final class StructurePortObjectSpec extends AbstractSimplePortObjectSpec
     public static final class Serializer extends AbstractSimplePortObjectSpecSerializer<StructurePortObjectSpec> {}
     
     private static final String CFG_NO_STRUCTURES = "CFG_NO_STRUCTURES";
+
+    // Number of structures of specs which are created before the structures are known
+    public static final int UNKNOWN = 0;
 	
 	private DataType m_type;
 	private int nStructures;
@@ -41,6 +44,21 @@ public final class StructurePortObjectSpec extends AbstractSimplePortObjectSpec
 		}
 	}
 	
+	/**
+	 * Spec of structures whose number is only known after execution, like the specs returned by configure.
+	 *
+	 * @param type Type of the cells of the structures
+	 */
+	public StructurePortObjectSpec(final DataType type) {
+
+		if (type == null) {
+
+			throw new NullPointerException("Argument must not be null.");
+		}
+		this.m_type = type;
+		this.nStructures = UNKNOWN;
+	}
+
 	  /** <b>Framework constructor - do not use.</b> The constructor is required
      * by the super class implementation to restore the content. Client code
      * must not call this constructor. */
@@ -55,6 +73,9 @@ public final class StructurePortObjectSpec extends AbstractSimplePortObjectSpec
         return this.m_type;
     }
     
+    /**
+     * @return Number of structures, {@link #UNKNOWN} before execution of nodes which do not know the number in advance
+     */
     public int getNStructures() {
     	
     	return this.nStructures;
@@ -0,0 +1,129 @@
+package org.proteinevolution.models.alignment;
+
+import java.util.BitSet;
+import java.util.stream.IntStream;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignment;
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+
+/**
+ * Removes gappy columns and sequences with low coverage from an alignment in two streaming passes over
+ * the sequences. The first pass counts the gaps of each column, the second pass counts the residues of each
+ * sequence in the remaining columns. The result is an {@link AlignmentView}, such that no residues are copied
+ * until the trimmed alignment is written.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class AlignmentTrimmer {
+
+	// Number of sequences per task when counting gaps
+	private static final int ROWS_PER_TASK = 256;
+
+	private AlignmentTrimmer() {
+
+		throw new AssertionError();
+	}
+
+
+	/**
+	 * Number of gaps ('-' or '.') in each column, computed in one pass over the sequences.
+	 *
+	 * @param alignment The alignment
+	 * @return Number of gaps of each column
+	 */
+	public static int[] gapCounts(final ISequenceAlignment alignment) {
+
+		final int nSequences = alignment.getNumberSequences();
+		final int length = alignment.getLength();
+		int nTasks = (nSequences + ROWS_PER_TASK - 1) / ROWS_PER_TASK;
+
+		return IntStream.range(0, nTasks).parallel().mapToObj(task -> {
+
+			int[] partial = new int[length];
+			int end = Math.min(nSequences, (task + 1) * ROWS_PER_TASK);
+			for (int i = task * ROWS_PER_TASK; i < end; ++i) {
+
+				for (int j = 0; j < length; ++j) {
+
+					if (isGap(alignment.getResidueAt(i, j))) {
+
+						partial[j]++;
+					}
+				}
+			}
+			return partial;
+
+		}).reduce(new int[length], (x, y) -> {
+
+			int[] sum = new int[length];
+			for (int j = 0; j < length; ++j) {
+
+				sum[j] = x[j] + y[j];
+			}
+			return sum;
+		});
+	}
+
+
+	/**
+	 * Trims the alignment.
+	 *
+	 * @param alignment The alignment
+	 * @param maxGapFraction Columns with a larger fraction of gaps are removed
+	 * @param minCoverage Sequences with a smaller fraction of residues in the remaining columns are removed
+	 * @param keepFirst Whether the first sequence is kept regardless of its coverage
+	 * @return View of the remaining sequences and columns
+	 */
+	public static AlignmentView trim(
+			final ISequenceAlignmentAnnotated alignment,
+			final double maxGapFraction,
+			final double minCoverage,
+			final boolean keepFirst) {
+
+		final int nSequences = alignment.getNumberSequences();
+		int[] gaps = gapCounts(alignment);
+
+		final BitSet columns = new BitSet(gaps.length);
+		for (int j = 0; j < gaps.length; ++j) {
+
+			if ((double) gaps[j] / nSequences <= maxGapFraction) {
+
+				columns.set(j);
+			}
+		}
+		final int[] kept = columns.stream().toArray();
+
+		// Coverage of each sequence with respect to the remaining columns
+		BitSet rows = new BitSet(nSequences);
+		IntStream.range(0, nSequences).parallel().filter(i -> {
+
+			if (i == 0 && keepFirst) {
+
+				return true;
+			}
+			int residues = 0;
+			for (int j : kept) {
+
+				if ( ! isGap(alignment.getResidueAt(i, j))) {
+
+					residues++;
+				}
+			}
+			return kept.length == 0 ? minCoverage <= 0 : (double) residues / kept.length >= minCoverage;
+
+		}).forEachOrdered(rows::set);
+
+		if (rows.isEmpty()) {
+
+			throw new IllegalArgumentException("No sequence satisfies the minimum coverage of " + minCoverage);
+		}
+		return AlignmentView.of(alignment).selectColumns(columns).selectRows(rows);
+	}
+
+
+	private static boolean isGap(final byte residue) {
+
+		return residue == '-' || residue == '.';
+	}
+}
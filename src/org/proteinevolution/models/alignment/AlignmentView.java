@@ -0,0 +1,378 @@
+package org.proteinevolution.models.alignment;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignmentAnnotated;
+import org.proteinevolution.models.spec.AlignmentFormat;
+
+/**
+ * Read-only view of selected sequences and columns of another alignment. Only the indices of the selection
+ * are stored, residues are read from the parent alignment on access. Views of views refer to the original
+ * alignment directly, such that slicing repeatedly does not add indirections.
+ *
+ * Annotations of the parent are restricted to the selected columns. Further annotations can be added to the
+ * view, they follow those of the parent. The residues are only copied when the view is written or copied
+ * explicitly, e.g. with <code>SequenceAlignmentContent.copyOf</code>.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class AlignmentView implements ISequenceAlignmentAnnotated {
+
+	private final ISequenceAlignmentAnnotated parent;
+	private final int[] rows;
+
+	// Either the selected columns or null, in which case the columns are a range starting at columnOffset
+	private final int[] columns;
+	private final int columnOffset;
+	private final int length;
+
+	// Annotations added to the view, with one symbol per column of the view
+	private final List<char[]> annotations;
+
+
+	private AlignmentView(
+			final ISequenceAlignmentAnnotated parent,
+			final int[] rows,
+			final int[] columns,
+			final int columnOffset,
+			final int length,
+			final List<char[]> annotations) {
+
+		if (rows.length == 0) {
+
+			throw new IllegalArgumentException("Alignment view must contain at least one sequence!");
+		}
+		this.parent = parent;
+		this.rows = rows;
+		this.columns = columns;
+		this.columnOffset = columnOffset;
+		this.length = length;
+		this.annotations = annotations;
+	}
+
+
+	/**
+	 * View of the whole alignment, which can then be restricted with {@link #selectRows} and {@link #selectColumns}.
+	 *
+	 * @param alignment The parent alignment
+	 * @return The view
+	 */
+	public static AlignmentView of(final ISequenceAlignmentAnnotated alignment) {
+
+		if (alignment instanceof AlignmentView) {
+
+			return (AlignmentView) alignment;
+		}
+		return new AlignmentView(
+				alignment,
+				range(0, alignment.getNumberSequences()),
+				null,
+				0,
+				alignment.getLength(),
+				Collections.<char[]>emptyList());
+	}
+
+
+	/**
+	 * Restricts the view to the sequences in the range <code>[from, to)</code>.
+	 *
+	 * @param from First sequence of the view (inclusive)
+	 * @param to Last sequence of the view (exclusive)
+	 * @return The new view
+	 */
+	public AlignmentView selectRows(final int from, final int to) {
+
+		checkRange(from, to, this.rows.length);
+		return this.selectRows(range(from, to));
+	}
+
+	/**
+	 * Restricts the view to the sequences whose bit is set.
+	 *
+	 * @param mask Mask of the sequences of this view
+	 * @return The new view
+	 */
+	public AlignmentView selectRows(final BitSet mask) {
+
+		return this.selectRows(indices(mask, this.rows.length));
+	}
+
+	/**
+	 * Restricts the view to the provided sequences, in the provided order.
+	 *
+	 * @param indices Indices of sequences of this view
+	 * @return The new view
+	 */
+	public AlignmentView selectRows(final int[] indices) {
+
+		int[] selected = new int[indices.length];
+		for (int i = 0; i < indices.length; ++i) {
+
+			selected[i] = this.rows[indices[i]];
+		}
+		return new AlignmentView(this.parent, selected, this.columns, this.columnOffset, this.length, this.annotations);
+	}
+
+
+	/**
+	 * Restricts the view to the columns in the range <code>[from, to)</code>.
+	 *
+	 * @param from First column of the view (inclusive)
+	 * @param to Last column of the view (exclusive)
+	 * @return The new view
+	 */
+	public AlignmentView selectColumns(final int from, final int to) {
+
+		checkRange(from, to, this.length);
+		List<char[]> annotations = new ArrayList<char[]>(this.annotations.size());
+		for (char[] annotation : this.annotations) {
+
+			annotations.add(Arrays.copyOfRange(annotation, from, to));
+		}
+		if (this.columns == null) {
+
+			return new AlignmentView(this.parent, this.rows, null, this.columnOffset + from, to - from, annotations);
+		}
+		int[] selected = new int[to - from];
+		System.arraycopy(this.columns, from, selected, 0, selected.length);
+		return new AlignmentView(this.parent, this.rows, selected, 0, selected.length, annotations);
+	}
+
+	/**
+	 * Restricts the view to the columns whose bit is set.
+	 *
+	 * @param mask Mask of the columns of this view
+	 * @return The new view
+	 */
+	public AlignmentView selectColumns(final BitSet mask) {
+
+		int[] selected = indices(mask, this.length);
+		List<char[]> annotations = new ArrayList<char[]>(this.annotations.size());
+		for (char[] annotation : this.annotations) {
+
+			char[] restricted = new char[selected.length];
+			for (int j = 0; j < selected.length; ++j) {
+
+				restricted[j] = annotation[selected[j]];
+			}
+			annotations.add(restricted);
+		}
+		for (int j = 0; j < selected.length; ++j) {
+
+			selected[j] = this.parentColumn(selected[j]);
+		}
+		return new AlignmentView(this.parent, this.rows, selected, 0, selected.length, annotations);
+	}
+
+
+	/**
+	 * Adds an annotation to the view, the parent alignment is not modified.
+	 *
+	 * @param annotation The annotation, with one symbol per column of the view
+	 * @return The new view
+	 * @throws IllegalArgumentException If the length of the annotation differs from the length of the view
+	 */
+	public AlignmentView addAnnotation(final char[] annotation) {
+
+		if (annotation.length != this.length) {
+
+			throw new IllegalArgumentException("Annotation has " + annotation.length + " columns instead of " + this.length);
+		}
+		List<char[]> annotations = new ArrayList<char[]>(this.annotations);
+		annotations.add(annotation.clone());
+		return new AlignmentView(this.parent, this.rows, this.columns, this.columnOffset, this.length, annotations);
+	}
+
+
+	/**
+	 * Index of a sequence of this view in the parent alignment.
+	 *
+	 * @param index Index of the sequence in this view
+	 * @return Index of the sequence in the parent
+	 */
+	public int parentRow(final int index) {
+
+		return this.rows[index];
+	}
+
+	/**
+	 * Index of a column of this view in the parent alignment.
+	 *
+	 * @param column Index of the column in this view
+	 * @return Index of the column in the parent
+	 */
+	public int parentColumn(final int column) {
+
+		return this.columns == null ? this.columnOffset + column : this.columns[column];
+	}
+
+	/**
+	 * Whether the columns of this view are a contiguous range of the parent.
+	 *
+	 * @return True if column <code>j</code> of the view is column <code>parentColumn(0) + j</code> of the parent
+	 */
+	public boolean isColumnRange() {
+
+		return this.columns == null;
+	}
+
+	public ISequenceAlignmentAnnotated getParent() {
+
+		return this.parent;
+	}
+
+
+	@Override
+	public char[] getSequenceAt(final int index) {
+
+		char[] result = new char[this.length];
+		for (int j = 0; j < this.length; ++j) {
+
+			result[j] = (char) (this.getResidueAt(index, j) & 0xFF);
+		}
+		return result;
+	}
+
+	@Override
+	public byte getResidueAt(final int index, final int column) {
+
+		if (column < 0 || column >= this.length) {
+
+			throw new IndexOutOfBoundsException("Column " + column + " not in view of length " + this.length);
+		}
+		return this.parent.getResidueAt(this.rows[index], this.parentColumn(column));
+	}
+
+	@Override
+	public String getHeaderAt(final int index) {
+
+		return this.parent.getHeaderAt(this.rows[index]);
+	}
+
+	@Override
+	public int getNumberSequences() {
+
+		return this.rows.length;
+	}
+
+	@Override
+	public int getLength() {
+
+		return this.length;
+	}
+
+	@Override
+	public AlignmentFormat getAlignmentFormat() {
+
+		AlignmentFormat format = this.parent.getAlignmentFormat();
+		if (this.rows.length == 1) {
+
+			return AlignmentFormat.SingleSequence;
+		}
+		return format == AlignmentFormat.SingleSequence ? AlignmentFormat.FASTA : format;
+	}
+
+	@Override
+	public char[] getAnnotationAt(final int index) {
+
+		int nParent = this.parent.getNumAnnotations();
+		if (index >= nParent) {
+
+			return this.annotations.get(index - nParent).clone();
+		}
+		char[] annotation = this.parent.getAnnotationAt(index);
+		if (this.columns == null) {
+
+			char[] result = new char[this.length];
+			System.arraycopy(annotation, this.columnOffset, result, 0, this.length);
+			return result;
+		}
+		char[] result = new char[this.length];
+		for (int j = 0; j < this.length; ++j) {
+
+			result[j] = annotation[this.columns[j]];
+		}
+		return result;
+	}
+
+	@Override
+	public int getNumAnnotations() {
+
+		return this.parent.getNumAnnotations() + this.annotations.size();
+	}
+
+
+	/**
+	 * Writes the selected sequences and columns in FASTA format, 80 residues per line.
+	 */
+	@Override
+	public void write(final Writer out) throws IOException {
+
+		String linesep = System.lineSeparator();
+		char[] line = new char[80];
+
+		for (int i = 0; i < this.rows.length; ++i) {
+
+			out.write(">");
+			out.write(this.getHeaderAt(i));
+			out.write(linesep);
+
+			for (int start = 0; start < this.length; start += 80) {
+
+				int end = Math.min(this.length, start + 80);
+				for (int j = start; j < end; ++j) {
+
+					line[j - start] = (char) (this.getResidueAt(i, j) & 0xFF);
+				}
+				out.write(line, 0, end - start);
+				out.write(linesep);
+			}
+			if (this.length == 0) {
+
+				out.write(linesep);
+			}
+		}
+		out.flush();
+	}
+
+
+	private static int[] range(final int from, final int to) {
+
+		int[] result = new int[to - from];
+		for (int i = 0; i < result.length; ++i) {
+
+			result[i] = from + i;
+		}
+		return result;
+	}
+
+	private static int[] indices(final BitSet mask, final int size) {
+
+		if (mask.length() > size) {
+
+			throw new IndexOutOfBoundsException("Mask selects index " + (mask.length() - 1) + ", but size is " + size);
+		}
+		int[] result = new int[mask.cardinality()];
+		int k = 0;
+		for (int i = mask.nextSetBit(0); i >= 0; i = mask.nextSetBit(i + 1)) {
+
+			result[k++] = i;
+		}
+		return result;
+	}
+
+	private static void checkRange(final int from, final int to, final int size) {
+
+		if (from < 0 || to > size || from > to) {
+
+			throw new IndexOutOfBoundsException("Range [" + from + ", " + to + ") not within [0, " + size + ")");
+		}
+	}
+}
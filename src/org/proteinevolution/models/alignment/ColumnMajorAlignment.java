@@ -0,0 +1,129 @@
+package org.proteinevolution.models.alignment;
+
+import java.util.Arrays;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignment;
+
+/**
+ * Column-major copy of the residues of a sequence alignment. All residues of one column are stored
+ * contiguously, which is the layout required by column-wise analyses of deep alignments.
+ *
+ * Copies can be restricted to a range of columns. Analyses process alignments in such blocks, so only the
+ * blocks in progress are on the heap, also for memory-mapped alignments.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class ColumnMajorAlignment {
+
+	// Number of rows transposed at once, such that the source rows stay in the cache
+	private static final int BLOCK_SIZE = 256;
+
+	// Blocks of columns processed at once take about this many bytes, but have at most MAX_BLOCK_COLUMNS columns
+	private static final int BLOCK_BYTES = 1 << 22;
+	private static final int MAX_BLOCK_COLUMNS = 64;
+
+	private final byte[][] columns;
+	private final int nSequences;
+
+
+	private ColumnMajorAlignment(final byte[][] columns, final int nSequences) {
+
+		this.columns = columns;
+		this.nSequences = nSequences;
+	}
+
+
+	/**
+	 * Transposes the residues of the provided alignment.
+	 *
+	 * @param alignment The alignment
+	 * @return Column-major copy of the alignment
+	 */
+	public static ColumnMajorAlignment fromAlignment(final ISequenceAlignment alignment) {
+
+		return fromAlignment(alignment, 0, alignment.getLength());
+	}
+
+	/**
+	 * Transposes the residues of a range of columns of the provided alignment. Column <code>from</code>
+	 * of the alignment is column 0 of the copy.
+	 *
+	 * @param alignment The alignment
+	 * @param from First column, inclusive
+	 * @param to Last column, exclusive
+	 * @return Column-major copy of the columns
+	 */
+	public static ColumnMajorAlignment fromAlignment(final ISequenceAlignment alignment, final int from, final int to) {
+
+		if (from < 0 || to > alignment.getLength() || from > to) {
+
+			throw new IndexOutOfBoundsException("Columns " + from + " to " + to + " are not in the alignment");
+		}
+		int nSequences = alignment.getNumberSequences();
+		byte[][] columns = new byte[to - from][nSequences];
+
+		for (int block = 0; block < nSequences; block += BLOCK_SIZE) {
+
+			int end = Math.min(nSequences, block + BLOCK_SIZE);
+			for (int col = from; col < to; ++col) {
+
+				byte[] column = columns[col - from];
+				for (int row = block; row < end; ++row) {
+
+					column[row] = alignment.getResidueAt(row, col);
+				}
+			}
+		}
+		return new ColumnMajorAlignment(columns, nSequences);
+	}
+
+
+	// Number of columns per block for alignments with the given number of sequences
+	static int getBlockLength(final int nSequences) {
+
+		return Math.max(1, Math.min(MAX_BLOCK_COLUMNS, BLOCK_BYTES / Math.max(1, nSequences)));
+	}
+
+	/**
+	 * Blocks of columns of an alignment, see {@link ColumnMajorAlignment#fromAlignment(ISequenceAlignment, int, int)}.
+	 */
+	interface Blocks {
+
+		ColumnMajorAlignment get(int from, int to);
+	}
+
+	// Blocks transposed when requested
+	static Blocks blocksOf(final ISequenceAlignment alignment) {
+
+		return (from, to) -> fromAlignment(alignment, from, to);
+	}
+
+	// Blocks of this copy share its columns
+	Blocks blocks() {
+
+		return (from, to) -> new ColumnMajorAlignment(Arrays.copyOfRange(this.columns, from, to), this.nSequences);
+	}
+
+
+	/**
+	 * Returns all residues of one column. The returned array must not be modified.
+	 *
+	 * @param column Index of the column
+	 * @return The residues of the column, indexed by sequence
+	 */
+	public byte[] getColumn(final int column) {
+
+		return this.columns[column];
+	}
+
+	public int getNumberSequences() {
+
+		return this.nSequences;
+	}
+
+	public int getLength() {
+
+		return this.columns.length;
+	}
+}
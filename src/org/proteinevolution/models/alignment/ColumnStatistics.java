@@ -0,0 +1,206 @@
+package org.proteinevolution.models.alignment;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignment;
+
+/**
+ * Per-column statistics of a sequence alignment: gap fraction, amino acid counts, Shannon entropy
+ * and a conservation score. Columns are processed in parallel blocks, see {@link ColumnMajorAlignment},
+ * such that memory-mapped alignments are not copied into the heap as a whole.
+ *
+ * Gaps are <code>-</code> and <code>.</code>. Residues other than the 20 standard amino acids count as
+ * residues, but do not contribute to the amino acid distribution of a column.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class ColumnStatistics {
+
+	public static final String AMINO_ACIDS = "ACDEFGHIKLMNPQRSTVWY";
+
+	private static final int N_AMINO_ACIDS = AMINO_ACIDS.length();
+	private static final double MAX_ENTROPY = Math.log(N_AMINO_ACIDS) / Math.log(2);
+
+	// Maps residue bytes to the index of the amino acid, -1 for other residues and -2 for gaps
+	private static final byte[] SYMBOL_INDEX = new byte[256];
+	static {
+		Arrays.fill(SYMBOL_INDEX, (byte) -1);
+		for (int i = 0; i < N_AMINO_ACIDS; ++i) {
+
+			SYMBOL_INDEX[AMINO_ACIDS.charAt(i)] = (byte) i;
+			SYMBOL_INDEX[Character.toLowerCase(AMINO_ACIDS.charAt(i))] = (byte) i;
+		}
+		SYMBOL_INDEX['-'] = -2;
+		SYMBOL_INDEX['.'] = -2;
+	}
+
+	private final int nSequences;
+	private final int[][] counts;
+	private final double[] gapFraction;
+	private final double[] entropy;
+	private final double[] conservation;
+
+
+	private ColumnStatistics(final int nSequences, final int length) {
+
+		this.nSequences = nSequences;
+		this.counts = new int[length][N_AMINO_ACIDS];
+		this.gapFraction = new double[length];
+		this.entropy = new double[length];
+		this.conservation = new double[length];
+	}
+
+
+	/**
+	 * Computes the statistics of all columns of the alignment.
+	 *
+	 * @param alignment The alignment
+	 * @return Statistics of all columns
+	 */
+	public static ColumnStatistics compute(final ISequenceAlignment alignment) {
+
+		return compute(alignment.getNumberSequences(), alignment.getLength(), ColumnMajorAlignment.blocksOf(alignment));
+	}
+
+	/**
+	 * Computes the statistics of all columns of the alignment.
+	 *
+	 * @param alignment Column-major alignment
+	 * @return Statistics of all columns
+	 */
+	public static ColumnStatistics compute(final ColumnMajorAlignment alignment) {
+
+		return compute(alignment.getNumberSequences(), alignment.getLength(), alignment.blocks());
+	}
+
+	private static ColumnStatistics compute(final int nSequences, final int length, final ColumnMajorAlignment.Blocks blocks) {
+
+		final ColumnStatistics result = new ColumnStatistics(nSequences, length);
+		final int blockLength = ColumnMajorAlignment.getBlockLength(nSequences);
+		IntStream.range(0, (length + blockLength - 1) / blockLength).parallel().forEach(block -> {
+
+			int from = block * blockLength;
+			int to = Math.min(length, from + blockLength);
+			ColumnMajorAlignment columns = blocks.get(from, to);
+			for (int col = from; col < to; ++col) {
+
+				result.computeColumn(col, columns.getColumn(col - from));
+			}
+		});
+		return result;
+	}
+
+
+	private void computeColumn(final int col, final byte[] column) {
+
+		int[] count = this.counts[col];
+		int gaps = 0;
+
+		for (byte residue : column) {
+
+			int index = SYMBOL_INDEX[residue & 0xFF];
+			if (index >= 0) {
+
+				count[index]++;
+
+			} else if (index == -2) {
+
+				gaps++;
+			}
+		}
+		int total = 0;
+		for (int c : count) {
+
+			total += c;
+		}
+		double h = 0;
+		for (int c : count) {
+
+			if (c > 0) {
+
+				double p = (double) c / total;
+				h -= p * Math.log(p);
+			}
+		}
+		h /= Math.log(2);
+
+		this.gapFraction[col] = column.length == 0 ? 0 : (double) gaps / column.length;
+		this.entropy[col] = h;
+
+		// Low entropy and few gaps, columns without amino acids are not conserved
+		this.conservation[col] = total == 0 ? 0 : (1 - h / MAX_ENTROPY) * (1 - this.gapFraction[col]);
+	}
+
+
+	public int getLength() {
+
+		return this.gapFraction.length;
+	}
+
+	public int getNumberSequences() {
+
+		return this.nSequences;
+	}
+
+	/**
+	 * Returns the counts of the amino acids in a column, in the order of {@link #AMINO_ACIDS}.
+	 * The returned array must not be modified.
+	 *
+	 * @param column Index of the column
+	 * @return Amino acid counts
+	 */
+	public int[] getCounts(final int column) {
+
+		return this.counts[column];
+	}
+
+	public double getGapFraction(final int column) {
+
+		return this.gapFraction[column];
+	}
+
+	/**
+	 * Shannon entropy (in bits) of the amino acid distribution of a column.
+	 *
+	 * @param column Index of the column
+	 * @return Entropy between 0 and log2(20)
+	 */
+	public double getEntropy(final int column) {
+
+		return this.entropy[column];
+	}
+
+	/**
+	 * Conservation score of a column, defined as the normalized inverse entropy weighted by the fraction of
+	 * non-gap residues.
+	 *
+	 * @param column Index of the column
+	 * @return Conservation between 0 (not conserved) and 1 (invariant, no gaps)
+	 */
+	public double getConservation(final int column) {
+
+		return this.conservation[column];
+	}
+
+	/**
+	 * Returns the most frequent amino acid of a column.
+	 *
+	 * @param column Index of the column
+	 * @return The most frequent amino acid or <code>-</code> if the column contains no amino acid
+	 */
+	public char getConsensus(final int column) {
+
+		int[] count = this.counts[column];
+		int best = -1;
+		for (int i = 0; i < count.length; ++i) {
+
+			if (count[i] > 0 && (best == -1 || count[i] > count[best])) {
+
+				best = i;
+			}
+		}
+		return best == -1 ? '-' : AMINO_ACIDS.charAt(best);
+	}
+}
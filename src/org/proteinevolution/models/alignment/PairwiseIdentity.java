@@ -0,0 +1,295 @@
+package org.proteinevolution.models.alignment;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignment;
+
+/**
+ * Pairwise sequence identity and coverage of the sequences in an alignment, computed on demand for each pair.
+ *
+ * Each sequence is encoded as five bit planes of the residue code plus a residue mask, 64 columns per word.
+ * The identical residues of two sequences in 64 columns are then obtained with a few XORs and one popcount.
+ * Pairs are compared when requested, so memory grows linearly with the number of sequences. The redundancy
+ * filter compares each candidate with the kept sequences in parallel.
+ *
+ * For two sequences, the identity is the fraction of identical residues among the columns in which both
+ * sequences have a residue. The coverage of a sequence is the number of these columns divided by the number
+ * of its residues.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class PairwiseIdentity {
+
+	// Bit planes of the residue code followed by the mask of residues
+	private static final int PLANES = 5;
+	private static final int STRIDE = PLANES + 1;
+
+	// Candidates are compared with the kept sequences in parallel once this many sequences are kept
+	private static final int PARALLEL_THRESHOLD = 512;
+
+	// Number of columns per block for the minimum number of diverse sequences (hhfilter -diff)
+	public static final int DIVERSITY_BLOCK = 50;
+
+	private final int length;
+	private final int words;
+	private final long[][] encoded;
+	private final int[] residues;
+
+
+	private PairwiseIdentity(final int length, final long[][] encoded, final int[] residues) {
+
+		this.length = length;
+		this.words = (length + 63) / 64;
+		this.encoded = encoded;
+		this.residues = residues;
+	}
+
+
+	/**
+	 * Encodes the sequences of the alignment for the comparison of pairs.
+	 *
+	 * @param alignment The alignment
+	 * @return The encoded sequences
+	 */
+	public static PairwiseIdentity compute(final ISequenceAlignment alignment) {
+
+		final int n = alignment.getNumberSequences();
+		final int words = (alignment.getLength() + 63) / 64;
+		final long[][] encoded = new long[n][];
+		final int[] residues = new int[n];
+
+		IntStream.range(0, n).parallel().forEach(i -> {
+
+			encoded[i] = encode(alignment, i, words);
+			for (int w = 0; w < words; ++w) {
+
+				residues[i] += Long.bitCount(encoded[i][w * STRIDE + PLANES]);
+			}
+		});
+		return new PairwiseIdentity(alignment.getLength(), encoded, residues);
+	}
+
+
+	// Number of identical residues in the upper and number of aligned residues in the lower half
+	private long compare(final int i, final int j) {
+
+		long[] a = this.encoded[i];
+		long[] b = this.encoded[j];
+		int identical = 0;
+		int aligned = 0;
+		for (int w = 0, off = 0; w < this.words; ++w, off += STRIDE) {
+
+			long mask = a[off + PLANES] & b[off + PLANES];
+			long diff = (a[off] ^ b[off])
+					| (a[off + 1] ^ b[off + 1])
+					| (a[off + 2] ^ b[off + 2])
+					| (a[off + 3] ^ b[off + 3])
+					| (a[off + 4] ^ b[off + 4]);
+
+			identical += Long.bitCount(~diff & mask);
+			aligned += Long.bitCount(mask);
+		}
+		return (long) identical << 32 | aligned;
+	}
+
+	// Residue codes: letters 1 to 26 (case-insensitive), 27 for other symbols, gaps are not in the mask
+	private static long[] encode(final ISequenceAlignment alignment, final int index, final int words) {
+
+		long[] result = new long[words * STRIDE];
+		for (int col = 0; col < alignment.getLength(); ++col) {
+
+			byte residue = alignment.getResidueAt(index, col);
+			if (residue == '-' || residue == '.') {
+
+				continue;
+			}
+			int code;
+			if (residue >= 'A' && residue <= 'Z') {
+
+				code = residue - 'A' + 1;
+
+			} else if (residue >= 'a' && residue <= 'z') {
+
+				code = residue - 'a' + 1;
+
+			} else {
+
+				code = 27;
+			}
+			int off = (col >>> 6) * STRIDE;
+			long bit = 1L << (col & 63);
+			for (int p = 0; p < PLANES; ++p) {
+
+				if ((code & (1 << p)) != 0) {
+
+					result[off + p] |= bit;
+				}
+			}
+			result[off + PLANES] |= bit;
+		}
+		return result;
+	}
+
+
+	public int getNumberSequences() {
+
+		return this.encoded.length;
+	}
+
+	/**
+	 * Fraction of identical residues among the columns in which both sequences have a residue.
+	 *
+	 * @param i Index of the first sequence
+	 * @param j Index of the second sequence
+	 * @return Identity between 0 and 1
+	 */
+	public double getIdentity(final int i, final int j) {
+
+		if (i == j) {
+
+			return 1;
+		}
+		long counts = this.compare(i, j);
+		int aligned = (int) counts;
+		return aligned == 0 ? 0 : (double) (counts >>> 32) / aligned;
+	}
+
+	/**
+	 * Number of columns in which both sequences have a residue, relative to the number of residues of the
+	 * first sequence.
+	 *
+	 * @param i Index of the covered sequence, like the query
+	 * @param j Index of the second sequence
+	 * @return Coverage of sequence i between 0 and 1
+	 */
+	public double getCoverage(final int i, final int j) {
+
+		if (this.residues[i] == 0) {
+
+			return 0;
+		}
+		return i == j ? 1 : (double) (int) this.compare(i, j) / this.residues[i];
+	}
+
+
+	/**
+	 * Greedy redundancy filter similar to <code>hhfilter</code>. The first sequence is the query and always kept.
+	 * Each following sequence is kept if it satisfies the thresholds with respect to the query and does not exceed
+	 * the maximum identity with any sequence kept so far.
+	 *
+	 * @param maxIdentity Maximum pairwise identity of the kept sequences (<code>-id</code>)
+	 * @param minQueryIdentity Minimum identity with the query (<code>-qid</code>)
+	 * @param minQueryCoverage Minimum coverage of the query (<code>-cov</code>)
+	 * @return Indices of the kept sequences in ascending order
+	 */
+	public int[] filter(final double maxIdentity, final double minQueryIdentity, final double minQueryCoverage) {
+
+		return this.filter(maxIdentity, minQueryIdentity, minQueryCoverage, 0);
+	}
+
+	/**
+	 * Greedy redundancy filter like {@link #filter(double, double, double)}, which keeps only the most diverse
+	 * sequences if <code>minDiverse</code> is positive: The maximum identity is raised in steps of one percent up
+	 * to <code>maxIdentity</code>, until each block of {@link #DIVERSITY_BLOCK} columns contains residues of at least
+	 * <code>minDiverse</code> kept sequences, or of all sequences which pass the query thresholds.
+	 *
+	 * @param maxIdentity Maximum pairwise identity of the kept sequences (<code>-id</code>)
+	 * @param minQueryIdentity Minimum identity with the query (<code>-qid</code>)
+	 * @param minQueryCoverage Minimum coverage of the query (<code>-cov</code>)
+	 * @param minDiverse Minimum number of sequences per block of columns (<code>-diff</code>), 0 to keep all
+	 * @return Indices of the kept sequences in ascending order
+	 */
+	public int[] filter(
+			final double maxIdentity,
+			final double minQueryIdentity,
+			final double minQueryCoverage,
+			final int minDiverse) {
+
+		if (minDiverse < 0) {
+
+			throw new IllegalArgumentException("Minimum number of diverse sequences must not be negative!");
+		}
+		int[] candidates = IntStream.range(0, this.getNumberSequences()).filter(j -> j == 0
+				|| this.getIdentity(0, j) >= minQueryIdentity && this.getCoverage(0, j) >= minQueryCoverage).toArray();
+
+		if (minDiverse > 0) {
+
+			int nBlocks = (this.length + DIVERSITY_BLOCK - 1) / DIVERSITY_BLOCK;
+			int[] required = new int[nBlocks];
+			for (int j : candidates) {
+
+				this.countBlocks(j, required);
+			}
+			for (int b = 0; b < nBlocks; ++b) {
+
+				required[b] = Math.min(required[b], minDiverse);
+			}
+			int[] counts = new int[nBlocks];
+			for (int percent = 0; percent < Math.round(maxIdentity * 100); ++percent) {
+
+				int[] kept = this.greedy(candidates, percent / 100.0);
+				Arrays.fill(counts, 0);
+				for (int j : kept) {
+
+					this.countBlocks(j, counts);
+				}
+				boolean diverse = true;
+				for (int b = 0; b < nBlocks && diverse; ++b) {
+
+					diverse = counts[b] >= required[b];
+				}
+				if (diverse) {
+
+					return kept;
+				}
+			}
+		}
+		return this.greedy(candidates, maxIdentity);
+	}
+
+	private int[] greedy(final int[] candidates, final double maxIdentity) {
+
+		final int[] kept = new int[candidates.length];
+		int nKept = 0;
+		for (final int j : candidates) {
+
+			final int n = nKept;
+			boolean redundant = false;
+			if (n < PARALLEL_THRESHOLD) {
+
+				for (int k = 0; k < n && ! redundant; ++k) {
+
+					redundant = this.getIdentity(kept[k], j) > maxIdentity;
+				}
+			} else {
+
+				redundant = IntStream.range(0, n).parallel().anyMatch(k -> this.getIdentity(kept[k], j) > maxIdentity);
+			}
+			if ( ! redundant) {
+
+				kept[nKept++] = j;
+			}
+		}
+		return Arrays.copyOf(kept, nKept);
+	}
+
+	// Increments the count of each block of columns in which the sequence has a residue
+	private void countBlocks(final int index, final int[] counts) {
+
+		long[] sequence = this.encoded[index];
+		for (int b = 0; b < counts.length; ++b) {
+
+			int end = Math.min(this.length, (b + 1) * DIVERSITY_BLOCK);
+			for (int col = b * DIVERSITY_BLOCK; col < end; ++col) {
+
+				if ((sequence[(col >>> 6) * STRIDE + PLANES] & 1L << (col & 63)) != 0) {
+
+					counts[b]++;
+					break;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,334 @@
+package org.proteinevolution.models.alignment;
+
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+import org.proteinevolution.models.interfaces.ISequenceAlignment;
+import org.proteinevolution.models.spec.SubstitutionMatrix;
+
+/**
+ * Position-specific profile of a sequence alignment, computed in the JVM instead of with PSI-BLAST.
+ *
+ * Sequences are weighted with the position-based scheme of Henikoff and Henikoff. The weighted amino acid
+ * frequencies of each column are mixed with pseudocounts derived from a substitution matrix, as done by
+ * PSI-BLAST: <code>Q = (alpha * f + beta * g) / (alpha + beta)</code> with <code>alpha = Nc - 1</code>, where
+ * <code>Nc</code> is the average number of distinct amino acids per column. <code>Nc</code> measures the number
+ * of independent observations and is the same for all columns, PSI-BLAST averages over the block of sequences
+ * covering a column instead of the whole alignment.
+ *
+ * The effective number of sequences (Neff) of a column is <code>exp</code> of the entropy of its weighted
+ * amino acid frequencies, as in the HH-suite. It ranges from 1 (invariant column) to 20.
+ *
+ * Columns are processed in parallel blocks, see {@link ColumnMajorAlignment}. Profile columns are in the
+ * order of {@link SubstitutionMatrix#ALPHABET}.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class Profile {
+
+	private static final int N = SubstitutionMatrix.ALPHABET.length();
+
+	private final SubstitutionMatrix matrix;
+	private final double[] weights;
+	private final double nc;
+	private final double[] neff;
+	private final boolean[] empty;
+	private final double[][] probabilities;
+
+
+	private Profile(final SubstitutionMatrix matrix, final double[] weights, final double nc, final int length) {
+
+		this.matrix = matrix;
+		this.weights = weights;
+		this.nc = nc;
+		this.neff = new double[length];
+		this.empty = new boolean[length];
+		this.probabilities = new double[length][N];
+	}
+
+
+	/**
+	 * Computes the profile of all columns of the alignment. The alignment is read twice, each time in
+	 * blocks of columns, such that it is not copied as a whole.
+	 *
+	 * @param alignment The alignment
+	 * @param matrix Substitution matrix for the pseudocounts
+	 * @param pseudocountWeight Weight beta of the pseudocounts (PSI-BLAST uses 10)
+	 * @return The profile
+	 */
+	public static Profile compute(final ISequenceAlignment alignment, final SubstitutionMatrix matrix, final double pseudocountWeight) {
+
+		return compute(
+				alignment.getNumberSequences(),
+				alignment.getLength(),
+				ColumnMajorAlignment.blocksOf(alignment),
+				matrix,
+				pseudocountWeight);
+	}
+
+	/**
+	 * Computes the profile of all columns of the alignment.
+	 *
+	 * @param alignment Column-major alignment
+	 * @param matrix Substitution matrix for the pseudocounts
+	 * @param pseudocountWeight Weight beta of the pseudocounts (PSI-BLAST uses 10)
+	 * @return The profile
+	 */
+	public static Profile compute(final ColumnMajorAlignment alignment, final SubstitutionMatrix matrix, final double pseudocountWeight) {
+
+		return compute(
+				alignment.getNumberSequences(),
+				alignment.getLength(),
+				alignment.blocks(),
+				matrix,
+				pseudocountWeight);
+	}
+
+	private static Profile compute(
+			final int nSequences,
+			final int length,
+			final ColumnMajorAlignment.Blocks blocks,
+			final SubstitutionMatrix matrix,
+			final double beta) {
+
+		if (beta < 0) {
+
+			throw new IllegalArgumentException("Weight of pseudocounts must not be negative!");
+		}
+		Counts counts = count(nSequences, length, blocks);
+		final Profile result = new Profile(
+				matrix,
+				counts.getNormalizedWeights(),
+				counts.columns == 0 ? 0 : (double) counts.distinct / counts.columns,
+				length);
+
+		final int blockLength = ColumnMajorAlignment.getBlockLength(nSequences);
+		IntStream.range(0, (length + blockLength - 1) / blockLength).parallel().forEach(block -> {
+
+			int from = block * blockLength;
+			int to = Math.min(length, from + blockLength);
+			ColumnMajorAlignment columns = blocks.get(from, to);
+			for (int col = from; col < to; ++col) {
+
+				result.computeColumn(col, columns.getColumn(col - from), beta);
+			}
+		});
+		return result;
+	}
+
+
+	/**
+	 * Position-based sequence weights: In each column with <code>r</code> different amino acids, a sequence
+	 * with an amino acid that occurs <code>n</code> times receives <code>1 / (r * n)</code>. The weights are
+	 * normalized to sum up to one.
+	 *
+	 * @param alignment Column-major alignment
+	 * @return Weight of each sequence
+	 */
+	public static double[] henikoffWeights(final ColumnMajorAlignment alignment) {
+
+		return count(alignment.getNumberSequences(), alignment.getLength(), alignment.blocks()).getNormalizedWeights();
+	}
+
+	// Sums up the weights of the sequences and the numbers of distinct amino acids of the columns
+	private static Counts count(final int nSequences, final int length, final ColumnMajorAlignment.Blocks blocks) {
+
+		final int blockLength = ColumnMajorAlignment.getBlockLength(nSequences);
+
+		return IntStream.range(0, (length + blockLength - 1) / blockLength).parallel().mapToObj(block -> {
+
+			Counts partial = new Counts(nSequences);
+			int[] counts = new int[N];
+			int from = block * blockLength;
+			int to = Math.min(length, from + blockLength);
+			ColumnMajorAlignment columns = blocks.get(from, to);
+			for (int col = 0; col < to - from; ++col) {
+
+				byte[] column = columns.getColumn(col);
+				Arrays.fill(counts, 0);
+				int distinct = 0;
+				for (byte residue : column) {
+
+					int a = SubstitutionMatrix.indexOf(residue & 0xFF);
+					if (a != -1 && counts[a]++ == 0) {
+
+						distinct++;
+					}
+				}
+				if (distinct == 0) {
+
+					continue;
+				}
+				partial.distinct += distinct;
+				partial.columns++;
+				for (int i = 0; i < nSequences; ++i) {
+
+					int a = SubstitutionMatrix.indexOf(column[i] & 0xFF);
+					if (a != -1) {
+
+						partial.weights[i] += 1.0 / (distinct * counts[a]);
+					}
+				}
+			}
+			return partial;
+
+		}).reduce(new Counts(nSequences), Counts::merge);
+	}
+
+	private static final class Counts {
+
+		private final double[] weights;
+		private long distinct = 0;
+		private int columns = 0;
+
+		private Counts(final int nSequences) {
+
+			this.weights = new double[nSequences];
+		}
+
+		private static Counts merge(final Counts x, final Counts y) {
+
+			Counts sum = new Counts(x.weights.length);
+			for (int i = 0; i < sum.weights.length; ++i) {
+
+				sum.weights[i] = x.weights[i] + y.weights[i];
+			}
+			sum.distinct = x.distinct + y.distinct;
+			sum.columns = x.columns + y.columns;
+			return sum;
+		}
+
+		private double[] getNormalizedWeights() {
+
+			double total = 0;
+			for (double w : this.weights) {
+
+				total += w;
+			}
+			if (total > 0) {
+
+				for (int i = 0; i < this.weights.length; ++i) {
+
+					this.weights[i] /= total;
+				}
+			}
+			return this.weights;
+		}
+	}
+
+
+	private void computeColumn(final int col, final byte[] column, final double beta) {
+
+		double[] f = new double[N];
+		double sum = 0;
+		for (int i = 0; i < column.length; ++i) {
+
+			int a = SubstitutionMatrix.indexOf(column[i] & 0xFF);
+			if (a != -1) {
+
+				f[a] += this.weights[i];
+				sum += this.weights[i];
+			}
+		}
+		double[] q = this.probabilities[col];
+
+		// Columns without amino acids get the background distribution
+		if (sum == 0) {
+
+			this.empty[col] = true;
+			for (int a = 0; a < N; ++a) {
+
+				q[a] = this.matrix.getBackground(a);
+			}
+			return;
+		}
+		double entropy = 0;
+		for (int a = 0; a < N; ++a) {
+
+			f[a] /= sum;
+			if (f[a] > 0) {
+
+				entropy -= f[a] * Math.log(f[a]);
+			}
+		}
+		this.neff[col] = Math.exp(entropy);
+
+		double alpha = this.nc - 1;
+		for (int a = 0; a < N; ++a) {
+
+			double g = 0;
+			for (int b = 0; b < N; ++b) {
+
+				g += f[b] * this.matrix.getConditional(a, b);
+			}
+			q[a] = alpha + beta == 0 ? f[a] : (alpha * f[a] + beta * g) / (alpha + beta);
+		}
+	}
+
+
+	public int getLength() {
+
+		return this.probabilities.length;
+	}
+
+	public SubstitutionMatrix getMatrix() {
+
+		return this.matrix;
+	}
+
+	/**
+	 * Returns the normalized Henikoff weights of the sequences. The returned array must not be modified.
+	 *
+	 * @return Weight of each sequence
+	 */
+	public double[] getWeights() {
+
+		return this.weights;
+	}
+
+	/**
+	 * Effective number of sequences of a column, <code>exp</code> of the entropy of the weighted amino acid frequencies.
+	 *
+	 * @param column Index of the column
+	 * @return Neff between 1 and 20, 0 if the column contains no amino acids
+	 */
+	public double getNeff(final int column) {
+
+		return this.empty[column] ? 0 : this.neff[column];
+	}
+
+	/**
+	 * Average number of distinct amino acids per column (<code>Nc</code> of PSI-BLAST), over all columns which
+	 * contain amino acids. Ranges from 1 (all columns invariant) to 20. The observed frequencies of each column
+	 * are weighted with <code>Nc - 1</code> against the pseudocounts.
+	 *
+	 * @return Nc of the alignment
+	 */
+	public double getNc() {
+
+		return this.nc;
+	}
+
+	/**
+	 * Returns the amino acid probabilities of all columns, including pseudocounts. The returned array must not be modified.
+	 *
+	 * @return Probabilities indexed by column and amino acid
+	 */
+	public double[][] getProbabilities() {
+
+		return this.probabilities;
+	}
+
+	/**
+	 * Log-odds score of an amino acid in a column with respect to the background frequencies.
+	 *
+	 * @param column Index of the column
+	 * @param aminoAcid Index of the amino acid in {@link SubstitutionMatrix#ALPHABET}
+	 * @return Score in bits
+	 */
+	public double getScore(final int column, final int aminoAcid) {
+
+		return Math.log(this.probabilities[column][aminoAcid] / this.matrix.getBackground(aminoAcid)) / Math.log(2);
+	}
+}
@@ -0,0 +1,264 @@
+package org.proteinevolution.models.alignment;
+
+import java.util.Arrays;
+
+import org.proteinevolution.models.spec.SubstitutionMatrix;
+
+/**
+ * Local alignment scores of one query against many target sequences with affine gap costs, using the striped
+ * algorithm of Farrar (Bioinformatics 23, 2007).
+ *
+ * The query is split into {@value #LANES} interleaved segments which are processed in lock step, such that
+ * the inner loops operate on contiguous blocks of {@value #LANES} cells without data dependencies between them.
+ * Dependencies along the query caused by vertical gaps are resolved afterwards in the lazy F loop, which rarely
+ * runs for more than a few iterations.
+ *
+ * A gap of length <code>k</code> costs <code>gapOpen + k * gapExtend</code>, as in BLAST. Residues other than the
+ * 20 standard amino acids score {@value #UNKNOWN_SCORE} against all residues.
+ *
+ * Instances are immutable and can be shared between threads, each thread scores with its own {@link Scorer}.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class SmithWaterman {
+
+	// Number of query positions processed together
+	private static final int LANES = 8;
+
+	private static final int N = SubstitutionMatrix.ALPHABET.length();
+	private static final int UNKNOWN = N;
+	private static final int UNKNOWN_SCORE = -1;
+
+	// Minus infinity for F, small enough to never win and large enough to not overflow when decreased
+	private static final int NEGATIVE = -(1 << 28);
+
+	private final int queryLength;
+	private final int segmentLength;
+	private final int gapOpenExtend;
+	private final int gapExtend;
+
+	// Striped scores of the query against each residue: profile[residue][segment * LANES + lane]
+	private final int[][] profile;
+
+
+	/**
+	 * Prepares the striped query profile.
+	 *
+	 * @param query Query sequence
+	 * @param matrix Substitution matrix
+	 * @param gapOpen Cost for opening a gap (positive)
+	 * @param gapExtend Cost for each residue of a gap (positive)
+	 */
+	public SmithWaterman(final CharSequence query, final SubstitutionMatrix matrix, final int gapOpen, final int gapExtend) {
+
+		if (gapOpen < 0 || gapExtend <= 0) {
+
+			throw new IllegalArgumentException("Gap costs must be positive!");
+		}
+		this.queryLength = query.length();
+		this.segmentLength = Math.max(1, (this.queryLength + LANES - 1) / LANES);
+		this.gapOpenExtend = gapOpen + gapExtend;
+		this.gapExtend = gapExtend;
+
+		int[] codes = new int[this.queryLength];
+		for (int i = 0; i < codes.length; ++i) {
+
+			codes[i] = code(query.charAt(i));
+		}
+
+		// Query position segment + lane * segmentLength is stored at index segment * LANES + lane
+		this.profile = new int[N + 1][this.segmentLength * LANES];
+		for (int residue = 0; residue <= N; ++residue) {
+
+			for (int segment = 0; segment < this.segmentLength; ++segment) {
+
+				for (int lane = 0; lane < LANES; ++lane) {
+
+					int position = segment + lane * this.segmentLength;
+					int score = 0;
+					if (position < this.queryLength) {
+
+						score = residue == UNKNOWN || codes[position] == UNKNOWN
+								? UNKNOWN_SCORE
+								: matrix.score(codes[position], residue);
+					}
+					this.profile[residue][segment * LANES + lane] = score;
+				}
+			}
+		}
+	}
+
+
+	public int getQueryLength() {
+
+		return this.queryLength;
+	}
+
+	public Scorer newScorer() {
+
+		return new Scorer();
+	}
+
+
+	/**
+	 * Index of a residue in the query profile.
+	 *
+	 * @param residue The residue (case-insensitive)
+	 * @return Index in {@link SubstitutionMatrix#ALPHABET}, or the index for unknown residues
+	 */
+	public static int code(final int residue) {
+
+		int index = SubstitutionMatrix.indexOf(residue);
+		return index == -1 ? UNKNOWN : index;
+	}
+
+
+	/**
+	 * Computes local alignment scores against target sequences. Holds the working memory of the striped
+	 * algorithm and is therefore not thread-safe.
+	 */
+	public final class Scorer {
+
+		private int[] hStore = new int[SmithWaterman.this.segmentLength * LANES];
+		private int[] hLoad = new int[SmithWaterman.this.segmentLength * LANES];
+		private final int[] e = new int[SmithWaterman.this.segmentLength * LANES];
+
+		private final int[] h = new int[LANES];
+		private final int[] f = new int[LANES];
+		private final int[] max = new int[LANES];
+
+		private int end;
+
+
+		private Scorer() {
+
+		}
+
+
+		/**
+		 * Computes the score of the best local alignment of the query with the target.
+		 *
+		 * @param target Target sequence
+		 * @param length Number of residues of the target
+		 * @return Score of the best local alignment, 0 if there is no positive scoring alignment
+		 */
+		public int score(final byte[] target, final int length) {
+
+			final int segments = SmithWaterman.this.segmentLength;
+			final int gapOE = SmithWaterman.this.gapOpenExtend;
+			final int gapE = SmithWaterman.this.gapExtend;
+			final int[] h = this.h;
+			final int[] f = this.f;
+			final int[] max = this.max;
+			final int[] e = this.e;
+
+			Arrays.fill(this.hStore, 0);
+			Arrays.fill(this.hLoad, 0);
+			Arrays.fill(e, 0);
+			Arrays.fill(max, 0);
+			int best = 0;
+			this.end = -1;
+
+			for (int t = 0; t < length; ++t) {
+
+				final int[] scores = SmithWaterman.this.profile[code(target[t] & 0xFF)];
+				Arrays.fill(f, NEGATIVE);
+
+				// H of the last segment of the previous column, moved by one lane
+				shift(this.hStore, (segments - 1) * LANES, h, 0);
+
+				int[] swap = this.hLoad;
+				this.hLoad = this.hStore;
+				this.hStore = swap;
+				final int[] hStore = this.hStore;
+				final int[] hLoad = this.hLoad;
+
+				for (int s = 0, base = 0; s < segments; ++s, base += LANES) {
+
+					for (int lane = 0; lane < LANES; ++lane) {
+
+						int i = base + lane;
+						int value = h[lane] + scores[i];
+						value = Math.max(value, e[i]);
+						value = Math.max(value, f[lane]);
+						value = Math.max(value, 0);
+						max[lane] = Math.max(max[lane], value);
+						hStore[i] = value;
+
+						int open = value - gapOE;
+						e[i] = Math.max(e[i] - gapE, open);
+						f[lane] = Math.max(f[lane] - gapE, open);
+						h[lane] = hLoad[i];
+					}
+				}
+
+				// Lazy F loop: propagates vertical gaps across segment boundaries
+				shift(f, 0, f, NEGATIVE);
+				int s = 0;
+				while (this.improves(f, hStore, s * LANES, gapOE)) {
+
+					int base = s * LANES;
+					for (int lane = 0; lane < LANES; ++lane) {
+
+						int i = base + lane;
+						hStore[i] = Math.max(hStore[i], f[lane]);
+						e[i] = Math.max(e[i], hStore[i] - gapOE);
+						f[lane] -= gapE;
+					}
+					if (++s == segments) {
+
+						s = 0;
+						shift(f, 0, f, NEGATIVE);
+					}
+				}
+
+				int columnMax = 0;
+				for (int lane = 0; lane < LANES; ++lane) {
+
+					columnMax = Math.max(columnMax, max[lane]);
+				}
+				if (columnMax > best) {
+
+					best = columnMax;
+					this.end = t;
+				}
+			}
+			return best;
+		}
+
+		/**
+		 * Position in the target at which the best alignment of the last call to {@link #score} ends.
+		 *
+		 * @return Position in the target (0-based), -1 if the score was 0
+		 */
+		public int getTargetEnd() {
+
+			return this.end;
+		}
+
+
+		private boolean improves(final int[] f, final int[] hStore, final int base, final int gapOE) {
+
+			for (int lane = 0; lane < LANES; ++lane) {
+
+				if (f[lane] > hStore[base + lane] - gapOE) {
+
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+
+	// Moves the lanes of source[from, from + LANES) up by one, lane 0 becomes the fill value
+	private static void shift(final int[] source, final int from, final int[] target, final int fill) {
+
+		for (int lane = LANES - 1; lane > 0; --lane) {
+
+			target[lane] = source[from + lane - 1];
+		}
+		target[0] = fill;
+	}
+}
@@ -1,5 +1,6 @@
 package org.proteinevolution.models.interfaces;
 
+import org.proteinevolution.models.spec.AlignmentFormat;
 
 /**
  * ISequenceAlignment.java
@@ -22,11 +23,27 @@ package org.proteinevolution.models.interfaces;
 public interface ISequenceAlignment extends Writeable {
 
   /**
-   * Provides the sequence at a particular index in the alignment.
+   * Provides the sequence at a particular index in the alignment. Each call returns a new array, use
+   * {@link #getResidueAt(int, int)} to read single residues, e.g. when painting.
    * @param index The index of the sequence which should be returned (0-based).
    * @return      The sequence which is located at <code>index</code>.
    */
   public char[] getSequenceAt(final int index);
+
+  /**
+   * Provides a single residue of the alignment without copying the sequence.
+   * @param index  The index of the sequence (0-based).
+   * @param column The column of the alignment (0-based).
+   * @return       The residue as byte (ASCII).
+   */
+  public byte getResidueAt(final int index, final int column);
+
+  /**
+   * Provides the header of the sequence at a particular index in the alignment.
+   * @param index The index of the sequence (0-based).
+   * @return      The header of the sequence, without the leading '>'.
+   */
+  public String getHeaderAt(final int index);
   
   /**
    * Returns the total number of sequences in the alignment.
@@ -41,4 +58,11 @@ public interface ISequenceAlignment extends Writeable {
    * @return The length of the alignment.
    */
   public int getLength();
+
+  /**
+   * Returns the format the alignment has been read from.
+   *
+   * @return The format of the alignment.
+   */
+  public AlignmentFormat getAlignmentFormat();
 } 
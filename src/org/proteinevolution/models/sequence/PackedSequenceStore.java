@@ -0,0 +1,553 @@
+package org.proteinevolution.models.sequence;
+
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Compact, immutable store for a collection of protein sequences (e.g. a proteome read from a FASTA file).
+ *
+ * All residues are packed into one contiguous <code>long</code> arena using {@value #BITS_PER_SYMBOL} bits per symbol.
+ * The start of each sequence in the arena is kept in an <code>int</code> offset array and the identifiers are stored
+ * in a sorted {@link PrefixCompressedDictionary}. The index of a sequence in this store is the rank of its identifier
+ * in the dictionary.
+ *
+ * Sequences are stored case-insensitive (symbols are returned upper case). Symbols which are neither letters nor
+ * one of <code>-*.</code> are stored as <code>X</code>.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class PackedSequenceStore {
+
+	public static final int BITS_PER_SYMBOL = 5;
+
+	private static final long SYMBOL_MASK = (1L << BITS_PER_SYMBOL) - 1;
+
+	// Decoding table, the code of a symbol is its position in this string
+	private static final char[] SYMBOLS = "ABCDEFGHIJKLMNOPQRSTUVWXYZ-*.".toCharArray();
+	private static final byte UNKNOWN = (byte) ('X' - 'A');
+	private static final byte[] CODES = new byte[128];
+	static {
+		Arrays.fill(CODES, (byte) -1);
+		for (int i = 0; i < SYMBOLS.length; ++i) {
+
+			CODES[SYMBOLS[i]] = (byte) i;
+			CODES[Character.toLowerCase(SYMBOLS[i])] = (byte) i;
+		}
+	}
+
+	private final long[] arena;
+	private final int[] offsets;
+	private final PrefixCompressedDictionary identifiers;
+
+
+	private PackedSequenceStore(final long[] arena, final int[] offsets, final PrefixCompressedDictionary identifiers) {
+
+		this.arena = arena;
+		this.offsets = offsets;
+		this.identifiers = identifiers;
+	}
+
+
+	/**
+	 * Reads all sequences from a FASTA file. The identifier of a sequence is the first whitespace-separated
+	 * token of the header line. If an identifier occurs more than once, the last occurrence is kept.
+	 *
+	 * @param path Path to the FASTA file
+	 * @return Store containing all sequences of the file
+	 * @throws IOException If the file cannot be read
+	 */
+	public static PackedSequenceStore fromFASTA(final Path path) throws IOException {
+
+		try (InputStream in = new BufferedInputStream(Files.newInputStream(path), 1 << 16)) {
+
+			return fromFASTA(in);
+		}
+	}
+
+
+	/**
+	 * Reads all sequences from a FASTA formatted stream. The stream is not closed.
+	 *
+	 * @param in Stream with FASTA content
+	 * @return Store containing all sequences of the stream
+	 * @throws IOException If reading from the stream fails
+	 */
+	public static PackedSequenceStore fromFASTA(final InputStream in) throws IOException {
+
+		Builder builder = new Builder();
+		byte[] header = new byte[256];
+		int headerLength = 0;
+		boolean inHeader = false;
+		boolean lineStart = true;
+		int b;
+
+		while ((b = in.read()) != -1) {
+
+			if (b == '\n' || b == '\r') {
+
+				if (inHeader) {
+
+					builder.startSequence(identifierOf(header, headerLength));
+					inHeader = false;
+				}
+				lineStart = true;
+				continue;
+			}
+			if (lineStart && b == '>') {
+
+				headerLength = 0;
+				inHeader = true;
+
+			} else if (inHeader) {
+
+				if (headerLength == header.length) {
+
+					header = Arrays.copyOf(header, header.length * 2);
+				}
+				header[headerLength++] = (byte) b;
+
+			} else if (b > ' ') {
+
+				builder.append((char) b);
+			}
+			lineStart = false;
+		}
+		if (inHeader) {
+
+			builder.startSequence(identifierOf(header, headerLength));
+		}
+		return builder.build();
+	}
+
+
+	private static String identifierOf(final byte[] header, final int length) {
+
+		int start = 0;
+		while (start < length && header[start] <= ' ') {
+
+			start++;
+		}
+		int end = start;
+		while (end < length && header[end] > ' ') {
+
+			end++;
+		}
+		return new String(header, start, end - start, StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * Returns the number of sequences in this store.
+	 *
+	 * @return Number of sequences
+	 */
+	public int size() {
+
+		return this.identifiers.size();
+	}
+
+
+	/**
+	 * Returns the index of the sequence with the provided identifier.
+	 *
+	 * @param identifier Identifier of the sequence
+	 * @return Index of the sequence or -1 if no sequence with this identifier exists
+	 */
+	public int indexOf(final String identifier) {
+
+		return this.identifiers.rankOf(identifier);
+	}
+
+
+	public boolean contains(final String identifier) {
+
+		return this.indexOf(identifier) != -1;
+	}
+
+
+	public String getIdentifier(final int index) {
+
+		return this.identifiers.get(index);
+	}
+
+
+	public int getLength(final int index) {
+
+		return this.offsets[index + 1] - this.offsets[index];
+	}
+
+
+	/**
+	 * Returns the total number of residues in this store.
+	 *
+	 * @return Number of residues
+	 */
+	public long getTotalLength() {
+
+		return this.offsets[this.offsets.length - 1];
+	}
+
+
+	/**
+	 * Returns a symbol of a sequence without decompressing the sequence.
+	 *
+	 * @param index Index of the sequence
+	 * @param position Position in the sequence (0-based)
+	 * @return The symbol at this position (upper case)
+	 */
+	public char charAt(final int index, final int position) {
+
+		if (position < 0 || position >= this.getLength(index)) {
+
+			throw new IndexOutOfBoundsException("Position " + position + " out of bounds for sequence of length " + this.getLength(index));
+		}
+		return SYMBOLS[this.codeAt((long) this.offsets[index] + position)];
+	}
+
+
+	/**
+	 * Returns a view of the sequence with the provided index. The view decodes symbols on access.
+	 *
+	 * @param index Index of the sequence
+	 * @return View of the sequence
+	 */
+	public CharSequence getSequence(final int index) {
+
+		return new SequenceView(this.offsets[index], this.getLength(index));
+	}
+
+
+	/**
+	 * Decodes a sequence into the provided array, one ASCII byte per symbol (upper case). Avoids creating a
+	 * <code>String</code> per sequence when all sequences of the store are scanned.
+	 *
+	 * @param index Index of the sequence
+	 * @param target Destination, must hold at least {@link #getLength(int)} bytes
+	 * @return Number of bytes written
+	 */
+	public int getBytes(final int index, final byte[] target) {
+
+		int length = this.getLength(index);
+		long base = this.offsets[index];
+		for (int i = 0; i < length; ++i) {
+
+			target[i] = (byte) SYMBOLS[this.codeAt(base + i)];
+		}
+		return length;
+	}
+
+
+	/**
+	 * Searches for the first occurrence of <code>pattern</code> in the sequence with the provided index, starting
+	 * at position <code>from</code>. The comparison is case-insensitive.
+	 *
+	 * @param index Index of the sequence
+	 * @param pattern The pattern to look for
+	 * @param from Position at which the search starts
+	 * @return Position of the first occurrence or -1 if the pattern does not occur
+	 */
+	public int find(final int index, final CharSequence pattern, final int from) {
+
+		int length = this.getLength(index);
+		int patternLength = pattern.length();
+		byte[] codes = new byte[patternLength];
+
+		for (int i = 0; i < patternLength; ++i) {
+
+			char c = pattern.charAt(i);
+			codes[i] = c < 128 ? CODES[c] : -1;
+
+			// Symbol cannot be represented in the store, hence cannot occur
+			if (codes[i] == -1) {
+
+				return -1;
+			}
+		}
+		long base = this.offsets[index];
+
+		for (int start = Math.max(0, from); start <= length - patternLength; ++start) {
+
+			int i = 0;
+			while (i < patternLength && this.codeAt(base + start + i) == codes[i]) {
+
+				i++;
+			}
+			if (i == patternLength) {
+
+				return start;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Tests whether <code>pattern</code> occurs in the sequence with the provided index at the given position.
+	 * The comparison is case-insensitive.
+	 *
+	 * @param index Index of the sequence
+	 * @param position Position in the sequence at which the pattern is expected
+	 * @param pattern The pattern to compare
+	 * @return Whether the pattern occurs at this position
+	 */
+	public boolean regionMatches(final int index, final int position, final CharSequence pattern) {
+
+		int patternLength = pattern.length();
+		if (position < 0 || position + patternLength > this.getLength(index)) {
+
+			return false;
+		}
+		long base = (long) this.offsets[index] + position;
+		for (int i = 0; i < patternLength; ++i) {
+
+			char c = pattern.charAt(i);
+			if (c >= 128 || CODES[c] != this.codeAt(base + i)) {
+
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	/**
+	 * Returns the number of bytes occupied by this store on the heap (approximately).
+	 *
+	 * @return Approximate size in bytes
+	 */
+	public long estimateBytes() {
+
+		return 32L + 16L + 8L * this.arena.length + 16L + 4L * this.offsets.length + this.identifiers.estimateBytes();
+	}
+
+
+	private int codeAt(final long position) {
+
+		long bit = position * BITS_PER_SYMBOL;
+		int word = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		long value = this.arena[word] >>> shift;
+
+		// Symbol straddles two words
+		if (shift > 64 - BITS_PER_SYMBOL) {
+
+			value |= this.arena[word + 1] << (64 - shift);
+		}
+		return (int) (value & SYMBOL_MASK);
+	}
+
+	private static void putCode(final long[] arena, final long position, final int code) {
+
+		long bit = position * BITS_PER_SYMBOL;
+		int word = (int) (bit >>> 6);
+		int shift = (int) (bit & 63);
+		arena[word] |= ((long) code) << shift;
+
+		if (shift > 64 - BITS_PER_SYMBOL) {
+
+			arena[word + 1] |= ((long) code) >>> (64 - shift);
+		}
+	}
+
+	private static int wordsFor(final long symbols) {
+
+		return (int) ((symbols * BITS_PER_SYMBOL + 63) >>> 6);
+	}
+
+
+	/**
+	 * Read-only view of a range in the arena.
+	 */
+	private final class SequenceView implements CharSequence {
+
+		private final long start;
+		private final int length;
+
+		private SequenceView(final long start, final int length) {
+
+			this.start = start;
+			this.length = length;
+		}
+
+		@Override
+		public int length() {
+
+			return this.length;
+		}
+
+		@Override
+		public char charAt(final int index) {
+
+			if (index < 0 || index >= this.length) {
+
+				throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + this.length);
+			}
+			return SYMBOLS[PackedSequenceStore.this.codeAt(this.start + index)];
+		}
+
+		@Override
+		public CharSequence subSequence(final int start, final int end) {
+
+			if (start < 0 || end > this.length || start > end) {
+
+				throw new IndexOutOfBoundsException("Invalid range [" + start + ", " + end + ") for length " + this.length);
+			}
+			return new SequenceView(this.start + start, end - start);
+		}
+
+		@Override
+		public String toString() {
+
+			char[] result = new char[this.length];
+			for (int i = 0; i < this.length; ++i) {
+
+				result[i] = SYMBOLS[PackedSequenceStore.this.codeAt(this.start + i)];
+			}
+			return new String(result);
+		}
+	}
+
+
+	/**
+	 * Collects sequences in input order and packs them sorted by identifier.
+	 */
+	private static final class Builder {
+
+		private long[] arena = new long[1024];
+		private long nSymbols = 0;
+
+		private final List<String> identifiers = new ArrayList<String>();
+		private long[] starts = new long[1024];
+
+		void startSequence(final String identifier) {
+
+			if (this.identifiers.size() == this.starts.length) {
+
+				this.starts = Arrays.copyOf(this.starts, this.starts.length * 2);
+			}
+			this.starts[this.identifiers.size()] = this.nSymbols;
+			this.identifiers.add(identifier);
+		}
+
+		void append(final char c) {
+
+			// Residues before the first header are ignored
+			if (this.identifiers.isEmpty()) {
+
+				return;
+			}
+			int required = wordsFor(this.nSymbols + 1) + 1;
+			if (required > this.arena.length) {
+
+				this.arena = Arrays.copyOf(this.arena, Math.max(required, this.arena.length * 2));
+			}
+			byte code = c < 128 ? CODES[c] : -1;
+			putCode(this.arena, this.nSymbols++, code == -1 ? UNKNOWN : code);
+		}
+
+		PackedSequenceStore build() {
+
+			final int n = this.identifiers.size();
+			final byte[][] keys = new byte[n][];
+			Integer[] order = new Integer[n];
+			for (int i = 0; i < n; ++i) {
+
+				keys[i] = this.identifiers.get(i).getBytes(StandardCharsets.UTF_8);
+				order[i] = i;
+			}
+
+			// Stable sort by identifier bytes, such that the last of several duplicates can be determined
+			Arrays.sort(order, new Comparator<Integer>() {
+
+				@Override
+				public int compare(final Integer a, final Integer b) {
+
+					byte[] x = keys[a];
+					byte[] y = keys[b];
+					int max = Math.min(x.length, y.length);
+					for (int i = 0; i < max; ++i) {
+
+						int cmp = (x[i] & 0xFF) - (y[i] & 0xFF);
+						if (cmp != 0) {
+
+							return cmp;
+						}
+					}
+					return x.length - y.length;
+				}
+			});
+
+			// Keep the last occurrence of duplicated identifiers
+			List<Integer> kept = new ArrayList<Integer>(n);
+			for (int i = 0; i < n; ++i) {
+
+				if (i + 1 < n && Arrays.equals(keys[order[i]], keys[order[i + 1]])) {
+
+					continue;
+				}
+				kept.add(order[i]);
+			}
+
+			String[] sortedIdentifiers = new String[kept.size()];
+			int[] offsets = new int[kept.size() + 1];
+			long total = 0;
+			for (int i = 0; i < kept.size(); ++i) {
+
+				int slot = kept.get(i);
+				sortedIdentifiers[i] = this.identifiers.get(slot);
+				offsets[i] = (int) total;
+				total += this.lengthOf(slot);
+
+				if (total > Integer.MAX_VALUE) {
+
+					throw new IllegalStateException("Sequence database exceeds the maximum of " + Integer.MAX_VALUE + " residues");
+				}
+			}
+			offsets[kept.size()] = (int) total;
+
+			// Copy the residues into a new arena in sorted order
+			long[] packed = new long[wordsFor(total) + 1];
+			for (int i = 0; i < kept.size(); ++i) {
+
+				long from = this.starts[kept.get(i)];
+				long to = offsets[i];
+				int length = offsets[i + 1] - offsets[i];
+
+				for (int j = 0; j < length; ++j) {
+
+					putCode(packed, to + j, codeAt(this.arena, from + j));
+				}
+			}
+			this.arena = null;
+			return new PackedSequenceStore(packed, offsets, new PrefixCompressedDictionary(sortedIdentifiers));
+		}
+
+		private long lengthOf(final int slot) {
+
+			long end = slot + 1 < this.identifiers.size() ? this.starts[slot + 1] : this.nSymbols;
+			return end - this.starts[slot];
+		}
+
+		private static int codeAt(final long[] arena, final long position) {
+
+			long bit = position * BITS_PER_SYMBOL;
+			int word = (int) (bit >>> 6);
+			int shift = (int) (bit & 63);
+			long value = arena[word] >>> shift;
+			if (shift > 64 - BITS_PER_SYMBOL) {
+
+				value |= arena[word + 1] << (64 - shift);
+			}
+			return (int) (value & SYMBOL_MASK);
+		}
+	}
+}
@@ -0,0 +1,386 @@
+package org.proteinevolution.models.sequence;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+import org.proteinevolution.models.spec.Enzyme;
+
+/**
+ * Hash index from proteolytic peptides to their occurrences in a {@link PackedSequenceStore}.
+ *
+ * The peptides are obtained by in-silico digestion of all sequences in the store. The index is an
+ * open-addressing hash table with linear probing which lives in a memory-mapped file. Each slot is a
+ * single <code>long</code> that packs the sequence index, the start position and the length of one
+ * occurrence. The peptide itself is not stored, but compared against the sequence store on lookup.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class PeptideIndex implements Closeable {
+
+	private static final long MAGIC = 0x5045505449445831L;
+	private static final int VERSION = 1;
+	private static final int HEADER_BYTES = 128;
+
+	// Layout of a slot: sequence index + 1 | start | length
+	private static final int START_BITS = 24;
+	private static final int LENGTH_BITS = 12;
+	private static final int SEQUENCE_BITS = 64 - START_BITS - LENGTH_BITS;
+
+	public static final int MAX_PEPTIDE_LENGTH = (1 << LENGTH_BITS) - 1;
+
+	// Number of slots per mapped region
+	private static final int CHUNK_BITS = 27;
+	private static final int CHUNK_SLOTS = 1 << CHUNK_BITS;
+
+	private final PackedSequenceStore store;
+	private final FileChannel channel;
+	private final LongBuffer[] chunks;
+	private final long mask;
+	private final long entries;
+
+
+	private PeptideIndex(
+			final PackedSequenceStore store,
+			final FileChannel channel,
+			final MapMode mode,
+			final long capacity,
+			final long entries) throws IOException {
+
+		this.store = store;
+		this.channel = channel;
+		this.mask = capacity - 1;
+		this.entries = entries;
+
+		int nChunks = (int) ((capacity + CHUNK_SLOTS - 1) >>> CHUNK_BITS);
+		this.chunks = new LongBuffer[nChunks];
+		for (int i = 0; i < nChunks; ++i) {
+
+			long slots = Math.min(CHUNK_SLOTS, capacity - ((long) i << CHUNK_BITS));
+			this.chunks[i] = channel.map(mode, HEADER_BYTES + ((long) i << CHUNK_BITS) * 8, slots * 8).asLongBuffer();
+		}
+	}
+
+
+	/**
+	 * Opens an existing index file. The index is only returned if it has been built with the same parameters
+	 * for the same database.
+	 *
+	 * @param store The database the index refers to
+	 * @param fingerprint Identifies the version of the database (e.g. derived from size and modification time of the file)
+	 * @param enzyme Enzyme used for digestion
+	 * @param missedCleavages Maximum number of missed cleavages
+	 * @param minLength Minimum length of a peptide
+	 * @param maxLength Maximum length of a peptide
+	 * @param file The index file
+	 * @return The index or <code>null</code> if the file does not exist or does not match
+	 * @throws IOException If the file cannot be read
+	 */
+	public static PeptideIndex open(
+			final PackedSequenceStore store,
+			final long fingerprint,
+			final Enzyme enzyme,
+			final int missedCleavages,
+			final int minLength,
+			final int maxLength,
+			final Path file) throws IOException {
+
+		if ( ! Files.isRegularFile(file) || Files.size(file) < HEADER_BYTES) {
+
+			return null;
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+		ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+		while (header.hasRemaining() && channel.read(header) != -1) {}
+		header.flip();
+
+		if (header.getLong() != MAGIC
+				|| header.getInt() != VERSION
+				|| header.getInt() != enzyme.ordinal()
+				|| header.getInt() != missedCleavages
+				|| header.getInt() != minLength
+				|| header.getInt() != maxLength
+				|| header.getLong() != fingerprint
+				|| header.getInt() != store.size()
+				|| header.getLong() != store.getTotalLength()) {
+
+			channel.close();
+			return null;
+		}
+		long capacity = header.getLong();
+		long entries = header.getLong();
+
+		if (Files.size(file) != HEADER_BYTES + capacity * 8) {
+
+			channel.close();
+			return null;
+		}
+		return new PeptideIndex(store, channel, MapMode.READ_ONLY, capacity, entries);
+	}
+
+
+	/**
+	 * Digests all sequences of the store and writes the index to the provided file. The index is written to a
+	 * temporary file in the same directory, which then atomically replaces an existing file. Indices which
+	 * still map the replaced file remain valid.
+	 *
+	 * @param store The database to index
+	 * @param fingerprint Identifies the version of the database (e.g. derived from size and modification time of the file)
+	 * @param enzyme Enzyme used for digestion
+	 * @param missedCleavages Maximum number of missed cleavages
+	 * @param minLength Minimum length of a peptide
+	 * @param maxLength Maximum length of a peptide
+	 * @param file The index file
+	 * @return The index
+	 * @throws IOException If the file cannot be written
+	 */
+	public static PeptideIndex build(
+			final PackedSequenceStore store,
+			final long fingerprint,
+			final Enzyme enzyme,
+			final int missedCleavages,
+			final int minLength,
+			final int maxLength,
+			final Path file) throws IOException {
+
+		if (missedCleavages < 0 || minLength < 1 || maxLength < minLength || maxLength > MAX_PEPTIDE_LENGTH) {
+
+			throw new IllegalArgumentException("Invalid digestion parameters!");
+		}
+		if (store.size() >= (1L << SEQUENCE_BITS) - 1) {
+
+			throw new IllegalArgumentException("Too many sequences in database for the peptide index!");
+		}
+
+		// First pass counts the peptides to size the table (load factor <= 0.5)
+		int[][] sites = new int[store.size()][];
+		long count = 0;
+		for (int i = 0; i < store.size(); ++i) {
+
+			sites[i] = enzyme.cleavageSites(store.getSequence(i));
+			count += countPeptides(sites[i], missedCleavages, minLength, maxLength);
+		}
+		long capacity = 1024;
+		while (capacity < 2 * count) {
+
+			capacity <<= 1;
+		}
+
+		// The index is built in a new file, as an existing index file may still be mapped by other indices
+		Path absolute = file.toAbsolutePath();
+		Path temporary = Files.createTempFile(absolute.getParent(), absolute.getFileName().toString(), ".tmp");
+		try {
+			PeptideIndex index = fill(store, fingerprint, enzyme, missedCleavages, minLength, maxLength, sites, capacity, count, temporary);
+			try {
+				Files.move(temporary, absolute, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+
+			} catch (IOException e) {
+
+				index.close();
+				throw e;
+			}
+			return index;
+
+		} finally {
+
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static PeptideIndex fill(
+			final PackedSequenceStore store,
+			final long fingerprint,
+			final Enzyme enzyme,
+			final int missedCleavages,
+			final int minLength,
+			final int maxLength,
+			final int[][] sites,
+			final long capacity,
+			final long count,
+			final Path file) throws IOException {
+
+		try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+
+			raf.setLength(HEADER_BYTES + capacity * 8);
+		}
+		FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE);
+		try {
+			PeptideIndex index = new PeptideIndex(store, channel, MapMode.READ_WRITE, capacity, count);
+
+			// Second pass fills the table
+			for (int i = 0; i < store.size(); ++i) {
+
+				CharSequence sequence = store.getSequence(i);
+				int[] s = sites[i];
+				for (int a = 0; a < s.length - 1; ++a) {
+
+					for (int b = a + 1; b < s.length && b - a - 1 <= missedCleavages; ++b) {
+
+						int length = s[b] - s[a];
+						if (length < minLength || length > maxLength) {
+
+							continue;
+						}
+						if (s[a] >= (1 << START_BITS)) {
+
+							throw new IllegalArgumentException("Sequence " + store.getIdentifier(i) + " is too long for the peptide index!");
+						}
+						index.insert(hash(sequence.subSequence(s[a], s[b])), encode(i, s[a], length));
+					}
+				}
+				sites[i] = null;
+			}
+
+			// The header is written last, so incomplete files are never opened
+			ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+			header.putLong(MAGIC)
+				.putInt(VERSION)
+				.putInt(enzyme.ordinal())
+				.putInt(missedCleavages)
+				.putInt(minLength)
+				.putInt(maxLength)
+				.putLong(fingerprint)
+				.putInt(store.size())
+				.putLong(store.getTotalLength())
+				.putLong(capacity)
+				.putLong(count);
+			header.rewind();
+			channel.write(header, 0);
+			channel.force(false);
+
+			return index;
+
+		} catch (IOException | RuntimeException e) {
+
+			channel.close();
+			throw e;
+		}
+	}
+
+
+	/**
+	 * Returns all occurrences of the peptide in the database. Use {@link #sequenceOf(long)},
+	 * {@link #startOf(long)} and {@link #lengthOf(long)} to decode an occurrence.
+	 *
+	 * @param peptide The peptide (case-insensitive)
+	 * @return Encoded occurrences, empty if the peptide is not a product of the digestion
+	 */
+	public long[] lookup(final CharSequence peptide) {
+
+		long[] result = new long[4];
+		int n = 0;
+		int length = peptide.length();
+		long slot = hash(peptide) & this.mask;
+		long entry;
+
+		while ((entry = this.get(slot)) != 0) {
+
+			if (lengthOf(entry) == length && this.store.regionMatches(sequenceOf(entry), startOf(entry), peptide)) {
+
+				if (n == result.length) {
+
+					result = Arrays.copyOf(result, n * 2);
+				}
+				result[n++] = entry;
+			}
+			slot = (slot + 1) & this.mask;
+		}
+		return Arrays.copyOf(result, n);
+	}
+
+
+	public long getNumberOfEntries() {
+
+		return this.entries;
+	}
+
+	public PackedSequenceStore getStore() {
+
+		return this.store;
+	}
+
+	public static int sequenceOf(final long entry) {
+
+		return (int) (entry >>> (START_BITS + LENGTH_BITS)) - 1;
+	}
+
+	public static int startOf(final long entry) {
+
+		return (int) ((entry >>> LENGTH_BITS) & ((1L << START_BITS) - 1));
+	}
+
+	public static int lengthOf(final long entry) {
+
+		return (int) (entry & ((1L << LENGTH_BITS) - 1));
+	}
+
+
+	@Override
+	public void close() throws IOException {
+
+		this.channel.close();
+	}
+
+
+	private static long encode(final int sequence, final int start, final int length) {
+
+		return ((sequence + 1L) << (START_BITS + LENGTH_BITS)) | ((long) start << LENGTH_BITS) | length;
+	}
+
+	private static long countPeptides(final int[] sites, final int missedCleavages, final int minLength, final int maxLength) {
+
+		long count = 0;
+		for (int a = 0; a < sites.length - 1; ++a) {
+
+			for (int b = a + 1; b < sites.length && b - a - 1 <= missedCleavages; ++b) {
+
+				int length = sites[b] - sites[a];
+				if (length >= minLength && length <= maxLength) {
+
+					count++;
+				}
+			}
+		}
+		return count;
+	}
+
+	// FNV-1a on upper case symbols, followed by a finalizer to spread the bits
+	private static long hash(final CharSequence peptide) {
+
+		long h = 0xcbf29ce484222325L;
+		for (int i = 0; i < peptide.length(); ++i) {
+
+			h ^= Character.toUpperCase(peptide.charAt(i));
+			h *= 0x100000001b3L;
+		}
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private long get(final long slot) {
+
+		return this.chunks[(int) (slot >>> CHUNK_BITS)].get((int) (slot & (CHUNK_SLOTS - 1)));
+	}
+
+	private void insert(final long hash, final long entry) {
+
+		long slot = hash & this.mask;
+		while (this.get(slot) != 0) {
+
+			slot = (slot + 1) & this.mask;
+		}
+		this.chunks[(int) (slot >>> CHUNK_BITS)].put((int) (slot & (CHUNK_SLOTS - 1)), entry);
+	}
+}
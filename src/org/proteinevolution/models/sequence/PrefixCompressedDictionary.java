@@ -0,0 +1,234 @@
+package org.proteinevolution.models.sequence;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Immutable, sorted dictionary of identifiers which is stored with front coding. Identifiers are
+ * grouped into buckets of {@value #BUCKET_SIZE} entries. The first entry of each bucket is stored in full, all
+ * other entries only store the length of the prefix they share with their predecessor and the remaining suffix.
+ *
+ * The rank of an identifier within the dictionary is its position in lexicographic (byte) order.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class PrefixCompressedDictionary {
+
+	// Number of identifiers that share one fully stored bucket head
+	static final int BUCKET_SIZE = 16;
+
+	private final byte[] arena;
+	private final int[] bucketOffsets;
+	private final int size;
+
+
+	/**
+	 * Builds the dictionary from identifiers that are already sorted and free of duplicates.
+	 *
+	 * @param sortedIdentifiers Identifiers in ascending order
+	 */
+	PrefixCompressedDictionary(final String[] sortedIdentifiers) {
+
+		this.size = sortedIdentifiers.length;
+		this.bucketOffsets = new int[(this.size + BUCKET_SIZE - 1) / BUCKET_SIZE];
+
+		byte[] buffer = new byte[Math.max(64, this.size * 8)];
+		int pos = 0;
+		byte[] previous = null;
+
+		for (int i = 0; i < this.size; ++i) {
+
+			byte[] current = sortedIdentifiers[i].getBytes(StandardCharsets.UTF_8);
+			int shared = 0;
+
+			if (i % BUCKET_SIZE == 0) {
+
+				this.bucketOffsets[i / BUCKET_SIZE] = pos;
+
+			} else {
+
+				if (compare(previous, 0, previous.length, current) >= 0) {
+
+					throw new IllegalArgumentException("Identifiers must be sorted and unique: " + sortedIdentifiers[i]);
+				}
+				int max = Math.min(previous.length, current.length);
+				while (shared < max && previous[shared] == current[shared]) {
+
+					shared++;
+				}
+			}
+			int suffix = current.length - shared;
+
+			// Two variable length integers and the suffix
+			if (pos + suffix + 10 > buffer.length) {
+
+				buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, pos + suffix + 10));
+			}
+			pos = writeVarInt(buffer, pos, shared);
+			pos = writeVarInt(buffer, pos, suffix);
+			System.arraycopy(current, shared, buffer, pos, suffix);
+			pos += suffix;
+			previous = current;
+		}
+		this.arena = Arrays.copyOf(buffer, pos);
+	}
+
+
+	/**
+	 * Returns the number of identifiers in this dictionary.
+	 *
+	 * @return Number of identifiers
+	 */
+	public int size() {
+
+		return this.size;
+	}
+
+
+	/**
+	 * Returns the identifier with the provided rank.
+	 *
+	 * @param rank Position of the identifier in sorted order
+	 * @return The identifier
+	 */
+	public String get(final int rank) {
+
+		if (rank < 0 || rank >= this.size) {
+
+			throw new IndexOutOfBoundsException("Rank " + rank + " out of bounds for dictionary of size " + this.size);
+		}
+		byte[] current = new byte[64];
+		int length = 0;
+		int[] cursor = new int[] {this.bucketOffsets[rank / BUCKET_SIZE]};
+
+		for (int i = 0; i <= rank % BUCKET_SIZE; ++i) {
+
+			int shared = readVarInt(this.arena, cursor);
+			int suffix = readVarInt(this.arena, cursor);
+			if (shared + suffix > current.length) {
+
+				current = Arrays.copyOf(current, Math.max(current.length * 2, shared + suffix));
+			}
+			System.arraycopy(this.arena, cursor[0], current, shared, suffix);
+			cursor[0] += suffix;
+			length = shared + suffix;
+		}
+		return new String(current, 0, length, StandardCharsets.UTF_8);
+	}
+
+
+	/**
+	 * Looks up the rank of the provided identifier.
+	 *
+	 * @param identifier The identifier to look up
+	 * @return The rank of the identifier or -1 if the identifier is not contained
+	 */
+	public int rankOf(final String identifier) {
+
+		if (this.size == 0) {
+
+			return -1;
+		}
+		byte[] key = identifier.getBytes(StandardCharsets.UTF_8);
+		int[] cursor = new int[1];
+
+		// Binary search for the last bucket whose head is not greater than the key
+		int low = 0;
+		int high = this.bucketOffsets.length - 1;
+		while (low < high) {
+
+			int mid = (low + high + 1) >>> 1;
+			cursor[0] = this.bucketOffsets[mid];
+			readVarInt(this.arena, cursor);
+			int suffix = readVarInt(this.arena, cursor);
+
+			if (compare(this.arena, cursor[0], suffix, key) <= 0) {
+
+				low = mid;
+			} else {
+
+				high = mid - 1;
+			}
+		}
+
+		// Linear scan within the bucket
+		byte[] current = new byte[Math.max(64, key.length)];
+		cursor[0] = this.bucketOffsets[low];
+		int end = Math.min(this.size, (low + 1) * BUCKET_SIZE);
+
+		for (int rank = low * BUCKET_SIZE; rank < end; ++rank) {
+
+			int shared = readVarInt(this.arena, cursor);
+			int suffix = readVarInt(this.arena, cursor);
+			if (shared + suffix > current.length) {
+
+				current = Arrays.copyOf(current, shared + suffix);
+			}
+			System.arraycopy(this.arena, cursor[0], current, shared, suffix);
+			cursor[0] += suffix;
+
+			int cmp = compare(current, 0, shared + suffix, key);
+			if (cmp == 0) {
+
+				return rank;
+			}
+			if (cmp > 0) {
+
+				break;
+			}
+		}
+		return -1;
+	}
+
+
+	/**
+	 * Returns the number of bytes occupied by this dictionary on the heap (approximately).
+	 *
+	 * @return Approximate size in bytes
+	 */
+	public long estimateBytes() {
+
+		return 16L + this.arena.length + 4L * this.bucketOffsets.length + 32L;
+	}
+
+
+	private static int compare(final byte[] a, final int offset, final int length, final byte[] b) {
+
+		int max = Math.min(length, b.length);
+		for (int i = 0; i < max; ++i) {
+
+			int cmp = (a[offset + i] & 0xFF) - (b[i] & 0xFF);
+			if (cmp != 0) {
+
+				return cmp;
+			}
+		}
+		return length - b.length;
+	}
+
+	private static int writeVarInt(final byte[] buffer, int pos, int value) {
+
+		while ((value & ~0x7F) != 0) {
+
+			buffer[pos++] = (byte) ((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		buffer[pos++] = (byte) value;
+		return pos;
+	}
+
+	private static int readVarInt(final byte[] buffer, final int[] cursor) {
+
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = buffer[cursor[0]++];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while ((b & 0x80) != 0);
+
+		return value;
+	}
+}
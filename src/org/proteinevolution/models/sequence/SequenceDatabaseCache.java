@@ -0,0 +1,119 @@
+package org.proteinevolution.models.sequence;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+
+import org.proteinevolution.models.util.MemoryBoundedCache;
+
+/**
+ * Plugin-wide cache of sequence databases which have been parsed into a {@link PackedSequenceStore}.
+ * Databases are identified by their canonical path, file size and modification time, so a database
+ * is parsed again once the file has been changed.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class SequenceDatabaseCache {
+
+	public static final long DEFAULT_BUDGET = 512L * 1024 * 1024;
+
+	private static final SequenceDatabaseCache INSTANCE = new SequenceDatabaseCache();
+
+	private final MemoryBoundedCache<DatabaseKey, PackedSequenceStore> cache =
+			new MemoryBoundedCache<DatabaseKey, PackedSequenceStore>(DEFAULT_BUDGET);
+
+
+	private SequenceDatabaseCache() {}
+
+
+	public static SequenceDatabaseCache getInstance() {
+
+		return INSTANCE;
+	}
+
+
+	/**
+	 * Returns the parsed database of the provided FASTA file. The file is only parsed if it is not
+	 * already in the cache.
+	 *
+	 * @param path Path to the FASTA file
+	 * @return The parsed database
+	 * @throws IOException If the file cannot be read
+	 */
+	public PackedSequenceStore get(final Path path) throws IOException {
+
+		Path canonical = path.toRealPath();
+		BasicFileAttributes attributes = Files.readAttributes(canonical, BasicFileAttributes.class);
+		DatabaseKey key = new DatabaseKey(
+				canonical.toString(),
+				attributes.size(),
+				attributes.lastModifiedTime().toMillis());
+
+		PackedSequenceStore store = this.cache.get(key);
+		if (store == null) {
+
+			store = PackedSequenceStore.fromFASTA(canonical);
+			this.cache.put(key, store, store.estimateBytes());
+		}
+		return store;
+	}
+
+
+	public MemoryBoundedCache<?, ?> getCache() {
+
+		return this.cache;
+	}
+
+	public void setBudget(final long bytes) {
+
+		this.cache.setBudget(bytes);
+	}
+
+	public void clear() {
+
+		this.cache.clear();
+	}
+
+
+	private static final class DatabaseKey {
+
+		private final String path;
+		private final long size;
+		private final long lastModified;
+
+		private DatabaseKey(final String path, final long size, final long lastModified) {
+
+			this.path = path;
+			this.size = size;
+			this.lastModified = lastModified;
+		}
+
+		@Override
+		public boolean equals(final Object obj) {
+
+			if (this == obj) {
+
+				return true;
+			}
+			if ( ! (obj instanceof DatabaseKey)) {
+
+				return false;
+			}
+			DatabaseKey other = (DatabaseKey) obj;
+			return this.size == other.size
+					&& this.lastModified == other.lastModified
+					&& this.path.equals(other.path);
+		}
+
+		@Override
+		public int hashCode() {
+
+			int result = this.path.hashCode();
+			result = 31 * result + (int) (this.size ^ (this.size >>> 32));
+			result = 31 * result + (int) (this.lastModified ^ (this.lastModified >>> 32));
+			return result;
+		}
+	}
+}
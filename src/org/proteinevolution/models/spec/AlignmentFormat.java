@@ -5,5 +5,9 @@ public enum AlignmentFormat {
 	SingleSequence,
 	FASTA,
 	A2M,
-	A3M;
+	A3M,
+
+	// Output only, new formats are appended since the ordinal is persisted
+	Stockholm,
+	Clustal;
 }
@@ -0,0 +1,95 @@
+package org.proteinevolution.models.spec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Cleavage rules of proteolytic enzymes used for in-silico digestion.
+ *
+ * @author lzimmermann
+ *
+ */
+public enum Enzyme {
+
+	// Cleaves after K or R, but not before P
+	Trypsin("KR", "", "P"),
+	TrypsinP("KR", "", ""),
+	LysC("K", "", "P"),
+	ArgC("R", "", "P"),
+	GluC("E", "", "P"),
+	AspN("", "D", ""),
+	Chymotrypsin("FWY", "", "P");
+
+	private final String cleaveAfter;
+	private final String cleaveBefore;
+	private final String notBefore;
+
+	private Enzyme(final String cleaveAfter, final String cleaveBefore, final String notBefore) {
+
+		this.cleaveAfter = cleaveAfter;
+		this.cleaveBefore = cleaveBefore;
+		this.notBefore = notBefore;
+	}
+
+
+	/**
+	 * Whether the enzyme cuts the sequence between position <code>i - 1</code> and <code>i</code>.
+	 *
+	 * @param sequence The (upper case) sequence
+	 * @param i Position after the cleavage site
+	 * @return Whether the site is cleaved
+	 */
+	public boolean cleaves(final CharSequence sequence, final int i) {
+
+		if (i <= 0 || i >= sequence.length()) {
+
+			return false;
+		}
+		char next = sequence.charAt(i);
+		if (this.notBefore.indexOf(next) != -1) {
+
+			return false;
+		}
+		return this.cleaveAfter.indexOf(sequence.charAt(i - 1)) != -1
+				|| this.cleaveBefore.indexOf(next) != -1;
+	}
+
+
+	/**
+	 * Returns all cleavage sites of the sequence, including both termini.
+	 *
+	 * @param sequence The (upper case) sequence
+	 * @return Positions at which peptides start, followed by the length of the sequence
+	 */
+	public int[] cleavageSites(final CharSequence sequence) {
+
+		List<Integer> sites = new ArrayList<Integer>();
+		sites.add(0);
+		for (int i = 1; i < sequence.length(); ++i) {
+
+			if (this.cleaves(sequence, i)) {
+
+				sites.add(i);
+			}
+		}
+		sites.add(sequence.length());
+
+		int[] result = new int[sites.size()];
+		for (int i = 0; i < result.length; ++i) {
+
+			result[i] = sites.get(i);
+		}
+		return result;
+	}
+
+
+	public static List<String> getNames() {
+
+		List<String> names = new ArrayList<String>(Enzyme.values().length);
+		for (Enzyme enzyme : Enzyme.values()) {
+
+			names.add(enzyme.name());
+		}
+		return names;
+	}
+}
@@ -17,9 +17,17 @@ public final class FileExtensions {
 	}
 
 	public static final String PDB = "pdb";
+	public static final String ENT = "ent";
+	public static final String CIF = "cif";
+	public static final String GZ = "gz";
+
+	// Files which can be read into a StructureContent, as filter of a file chooser
+	public static final String STRUCTURE = String.join("|",
+			PDB, ENT, CIF, PDB + "." + GZ, ENT + "." + GZ, CIF + "." + GZ);
 	public static final String SS = "ss";
 	public static final String SS2 = "ss2";
 	public static final String MTX = "mtx";
 	public static final String CHK = "chk";
 	public static final String HORIZ = "horiz";
+	public static final String IDX = "idx";
 }
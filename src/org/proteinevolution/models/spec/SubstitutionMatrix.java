@@ -0,0 +1,235 @@
+package org.proteinevolution.models.spec;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Amino acid substitution matrices together with the background frequencies they have been derived from.
+ *
+ * Rows and columns are in the order of {@link #ALPHABET}.
+ *
+ * @author lzimmermann
+ *
+ */
+public enum SubstitutionMatrix {
+
+	BLOSUM62(new int[][] {
+		//A   R   N   D   C   Q   E   G   H   I   L   K   M   F   P   S   T   W   Y   V
+		{ 4, -1, -2, -2,  0, -1, -1,  0, -2, -1, -1, -1, -1, -2, -1,  1,  0, -3, -2,  0},
+		{-1,  5,  0, -2, -3,  1,  0, -2,  0, -3, -2,  2, -1, -3, -2, -1, -1, -3, -2, -3},
+		{-2,  0,  6,  1, -3,  0,  0,  0,  1, -3, -3,  0, -2, -3, -2,  1,  0, -4, -2, -3},
+		{-2, -2,  1,  6, -3,  0,  2, -1, -1, -3, -4, -1, -3, -3, -1,  0, -1, -4, -3, -3},
+		{ 0, -3, -3, -3,  9, -3, -4, -3, -3, -1, -1, -3, -1, -2, -3, -1, -1, -2, -2, -1},
+		{-1,  1,  0,  0, -3,  5,  2, -2,  0, -3, -2,  1,  0, -3, -1,  0, -1, -2, -1, -2},
+		{-1,  0,  0,  2, -4,  2,  5, -2,  0, -3, -3,  1, -2, -3, -1,  0, -1, -3, -2, -2},
+		{ 0, -2,  0, -1, -3, -2, -2,  6, -2, -4, -4, -2, -3, -3, -2,  0, -2, -2, -3, -3},
+		{-2,  0,  1, -1, -3,  0,  0, -2,  8, -3, -3, -1, -2, -1, -2, -1, -2, -2,  2, -3},
+		{-1, -3, -3, -3, -1, -3, -3, -4, -3,  4,  2, -3,  1,  0, -3, -2, -1, -3, -1,  3},
+		{-1, -2, -3, -4, -1, -2, -3, -4, -3,  2,  4, -2,  2,  0, -3, -2, -1, -2, -1,  1},
+		{-1,  2,  0, -1, -3,  1,  1, -2, -1, -3, -2,  5, -1, -3, -1,  0, -1, -3, -2, -2},
+		{-1, -1, -2, -3, -1,  0, -2, -3, -2,  1,  2, -1,  5,  0, -2, -1, -1, -1, -1,  1},
+		{-2, -3, -3, -3, -2, -3, -3, -3, -1,  0,  0, -3,  0,  6, -4, -2, -2,  1,  3, -1},
+		{-1, -2, -2, -1, -3, -1, -1, -2, -2, -3, -3, -1, -2, -4,  7, -1, -1, -4, -3, -2},
+		{ 1, -1,  1,  0, -1,  0,  0,  0, -1, -2, -2,  0, -1, -2, -1,  4,  1, -3, -2, -2},
+		{ 0, -1,  0, -1, -1, -1, -1, -2, -2, -1, -1, -1, -1, -2, -1,  1,  5, -2, -2,  0},
+		{-3, -3, -4, -4, -2, -2, -3, -2, -2, -3, -2, -3, -1,  1, -4, -3, -2, 11,  2, -3},
+		{-2, -2, -2, -3, -2, -1, -2, -3,  2, -1, -1, -2, -1,  3, -3, -2, -2,  2,  7, -1},
+		{ 0, -3, -3, -3, -1, -2, -2, -3, -3,  3,  1, -2,  1, -1, -2, -2,  0, -3, -1,  4}
+	}, Frequencies.ROBINSON),
+
+	BLOSUM45(new int[][] {
+		//A   R   N   D   C   Q   E   G   H   I   L   K   M   F   P   S   T   W   Y   V
+		{ 5, -2, -1, -2, -1, -1, -1,  0, -2, -1, -1, -1, -1, -2, -1,  1,  0, -2, -2,  0},
+		{-2,  7,  0, -1, -3,  1,  0, -2,  0, -3, -2,  3, -1, -2, -2, -1, -1, -2, -1, -2},
+		{-1,  0,  6,  2, -2,  0,  0,  0,  1, -2, -3,  0, -2, -2, -2,  1,  0, -4, -2, -3},
+		{-2, -1,  2,  7, -3,  0,  2, -1,  0, -4, -3,  0, -3, -4, -1,  0, -1, -4, -2, -3},
+		{-1, -3, -2, -3, 12, -3, -3, -3, -3, -3, -2, -3, -2, -2, -4, -1, -1, -5, -3, -1},
+		{-1,  1,  0,  0, -3,  6,  2, -2,  1, -2, -2,  1,  0, -4, -1,  0, -1, -2, -1, -3},
+		{-1,  0,  0,  2, -3,  2,  6, -2,  0, -3, -2,  1, -2, -3,  0,  0, -1, -3, -2, -3},
+		{ 0, -2,  0, -1, -3, -2, -2,  7, -2, -4, -3, -2, -2, -3, -2,  0, -2, -2, -3, -3},
+		{-2,  0,  1,  0, -3,  1,  0, -2, 10, -3, -2, -1,  0, -2, -2, -1, -2, -3,  2, -3},
+		{-1, -3, -2, -4, -3, -2, -3, -4, -3,  5,  2, -3,  2,  0, -2, -2, -1, -2,  0,  3},
+		{-1, -2, -3, -3, -2, -2, -2, -3, -2,  2,  5, -3,  2,  1, -3, -3, -1, -2,  0,  1},
+		{-1,  3,  0,  0, -3,  1,  1, -2, -1, -3, -3,  5, -1, -3, -1, -1, -1, -2, -1, -2},
+		{-1, -1, -2, -3, -2,  0, -2, -2,  0,  2,  2, -1,  6,  0, -2, -2, -1, -2,  0,  1},
+		{-2, -2, -2, -4, -2, -4, -3, -3, -2,  0,  1, -3,  0,  8, -3, -2, -1,  1,  3,  0},
+		{-1, -2, -2, -1, -4, -1,  0, -2, -2, -2, -3, -1, -2, -3,  9, -1, -1, -3, -3, -3},
+		{ 1, -1,  1,  0, -1,  0,  0,  0, -1, -2, -3, -1, -2, -2, -1,  4,  2, -4, -2, -1},
+		{ 0, -1,  0, -1, -1, -1, -1, -2, -2, -1, -1, -1, -1, -1, -1,  2,  5, -3, -1,  0},
+		{-2, -2, -4, -4, -5, -2, -3, -2, -3, -2, -2, -2, -2,  1, -3, -4, -3, 15,  3, -3},
+		{-2, -1, -2, -2, -3, -1, -2, -3,  2,  0,  0, -1,  0,  3, -3, -2, -1,  3,  8, -1},
+		{ 0, -2, -3, -3, -1, -3, -3, -3, -3,  3,  1, -2,  1,  0, -3, -1,  0, -3, -1,  5}
+	}, Frequencies.ROBINSON),
+
+	PAM250(new int[][] {
+		//A   R   N   D   C   Q   E   G   H   I   L   K   M   F   P   S   T   W   Y   V
+		{ 2, -2,  0,  0, -2,  0,  0,  1, -1, -1, -2, -1, -1, -3,  1,  1,  1, -6, -3,  0},
+		{-2,  6,  0, -1, -4,  1, -1, -3,  2, -2, -3,  3,  0, -4,  0,  0, -1,  2, -4, -2},
+		{ 0,  0,  2,  2, -4,  1,  1,  0,  2, -2, -3,  1, -2, -3,  0,  1,  0, -4, -2, -2},
+		{ 0, -1,  2,  4, -5,  2,  3,  1,  1, -2, -4,  0, -3, -6, -1,  0,  0, -7, -4, -2},
+		{-2, -4, -4, -5, 12, -5, -5, -3, -3, -2, -6, -5, -5, -4, -3,  0, -2, -8,  0, -2},
+		{ 0,  1,  1,  2, -5,  4,  2, -1,  3, -2, -2,  1, -1, -5,  0, -1, -1, -5, -4, -2},
+		{ 0, -1,  1,  3, -5,  2,  4,  0,  1, -2, -3,  0, -2, -5, -1,  0,  0, -7, -4, -2},
+		{ 1, -3,  0,  1, -3, -1,  0,  5, -2, -3, -4, -2, -3, -5,  0,  1,  0, -7, -5, -1},
+		{-1,  2,  2,  1, -3,  3,  1, -2,  6, -2, -2,  0, -2, -2,  0, -1, -1, -3,  0, -2},
+		{-1, -2, -2, -2, -2, -2, -2, -3, -2,  5,  2, -2,  2,  1, -2, -1,  0, -5, -1,  4},
+		{-2, -3, -3, -4, -6, -2, -3, -4, -2,  2,  6, -3,  4,  2, -3, -3, -2, -2, -1,  2},
+		{-1,  3,  1,  0, -5,  1,  0, -2,  0, -2, -3,  5,  0, -5, -1,  0,  0, -3, -4, -2},
+		{-1,  0, -2, -3, -5, -1, -2, -3, -2,  2,  4,  0,  6,  0, -2, -2, -1, -4, -2,  2},
+		{-3, -4, -3, -6, -4, -5, -5, -5, -2,  1,  2, -5,  0,  9, -5, -3, -3,  0,  7, -1},
+		{ 1,  0,  0, -1, -3,  0, -1,  0,  0, -2, -3, -1, -2, -5,  6,  1,  0, -6, -5, -1},
+		{ 1,  0,  1,  0,  0, -1,  0,  1, -1, -1, -3,  0, -2, -3,  1,  2,  1, -2, -3, -1},
+		{ 1, -1,  0,  0, -2, -1,  0,  0, -1,  0, -2,  0, -1, -3,  0,  1,  3, -5, -3,  0},
+		{-6,  2, -4, -7, -8, -5, -7, -7, -3, -5, -2, -3, -4,  0, -6, -2, -5, 17,  0, -6},
+		{-3, -4, -2, -4,  0, -4, -4, -5,  0, -1, -1, -4, -2,  7, -5, -3, -3,  0, 10, -2},
+		{ 0, -2, -2, -2, -2, -2, -2, -1, -2,  4,  2, -2,  2, -1, -1, -1,  0, -6, -2,  4}
+	}, Frequencies.ROBINSON);
+
+	public static final String ALPHABET = "ARNDCQEGHILKMFPSTWYV";
+
+	private static final byte[] INDEX = new byte[256];
+	static {
+		Arrays.fill(INDEX, (byte) -1);
+		for (int i = 0; i < ALPHABET.length(); ++i) {
+
+			INDEX[ALPHABET.charAt(i)] = (byte) i;
+			INDEX[Character.toLowerCase(ALPHABET.charAt(i))] = (byte) i;
+		}
+	}
+
+	// Background frequencies, in a nested class since the constants cannot refer to static fields of the enum
+	private static final class Frequencies {
+
+		// Robinson and Robinson frequencies, as used by BLAST
+		static final double[] ROBINSON = {
+			0.07805, 0.05129, 0.04487, 0.05364, 0.01925, 0.04264, 0.06295, 0.07377, 0.02199, 0.05142,
+			0.09019, 0.05744, 0.02243, 0.03856, 0.05203, 0.07120, 0.05841, 0.01330, 0.03216, 0.06441
+		};
+	}
+
+	private final int[][] scores;
+	private final double[] background;
+	private final double lambda;
+
+	// Probability of observing residue a aligned to residue b, given b: target[b][a]
+	private final double[][] conditional;
+
+
+	private SubstitutionMatrix(final int[][] scores, final double[] background) {
+
+		this.scores = scores;
+		this.background = background;
+		this.lambda = computeLambda(scores, background);
+
+		int n = ALPHABET.length();
+		this.conditional = new double[n][n];
+		for (int b = 0; b < n; ++b) {
+
+			double sum = 0;
+			for (int a = 0; a < n; ++a) {
+
+				this.conditional[b][a] = background[a] * Math.exp(this.lambda * scores[a][b]);
+				sum += this.conditional[b][a];
+			}
+			for (int a = 0; a < n; ++a) {
+
+				this.conditional[b][a] /= sum;
+			}
+		}
+	}
+
+
+	/**
+	 * Index of a residue in {@link #ALPHABET}.
+	 *
+	 * @param residue The residue (case-insensitive)
+	 * @return The index or -1 if the residue is not one of the 20 standard amino acids
+	 */
+	public static int indexOf(final int residue) {
+
+		return residue < 0 || residue > 255 ? -1 : INDEX[residue];
+	}
+
+	public int score(final char a, final char b) {
+
+		int i = indexOf(a);
+		int j = indexOf(b);
+		if (i == -1 || j == -1) {
+
+			throw new IllegalArgumentException("No score for residues " + a + " and " + b);
+		}
+		return this.scores[i][j];
+	}
+
+	public int score(final int i, final int j) {
+
+		return this.scores[i][j];
+	}
+
+	public double getBackground(final int i) {
+
+		return this.background[i];
+	}
+
+	/**
+	 * Scale of the matrix, such that the scores are log-odds with base <code>exp(lambda)</code>.
+	 *
+	 * @return Lambda in nats
+	 */
+	public double getLambda() {
+
+		return this.lambda;
+	}
+
+	/**
+	 * Probability that residue <code>a</code> is aligned to residue <code>b</code>, as implied by the matrix.
+	 *
+	 * @param a Index of the substituting residue
+	 * @param b Index of the given residue
+	 * @return Conditional probability of <code>a</code> given <code>b</code>
+	 */
+	public double getConditional(final int a, final int b) {
+
+		return this.conditional[b][a];
+	}
+
+
+	public static List<String> getNames() {
+
+		List<String> names = new ArrayList<String>(SubstitutionMatrix.values().length);
+		for (SubstitutionMatrix matrix : SubstitutionMatrix.values()) {
+
+			names.add(matrix.name());
+		}
+		return names;
+	}
+
+
+	// Solves sum_ab p_a p_b exp(lambda * s_ab) = 1 by bisection
+	private static double computeLambda(final int[][] scores, final double[] background) {
+
+		double low = 0;
+		double high = 2;
+		for (int iter = 0; iter < 100; ++iter) {
+
+			double lambda = (low + high) / 2;
+			double sum = 0;
+			for (int a = 0; a < scores.length; ++a) {
+
+				for (int b = 0; b < scores.length; ++b) {
+
+					sum += background[a] * background[b] * Math.exp(lambda * scores[a][b]);
+				}
+			}
+			if (sum > 1) {
+
+				high = lambda;
+			} else {
+
+				low = lambda;
+			}
+		}
+		return (low + high) / 2;
+	}
+}
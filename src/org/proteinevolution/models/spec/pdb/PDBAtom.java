@@ -1,5 +1,8 @@
 package org.proteinevolution.models.spec.pdb;
 
+import java.util.HashMap;
+import java.util.Map;
+
 import org.biojava.nbio.structure.Element;
 
 public enum PDBAtom {
@@ -186,10 +189,56 @@ public enum PDBAtom {
 	public final Element element;
 	public final String repr;
 	
+	// Atoms by the names of the constants and by their names in PDB files, where the leading underscore
+	// of the constant is omitted and trailing underscores are primes. Names are short strings which cache
+	// their hash codes, e.g. those interned by AtomRecords, so a lookup costs about one comparison
+	private static final Map<String, PDBAtom> atoms = new HashMap<String, PDBAtom>();
+	static {
+		for (PDBAtom atom : PDBAtom.values()) {
+
+			String name = atom.name();
+			atoms.put(name, atom);
+
+			int end = name.length();
+			while (name.charAt(end - 1) == '_') {
+
+				--end;
+			}
+			StringBuilder pdbName = new StringBuilder(name.substring(name.charAt(0) == '_' ? 1 : 0, end));
+			for (int i = end; i < name.length(); ++i) {
+
+				pdbName.append('\'');
+			}
+			atoms.put(pdbName.toString(), atom);
+		}
+	}
+
+	/**
+	 * Resolves the name of an atom, like CA or C2'.
+	 *
+	 * @param name The atom name
+	 * @return The corresponding PDBAtom
+	 * @throws IllegalArgumentException If there is no PDBAtom for the name
+	 */
 	public static PDBAtom of(final String name) {
-		
-		return Character.isDigit(name.charAt(0)) ? PDBAtom.valueOf("_" + name) 
-			: (name.charAt(name.length() - 1) == '\'' ? PDBAtom.valueOf(name.replace('\'', '_')) :  PDBAtom.valueOf(name));
+
+		PDBAtom result = atoms.get(name);
+		if (result == null) {
+
+			throw new IllegalArgumentException("Name " + name + " does not denote a known atom");
+		}
+		return result;
+	}
+
+	/**
+	 * Resolves the name of an atom like {@link #of(String)}, but without throwing for unknown names.
+	 *
+	 * @param name The atom name
+	 * @return The corresponding PDBAtom, or null if there is none
+	 */
+	public static PDBAtom lookup(final String name) {
+
+		return atoms.get(name);
 	}
 	
 	
@@ -229,7 +278,7 @@ public enum PDBAtom {
 	public static final int FIELD_RESIDUE_SEQ_NUMBER_END = 26;
 
 	public static final int FIELD_CODE_RESIDUE_INSERTION_START = 26;
-	public static final int FIELD_CODE_RESIDUE_INSERTION_END = 26;
+	public static final int FIELD_CODE_RESIDUE_INSERTION_END = 27;
 
 	public static final int FIELD_X_START = 30;
 	public static final int FIELD_X_END = 38;
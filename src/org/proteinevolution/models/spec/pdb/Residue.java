@@ -54,28 +54,23 @@ public enum Residue implements StringIconOption {
 	UNK('U');
 	
 	
-	private static final Map<Character, Residue> aminoAcids = new HashMap<Character, Residue>();
+	// Amino acids indexed by their one letter code
+	private static final Residue[] aminoAcids = new Residue[128];
 	static {
-		aminoAcids.put('A', Residue.ALA);
-		aminoAcids.put('R', Residue.ARG);
-		aminoAcids.put('N', Residue.ASN);
-		aminoAcids.put('D', Residue.ASP);
-		aminoAcids.put('C', Residue.CYS);
-		aminoAcids.put('Q', Residue.GLN);
-		aminoAcids.put('E', Residue.GLU);
-		aminoAcids.put('G', Residue.GLY);
-		aminoAcids.put('H', Residue.HIS);
-		aminoAcids.put('I', Residue.ILE);
-		aminoAcids.put('L', Residue.LEU);
-		aminoAcids.put('K', Residue.LYS);
-		aminoAcids.put('M', Residue.MET);
-		aminoAcids.put('F', Residue.PHE);
-		aminoAcids.put('P', Residue.PRO);
-		aminoAcids.put('S', Residue.SER);
-		aminoAcids.put('T', Residue.THR);
-		aminoAcids.put('W', Residue.TRP);
-		aminoAcids.put('Y', Residue.TYR);
-		aminoAcids.put('V', Residue.VAL);	
+		for (Residue residue : new Residue[] {
+				ALA, ARG, ASN, ASP, CYS, GLN, GLU, GLY, HIS, ILE,
+				LEU, LYS, MET, PHE, PRO, SER, THR, TRP, TYR, VAL}) {
+
+			aminoAcids[residue.olc] = residue;
+		}
+	}
+
+	private static final Map<String, Residue> residues = new HashMap<String, Residue>();
+	static {
+		for (Residue residue : Residue.values()) {
+
+			residues.put(residue.name(), residue);
+		}
 	}
 	
 	
@@ -115,7 +110,7 @@ public enum Residue implements StringIconOption {
 	 */
 	public static Residue aaOf(final Character c) {
 		
-		Residue result = aminoAcids.get(c);
+		Residue result = c == null ? null : aaLookup(c);
 		if (result == null) {
 			
 			throw new IllegalArgumentException("Character " + c + " does not denote a valid Amino Acid");
@@ -123,6 +118,28 @@ public enum Residue implements StringIconOption {
 		return result;
 	}
 
+	/**
+	 * Converts the OLC of the amino acid like {@link #aaOf(Character)}, but without throwing for unknown characters.
+	 *
+	 * @param c The one letter code
+	 * @return The amino acid, or null if c does not denote one
+	 */
+	public static Residue aaLookup(final char c) {
+
+		return c < aminoAcids.length ? aminoAcids[c] : null;
+	}
+
+	/**
+	 * Resolves the name of a residue in a PDB file, like ALA or DA.
+	 *
+	 * @param name The residue name
+	 * @return The residue, or null if there is none of this name
+	 */
+	public static Residue lookup(final String name) {
+
+		return residues.get(name);
+	}
+
 	@Override
 	public String getText() {
 		return this.toString();
@@ -5,6 +5,7 @@ import java.util.Objects;
 
 import org.biojava.nbio.structure.AminoAcid;
 import org.biojava.nbio.structure.Atom;
+import org.biojava.nbio.structure.Group;
 import org.biojava.nbio.structure.ResidueNumber;
 import org.proteinevolution.models.spec.pdb.PDBAtom;
 import org.proteinevolution.models.spec.pdb.Residue;
@@ -25,12 +26,17 @@ public final class AtomIdentification implements Serializable {
 	
 	public AtomIdentification(final Atom atom) {
 		
-		this.pdbatom = PDBAtom.of(atom.getName());
-		AminoAcid aa = (AminoAcid) atom.getGroup();
-		this.residue = Residue.aaOf(aa.getAminoType());
-		this.residueNumber = aa.getResidueNumber();
+		// Atoms without a PDBAtom are identified with null, groups other than known amino acids as UNK
+		this.pdbatom = PDBAtom.lookup(atom.getName());
+		Group group = atom.getGroup();
+		Residue aa = group instanceof AminoAcid ? Residue.aaLookup(((AminoAcid) group).getAminoType()) : null;
+		this.residue = aa == null ? Residue.UNK : aa;
+		this.residueNumber = group.getResidueNumber();
 	}
 		
+	/**
+	 * @return The atom, or null if its name does not denote a {@link PDBAtom}
+	 */
 	public PDBAtom getAtom() {
 
 		return this.pdbatom;
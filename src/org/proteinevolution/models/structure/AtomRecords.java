@@ -0,0 +1,551 @@
+package org.proteinevolution.models.structure;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.proteinevolution.models.spec.pdb.PDBAtom;
+import org.proteinevolution.models.spec.pdb.Residue;
+
+/**
+ * Fields of the ATOM records of a region of a PDB file, stored column by column. Records are parsed from the bytes
+ * at the fixed columns of the PDB format, numbers are parsed without creating strings. Text fields are trimmed and
+ * equal values share one string instance, as atom, residue and chain names repeat.
+ *
+ * Large files are split into line-aligned chunks with {@link #split(FileChannel, long)}, such that the chunks can
+ * be mapped and parsed independently.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class AtomRecords {
+
+	// Value of integer fields which are blank or cannot be parsed, double fields are NaN instead
+	public static final int MISSING = Integer.MIN_VALUE;
+
+	private static final byte[] RECORD = PDBAtom.name.getBytes(StandardCharsets.US_ASCII);
+
+	private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9};
+
+	private int size = 0;
+
+	private int[] serial;
+	private int[] resSeq;
+	private double[] x;
+	private double[] y;
+	private double[] z;
+	private double[] occupancy;
+	private double[] tempFactor;
+
+	private String[] name;
+	private String[] altLoc;
+	private String[] resName;
+	private String[] chainId;
+	private String[] iCode;
+	private String[] segId;
+	private String[] element;
+
+	private final Dictionary dictionary = new Dictionary();
+
+
+	private AtomRecords(final int capacity) {
+
+		this.serial = new int[capacity];
+		this.resSeq = new int[capacity];
+		this.x = new double[capacity];
+		this.y = new double[capacity];
+		this.z = new double[capacity];
+		this.occupancy = new double[capacity];
+		this.tempFactor = new double[capacity];
+		this.name = new String[capacity];
+		this.altLoc = new String[capacity];
+		this.resName = new String[capacity];
+		this.chainId = new String[capacity];
+		this.iCode = new String[capacity];
+		this.segId = new String[capacity];
+		this.element = new String[capacity];
+	}
+
+
+	/**
+	 * Parses the ATOM records between position and limit of the buffer, which is left unchanged. Records must start
+	 * at the first column of their line, line breaks may be LF or CRLF.
+	 *
+	 * @param buffer The bytes of complete lines
+	 * @return The fields of the ATOM records
+	 */
+	public static AtomRecords parse(final ByteBuffer buffer) {
+
+		int limit = buffer.limit();
+
+		// Lines of PDB files have 81 bytes including the line break
+		AtomRecords records = new AtomRecords(Math.max(16, (limit - buffer.position()) / 81));
+
+		int start = buffer.position();
+		while (start < limit) {
+
+			int end = start;
+			while (end < limit && buffer.get(end) != '\n') {
+
+				++end;
+			}
+			int next = end + 1;
+			if (end > start && buffer.get(end - 1) == '\r') {
+
+				--end;
+			}
+			if (startsWith(buffer, start, end, RECORD)) {
+
+				records.add(buffer, start, end);
+			}
+			start = next;
+		}
+		return records;
+	}
+
+	/**
+	 * Splits the file into chunks of about the requested size which end at line breaks.
+	 *
+	 * @param channel The file
+	 * @param chunkSize Requested size of the chunks in bytes
+	 * @return Offsets of the chunks, chunk i spans the bytes from offset i to offset i + 1
+	 * @throws IOException If the file cannot be read
+	 */
+	public static long[] split(final FileChannel channel, final long chunkSize) throws IOException {
+
+		long fileSize = channel.size();
+		long[] offsets = new long[(int) Math.min(Integer.MAX_VALUE - 8, fileSize / chunkSize + 2)];
+		int n = 0;
+		offsets[n++] = 0;
+
+		ByteBuffer probe = ByteBuffer.allocate(1 << 12);
+		long offset = chunkSize;
+		while (offset < fileSize) {
+
+			// Moves the boundary behind the next line break
+			long lineEnd = -1;
+			long position = offset - 1;
+			while (lineEnd == -1 && position < fileSize) {
+
+				probe.clear();
+				int read = channel.read(probe, position);
+				for (int i = 0; i < read; ++i) {
+
+					if (probe.get(i) == '\n') {
+
+						lineEnd = position + i + 1;
+						break;
+					}
+				}
+				position += Math.max(read, 0);
+			}
+			if (lineEnd == -1 || lineEnd >= fileSize) {
+
+				break;
+			}
+			offsets[n++] = lineEnd;
+			offset = lineEnd + chunkSize;
+		}
+		offsets[n++] = fileSize;
+
+		return Arrays.copyOf(offsets, n);
+	}
+
+
+	public int size() {
+
+		return this.size;
+	}
+
+	public int getSerial(final int index) {
+
+		return this.serial[index];
+	}
+
+	public String getName(final int index) {
+
+		return this.name[index];
+	}
+
+	public PDBAtom getAtom(final int index) {
+
+		return PDBAtom.lookup(this.name[index]);
+	}
+
+	public String getAltLoc(final int index) {
+
+		return this.altLoc[index];
+	}
+
+	public String getResName(final int index) {
+
+		return this.resName[index];
+	}
+
+	public Residue getResidue(final int index) {
+
+		return Residue.lookup(this.resName[index]);
+	}
+
+	public String getChainId(final int index) {
+
+		return this.chainId[index];
+	}
+
+	public int getResSeq(final int index) {
+
+		return this.resSeq[index];
+	}
+
+	public String getICode(final int index) {
+
+		return this.iCode[index];
+	}
+
+	public double getX(final int index) {
+
+		return this.x[index];
+	}
+
+	public double getY(final int index) {
+
+		return this.y[index];
+	}
+
+	public double getZ(final int index) {
+
+		return this.z[index];
+	}
+
+	public double getOccupancy(final int index) {
+
+		return this.occupancy[index];
+	}
+
+	public double getTempFactor(final int index) {
+
+		return this.tempFactor[index];
+	}
+
+	public String getSegId(final int index) {
+
+		return this.segId[index];
+	}
+
+	public String getElement(final int index) {
+
+		return this.element[index];
+	}
+
+
+	private void add(final ByteBuffer buffer, final int start, final int end) {
+
+		if (this.size == this.serial.length) {
+
+			this.grow();
+		}
+		int i = this.size++;
+
+		this.serial[i] = parseInt(buffer, start, end, PDBAtom.FIELD_ATOM_SERIAL_NUMBER_START, PDBAtom.FIELD_ATOM_SERIAL_NUMBER_END);
+		this.name[i] = this.text(buffer, start, end, PDBAtom.FIELD_ATOM_NAME_START, PDBAtom.FIELD_ATOM_NAME_END);
+		this.altLoc[i] = this.text(buffer, start, end, PDBAtom.FIELD_ATOM_ALTLOC_START, PDBAtom.FIELD_ATOM_ALTLOC_END);
+		this.resName[i] = this.text(buffer, start, end, PDBAtom.FIELD_RESIDUE_NAME_START, PDBAtom.FIELD_RESIDUE_NAME_END);
+		this.chainId[i] = this.text(buffer, start, end, PDBAtom.FIELD_CHAIN_IDENTIFIER_START, PDBAtom.FIELD_CHAIN_IDENTIFIER_END);
+		this.resSeq[i] = parseInt(buffer, start, end, PDBAtom.FIELD_RESIDUE_SEQ_NUMBER_START, PDBAtom.FIELD_RESIDUE_SEQ_NUMBER_END);
+		this.iCode[i] = this.text(buffer, start, end, PDBAtom.FIELD_CODE_RESIDUE_INSERTION_START, PDBAtom.FIELD_CODE_RESIDUE_INSERTION_END);
+		this.x[i] = parseDouble(buffer, start, end, PDBAtom.FIELD_X_START, PDBAtom.FIELD_X_END);
+		this.y[i] = parseDouble(buffer, start, end, PDBAtom.FIELD_Y_START, PDBAtom.FIELD_Y_END);
+		this.z[i] = parseDouble(buffer, start, end, PDBAtom.FIELD_Z_START, PDBAtom.FIELD_Z_END);
+		this.occupancy[i] = parseDouble(buffer, start, end, PDBAtom.FIELD_OCCUPANCY_START, PDBAtom.FIELD_OCCUPANCY_END);
+		this.tempFactor[i] = parseDouble(buffer, start, end, PDBAtom.FIELD_TEMPERATURE_FACTOR_START, PDBAtom.FIELD_TEMPERATURE_FACTOR_END);
+		this.segId[i] = this.text(buffer, start, end, PDBAtom.FIELD_SEGMENT_IDENTIFIER_START, PDBAtom.FIELD_SEGMENT_IDENTIFIER_END);
+		this.element[i] = this.text(buffer, start, end, PDBAtom.FIELD_ELEMENT_SYMBOL_START, PDBAtom.FIELD_ELEMENT_SYMBOL_END);
+	}
+
+	private void grow() {
+
+		int capacity = this.serial.length * 2;
+		this.serial = Arrays.copyOf(this.serial, capacity);
+		this.resSeq = Arrays.copyOf(this.resSeq, capacity);
+		this.x = Arrays.copyOf(this.x, capacity);
+		this.y = Arrays.copyOf(this.y, capacity);
+		this.z = Arrays.copyOf(this.z, capacity);
+		this.occupancy = Arrays.copyOf(this.occupancy, capacity);
+		this.tempFactor = Arrays.copyOf(this.tempFactor, capacity);
+		this.name = Arrays.copyOf(this.name, capacity);
+		this.altLoc = Arrays.copyOf(this.altLoc, capacity);
+		this.resName = Arrays.copyOf(this.resName, capacity);
+		this.chainId = Arrays.copyOf(this.chainId, capacity);
+		this.iCode = Arrays.copyOf(this.iCode, capacity);
+		this.segId = Arrays.copyOf(this.segId, capacity);
+		this.element = Arrays.copyOf(this.element, capacity);
+	}
+
+
+	/*
+	 * Field parsing. Fields are given as columns [from, to) of the line [start, end) and are clipped at the end of
+	 * short lines.
+	 */
+	private String text(final ByteBuffer buffer, final int start, final int end, final int from, final int to) {
+
+		int i = Math.min(start + from, end);
+		int j = Math.min(start + to, end);
+		while (i < j && buffer.get(i) == ' ') {
+
+			++i;
+		}
+		while (j > i && buffer.get(j - 1) == ' ') {
+
+			--j;
+		}
+		return this.dictionary.get(buffer, i, j);
+	}
+
+	// Decimal or hybrid-36 integer, as used for serial numbers of more than 99999 atoms
+	private static int parseInt(final ByteBuffer buffer, final int start, final int end, final int from, final int to) {
+
+		int i = Math.min(start + from, end);
+		int j = Math.min(start + to, end);
+		int width = j - i;
+		while (i < j && buffer.get(i) == ' ') {
+
+			++i;
+		}
+		while (j > i && buffer.get(j - 1) == ' ') {
+
+			--j;
+		}
+		if (i == j) {
+
+			return MISSING;
+		}
+		byte first = buffer.get(i);
+		if (Character.isLetter(first)) {
+
+			return parseHybrid36(buffer, i, j, width);
+		}
+		boolean negative = first == '-';
+		if (negative || first == '+') {
+
+			++i;
+		}
+		if (i == j) {
+
+			return MISSING;
+		}
+		long value = 0;
+		for (; i < j; ++i) {
+
+			int digit = buffer.get(i) - '0';
+			if (digit < 0 || digit > 9) {
+
+				return MISSING;
+			}
+			value = value * 10 + digit;
+		}
+		return (int) (negative ? -value : value);
+	}
+
+	// Hybrid-36 extends a field of width w by upper case base-36 numbers starting at 10^w, followed by lower case
+	private static int parseHybrid36(final ByteBuffer buffer, final int i, final int j, final int width) {
+
+		if (j - i != width) {
+
+			return MISSING;
+		}
+		boolean upper = Character.isUpperCase(buffer.get(i));
+		long value = 0;
+		for (int k = i; k < j; ++k) {
+
+			int c = buffer.get(k);
+			int digit;
+			if (c >= '0' && c <= '9') {
+
+				digit = c - '0';
+
+			} else if (upper && c >= 'A' && c <= 'Z') {
+
+				digit = c - 'A' + 10;
+
+			} else if ( ! upper && c >= 'a' && c <= 'z') {
+
+				digit = c - 'a' + 10;
+			} else {
+
+				return MISSING;
+			}
+			value = value * 36 + digit;
+		}
+		long block = 1;
+		for (int k = 1; k < width; ++k) {
+
+			block *= 36;
+		}
+		long decimal = 1;
+		for (int k = 0; k < width; ++k) {
+
+			decimal *= 10;
+		}
+		value = value - 10 * block + decimal;
+		if ( ! upper) {
+
+			value += 26 * block;
+		}
+		return value > Integer.MAX_VALUE ? MISSING : (int) value;
+	}
+
+	// Fixed-point number, the result equals Double.parseDouble for up to 9 decimals
+	private static double parseDouble(final ByteBuffer buffer, final int start, final int end, final int from, final int to) {
+
+		int i = Math.min(start + from, end);
+		int j = Math.min(start + to, end);
+		while (i < j && buffer.get(i) == ' ') {
+
+			++i;
+		}
+		while (j > i && buffer.get(j - 1) == ' ') {
+
+			--j;
+		}
+		if (i == j) {
+
+			return Double.NaN;
+		}
+		boolean negative = buffer.get(i) == '-';
+		if (negative || buffer.get(i) == '+') {
+
+			++i;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int decimals = -1;
+		for (; i < j; ++i) {
+
+			byte c = buffer.get(i);
+			if (c == '.' && decimals == -1) {
+
+				decimals = 0;
+
+			} else if (c >= '0' && c <= '9' && digits < 18) {
+
+				mantissa = mantissa * 10 + (c - '0');
+				++digits;
+				if (decimals != -1) {
+
+					++decimals;
+				}
+			} else {
+
+				return Double.NaN;
+			}
+		}
+		if (digits == 0 || decimals >= POWERS_OF_TEN.length) {
+
+			return Double.NaN;
+		}
+		// Both operands are exact, so the quotient is correctly rounded
+		double value = decimals > 0 ? mantissa / POWERS_OF_TEN[decimals] : mantissa;
+		return negative ? -value : value;
+	}
+
+	private static boolean startsWith(final ByteBuffer buffer, final int start, final int end, final byte[] prefix) {
+
+		if (end - start < prefix.length) {
+
+			return false;
+		}
+		for (int i = 0; i < prefix.length; ++i) {
+
+			if (buffer.get(start + i) != prefix[i]) {
+
+				return false;
+			}
+		}
+		return true;
+	}
+
+
+	// Open addressing table of the strings of fields of up to seven bytes, packed into one long
+	private static final class Dictionary {
+
+		private long[] keys = new long[64];
+		private String[] values = new String[64];
+		private int size = 0;
+
+		private String get(final ByteBuffer buffer, final int from, final int to) {
+
+			int length = to - from;
+			if (length > 7) {
+
+				byte[] bytes = new byte[length];
+				for (int i = 0; i < length; ++i) {
+
+					bytes[i] = buffer.get(from + i);
+				}
+				return new String(bytes, StandardCharsets.ISO_8859_1);
+			}
+			long key = 0;
+			for (int i = from; i < to; ++i) {
+
+				key = (key << 8) | (buffer.get(i) & 0xFF);
+			}
+			// The length in the highest byte distinguishes keys from the empty slots
+			key |= (long) (length + 1) << 56;
+
+			int mask = this.keys.length - 1;
+			int slot = slot(key, mask);
+			while (this.keys[slot] != 0) {
+
+				if (this.keys[slot] == key) {
+
+					return this.values[slot];
+				}
+				slot = (slot + 1) & mask;
+			}
+			byte[] bytes = new byte[length];
+			for (int i = 0; i < length; ++i) {
+
+				bytes[i] = buffer.get(from + i);
+			}
+			String value = new String(bytes, StandardCharsets.ISO_8859_1);
+			this.keys[slot] = key;
+			this.values[slot] = value;
+			if (++this.size * 2 > this.keys.length) {
+
+				this.rehash();
+			}
+			return value;
+		}
+
+		private static int slot(final long key, final int mask) {
+
+			long h = key * 0x9E3779B97F4A7C15L;
+			return (int) (h >>> 32) & mask;
+		}
+
+		private void rehash() {
+
+			long[] oldKeys = this.keys;
+			String[] oldValues = this.values;
+			this.keys = new long[oldKeys.length * 2];
+			this.values = new String[oldKeys.length * 2];
+			int mask = this.keys.length - 1;
+			for (int i = 0; i < oldKeys.length; ++i) {
+
+				long key = oldKeys[i];
+				if (key != 0) {
+
+					int slot = slot(key, mask);
+					while (this.keys[slot] != 0) {
+
+						slot = (slot + 1) & mask;
+					}
+					this.keys[slot] = key;
+					this.values[slot] = oldValues[i];
+				}
+			}
+		}
+	}
+}
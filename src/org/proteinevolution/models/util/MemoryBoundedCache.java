@@ -0,0 +1,207 @@
+package org.proteinevolution.models.util;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.SoftReference;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Least-recently-used cache whose size is bounded by an explicit byte budget. The size of each value
+ * has to be provided when the value is put into the cache. Values are only softly referenced, so the
+ * garbage collector may still reclaim them under memory pressure; such entries are dropped from the
+ * accounting the next time the cache is accessed.
+ *
+ * All methods are thread-safe.
+ *
+ * @author lzimmermann
+ *
+ * @param <K> Type of the keys
+ * @param <V> Type of the cached values
+ */
+public final class MemoryBoundedCache<K, V> {
+
+	private final Map<K, Entry<K, V>> entries = new LinkedHashMap<K, Entry<K, V>>(16, 0.75f, true);
+	private final ReferenceQueue<V> queue = new ReferenceQueue<V>();
+
+	private long budget;
+	private long usedBytes = 0;
+
+	// Statistics
+	private long hits = 0;
+	private long misses = 0;
+	private long evictions = 0;
+
+
+	/**
+	 * Creates a new cache.
+	 *
+	 * @param budget Maximum number of bytes of all cached values
+	 */
+	public MemoryBoundedCache(final long budget) {
+
+		this.setBudget(budget);
+	}
+
+
+	/**
+	 * Returns the cached value for the key.
+	 *
+	 * @param key The key
+	 * @return The cached value or <code>null</code> if the key is not cached (anymore)
+	 */
+	public synchronized V get(final K key) {
+
+		this.expunge();
+		Entry<K, V> entry = this.entries.get(key);
+		V value = entry == null ? null : entry.get();
+
+		if (value == null) {
+
+			this.misses++;
+			return null;
+		}
+		this.hits++;
+		return value;
+	}
+
+
+	/**
+	 * Puts a value into the cache. Least recently used entries are evicted until the budget is met.
+	 * Values which are larger than the budget are not cached at all.
+	 *
+	 * @param key The key
+	 * @param value The value
+	 * @param bytes Size of the value in bytes
+	 */
+	public synchronized void put(final K key, final V value, final long bytes) {
+
+		this.expunge();
+		this.remove(key);
+
+		if (bytes > this.budget) {
+
+			return;
+		}
+		this.entries.put(key, new Entry<K, V>(key, value, bytes, this.queue));
+		this.usedBytes += bytes;
+		this.trim();
+	}
+
+
+	public synchronized void remove(final K key) {
+
+		Entry<K, V> entry = this.entries.remove(key);
+		if (entry != null) {
+
+			this.usedBytes -= entry.bytes;
+		}
+	}
+
+
+	public synchronized void clear() {
+
+		this.entries.clear();
+		this.usedBytes = 0;
+		this.hits = 0;
+		this.misses = 0;
+		this.evictions = 0;
+
+		// Cleared references are no longer accounted for
+		while (this.queue.poll() != null) {}
+	}
+
+
+	/**
+	 * Sets the byte budget of this cache and evicts entries if required.
+	 *
+	 * @param budget Maximum number of bytes of all cached values
+	 */
+	public synchronized void setBudget(final long budget) {
+
+		if (budget < 0) {
+
+			throw new IllegalArgumentException("Cache budget must not be negative!");
+		}
+		this.budget = budget;
+		this.trim();
+	}
+
+	public synchronized long getBudget() {
+
+		return this.budget;
+	}
+
+	public synchronized long getUsedBytes() {
+
+		this.expunge();
+		return this.usedBytes;
+	}
+
+	public synchronized int size() {
+
+		this.expunge();
+		return this.entries.size();
+	}
+
+	public synchronized long getHits() {
+
+		return this.hits;
+	}
+
+	public synchronized long getMisses() {
+
+		return this.misses;
+	}
+
+	public synchronized long getEvictions() {
+
+		return this.evictions;
+	}
+
+
+	// Evicts least recently used entries until the budget is met
+	private void trim() {
+
+		Iterator<Entry<K, V>> it = this.entries.values().iterator();
+		while (this.usedBytes > this.budget && it.hasNext()) {
+
+			Entry<K, V> entry = it.next();
+			it.remove();
+			this.usedBytes -= entry.bytes;
+			this.evictions++;
+		}
+	}
+
+	// Drops entries whose values have been reclaimed by the garbage collector
+	private void expunge() {
+
+		Object ref;
+		while ((ref = this.queue.poll()) != null) {
+
+			@SuppressWarnings("unchecked")
+			Entry<K, V> entry = (Entry<K, V>) ref;
+
+			// The key may have been associated with a new entry in the meantime
+			if (this.entries.get(entry.key) == entry) {
+
+				this.entries.remove(entry.key);
+				this.usedBytes -= entry.bytes;
+			}
+		}
+	}
+
+
+	private static final class Entry<K, V> extends SoftReference<V> {
+
+		private final K key;
+		private final long bytes;
+
+		private Entry(final K key, final V value, final long bytes, final ReferenceQueue<V> queue) {
+
+			super(value, queue);
+			this.key = key;
+			this.bytes = bytes;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package org.proteinevolution.models.util;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming implementation of the 64 bit xxHash. Values are equal to the reference implementation
+ * (XXH64) for the same bytes and seed, multi-byte values are hashed in little-endian order.
+ *
+ * Objects of this class are not thread-safe.
+ *
+ * @author lzimmermann
+ *
+ */
+public final class XXHash64 {
+
+	private static final long PRIME1 = 0x9E3779B185EBCA87L;
+	private static final long PRIME2 = 0xC2B2AE3D27D4EB4FL;
+	private static final long PRIME3 = 0x165667B19E3779F9L;
+	private static final long PRIME4 = 0x85EBCA77C2B2AE63L;
+	private static final long PRIME5 = 0x27D4EB2F165667C5L;
+
+	private final long seed;
+
+	// Accumulators of the stripes of 32 bytes
+	private long v1;
+	private long v2;
+	private long v3;
+	private long v4;
+
+	// Bytes which do not fill a stripe yet
+	private final byte[] buffer = new byte[32];
+	private int buffered = 0;
+
+	private long total = 0;
+
+
+	public XXHash64() {
+
+		this(0);
+	}
+
+	public XXHash64(final long seed) {
+
+		this.seed = seed;
+		this.v1 = seed + PRIME1 + PRIME2;
+		this.v2 = seed + PRIME2;
+		this.v3 = seed;
+		this.v4 = seed - PRIME1;
+	}
+
+
+	/**
+	 * Hash of a range of bytes.
+	 *
+	 * @param bytes The bytes
+	 * @param offset Start of the range
+	 * @param length Length of the range
+	 * @param seed The seed
+	 * @return The hash value
+	 */
+	public static long hash(final byte[] bytes, final int offset, final int length, final long seed) {
+
+		return new XXHash64(seed).update(bytes, offset, length).getValue();
+	}
+
+
+	public XXHash64 update(final byte[] bytes) {
+
+		return this.update(bytes, 0, bytes.length);
+	}
+
+	public XXHash64 update(final byte[] bytes, final int offset, final int length) {
+
+		if (offset < 0 || length < 0 || offset + length > bytes.length) {
+
+			throw new IndexOutOfBoundsException("Range " + offset + "+" + length + " exceeds array of length " + bytes.length);
+		}
+		this.total += length;
+		int p = offset;
+		int end = offset + length;
+
+		// Complete a partially filled stripe first
+		if (this.buffered > 0) {
+
+			int n = Math.min(32 - this.buffered, length);
+			System.arraycopy(bytes, p, this.buffer, this.buffered, n);
+			this.buffered += n;
+			p += n;
+			if (this.buffered < 32) {
+
+				return this;
+			}
+			this.stripe(this.buffer, 0);
+			this.buffered = 0;
+		}
+		for (; p + 32 <= end; p += 32) {
+
+			this.stripe(bytes, p);
+		}
+		System.arraycopy(bytes, p, this.buffer, 0, end - p);
+		this.buffered = end - p;
+
+		return this;
+	}
+
+	public XXHash64 updateByte(final int value) {
+
+		this.buffer[this.buffered++] = (byte) value;
+		++this.total;
+		if (this.buffered == 32) {
+
+			this.stripe(this.buffer, 0);
+			this.buffered = 0;
+		}
+		return this;
+	}
+
+	public XXHash64 updateInt(final int value) {
+
+		for (int i = 0; i < 4; ++i) {
+
+			this.updateByte(value >>> (8 * i));
+		}
+		return this;
+	}
+
+	public XXHash64 updateLong(final long value) {
+
+		for (int i = 0; i < 8; ++i) {
+
+			this.updateByte((int) (value >>> (8 * i)));
+		}
+		return this;
+	}
+
+	/**
+	 * Hashes the UTF-8 bytes of the string, preceded by their number such that consecutive strings
+	 * cannot be confused.
+	 *
+	 * @param value The string
+	 * @return This object
+	 */
+	public XXHash64 updateString(final String value) {
+
+		byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+		this.updateInt(bytes.length);
+		return this.update(bytes);
+	}
+
+
+	/**
+	 * Hash value of all bytes so far. Further bytes can be added afterwards.
+	 *
+	 * @return The hash value
+	 */
+	public long getValue() {
+
+		long h;
+		if (this.total >= 32) {
+
+			h = Long.rotateLeft(this.v1, 1) + Long.rotateLeft(this.v2, 7)
+					+ Long.rotateLeft(this.v3, 12) + Long.rotateLeft(this.v4, 18);
+			h = mergeRound(h, this.v1);
+			h = mergeRound(h, this.v2);
+			h = mergeRound(h, this.v3);
+			h = mergeRound(h, this.v4);
+		} else {
+
+			h = this.seed + PRIME5;
+		}
+		h += this.total;
+
+		int p = 0;
+		for (; p + 8 <= this.buffered; p += 8) {
+
+			h ^= round(0, getLong(this.buffer, p));
+			h = Long.rotateLeft(h, 27) * PRIME1 + PRIME4;
+		}
+		if (p + 4 <= this.buffered) {
+
+			h ^= (getInt(this.buffer, p) & 0xFFFFFFFFL) * PRIME1;
+			h = Long.rotateLeft(h, 23) * PRIME2 + PRIME3;
+			p += 4;
+		}
+		for (; p < this.buffered; ++p) {
+
+			h ^= (this.buffer[p] & 0xFF) * PRIME5;
+			h = Long.rotateLeft(h, 11) * PRIME1;
+		}
+
+		// Avalanche
+		h ^= h >>> 33;
+		h *= PRIME2;
+		h ^= h >>> 29;
+		h *= PRIME3;
+		h ^= h >>> 32;
+
+		return h;
+	}
+
+
+	private void stripe(final byte[] bytes, final int p) {
+
+		this.v1 = round(this.v1, getLong(bytes, p));
+		this.v2 = round(this.v2, getLong(bytes, p + 8));
+		this.v3 = round(this.v3, getLong(bytes, p + 16));
+		this.v4 = round(this.v4, getLong(bytes, p + 24));
+	}
+
+	private static long round(final long acc, final long input) {
+
+		return Long.rotateLeft(acc + input * PRIME2, 31) * PRIME1;
+	}
+
+	private static long mergeRound(final long acc, final long value) {
+
+		return (acc ^ round(0, value)) * PRIME1 + PRIME4;
+	}
+
+	private static long getLong(final byte[] bytes, final int p) {
+
+		return (getInt(bytes, p) & 0xFFFFFFFFL) | ((long) getInt(bytes, p + 4) << 32);
+	}
+
+	private static int getInt(final byte[] bytes, final int p) {
+
+		return (bytes[p] & 0xFF)
+				| (bytes[p + 1] & 0xFF) << 8
+				| (bytes[p + 2] & 0xFF) << 16
+				| (bytes[p + 3] & 0xFF) << 24;
+	}
+}
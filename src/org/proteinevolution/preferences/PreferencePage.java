@@ -4,10 +4,20 @@ package org.proteinevolution.preferences;
 import org.eclipse.jface.preference.DirectoryFieldEditor;
 import org.eclipse.jface.preference.FieldEditorPreferencePage;
 import org.eclipse.jface.preference.FileFieldEditor;
+import org.eclipse.jface.preference.IntegerFieldEditor;
+import org.eclipse.swt.SWT;
+import org.eclipse.swt.events.SelectionAdapter;
+import org.eclipse.swt.events.SelectionEvent;
+import org.eclipse.swt.layout.GridData;
+import org.eclipse.swt.widgets.Button;
 import org.eclipse.swt.widgets.Composite;
+import org.eclipse.swt.widgets.Label;
 import org.eclipse.ui.IWorkbench;
 import org.eclipse.ui.IWorkbenchPreferencePage;
 import org.proteinevolution.ProteinevolutionNodePlugin;
+import org.proteinevolution.knime.porttypes.structure.StructureImplCache;
+import org.proteinevolution.models.sequence.SequenceDatabaseCache;
+import org.proteinevolution.models.util.MemoryBoundedCache;
 
 public final class PreferencePage extends FieldEditorPreferencePage implements IWorkbenchPreferencePage {
 
@@ -18,6 +28,12 @@ public final class PreferencePage extends FieldEditorPreferencePage implements I
 	public static final String CONCOORD_PATH = "CONCOORD_PATH";
 	public static final String DSSP_EXECUTABLE = "DSSP_EXECUTABLE";
 	public static final String CLUSTALO_EXECUTABLE = "CLUSTALO_EXECUTABLE";
+	public static final String SEQUENCE_CACHE_SIZE = "SEQUENCE_CACHE_SIZE";
+	public static final String STRUCTURE_CACHE_SIZE = "STRUCTURE_CACHE_SIZE";
+
+	private static final long MEGABYTE = 1024 * 1024;
+
+	private Label sequenceCacheStatistics;
 
 	@Override
 	public void init(final IWorkbench workbench) {
@@ -66,5 +82,59 @@ public final class PreferencePage extends FieldEditorPreferencePage implements I
 				"Clustal Omega Executable", // Location of the clutalo executable of Clustal Omega
 				true,   // File path to executable must be absolute
 				parent));
+
+		IntegerFieldEditor sequenceCacheSize = new IntegerFieldEditor(
+				SEQUENCE_CACHE_SIZE,
+				"Sequence database cache (MB)",	// Memory for FASTA databases shared between executions
+				parent);
+		sequenceCacheSize.setValidRange(0, Integer.MAX_VALUE);
+		this.addField(sequenceCacheSize);
+
+		IntegerFieldEditor structureCacheSize = new IntegerFieldEditor(
+				STRUCTURE_CACHE_SIZE,
+				"Parsed structure cache (MB)",	// Memory for structures parsed from PDB strings
+				parent);
+		structureCacheSize.setValidRange(0, Integer.MAX_VALUE);
+		this.addField(structureCacheSize);
+
+		this.sequenceCacheStatistics = new Label(parent, SWT.NONE);
+		this.sequenceCacheStatistics.setLayoutData(new GridData(SWT.FILL, SWT.CENTER, true, false, 3, 1));
+		this.updateSequenceCacheStatistics();
+
+		Button clearSequenceCache = new Button(parent, SWT.PUSH);
+		clearSequenceCache.setText("Clear sequence database cache");
+		clearSequenceCache.setLayoutData(new GridData(SWT.BEGINNING, SWT.CENTER, false, false, 3, 1));
+		clearSequenceCache.addSelectionListener(new SelectionAdapter() {
+
+			@Override
+			public void widgetSelected(final SelectionEvent e) {
+
+				SequenceDatabaseCache.getInstance().clear();
+				PreferencePage.this.updateSequenceCacheStatistics();
+			}
+		});
+	}
+
+	@Override
+	public boolean performOk() {
+
+		boolean result = super.performOk();
+		SequenceDatabaseCache.getInstance().setBudget(this.getPreferenceStore().getInt(SEQUENCE_CACHE_SIZE) * MEGABYTE);
+		StructureImplCache.getInstance().setBudget(this.getPreferenceStore().getInt(STRUCTURE_CACHE_SIZE) * MEGABYTE);
+		this.updateSequenceCacheStatistics();
+		return result;
+	}
+
+
+	private void updateSequenceCacheStatistics() {
+
+		MemoryBoundedCache<?, ?> cache = SequenceDatabaseCache.getInstance().getCache();
+		this.sequenceCacheStatistics.setText(String.format(
+				"%d database(s) cached, %d of %d MB used, %d hit(s), %d miss(es)",
+				cache.size(),
+				cache.getUsedBytes() / MEGABYTE,
+				cache.getBudget() / MEGABYTE,
+				cache.getHits(),
+				cache.getMisses()));
 	}
 }